@@ -0,0 +1,92 @@
+#!/bin/bash
+
+# Сравнение платформенных и виртуальных потоков (spring.threads.virtual.enabled) под одинаковой нагрузкой.
+# Поднимает собранный jar дважды — в каждом режиме — и гоняет смесь запросов, которые блокируются на MinIO,
+# JDBC и очереди рендера: /files/{key}/render, /files/{key} (statObject), /files/{key}/meta (Postgres).
+#
+# Нужны запущенные MinIO и PostgreSQL (docker compose up minio postgres) и модель в бакете.
+# Использование: ./loadtest-virtual-threads.sh "височная%20кость1.obj" [параллельность] [запросов]
+
+OBJECT_KEY="${1:-височная%20кость1.obj}"
+CONCURRENCY="${2:-200}"
+REQUESTS="${3:-3000}"
+PORT="${PORT:-8011}"
+BASE_URL="http://localhost:${PORT}"
+OUT_DIR="build/loadtest"
+
+if ! command -v curl &> /dev/null; then
+    echo "ERROR: curl not found."
+    exit 1
+fi
+
+JAR=$(ls build/libs/*.jar 2>/dev/null | grep -v -e '-plain' -e '-sources' | head -1)
+if [ -z "${JAR}" ]; then
+    echo "Building application jar..."
+    ./gradlew -q bootJar || exit 1
+    JAR=$(ls build/libs/*.jar | grep -v -e '-plain' -e '-sources' | head -1)
+fi
+mkdir -p "${OUT_DIR}"
+
+wait_for_app() {
+    for _ in $(seq 1 120); do
+        if curl -s -o /dev/null -w '%{http_code}' "${BASE_URL}/render/queue" | grep -q 200; then
+            return 0
+        fi
+        sleep 1
+    done
+    return 1
+}
+
+# Один запрос смеси по номеру: рендер с разными углами (часть попадёт в кэш), statObject и метаданные из БД
+one_request() {
+    local i=$1
+    case $((i % 3)) in
+        0) url="${BASE_URL}/files/${OBJECT_KEY}/render?azimuth=$(( (i * 7) % 360 ))&elevation=$(( (i % 9) * 10 - 40 ))" ;;
+        1) url="${BASE_URL}/files/${OBJECT_KEY}" ;;
+        *) url="${BASE_URL}/files/${OBJECT_KEY}/meta" ;;
+    esac
+    curl -s -o /dev/null -w '%{http_code} %{time_total}\n' "${url}"
+}
+export -f one_request
+export BASE_URL OBJECT_KEY
+
+run_mode() {
+    local virtual=$1
+    local log="${OUT_DIR}/app-virtual-${virtual}.log"
+    local results="${OUT_DIR}/results-virtual-${virtual}.txt"
+
+    java -Djava.awt.headless=true -jar "${JAR}" --server.port="${PORT}" \
+        --spring.threads.virtual.enabled="${virtual}" > "${log}" 2>&1 &
+    local pid=$!
+    if ! wait_for_app; then
+        echo "ERROR: app did not start (virtual=${virtual}), see ${log}"
+        kill "${pid}" 2>/dev/null
+        exit 1
+    fi
+
+    # Прогрев: загрузка модели в GL и JIT
+    seq 1 50 | xargs -P 8 -I{} bash -c 'one_request {}' > /dev/null
+
+    local start end
+    start=$(date +%s.%N)
+    seq 1 "${REQUESTS}" | xargs -P "${CONCURRENCY}" -I{} bash -c 'one_request {}' > "${results}"
+    end=$(date +%s.%N)
+
+    kill "${pid}" 2>/dev/null
+    wait "${pid}" 2>/dev/null
+
+    sort -k2,2n "${results}" | awk -v mode="${virtual}" -v elapsed="$(echo "${end} - ${start}" | bc)" '
+        { n++; codes[$1]++; t[n] = $2 }
+        END {
+            printf "virtual=%-5s requests=%d elapsed=%.1fs rps=%.1f p50=%.0fms p95=%.0fms p99=%.0fms max=%.0fms codes:",
+                mode, n, elapsed, n / elapsed, t[int(n * 0.50)] * 1000, t[int(n * 0.95)] * 1000,
+                t[int(n * 0.99)] * 1000, t[n] * 1000
+            for (c in codes) printf " %s=%d", c, codes[c]
+            printf "\n"
+        }'
+}
+
+echo "Load test: key=${OBJECT_KEY} concurrency=${CONCURRENCY} requests=${REQUESTS} jar=${JAR}"
+run_mode false
+run_mode true
+echo "Raw timings and app logs: ${OUT_DIR}/"
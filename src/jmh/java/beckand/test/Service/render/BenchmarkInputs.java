@@ -0,0 +1,73 @@
+package beckand.test.Service.render;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjWriter;
+import de.javagl.obj.Objs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
+/** Входные данные бенчмарков: процедурные сетки нужного размера и синтетический кадр glReadPixels. */
+final class BenchmarkInputs {
+
+    /** Размер кадра по умолчанию (render.width × render.height в application.properties). */
+    static final int FRAME_WIDTH = 1920;
+    static final int FRAME_HEIGHT = 1440;
+
+    private BenchmarkInputs() {
+    }
+
+    /**
+     * Рельеф n × n четырёхугольников (≈ triangles треугольников после триангуляции): нормали у граней разные,
+     * а четырёхугольники проходят тот же веер, что и n-угольники реальных OBJ.
+     */
+    static Obj heightField(int triangles) {
+        int n = Math.max(2, (int) Math.round(Math.sqrt(triangles / 2.0)));
+        Obj obj = Objs.create();
+        for (int z = 0; z <= n; z++) {
+            for (int x = 0; x <= n; x++) {
+                float u = (float) x / n;
+                float v = (float) z / n;
+                float y = (float) (0.08 * Math.sin(u * 23.0) * Math.cos(v * 17.0) + 0.03 * Math.sin((u + v) * 71.0));
+                obj.addVertex(u - 0.5f, y, v - 0.5f);
+            }
+        }
+        int row = n + 1;
+        for (int z = 0; z < n; z++) {
+            for (int x = 0; x < n; x++) {
+                int i = z * row + x;
+                obj.addFace(i, i + row, i + row + 1, i + 1);
+            }
+        }
+        return obj;
+    }
+
+    static byte[] objText(Obj obj) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjWriter.write(obj, out);
+        return out.toByteArray();
+    }
+
+    /** RGBA снизу вверх, как отдаёт бэкенд: фон, освещённый диск и шум, чтобы JPEG было что сжимать. */
+    static ByteBuffer glReadback(int width, int height) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+        SplittableRandom random = new SplittableRandom(42);
+        double radius = Math.min(width, height) * 0.42;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double dx = (x - width / 2.0) / radius;
+                double dy = (y - height / 2.0) / radius;
+                double d2 = dx * dx + dy * dy;
+                int shade = d2 < 1.0
+                        ? (int) (255 * Math.min(1.0, 0.2 + Math.sqrt(1.0 - d2))) - random.nextInt(8)
+                        : 15;
+                shade = Math.max(0, shade);
+                buffer.put((byte) shade).put((byte) shade).put((byte) Math.min(255, shade + 5)).put((byte) 255);
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,55 @@
+package beckand.test.Service.render;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь кадра после бэкенда: readback в растр, уменьшение под превью и JPEG. scale = 1.0 — финальный кадр
+ * (render.jpeg.quality), меньше — превью (render.preview.quality).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FrameBenchmark {
+
+    private static final float FINAL_QUALITY = 0.92f;
+    private static final float PREVIEW_QUALITY = 0.88f;
+
+    @Param({"1.0", "0.85", "0.5", "0.26"})
+    public double scale;
+
+    private ByteBuffer readback;
+    private BufferedImage full;
+    private BufferedImage preview;
+    private float quality;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        readback = BenchmarkInputs.glReadback(BenchmarkInputs.FRAME_WIDTH, BenchmarkInputs.FRAME_HEIGHT);
+        full = new BufferedImage(BenchmarkInputs.FRAME_WIDTH, BenchmarkInputs.FRAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        RenderService.fillRgbFromGlReadBuffer(readback, full);
+        preview = scale < 1.0 ? RenderService.scalePreview(full, scale) : full;
+        quality = scale < 1.0 ? PREVIEW_QUALITY : FINAL_QUALITY;
+    }
+
+    /** От scale не зависит: readback всегда полного размера. */
+    @Benchmark
+    public BufferedImage fillRgbFromGlReadBuffer() {
+        RenderService.fillRgbFromGlReadBuffer(readback, full);
+        return full;
+    }
+
+    @Benchmark
+    public BufferedImage scalePreview() {
+        return RenderService.scalePreview(full, scale);
+    }
+
+    @Benchmark
+    public byte[] encodeJpeg() throws IOException {
+        return RenderService.encodeJpeg(preview, quality);
+    }
+}
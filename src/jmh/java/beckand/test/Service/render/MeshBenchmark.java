@@ -0,0 +1,44 @@
+package beckand.test.Service.render;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/** Загрузка модели при смене: разбор OBJ, буфер VBO, габариты. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MeshBenchmark {
+
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int triangles;
+
+    private byte[] objText;
+    private Obj mesh;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mesh = BenchmarkInputs.heightField(triangles);
+        objText = BenchmarkInputs.objText(mesh);
+    }
+
+    @Benchmark
+    public Obj objReaderRead() throws IOException {
+        return ObjReader.read(new ByteArrayInputStream(objText));
+    }
+
+    @Benchmark
+    public FloatBuffer buildInterleavedNormalPosBuffer() {
+        return RenderService.buildInterleavedNormalPosBuffer(mesh);
+    }
+
+    @Benchmark
+    public RenderService.ModelBounds computeModelBounds() {
+        return RenderService.computeModelBounds(mesh);
+    }
+}
@@ -0,0 +1,61 @@
+package beckand.test.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Счётчики прогона, общие для всех сессий. Задержки — от отправки rotate до прихода кадра с тем же seq. */
+final class LoadStats {
+
+    final Latencies previewLatency = new Latencies();
+    final Latencies finalLatency = new Latencies();
+
+    final LongAdder previewsSent = new LongAdder();
+    final LongAdder finalsSent = new LongAdder();
+    final LongAdder frames = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LongAdder cacheHits = new LongAdder();
+    /** Превью без ответа за frame-timeout-ms: вытеснено более свежим, отброшено как дубль или потеряно. */
+    final LongAdder droppedPreviews = new LongAdder();
+    /** Финальный кадр без ответа — и после повторов на busy. */
+    final LongAdder droppedFinals = new LongAdder();
+    /** Кадры, пришедшие после того, как зритель перестал их ждать. */
+    final LongAdder lateFrames = new LongAdder();
+    final LongAdder busy = new LongAdder();
+    /** Точки траектории, пропущенные клиентом: предыдущий кадр ещё в пути (как wsRenderInFlight во viewer). */
+    final LongAdder skippedWhileInFlight = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder closedByServer = new LongAdder();
+
+    /** Время сервера из заголовка кадра v2, мкс — где именно тратится задержка. */
+    final LongAdder serverQueueMicros = new LongAdder();
+    final LongAdder serverRenderMicros = new LongAdder();
+    final LongAdder serverEncodeMicros = new LongAdder();
+    final LongAdder serverTotalMicros = new LongAdder();
+    final LongAdder serverSamples = new LongAdder();
+
+    final AtomicInteger openSessions = new AtomicInteger();
+
+    /** Растущий массив задержек в микросекундах; перцентили — по отсортированной копии в конце прогона. */
+    static final class Latencies {
+        private long[] values = new long[1 << 14];
+        private int size;
+
+        synchronized void record(long micros) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = micros;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    static double percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1000.0;
+    }
+}
@@ -0,0 +1,99 @@
+package beckand.test.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Параметры прогона из аргументов вида --name=value. Значения по умолчанию — класс из 20 зрителей на 4 моделях
+ * по ~200 тыс. треугольников, минута нагрузки.
+ */
+record LoadTestOptions(URI baseUrl,
+                       int sessions,
+                       int models,
+                       List<String> modelKeys,
+                       int triangles,
+                       Duration duration,
+                       Duration rampUp,
+                       int thinkMinMs,
+                       int thinkMaxMs,
+                       int dragMinMs,
+                       int dragMaxMs,
+                       int tickMs,
+                       int frameTimeoutMs,
+                       int reportEverySec,
+                       long seed) {
+
+    static final String USAGE = """
+            Нагрузка на /ws/render/{modelId}: N зрителей на M моделях «крутят» модель как в браузере —
+            серия превью (final=false) раз в tick-ms, пока кадр в пути новое не шлётся, затем final=true и пауза.
+            
+              --url=http://localhost:8010   адрес приложения
+              --sessions=20                 одновременных WebSocket-сессий
+              --models=4                    моделей; зрители распределяются по ним по кругу
+              --model-keys=a.obj,b.obj      готовые объекты в бакете (иначе генерируются и загружаются через /files/upload)
+              --triangles=200000            треугольников в сгенерированной модели
+              --duration=60                 секунд нагрузки после разгона
+              --ramp-up=10                  секунд на подключение всех сессий
+              --think-ms=1000-4000          пауза между жестами
+              --drag-ms=500-2500            длительность жеста
+              --tick-ms=32                  период движения мыши (как UPDATE_INTERVAL во viewer)
+              --frame-timeout-ms=2000       ответ не пришёл — кадр потерян, зритель продолжает
+              --report-every=5              период промежуточной строки, с
+              --seed=1                      зерно генератора траекторий
+            """;
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) throw new IllegalArgumentException(USAGE);
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Bad argument: " + arg + "\n" + USAGE);
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String keys = values.getOrDefault("model-keys", "");
+        List<String> modelKeys = keys.isBlank() ? List.of()
+                : Arrays.stream(keys.split(",")).map(String::trim).filter(k -> !k.isEmpty()).toList();
+        int[] think = range(values.getOrDefault("think-ms", "1000-4000"));
+        int[] drag = range(values.getOrDefault("drag-ms", "500-2500"));
+        String url = values.getOrDefault("url", "http://localhost:8010");
+        LoadTestOptions options = new LoadTestOptions(
+                URI.create(url.endsWith("/") ? url.substring(0, url.length() - 1) : url),
+                positive(values, "sessions", 20),
+                modelKeys.isEmpty() ? positive(values, "models", 4) : modelKeys.size(),
+                modelKeys,
+                positive(values, "triangles", 200_000),
+                Duration.ofSeconds(positive(values, "duration", 60)),
+                Duration.ofSeconds(Integer.parseInt(values.getOrDefault("ramp-up", "10"))),
+                think[0], think[1], drag[0], drag[1],
+                positive(values, "tick-ms", 32),
+                positive(values, "frame-timeout-ms", 2000),
+                positive(values, "report-every", 5),
+                Long.parseLong(values.getOrDefault("seed", "1")));
+        values.keySet().removeAll(List.of("url", "sessions", "models", "model-keys", "triangles", "duration", "ramp-up",
+                "think-ms", "drag-ms", "tick-ms", "frame-timeout-ms", "report-every", "seed"));
+        if (!values.isEmpty()) throw new IllegalArgumentException("Unknown options: " + values.keySet() + "\n" + USAGE);
+        return options;
+    }
+
+    URI webSocketBase() {
+        return URI.create(baseUrl.toString().replaceFirst("^http", "ws"));
+    }
+
+    private static int positive(Map<String, String> values, String name, int fallback) {
+        int value = Integer.parseInt(values.getOrDefault(name, Integer.toString(fallback)));
+        if (value <= 0) throw new IllegalArgumentException("--" + name + " must be positive");
+        return value;
+    }
+
+    private static int[] range(String value) {
+        String[] parts = value.split("-");
+        int min = Integer.parseInt(parts[0].trim());
+        int max = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : min;
+        if (min < 0 || max < min) throw new IllegalArgumentException("Bad range: " + value);
+        return new int[]{min, max};
+    }
+}
@@ -0,0 +1,106 @@
+package beckand.test.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** Процедурные модели для прогона: генерируются и загружаются через /files/upload, если их ещё нет в бакете. */
+final class ModelSeeder {
+
+    private final HttpClient http;
+    private final URI baseUrl;
+
+    ModelSeeder(HttpClient http, URI baseUrl) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+    }
+
+    List<String> ensureModels(int count, int triangles) throws IOException, InterruptedException {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = "loadtest-model-" + i + "-" + (triangles / 1000) + "k.obj";
+            if (exists(key)) {
+                System.out.printf("model %s already uploaded%n", key);
+            } else {
+                byte[] obj = bumpySphere(triangles, i);
+                upload(key, obj);
+                System.out.printf("model %s uploaded (%d KiB)%n", key, obj.length / 1024);
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private boolean exists(String key) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/files/" + pathSegment(key))).GET().build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    }
+
+    private void upload(String key, byte[] content) throws IOException, InterruptedException {
+        String boundary = "atlas-loadtest-" + System.nanoTime();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        body.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + key + "\"\r\n"
+                + "Content-Type: model/obj\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/files/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Upload of " + key + " failed: HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    static String pathSegment(String key) {
+        return URLEncoder.encode(key, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /**
+     * Сфера с рельефом из сетки широта × долгота четырёхугольников (~triangles после триангуляции). variant
+     * меняет рельеф, чтобы модели не совпадали.
+     */
+    static byte[] bumpySphere(int triangles, int variant) throws IOException {
+        int rings = Math.max(4, (int) Math.round(Math.sqrt(triangles / 4.0)));
+        int segments = rings * 2;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(triangles * 40);
+        try (Writer w = new OutputStreamWriter(out, StandardCharsets.US_ASCII)) {
+            w.write("# atlas load test model, " + triangles + " triangles\n");
+            double freq = 7 + variant * 3;
+            for (int r = 0; r <= rings; r++) {
+                double theta = Math.PI * r / rings;
+                for (int s = 0; s < segments; s++) {
+                    double phi = 2 * Math.PI * s / segments;
+                    double radius = 1.0 + 0.06 * Math.sin(freq * theta) * Math.cos(freq * phi);
+                    double x = radius * Math.sin(theta) * Math.cos(phi);
+                    double y = radius * Math.cos(theta);
+                    double z = radius * Math.sin(theta) * Math.sin(phi);
+                    w.write(String.format(Locale.ROOT, "v %.5f %.5f %.5f\n", x, y, z));
+                }
+            }
+            for (int r = 0; r < rings; r++) {
+                for (int s = 0; s < segments; s++) {
+                    int a = r * segments + s + 1;
+                    int b = r * segments + (s + 1) % segments + 1;
+                    int c = a + segments;
+                    int d = b + segments;
+                    // Обход против часовой стрелки снаружи — задние грани отсекаются, как у нормальной модели
+                    w.write("f " + a + " " + b + " " + d + " " + c + "\n");
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,123 @@
+package beckand.test.loadtest;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генератор нагрузки на WebSocket-рендер: классы зрителей, вращающих модели, против запущенного экземпляра.
+ * <pre>
+ *   docker compose -f docker-compose.loadtest.yaml up -d --build
+ *   ./gradlew loadTest --args="--sessions=60 --models=6 --duration=120"
+ * </pre>
+ * Итог: перцентили задержки превью и финальных кадров, кадры/с, трафик, потерянные кадры и busy.
+ */
+public final class RenderLoadTest {
+
+    private RenderLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        ExecutorService viewers = Executors.newVirtualThreadPerTaskExecutor();
+        // У клиента свой исполнитель: viewers закрывается в конце прогона, а закрытие сессий ещё идёт через него
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        List<String> models = options.modelKeys().isEmpty()
+                ? new ModelSeeder(http, options.baseUrl()).ensureModels(options.models(), options.triangles())
+                : options.modelKeys();
+        System.out.printf(Locale.ROOT, "load: url=%s sessions=%d models=%d duration=%ds ramp-up=%ds think=%d-%dms drag=%d-%dms tick=%dms%n",
+                options.baseUrl(), options.sessions(), models.size(), options.duration().toSeconds(), options.rampUp().toSeconds(),
+                options.thinkMinMs(), options.thinkMaxMs(), options.dragMinMs(), options.dragMaxMs(), options.tickMs());
+
+        LoadStats stats = new LoadStats();
+        long start = System.nanoTime();
+        long rampNanos = options.rampUp().toNanos();
+        long deadline = start + rampNanos + options.duration().toNanos();
+        for (int i = 0; i < options.sessions(); i++) {
+            // Зрители одного класса смотрят одну модель; подключаются равномерно за ramp-up
+            ViewerSession viewer = new ViewerSession(i, models.get(i % models.size()), options, stats);
+            long startDelay = options.sessions() > 1 ? rampNanos * i / (options.sessions() - 1) : 0;
+            viewers.submit(() -> {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(startDelay);
+                    viewer.run(http, deadline);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    System.err.println("viewer failed: " + e);
+                }
+                return null;
+            });
+        }
+
+        Snapshot previous = Snapshot.of(stats, start);
+        while (System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(Math.min(TimeUnit.SECONDS.toMillis(options.reportEverySec()),
+                    Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+            Snapshot now = Snapshot.of(stats, System.nanoTime());
+            now.printDelta(previous, stats, start);
+            previous = now;
+        }
+        viewers.shutdown();
+        if (!viewers.awaitTermination(options.frameTimeoutMs() * 2L + 5_000, TimeUnit.MILLISECONDS)) viewers.shutdownNow();
+        printSummary(stats, models.size(), options.sessions(), System.nanoTime() - start - rampNanos);
+        System.exit(0);
+    }
+
+    private record Snapshot(long nanos, long frames, long bytes, long busy, long dropped) {
+        static Snapshot of(LoadStats s, long nanos) {
+            return new Snapshot(nanos, s.frames.sum(), s.bytes.sum(), s.busy.sum(), s.droppedPreviews.sum() + s.droppedFinals.sum());
+        }
+
+        void printDelta(Snapshot before, LoadStats stats, long start) {
+            double sec = Math.max(1e-9, (nanos - before.nanos) / 1e9);
+            System.out.printf(Locale.ROOT, "t=%4ds sessions=%d fps=%.1f MiB/s=%.2f busy=%d dropped=%d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(nanos - start), stats.openSessions.get(),
+                    (frames - before.frames) / sec, (bytes - before.bytes) / sec / (1 << 20),
+                    busy - before.busy, dropped - before.dropped);
+        }
+    }
+
+    /** Скорости — за время после разгона; кадры разгона в них входят, поэтому при коротком duration они завышены. */
+    private static void printSummary(LoadStats stats, int models, int sessions, long measuredNanos) {
+        double sec = Math.max(1e-9, measuredNanos / 1e9);
+        long[] preview = stats.previewLatency.sorted();
+        long[] fin = stats.finalLatency.sorted();
+        long samples = Math.max(1, stats.serverSamples.sum());
+        System.out.println();
+        System.out.printf(Locale.ROOT, "=== %d sessions on %d models, %.0fs ===%n", sessions, models, sec);
+        System.out.printf(Locale.ROOT, "frames: %d (%.1f/s, cache hits %d, late %d)  traffic: %.2f MiB/s%n",
+                stats.frames.sum(), stats.frames.sum() / sec, stats.cacheHits.sum(), stats.lateFrames.sum(),
+                stats.bytes.sum() / sec / (1 << 20));
+        printLatency("preview", preview, stats.previewsSent.sum(), stats.droppedPreviews.sum());
+        printLatency("final  ", fin, stats.finalsSent.sum(), stats.droppedFinals.sum());
+        System.out.printf(Locale.ROOT, "server avg ms: queue=%.1f render=%.1f encode=%.1f total=%.1f%n",
+                stats.serverQueueMicros.sum() / 1000.0 / samples, stats.serverRenderMicros.sum() / 1000.0 / samples,
+                stats.serverEncodeMicros.sum() / 1000.0 / samples, stats.serverTotalMicros.sum() / 1000.0 / samples);
+        System.out.printf("busy: %d  skipped while in flight: %d  connect failures: %d  closed by server: %d%n",
+                stats.busy.sum(), stats.skippedWhileInFlight.sum(), stats.connectFailures.sum(), stats.closedByServer.sum());
+    }
+
+    private static void printLatency(String label, long[] sorted, long sent, long dropped) {
+        System.out.printf(Locale.ROOT, "%s sent=%d answered=%d dropped=%d  p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms%n",
+                label, sent, sorted.length, dropped,
+                LoadStats.percentileMs(sorted, 50), LoadStats.percentileMs(sorted, 95),
+                LoadStats.percentileMs(sorted, 99), LoadStats.percentileMs(sorted, 100));
+    }
+}
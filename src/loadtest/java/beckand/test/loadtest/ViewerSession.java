@@ -0,0 +1,278 @@
+package beckand.test.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Один зритель: WebSocket /ws/render/{modelId} по протоколу v2 и цикл «пауза → жест → отпускание».
+ * Как и viewer в браузере, держит в пути не больше одного кадра: точки траектории, пришедшиеся на ожидание,
+ * пропускаются. Ответ сопоставляется с запросом по seq.
+ */
+final class ViewerSession implements WebSocket.Listener {
+
+    private static final String SUBPROTOCOL_V2 = "atlas.render.v2";
+    private static final int TYPE_ROTATE = 1;
+    private static final int TYPE_FRAME = 0x81;
+    private static final int TYPE_BUSY = 0x82;
+    private static final int FLAG_FINAL = 1;
+    private static final int FLAG_CACHE_HIT = 1 << 1;
+    private static final double MIN_ANGLE_CHANGE = 0.5;
+    private static final int MAX_BUSY_RETRIES = 3;
+
+    private final int id;
+    private final String modelKey;
+    private final LoadTestOptions options;
+    private final LoadStats stats;
+    private final SplittableRandom random;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition answered = lock.newCondition();
+    private WebSocket webSocket;
+    private ByteBuffer partial = ByteBuffer.allocate(1 << 16);
+    private long nextSeq = 1;
+    /** seq кадра в пути; 0 — ничего не ждём. */
+    private long inFlightSeq;
+    private long inFlightSentNanos;
+    private boolean inFlightFinal;
+    /** Ответ busy на кадр в пути: через сколько мс повторить; -1 — не было. */
+    private long busyRetryAfterMs = -1;
+    private volatile boolean closed;
+    /** Сессию закрывает сам зритель — ответный close сервера не считается обрывом. */
+    private volatile boolean closing;
+
+    private double azimuth;
+    private double elevation;
+    private double lastSentAzimuth = Double.NaN;
+    private double lastSentElevation = Double.NaN;
+
+    ViewerSession(int id, String modelKey, LoadTestOptions options, LoadStats stats) {
+        this.id = id;
+        this.modelKey = modelKey;
+        this.options = options;
+        this.stats = stats;
+        this.random = new SplittableRandom(options.seed() * 1_000_003L + id);
+        this.azimuth = random.nextDouble(0, 360);
+        this.elevation = random.nextDouble(-30, 30);
+    }
+
+    void run(HttpClient http, long deadlineNanos) throws InterruptedException {
+        URI uri = URI.create(options.webSocketBase() + "/ws/render/" + ModelSeeder.pathSegment(modelKey) + "?proto=2");
+        try {
+            webSocket = http.newWebSocketBuilder()
+                    .subprotocols(SUBPROTOCOL_V2)
+                    .buildAsync(uri, this)
+                    .get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            stats.connectFailures.increment();
+            System.err.printf("session %d: connect to %s failed: %s%n", id, uri, e);
+            return;
+        }
+        stats.openSessions.incrementAndGet();
+        try {
+            // Первый кадр — как при открытии модели: финальный под начальным углом
+            sendFinal();
+            while (!closed && System.nanoTime() < deadlineNanos) {
+                Thread.sleep(randomBetween(options.thinkMinMs(), options.thinkMaxMs()));
+                if (closed || System.nanoTime() >= deadlineNanos) break;
+                drag(deadlineNanos);
+                if (closed) break;
+                sendFinal();
+            }
+        } finally {
+            stats.openSessions.decrementAndGet();
+            closing = true;
+            if (!closed) webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+    }
+
+    /** Жест: угловая скорость случайна на весь жест, мышь движется каждые tick-ms. */
+    private void drag(long deadlineNanos) throws InterruptedException {
+        long gestureEnd = Math.min(deadlineNanos,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(randomBetween(options.dragMinMs(), options.dragMaxMs())));
+        double azSpeed = random.nextDouble(40, 220) * (random.nextBoolean() ? 1 : -1);
+        double elSpeed = random.nextDouble(-40, 40);
+        double tickSec = options.tickMs() / 1000.0;
+        while (!closed && System.nanoTime() < gestureEnd) {
+            Thread.sleep(options.tickMs());
+            azimuth = ((azimuth + azSpeed * tickSec) % 360 + 360) % 360;
+            elevation = Math.max(-80, Math.min(80, elevation + elSpeed * tickSec));
+            if (Math.abs(azimuth - lastSentAzimuth) + Math.abs(elevation - lastSentElevation) < MIN_ANGLE_CHANGE) continue;
+            if (!pollInFlight()) {
+                stats.skippedWhileInFlight.increment();
+                continue;
+            }
+            send(false);
+        }
+    }
+
+    /** Отпускание мыши: дождаться кадра в пути, затем final под текущим углом; на busy — повтор через retryAfterMs. */
+    private void sendFinal() throws InterruptedException {
+        awaitInFlight();
+        for (int attempt = 0; attempt <= MAX_BUSY_RETRIES && !closed; attempt++) {
+            send(true);
+            long retryAfter = awaitInFlight();
+            if (retryAfter < 0) return;
+            Thread.sleep(Math.max(1, retryAfter));
+        }
+    }
+
+    private void send(boolean finalFrame) {
+        long seq;
+        lock.lock();
+        try {
+            seq = nextSeq++;
+            inFlightSeq = seq;
+            inFlightFinal = finalFrame;
+            inFlightSentNanos = System.nanoTime();
+            busyRetryAfterMs = -1;
+        } finally {
+            lock.unlock();
+        }
+        ByteBuffer rotate = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        rotate.put((byte) TYPE_ROTATE).put((byte) (finalFrame ? FLAG_FINAL : 0)).putShort((short) 0);
+        rotate.putInt((int) seq).putFloat((float) azimuth).putFloat((float) elevation).putFloat(1.0f);
+        // Маскирование в java.net.http читает payload через getLong в порядке байт буфера: little-endian буфер
+        // уходит с переставленными байтами. Содержимое уже записано — для отправки порядок возвращается к big-endian.
+        rotate.flip().order(ByteOrder.BIG_ENDIAN);
+        (finalFrame ? stats.finalsSent : stats.previewsSent).increment();
+        lastSentAzimuth = azimuth;
+        lastSentElevation = elevation;
+        // Отправки одной сессии идут последовательно — следующая не начнётся, пока не завершилась эта
+        webSocket.sendBinary(rotate, true).join();
+    }
+
+    /** true — в пути ничего нет (или ожидание истекло и кадр засчитан потерянным). */
+    private boolean pollInFlight() {
+        lock.lock();
+        try {
+            if (inFlightSeq == 0) return true;
+            if (System.nanoTime() - inFlightSentNanos < TimeUnit.MILLISECONDS.toNanos(options.frameTimeoutMs())) return false;
+            dropInFlightLocked();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ждать ответа на кадр в пути не дольше frame-timeout-ms. Возвращает retryAfterMs, если пришёл busy, иначе -1. */
+    private long awaitInFlight() throws InterruptedException {
+        lock.lock();
+        try {
+            long deadline = inFlightSentNanos + TimeUnit.MILLISECONDS.toNanos(options.frameTimeoutMs());
+            while (inFlightSeq != 0 && !closed) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    dropInFlightLocked();
+                    return -1;
+                }
+                answered.awaitNanos(left);
+            }
+            long retry = busyRetryAfterMs;
+            busyRetryAfterMs = -1;
+            return retry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dropInFlightLocked() {
+        (inFlightFinal ? stats.droppedFinals : stats.droppedPreviews).increment();
+        inFlightSeq = 0;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket ws, ByteBuffer data, boolean last) {
+        if (partial.remaining() < data.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(partial.capacity() * 2, partial.position() + data.remaining()));
+            partial.flip();
+            grown.put(partial);
+            partial = grown;
+        }
+        partial.put(data);
+        if (last) {
+            partial.flip();
+            onMessage(partial.order(ByteOrder.LITTLE_ENDIAN));
+            partial.clear();
+        }
+        ws.request(1);
+        return null;
+    }
+
+    private void onMessage(ByteBuffer message) {
+        long now = System.nanoTime();
+        int type = message.get(0) & 0xFF;
+        long seq = message.getInt(4) & 0xFFFFFFFFL;
+        if (type == TYPE_FRAME) {
+            int flags = message.get(1) & 0xFF;
+            stats.frames.increment();
+            stats.bytes.add(message.remaining());
+            if ((flags & FLAG_CACHE_HIT) != 0) stats.cacheHits.increment();
+            stats.serverQueueMicros.add(message.getInt(8) & 0xFFFFFFFFL);
+            stats.serverRenderMicros.add(message.getInt(12) & 0xFFFFFFFFL);
+            stats.serverEncodeMicros.add(message.getInt(16) & 0xFFFFFFFFL);
+            stats.serverTotalMicros.add(message.getInt(20) & 0xFFFFFFFFL);
+            stats.serverSamples.increment();
+        } else if (type == TYPE_BUSY) {
+            stats.busy.increment();
+        } else {
+            return;
+        }
+        lock.lock();
+        try {
+            if (seq != inFlightSeq || inFlightSeq == 0) {
+                if (type == TYPE_FRAME) stats.lateFrames.increment();
+                return;
+            }
+            if (type == TYPE_FRAME) {
+                long micros = TimeUnit.NANOSECONDS.toMicros(now - inFlightSentNanos);
+                (inFlightFinal ? stats.finalLatency : stats.previewLatency).record(micros);
+            } else {
+                busyRetryAfterMs = message.getInt(8) & 0xFFFFFFFFL;
+            }
+            inFlightSeq = 0;
+            answered.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+        if (!closing) {
+            stats.closedByServer.increment();
+            System.err.printf("session %d (%s): closed by server %d %s%n", id, modelKey, statusCode, reason);
+        }
+        markClosed();
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket ws, Throwable error) {
+        System.err.printf("session %d (%s): %s%n", id, modelKey, error);
+        markClosed();
+    }
+
+    private void markClosed() {
+        lock.lock();
+        try {
+            closed = true;
+            answered.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int randomBetween(int min, int max) {
+        return max > min ? random.nextInt(min, max + 1) : min;
+    }
+}
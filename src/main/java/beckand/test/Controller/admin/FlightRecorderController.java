@@ -0,0 +1,86 @@
+package beckand.test.Controller.admin;
+
+import beckand.test.DTO.diagnostics.FlightRecordingStatus;
+import beckand.test.Service.render.jfr.FlightRecordingService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Optional;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin/jfr")
+@Tag(name = "Admin Flight Recorder", description = "Запись JFR для разбора лагов рендера (пока без авторизации)")
+public class FlightRecorderController {
+
+    private final FlightRecordingService recordingService;
+
+    @Operation(summary = "Состояние записи JFR")
+    @GetMapping
+    public ResponseEntity<FlightRecordingStatus> status() {
+        return recordingService.status()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Начать запись JFR", description = "События atlas.render.* и стандартные события JVM; 409, если запись уже идёт")
+    @PostMapping("/start")
+    public ResponseEntity<FlightRecordingStatus> start(
+            @Parameter(description = "Конфигурация JFR: default или profile")
+            @RequestParam(defaultValue = "default") String settings,
+            @Parameter(description = "Сколько минут истории хранить")
+            @RequestParam(defaultValue = "30") long maxAgeMinutes,
+            @Parameter(description = "Предел размера записи, МБ")
+            @RequestParam(defaultValue = "256") long maxSizeMb
+    ) {
+        Optional<FlightRecordingStatus> started;
+        try {
+            started = recordingService.start(settings, maxAgeMinutes, maxSizeMb);
+        } catch (ParseException | IOException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return started
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).body(recordingService.status().orElse(null)));
+    }
+
+    @Operation(summary = "Остановить запись JFR", description = "Данные остаются доступны для выгрузки до следующего start")
+    @PostMapping("/stop")
+    public ResponseEntity<FlightRecordingStatus> stop() {
+        return recordingService.stop()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Выгрузить запись JFR", description = "Файл .jfr для JDK Mission Control или jfr print; запись при этом не останавливается")
+    @GetMapping("/dump")
+    public ResponseEntity<Resource> dump() throws IOException {
+        Optional<Path> dumped = recordingService.dump();
+        if (dumped.isEmpty()) return ResponseEntity.notFound().build();
+        Path file = dumped.get();
+        long size = Files.size(file);
+        // Временный файл удаляется, когда поток ответа закрыт
+        InputStreamResource body = new InputStreamResource(Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(size)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                .body(body);
+    }
+}
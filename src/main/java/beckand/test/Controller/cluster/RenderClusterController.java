@@ -0,0 +1,49 @@
+package beckand.test.Controller.cluster;
+
+import beckand.test.DTO.cluster.ClusterMembershipDto;
+import beckand.test.DTO.cluster.RenderNodeDto;
+import beckand.test.DTO.cluster.RenderRouteDto;
+import beckand.test.Service.cluster.RenderClusterCoordinator;
+import beckand.test.Service.cluster.RenderClusterService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/cluster")
+@Tag(name = "Render Cluster", description = "Узлы рендера: регистрация, состав кластера, маршрут модели")
+public class RenderClusterController {
+
+    private final RenderClusterCoordinator coordinator;
+    private final RenderClusterService clusterService;
+
+    @Operation(summary = "Heartbeat узла", description = "Регистрирует узел или продлевает его присутствие; возвращает состав кластера. Только на координаторе")
+    @PostMapping("/heartbeat")
+    public ResponseEntity<ClusterMembershipDto> heartbeat(@RequestBody RenderNodeDto node) {
+        if (!coordinator.isCoordinator()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        return ResponseEntity.ok(coordinator.heartbeat(node));
+    }
+
+    @Operation(summary = "Уход узла", description = "Плановое отключение узла; его модели сразу переходят к соседям по кольцу")
+    @PostMapping("/leave")
+    public ResponseEntity<ClusterMembershipDto> leave(@RequestParam("nodeId") String nodeId) {
+        if (!coordinator.isCoordinator()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        return ResponseEntity.ok(coordinator.leave(nodeId));
+    }
+
+    @Operation(summary = "Состав кластера", description = "На координаторе — авторитетный список, на узле — последний полученный")
+    @GetMapping("/nodes")
+    public ResponseEntity<ClusterMembershipDto> nodes() {
+        return ResponseEntity.ok(coordinator.isCoordinator() ? coordinator.membership() : clusterService.localView());
+    }
+
+    @Operation(summary = "Маршрут модели", description = "Узел, которому принадлежит модель, и адрес WebSocket для подключения к нему")
+    @GetMapping("/route")
+    public ResponseEntity<RenderRouteDto> route(@RequestParam("modelId") String modelId) {
+        return ResponseEntity.ok(clusterService.route(modelId));
+    }
+}
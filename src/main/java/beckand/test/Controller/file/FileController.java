@@ -1,8 +1,14 @@
 package beckand.test.Controller.file;
 
+import beckand.test.DTO.cluster.RenderNodeDto;
 import beckand.test.DTO.file.FileDTO;
 import beckand.test.DTO.file.FileUploadRequest;
+import beckand.test.DTO.file.IngestStatusDto;
+import beckand.test.Service.cluster.RenderClusterService;
+import beckand.test.Service.file.FileCatalogService;
 import beckand.test.Service.file.FileService;
+import beckand.test.Service.file.ModelIngestService;
+import beckand.test.Service.render.RenderRejectedException;
 import beckand.test.Service.render.RenderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,10 +17,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.InputStream;
 import java.util.List;
@@ -28,6 +36,8 @@ public class FileController {
 
     private final FileService fileService;
     private final RenderService renderService;
+    private final RenderClusterService clusterService;
+    private final ModelIngestService modelIngestService;
 
     @Operation(summary = "Загрузить файл", description = "Загружает файл с описанием")
     @PostMapping(value = "/upload", consumes = {"multipart/form-data"})
@@ -35,10 +45,35 @@ public class FileController {
         return ResponseEntity.ok(fileService.uploadFile(request));
     }
 
-    @Operation(summary = "Список файлов", description = "Возвращает список доступных файлов из MinIO")
+    @Operation(
+            summary = "Список файлов",
+            description = "Страница каталога моделей (без служебных media/ и uploads/). Следующая страница — "
+                    + "с cursor из заголовка X-Next-Cursor; заголовка нет — страница последняя"
+    )
     @GetMapping("")
-    public ResponseEntity<List<FileDTO>> listFiles() {
-        return ResponseEntity.ok(fileService.getAllFiles());
+    public ResponseEntity<List<FileDTO>> listFiles(
+            @Parameter(description = "Сортировка: name, size или modified") @RequestParam(required = false) String sort,
+            @Parameter(description = "asc или desc") @RequestParam(required = false, defaultValue = "asc") String order,
+            @Parameter(description = "Фильтр по Content-Type, например model/obj") @RequestParam(required = false) String type,
+            @Parameter(description = "Курсор следующей страницы") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы, до 500") @RequestParam(required = false) Integer limit
+    ) {
+        FileCatalogService.Page page;
+        try {
+            page = fileService.listFiles(FileCatalogService.SortField.fromParam(sort), "desc".equalsIgnoreCase(order),
+                    type, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.nextCursor())
+                    .build().toUriString();
+            response.header("X-Next-Cursor", page.nextCursor())
+                    .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.items());
     }
 
     @Operation(summary = "Удалить файл", description = "Удаляет файл по имени")
@@ -60,6 +95,31 @@ public class FileController {
         return ResponseEntity.ok(fileService.getFileInfo(objectKey));
     }
 
+    @Operation(
+            summary = "Статус приёма модели",
+            description = "Последнее задание конвейера (проверка, извлечение сведений), попытки и ошибка; "
+                    + "после успешного приёма — число треугольников, вершин, граней, групп и габарит"
+    )
+    @GetMapping("/{objectKey:.+}/ingest")
+    public ResponseEntity<IngestStatusDto> getIngestStatus(
+            @Parameter(description = "Ключ модели", required = true) @PathVariable("objectKey") String objectKey
+    ) {
+        return modelIngestService.status(objectKey)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Разобрать модель заново", description = "Ставит модель в очередь конвейера приёма")
+    @PostMapping("/{objectKey:.+}/ingest")
+    public ResponseEntity<IngestStatusDto> reingest(
+            @Parameter(description = "Ключ модели", required = true) @PathVariable("objectKey") String objectKey
+    ) {
+        modelIngestService.enqueue(objectKey);
+        return modelIngestService.status(objectKey)
+                .map(s -> ResponseEntity.accepted().body(s))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @Operation(
             summary = "OBJ для просмотра в браузере (WebGL)",
             description = "Отдаёт текст OBJ для клиентского Three.js. В продакшене ограничьте авторизацией — геометрия доступна для скачивания."
@@ -94,9 +154,16 @@ public class FileController {
             @Parameter(description = "Имя файла для рендеринга", required = true)
             @PathVariable("objectKey") String objectKey,
             @RequestParam(defaultValue = "0") double azimuth,
-            @RequestParam(defaultValue = "0") double elevation
+            @RequestParam(defaultValue = "0") double elevation,
+            @RequestHeader(value = RenderClusterService.ROUTED_HEADER, required = false) String routedBy
     ) {
         try {
+            // Кластер: модель рендерит узел, у которого она уже загружена; пересланный запрос дальше не уходит
+            RenderNodeDto owner = routedBy == null ? clusterService.ownerOf(objectKey) : null;
+            if (owner != null) {
+                ResponseEntity<byte[]> proxied = clusterService.proxyRender(owner, objectKey, azimuth, elevation);
+                if (proxied != null) return proxied;
+            }
             log.info("Rendering model: {}, azimuth: {}, elevation: {}", objectKey, azimuth, elevation);
             FileDTO info = fileService.getFileInfo(objectKey);
             try (InputStream is = fileService.getFileContent(objectKey)) {
@@ -105,6 +172,13 @@ public class FileController {
                         .contentType(MediaType.IMAGE_JPEG)
                         .body(jpeg);
             }
+        } catch (RenderRejectedException e) {
+            // Очередь к GL переполнена: 503 + Retry-After (секунды, округление вверх)
+            long retryAfterSec = Math.max(1, (e.getRetryAfterMs() + 999) / 1000);
+            log.debug("Render queue full for {}: retry after {}s", objectKey, retryAfterSec);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSec))
+                    .build();
         } catch (Exception e) {
             log.error("Error rendering model: {}", objectKey, e);
             throw new RuntimeException("Error rendering model: " + e.getMessage(), e);
@@ -4,21 +4,38 @@ import beckand.test.DTO.media.MediaItemDto;
 import beckand.test.DTO.model.ModelMetaResponse;
 import beckand.test.DTO.model.ModelMetaUpdateRequest;
 import beckand.test.DTO.media.SliceItemDto;
+import beckand.test.DTO.media.SliceStackDto;
+import beckand.test.DTO.media.SliceStackEntryDto;
+import beckand.test.Service.file.MediaContent;
+import beckand.test.Service.file.MediaSize;
 import beckand.test.Service.file.ModelMediaService;
+import beckand.test.Service.file.SliceStackService;
+import beckand.test.Service.render.section.MeshSectionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -27,6 +44,11 @@ import java.nio.charset.StandardCharsets;
 public class ModelMetaController {
 
     private final ModelMediaService modelMediaService;
+    private final SliceStackService sliceStackService;
+    private final MeshSectionService meshSectionService;
+
+    /** Медиа лежат под UUID-ключами и не перезаписываются — браузер может не перепроверять их. */
+    private static final CacheControl IMMUTABLE_MEDIA = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
 
     @Operation(summary = "Метаданные модели", description = "Описание, список фото, видео и срезов модели")
     @GetMapping("/{objectKey:.+}/meta")
@@ -39,16 +61,24 @@ public class ModelMetaController {
         String encodedKey = java.net.URLEncoder.encode(objectKey, StandardCharsets.UTF_8).replace("+", "%20");
         for (MediaItemDto p : meta.getPhotos()) {
             p.setUrl(baseUrl + "/files/" + encodedKey + "/media/photo/" + p.getId());
+            setSizeUrls(p.getUrl(), p.getSizes(), p::setThumbnailUrl, p::setMediumUrl);
         }
         for (MediaItemDto v : meta.getVideos()) {
             v.setUrl(baseUrl + "/files/" + encodedKey + "/media/video/" + v.getId());
         }
         for (SliceItemDto s : meta.getSlices()) {
             s.setUrl(baseUrl + "/files/" + encodedKey + "/media/slice/" + s.getId());
+            setSizeUrls(s.getUrl(), s.getSizes(), s::setThumbnailUrl, s::setMediumUrl);
         }
+        meta.setSectionUrl(baseUrl + "/files/" + encodedKey + "/slices/{axis}/section");
         return ResponseEntity.ok(meta);
     }
 
+    private static void setSizeUrls(String url, List<String> sizes, Consumer<String> thumb, Consumer<String> medium) {
+        if (sizes.contains(MediaSize.THUMB.param())) thumb.accept(url + "?size=" + MediaSize.THUMB.param());
+        if (sizes.contains(MediaSize.MEDIUM.param())) medium.accept(url + "?size=" + MediaSize.MEDIUM.param());
+    }
+
     @Operation(summary = "Обновить описание модели")
     @PatchMapping("/{objectKey:.+}/meta")
     public ResponseEntity<Void> updateModelMeta(
@@ -111,6 +141,21 @@ public class ModelMetaController {
         return ResponseEntity.created(URI.create("/files/" + objectKey + "/media/slice/" + dto.getId())).body(dto);
     }
 
+    @Operation(
+            summary = "Сгенерировать срезы по сетке модели",
+            description = "count сечений оси через равные промежутки сохраняются как обычные срезы (sliceIndex 0..count-1)"
+    )
+    @PostMapping("/{objectKey:.+}/slices/generate")
+    public ResponseEntity<List<SliceItemDto>> generateSlices(
+            @Parameter(description = "Ключ модели", required = true) @PathVariable("objectKey") String objectKey,
+            @RequestParam(required = false, defaultValue = "z") String axis,
+            @Parameter(description = "Сколько сечений, 1..512") @RequestParam(required = false, defaultValue = "64") int count,
+            @Parameter(description = "Длинная сторона PNG, пикселей") @RequestParam(required = false) Integer size
+    ) {
+        if (count < 1 || count > 512) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(modelMediaService.generateSlices(objectKey, axis, count, size));
+    }
+
     @Operation(summary = "Удалить срез")
     @DeleteMapping("/{objectKey:.+}/slices/{sliceId}")
     public ResponseEntity<Void> deleteSlice(
@@ -121,46 +166,158 @@ public class ModelMetaController {
         return ResponseEntity.noContent().build();
     }
 
-    @Operation(summary = "Получить изображение фото")
+    @Operation(summary = "Получить изображение фото", description = "Небольшие файлы — из кэша в памяти; If-None-Match — 304 без обращения к MinIO")
     @GetMapping("/{objectKey:.+}/media/photo/{photoId}")
-    public ResponseEntity<byte[]> getPhoto(
+    public ResponseEntity<Resource> getPhoto(
             @PathVariable("objectKey") String objectKey,
-            @PathVariable("photoId") Integer photoId
+            @PathVariable("photoId") Integer photoId,
+            @Parameter(description = "Уменьшенная копия: thumb или medium; пусто — оригинал")
+            @RequestParam(required = false) String size,
+            WebRequest request
     ) {
-        try (InputStream is = modelMediaService.getPhotoContent(photoId)) {
-            byte[] bytes = is.readAllBytes();
-            return ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).body(bytes);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to get photo: " + e.getMessage(), e);
-        }
+        return media(modelMediaService.getPhotoKey(photoId, MediaSize.fromParam(size).orElse(null)), request);
     }
 
-    @Operation(summary = "Получить видео")
+    @Operation(
+            summary = "Получить видео",
+            description = "Потоком из MinIO, без буферизации в памяти. Range (перемотка) — 206 и ranged GET к MinIO; If-None-Match — 304"
+    )
     @GetMapping("/{objectKey:.+}/media/video/{videoId}")
-    public ResponseEntity<byte[]> getVideo(
+    public ResponseEntity<Resource> getVideo(
             @PathVariable("objectKey") String objectKey,
-            @PathVariable("videoId") Integer videoId
+            @PathVariable("videoId") Integer videoId,
+            WebRequest request
     ) {
-        try (InputStream is = modelMediaService.getVideoContent(videoId)) {
-            byte[] bytes = is.readAllBytes();
-            return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(bytes);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to get video: " + e.getMessage(), e);
-        }
+        String s3Key = modelMediaService.getVideoKey(videoId);
+        String etag = ModelMediaService.mediaETag(s3Key);
+        // 304 до statObject: ключ неизменяем, проверять MinIO незачем
+        if (request.checkNotModified(etag)) return null;
+        // Range Spring применяет сам: Resource → ResourceRegion → 206 с Content-Range
+        return mediaResponse(MediaContent.of(modelMediaService.openMedia(s3Key)), etag, true);
     }
 
-    @Operation(summary = "Получить изображение среза")
+    @Operation(summary = "Получить изображение среза", description = "Небольшие файлы — из кэша в памяти; If-None-Match — 304 без обращения к MinIO")
     @GetMapping("/{objectKey:.+}/media/slice/{sliceId}")
-    public ResponseEntity<byte[]> getSlice(
+    public ResponseEntity<Resource> getSlice(
             @PathVariable("objectKey") String objectKey,
-            @PathVariable("sliceId") Integer sliceId
+            @PathVariable("sliceId") Integer sliceId,
+            @Parameter(description = "Уменьшенная копия: thumb или medium; пусто — оригинал")
+            @RequestParam(required = false) String size,
+            WebRequest request
     ) {
-        try (InputStream is = modelMediaService.getSliceContent(sliceId)) {
-            byte[] bytes = is.readAllBytes();
-            return ResponseEntity.ok().contentType(MediaType.IMAGE_PNG).body(bytes);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to get slice: " + e.getMessage(), e);
+        return media(modelMediaService.getSliceKey(sliceId, MediaSize.fromParam(size).orElse(null)), request);
+    }
+
+    @Operation(
+            summary = "Сечение модели плоскостью",
+            description = "PNG поперечного сечения сетки: ось x/y/z, position — доля габарита модели вдоль оси (0..1). "
+                    + "Считается по запросу и кэшируется; кадр одинаков для всех позиций оси"
+    )
+    @GetMapping("/{objectKey:.+}/slices/{axis}/section")
+    public ResponseEntity<Resource> getSection(
+            @Parameter(description = "Ключ модели", required = true) @PathVariable("objectKey") String objectKey,
+            @PathVariable("axis") String axis,
+            @RequestParam(defaultValue = "0.5") double position,
+            @Parameter(description = "Длинная сторона PNG, пикселей") @RequestParam(required = false) Integer size,
+            WebRequest request
+    ) {
+        MeshSectionService.SectionKey key;
+        try {
+            key = meshSectionService.key(objectKey, axis, position, size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+        String etag = key.etag();
+        if (request.checkNotModified(etag)) return null;
+        // Адрес не меняется при замене модели — браузер перепроверяет по ETag
+        return mediaResponse(meshSectionService.section(key), etag, false);
     }
-}
 
+    @Operation(
+            summary = "Индекс упакованного стека срезов оси",
+            description = "Срезы оси подряд в одном объекте: позиция, id, sliceIndex, смещение и длина каждого. "
+                    + "404 — срезов нет или стек ещё собирается после загрузки"
+    )
+    @GetMapping("/{objectKey:.+}/slices/{axis}/stack")
+    public ResponseEntity<SliceStackDto> getSliceStack(
+            @Parameter(description = "Ключ модели", required = true) @PathVariable("objectKey") String objectKey,
+            @PathVariable("axis") String axis,
+            HttpServletRequest request
+    ) {
+        Optional<SliceStackDto> stack = sliceStackService.getStack(objectKey, axis);
+        if (stack.isEmpty()) return ResponseEntity.notFound().build();
+        SliceStackDto dto = stack.get();
+        dto.setRangeUrl(ServletUriComponentsBuilder.fromRequestUri(request).path("/data").build().toUriString());
+        return ResponseEntity.ok()
+                .eTag("\"" + dto.getVersion() + "\"")
+                .cacheControl(CacheControl.noCache())
+                .body(dto);
+    }
+
+    @Operation(
+            summary = "Диапазон срезов из стека одним ответом",
+            description = "Изображения срезов [from, from+count) подряд, как в стеке; границы — в X-Slice-Lengths "
+                    + "(и в индексе). Один ranged GET к MinIO вместо запроса на каждый срез — для подгрузки впереди прокрутки"
+    )
+    @GetMapping("/{objectKey:.+}/slices/{axis}/stack/data")
+    public ResponseEntity<StreamingResponseBody> getSliceStackRange(
+            @Parameter(description = "Ключ модели", required = true) @PathVariable("objectKey") String objectKey,
+            @PathVariable("axis") String axis,
+            @Parameter(description = "Позиция первого среза в стеке") @RequestParam(defaultValue = "0") int from,
+            @Parameter(description = "Сколько срезов (не больше media.slice-stack.max-range-slices)")
+            @RequestParam(defaultValue = "16") int count,
+            WebRequest request
+    ) {
+        Optional<SliceStackService.StackRange> found = sliceStackService.getRange(objectKey, axis, from, count);
+        if (found.isEmpty()) return ResponseEntity.notFound().build();
+        SliceStackService.StackRange range = found.get();
+        String version = SliceStackService.version(range.stack());
+        // Та же сборка и тот же диапазон — те же байты
+        String etag = "\"" + version + "-" + range.from() + "-" + range.entries().size() + "\"";
+        if (request.checkNotModified(etag)) return null;
+        InputStream in = sliceStackService.openRange(range);
+        StreamingResponseBody body = out -> {
+            try (in) {
+                in.transferTo(out);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(range.length())
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header("X-Stack-Version", version)
+                .header("X-Slice-From", String.valueOf(range.from()))
+                .header("X-Slice-Ids", join(range.entries(), SliceStackEntryDto::getSliceId))
+                .header("X-Slice-Lengths", join(range.entries(), SliceStackEntryDto::getLength))
+                .body(body);
+    }
+
+    private static String join(List<SliceStackEntryDto> entries, Function<SliceStackEntryDto, ?> field) {
+        return entries.stream().map(e -> String.valueOf(field.apply(e))).collect(Collectors.joining(","));
+    }
+
+    private ResponseEntity<Resource> media(ModelMediaService.MediaKey key, WebRequest request) {
+        String etag = ModelMediaService.mediaETag(key.s3Key());
+        if (request.checkNotModified(etag)) return null;
+        return mediaResponse(modelMediaService.loadMedia(key.s3Key()), etag, key.exact());
+    }
+
+    /**
+     * immutable=false — вместо запрошенной копии отдан оригинал: браузер не должен навсегда запомнить его
+     * под адресом миниатюры.
+     */
+    private static ResponseEntity<Resource> mediaResponse(MediaContent media, String etag, boolean immutable) {
+        return ResponseEntity.ok()
+                .contentType(media.mediaType())
+                .eTag(etag)
+                .lastModified(media.lastModified())
+                .cacheControl(immutable ? IMMUTABLE_MEDIA : CacheControl.noCache())
+                .body(media.body());
+    }
+
+    @ExceptionHandler(MeshSectionService.ModelNotFoundException.class)
+    public ResponseEntity<String> modelNotFound(MeshSectionService.ModelNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+}
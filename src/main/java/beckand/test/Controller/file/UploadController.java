@@ -0,0 +1,93 @@
+package beckand.test.Controller.file;
+
+import beckand.test.DTO.file.UploadInitRequest;
+import beckand.test.DTO.file.UploadSessionDto;
+import beckand.test.Service.file.ChunkedUploadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/files/uploads")
+@Tag(name = "Chunked Upload", description = "Загрузка больших файлов частями с возобновлением")
+public class UploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    @Operation(
+            summary = "Начать загрузку частями",
+            description = "По размеру файла сервер выбирает размер и число частей (не меньше 5 МБ, кроме последней)"
+    )
+    @PostMapping
+    public ResponseEntity<UploadSessionDto> initiate(@RequestBody UploadInitRequest request) {
+        UploadSessionDto dto = chunkedUploadService.initiate(request);
+        return ResponseEntity.created(URI.create("/files/uploads/" + dto.getUploadId())).body(dto);
+    }
+
+    @Operation(
+            summary = "Загрузить часть",
+            description = "Тело — байты части (application/octet-stream), Content-Length обязателен. Части можно слать "
+                    + "параллельно и в любом порядке; повтор части заменяет её"
+    )
+    @PutMapping(value = "/{uploadId}/parts/{partNumber}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionDto> uploadPart(
+            @PathVariable("uploadId") String uploadId,
+            @Parameter(description = "Номер части, с 1") @PathVariable("partNumber") int partNumber,
+            HttpServletRequest request
+    ) throws IOException {
+        // Тело потоком прямо в MinIO, без multipart-разбора и временных файлов Tomcat
+        try (InputStream body = request.getInputStream()) {
+            return ResponseEntity.ok(chunkedUploadService.uploadPart(uploadId, partNumber, body, request.getContentLengthLong()));
+        }
+    }
+
+    @Operation(summary = "Состояние загрузки", description = "Прогресс и недостающие части — для возобновления после обрыва")
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadSessionDto> status(@PathVariable("uploadId") String uploadId) {
+        return chunkedUploadService.status(uploadId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(
+            summary = "Завершить загрузку",
+            description = "Склейка частей в MinIO идёт в фоне (202); готовность — status=COMPLETED в состоянии загрузки"
+    )
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<UploadSessionDto> complete(@PathVariable("uploadId") String uploadId) {
+        return ResponseEntity.accepted().body(chunkedUploadService.complete(uploadId));
+    }
+
+    @Operation(summary = "Отменить загрузку", description = "Удаляет принятые части")
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abort(@PathVariable("uploadId") String uploadId) {
+        chunkedUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(ChunkedUploadService.UploadNotFoundException.class)
+    public ResponseEntity<String> notFound(ChunkedUploadService.UploadNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
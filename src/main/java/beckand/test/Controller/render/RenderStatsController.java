@@ -0,0 +1,53 @@
+package beckand.test.Controller.render;
+
+import beckand.test.DTO.render.FrameSenderStats;
+import beckand.test.DTO.render.RenderQueueStats;
+import beckand.test.DTO.render.RenderSessionStats;
+import beckand.test.DTO.render.RenderWorkerStats;
+import beckand.test.Service.render.RenderQueue;
+import beckand.test.Service.render.worker.RenderWorkerPool;
+import beckand.test.websocket.FrameSenderRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/render")
+@Tag(name = "Render Stats", description = "Состояние очереди серверного рендера")
+public class RenderStatsController {
+
+    private final RenderQueue renderQueue;
+    private final FrameSenderRegistry frameSenders;
+    private final RenderWorkerPool workerPool;
+
+    @Operation(summary = "Очередь рендера", description = "Глубина очереди, время ожидания и счётчики отказов")
+    @GetMapping("/queue")
+    public ResponseEntity<RenderQueueStats> getQueueStats() {
+        return ResponseEntity.ok(renderQueue.stats());
+    }
+
+    @Operation(summary = "Очередь по сессиям", description = "Ожидающие превью, время ожидания и доля GL-времени каждой WebSocket-сессии")
+    @GetMapping("/queue/sessions")
+    public ResponseEntity<List<RenderSessionStats>> getSessionStats() {
+        return ResponseEntity.ok(renderQueue.sessionStats());
+    }
+
+    @Operation(summary = "Отправка кадров по сессиям", description = "Буфер, задержка доставки и выброшенные превью каждой WebSocket-сессии")
+    @GetMapping("/ws/sessions")
+    public ResponseEntity<List<FrameSenderStats>> getSenderStats() {
+        return ResponseEntity.ok(frameSenders.stats());
+    }
+
+    @Operation(summary = "Render-воркеры", description = "Процессы GL-рендера: готовность, загруженная модель, задания, падения и перезапуски")
+    @GetMapping("/workers")
+    public ResponseEntity<List<RenderWorkerStats>> getWorkerStats() {
+        return ResponseEntity.ok(workerPool.stats());
+    }
+}
@@ -0,0 +1,13 @@
+package beckand.test.DTO.cluster;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ClusterMembershipDto {
+    /** Растёт при каждом входе/выходе узла — по нему узлы понимают, что кольцо надо перестроить. */
+    private long epoch;
+    private List<RenderNodeDto> nodes = new ArrayList<>();
+}
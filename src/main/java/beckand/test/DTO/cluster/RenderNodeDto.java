@@ -0,0 +1,14 @@
+package beckand.test.DTO.cluster;
+
+import lombok.Data;
+
+@Data
+public class RenderNodeDto {
+    private String nodeId;
+    /** Базовый URL узла для HTTP и WebSocket, например http://10.3.24.121:8010 */
+    private String url;
+    /** Модель, загруженная сейчас в GL-контекст узла (null — нет). */
+    private String residentModelId;
+    private int queueDepth;
+    private long lastSeenEpochMs;
+}
@@ -0,0 +1,11 @@
+package beckand.test.DTO.cluster;
+
+import lombok.Data;
+
+@Data
+public class RenderRouteDto {
+    private String modelId;
+    private String nodeId;
+    private String httpUrl;
+    private String wsUrl;
+}
@@ -0,0 +1,17 @@
+package beckand.test.DTO.diagnostics;
+
+import lombok.Data;
+
+@Data
+public class FlightRecordingStatus {
+    private long id;
+    private String name;
+    /** NEW, DELAYED, RUNNING, STOPPED или CLOSED (jdk.jfr.RecordingState). */
+    private String state;
+    private String settings;
+    private String startTime;
+    private long durationMs;
+    private long sizeBytes;
+    private long maxAgeMinutes;
+    private long maxSizeMb;
+}
@@ -2,11 +2,14 @@ package beckand.test.DTO.file;
 
 import lombok.Data;
 
+import java.time.Instant;
+
 @Data
 public class FileDTO {
     private String fileType;
     private String s3ObjectKey;
     private String fileName;
     private Long size;
+    private Instant lastModified;
 }
 
@@ -0,0 +1,29 @@
+package beckand.test.DTO.file;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/** Последнее задание приёма модели и извлечённые сведения о сетке. */
+@Data
+public class IngestStatusDto {
+    private String objectKey;
+    private Long jobId;
+    private String status;
+    private String stage;
+    private int attempts;
+    private int maxAttempts;
+    private Instant nextRunAt;
+    private String lastError;
+    private Instant updatedAt;
+
+    /** null — сведений ещё нет. */
+    private Long triangleCount;
+    private Integer vertexCount;
+    private Integer faceCount;
+    private Integer groupCount;
+    /** [x, y, z] */
+    private float[] boundsMin;
+    private float[] boundsMax;
+    private Instant ingestedAt;
+}
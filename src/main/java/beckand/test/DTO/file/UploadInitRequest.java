@@ -0,0 +1,13 @@
+package beckand.test.DTO.file;
+
+import lombok.Data;
+
+@Data
+public class UploadInitRequest {
+    private String fileName;
+    private String contentType;
+    /** Полный размер файла, байт. */
+    private Long totalSize;
+    /** Желаемый размер части; пусто — upload.multipart.part-size. */
+    private Long partSize;
+}
@@ -0,0 +1,22 @@
+package beckand.test.DTO.file;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Состояние загрузки частями — для прогресса и возобновления после обрыва. */
+@Data
+public class UploadSessionDto {
+    private String uploadId;
+    private String objectKey;
+    private String status;
+    private long totalSize;
+    private long partSize;
+    private int partCount;
+    private long uploadedBytes;
+    /** Принятые части; остальные (missingParts) клиент догружает, в любом порядке и параллельно. */
+    private List<Integer> uploadedParts = new ArrayList<>();
+    private List<Integer> missingParts = new ArrayList<>();
+    private String error;
+}
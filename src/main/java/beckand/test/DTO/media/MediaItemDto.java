@@ -2,10 +2,17 @@ package beckand.test.DTO.media;
 
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 public class MediaItemDto {
     private Integer id;
     private Integer displayOrder;
     private String url;
+    /** Готовые уменьшенные копии: thumb, medium. */
+    private List<String> sizes = new ArrayList<>();
+    private String thumbnailUrl;
+    private String mediumUrl;
 }
 
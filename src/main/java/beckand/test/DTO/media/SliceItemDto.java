@@ -2,6 +2,9 @@ package beckand.test.DTO.media;
 
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 public class SliceItemDto {
     private Integer id;
@@ -9,5 +12,9 @@ public class SliceItemDto {
     private Integer sliceIndex;
     private Integer displayOrder;
     private String url;
+    /** Готовые уменьшенные копии: thumb, medium. */
+    private List<String> sizes = new ArrayList<>();
+    private String thumbnailUrl;
+    private String mediumUrl;
 }
 
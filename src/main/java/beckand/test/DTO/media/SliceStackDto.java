@@ -0,0 +1,18 @@
+package beckand.test.DTO.media;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class SliceStackDto {
+    private String axis;
+    /** Версия сборки: меняется при каждой пересборке стека. */
+    private String version;
+    private int sliceCount;
+    private long totalBytes;
+    private List<SliceStackEntryDto> slices = new ArrayList<>();
+    /** Диапазон срезов: {rangeUrl}?from=0&count=32. */
+    private String rangeUrl;
+}
@@ -0,0 +1,15 @@
+package beckand.test.DTO.media;
+
+import lombok.Data;
+
+@Data
+public class SliceStackEntryDto {
+    /** Позиция в стеке (0..sliceCount-1) — её принимает ?from= у диапазона. */
+    private int position;
+    private Integer sliceId;
+    private Integer sliceIndex;
+    /** Смещение изображения от начала стека, байт. */
+    private long offset;
+    private long length;
+    private String contentType;
+}
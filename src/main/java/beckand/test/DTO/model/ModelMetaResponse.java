@@ -13,5 +13,7 @@ public class ModelMetaResponse {
     private List<MediaItemDto> photos = new ArrayList<>();
     private List<MediaItemDto> videos = new ArrayList<>();
     private List<SliceItemDto> slices = new ArrayList<>();
+    /** Сечение по сетке модели: подставить {axis} (x, y, z), параметры ?position=0..1&size=. */
+    private String sectionUrl;
 }
 
@@ -0,0 +1,16 @@
+package beckand.test.DTO.render;
+
+import lombok.Data;
+
+@Data
+public class FrameSenderStats {
+    private String sessionId;
+    private long bufferedBytes;
+    private int pendingMessages;
+    private long sentMessages;
+    private long sentBytes;
+    private long droppedPreviews;
+    private long lastLagMs;
+    private double avgLagMs;
+    private long maxLagMs;
+}
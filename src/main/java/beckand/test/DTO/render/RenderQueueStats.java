@@ -0,0 +1,19 @@
+package beckand.test.DTO.render;
+
+import lombok.Data;
+
+@Data
+public class RenderQueueStats {
+    private int maxDepth;
+    private int queueDepth;
+    private int priorityDepth;
+    private int activeSessions;
+    private boolean rendering;
+    private double avgWaitMs;
+    private long maxWaitMs;
+    private long lastWaitMs;
+    private double avgServiceMs;
+    private long admittedTotal;
+    private long rejectedTotal;
+    private long supersededTotal;
+}
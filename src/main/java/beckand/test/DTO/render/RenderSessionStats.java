@@ -0,0 +1,17 @@
+package beckand.test.DTO.render;
+
+import lombok.Data;
+
+@Data
+public class RenderSessionStats {
+    private String sessionId;
+    private int queuedPreviews;
+    private long admitted;
+    private long rendered;
+    private long superseded;
+    private long rejected;
+    private long lastWaitMs;
+    private double avgWaitMs;
+    private double avgServiceMs;
+    private double deficitMs;
+}
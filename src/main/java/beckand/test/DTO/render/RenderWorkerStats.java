@@ -0,0 +1,19 @@
+package beckand.test.DTO.render;
+
+import lombok.Data;
+
+@Data
+public class RenderWorkerStats {
+    private int index;
+    private long pid;
+    private boolean ready;
+    private boolean busy;
+    private int freeSlots;
+    private String residentModelId;
+    private long residentTriangles;
+    private long jobs;
+    private long failures;
+    private int restarts;
+    private double avgRenderMs;
+    private String lastError;
+}
@@ -11,6 +11,9 @@ public class FileMapper {
         FileDTO fileDTO = new FileDTO();
         fileDTO.setFileType(entity.getContentType());
         fileDTO.setS3ObjectKey(entity.getS3ObjectKey());
+        fileDTO.setFileName(entity.getFileName() != null ? entity.getFileName() : entity.getS3ObjectKey());
+        fileDTO.setSize(entity.getSize());
+        fileDTO.setLastModified(entity.getLastModified());
         return fileDTO;
     }
 }
@@ -4,10 +4,28 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Data;
 
+import java.time.Instant;
+
+/**
+ * Каталог моделей: строка на объект бакета (кроме служебных media/ и uploads/). Заполняется при загрузке
+ * и сверкой с бакетом (FileCatalogService). Ключ объекта уникален: все пути записи — upsert по нему.
+ * Индексы — под постраничную выдачу по ключу, размеру и дате (с id для однозначного порядка) и под фильтр по типу.
+ */
 @Data
 @Entity
+@Table(name = "file_attributes",
+        uniqueConstraints = @UniqueConstraint(name = "file_attributes_key_uk", columnNames = "s3_object_key"),
+        indexes = {
+        @Index(name = "file_attributes_key_idx", columnList = "s3_object_key, file_attributes_id"),
+        @Index(name = "file_attributes_size_idx", columnList = "size, file_attributes_id"),
+        @Index(name = "file_attributes_modified_idx", columnList = "last_modified, file_attributes_id"),
+        @Index(name = "file_attributes_type_key_idx", columnList = "content_type, s3_object_key, file_attributes_id")
+})
 public class FileAttributes {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,5 +35,23 @@ public class FileAttributes {
     private Long size;
     private String description;
     private String s3ObjectKey;
+    /** Из MinIO: ETag и время изменения объекта — по ним сверка замечает перезаписанные объекты. */
+    private String etag;
+    private Instant lastModified;
+
+    /** Сведения о сетке от конвейера приёма (ModelIngestService); null — модель ещё не разобрана. */
+    private Long triangleCount;
+    private Integer vertexCount;
+    private Integer faceCount;
+    private Integer groupCount;
+    private Float boundsMinX;
+    private Float boundsMinY;
+    private Float boundsMinZ;
+    private Float boundsMaxX;
+    private Float boundsMaxY;
+    private Float boundsMaxZ;
+    /** ETag объекта, по которому сведения посчитаны. */
+    private String ingestedETag;
+    private Instant ingestedAt;
 }
 
@@ -0,0 +1,61 @@
+package beckand.test.Model.file;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Задание конвейера приёма модели. Воркеры забирают задания UPDATE ... FOR UPDATE SKIP LOCKED, так что
+ * несколько экземпляров приложения делят одну очередь без двойной обработки.
+ */
+@Data
+@Entity
+@Table(name = "ingest_job", indexes = {
+        @Index(name = "ingest_job_ready_idx", columnList = "status, next_run_at"),
+        @Index(name = "ingest_job_object_key_idx", columnList = "object_key")
+})
+public class IngestJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE,
+        /** Исчерпаны попытки или модель непригодна (ошибка проверки не повторяется). */
+        FAILED
+    }
+
+    public enum Stage {
+        /** Объект на месте, OBJ разбирается, есть вершины и грани, укладывается в лимит треугольников. */
+        VALIDATE,
+        /** Треугольники, вершины, габарит, группы → FileAttributes. */
+        EXTRACT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+    /** Стадия, на которой задание сейчас или остановилось. */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Stage stage = Stage.VALIDATE;
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    @Column(name = "next_run_at", nullable = false)
+    private Instant nextRunAt = Instant.now();
+    @Column(name = "locked_by", length = 128)
+    private String lockedBy;
+    @Column(name = "locked_at")
+    private Instant lockedAt;
+    @Column(name = "last_error", length = 4000)
+    private String lastError;
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now();
+}
@@ -0,0 +1,30 @@
+package beckand.test.Model.file;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/** Принятая часть загрузки; содержимое — во временном объекте MinIO до сборки. */
+@Data
+@Entity
+@Table(name = "upload_part",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"session_id", "part_number"}))
+public class UploadPart {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
+    /** С единицы, как в S3. */
+    @Column(name = "part_number", nullable = false)
+    private Integer partNumber;
+    @Column(nullable = false)
+    private Long size;
+    private String etag;
+    /** Объект части в MinIO; у каждой попытки свой. */
+    @Column(name = "s3_key", nullable = false)
+    private String s3Key;
+    @Column(name = "uploaded_at", nullable = false)
+    private Instant uploadedAt = Instant.now();
+}
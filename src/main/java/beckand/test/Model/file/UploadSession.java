@@ -0,0 +1,46 @@
+package beckand.test.Model.file;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/** Загрузка файла частями: заявленный размер и разбиение на части, состояние сборки. */
+@Data
+@Entity
+@Table(name = "upload_session")
+public class UploadSession {
+
+    public enum Status {
+        /** Принимает части. */
+        UPLOADING,
+        /** Все части на месте, MinIO склеивает объект. */
+        COMPLETING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    @Column(length = 36)
+    private String id;
+    /** Ключ итогового объекта (как при обычной загрузке — имя файла). */
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+    @Column(name = "content_type")
+    private String contentType;
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+    @Column(name = "part_size", nullable = false)
+    private Long partSize;
+    @Column(name = "part_count", nullable = false)
+    private Integer partCount;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.UPLOADING;
+    @Column(length = 4000)
+    private String error;
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now();
+}
@@ -14,6 +14,11 @@ public class ModelPhoto {
     private String modelObjectKey;
     @Column(name = "s3_key", nullable = false)
     private String s3Key;
+    /** Уменьшенные копии (см. MediaSize); null — ещё не готовы или оригинал не больше этого размера. */
+    @Column(name = "thumb_s3_key")
+    private String thumbS3Key;
+    @Column(name = "medium_s3_key")
+    private String mediumS3Key;
     @Column(name = "display_order")
     private Integer displayOrder = 0;
 }
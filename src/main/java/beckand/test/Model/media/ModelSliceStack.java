@@ -0,0 +1,33 @@
+package beckand.test.Model.media;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/** Упакованный стек срезов одной оси: изображения подряд в одном объекте MinIO и индекс смещений. */
+@Data
+@Entity
+@Table(name = "model_slice_stack",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"model_object_key", "axis"}))
+public class ModelSliceStack {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    @Column(name = "model_object_key", nullable = false)
+    private String modelObjectKey;
+    @Column(nullable = false, length = 8)
+    private String axis;
+    /** Новый ключ на каждую сборку — содержимое под ключом не меняется. */
+    @Column(name = "s3_key", nullable = false)
+    private String s3Key;
+    @Column(name = "slice_count", nullable = false)
+    private Integer sliceCount;
+    @Column(name = "total_bytes", nullable = false)
+    private Long totalBytes;
+    /** JSON-массив SliceStackEntryDto в порядке sliceIndex. */
+    @Column(name = "index_json", nullable = false, columnDefinition = "text")
+    private String indexJson;
+    @Column(name = "built_at", nullable = false)
+    private Instant builtAt = Instant.now();
+}
@@ -2,12 +2,35 @@ package beckand.test.Repository.file;
 
 import beckand.test.Model.file.FileAttributes;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface FileAttributesRepository extends JpaRepository<FileAttributes, Integer> {
     Optional<FileAttributes> findByS3ObjectKey(String s3ObjectKey);
-}
 
+    /** Сведения конвейера приёма — только в существующую строку с тем же ETag; возвращает число обновлённых строк. */
+    @Transactional
+    @Modifying
+    @Query("""
+            update FileAttributes f
+               set f.contentType = :contentType, f.size = :size, f.triangleCount = :triangles,
+                   f.vertexCount = :vertices, f.faceCount = :faces, f.groupCount = :groups,
+                   f.boundsMinX = :minX, f.boundsMinY = :minY, f.boundsMinZ = :minZ,
+                   f.boundsMaxX = :maxX, f.boundsMaxY = :maxY, f.boundsMaxZ = :maxZ,
+                   f.ingestedETag = :etag, f.ingestedAt = :ingestedAt
+             where f.s3ObjectKey = :key and f.etag = :etag""")
+    int updateIngested(@Param("key") String key, @Param("etag") String etag,
+                       @Param("contentType") String contentType, @Param("size") long size,
+                       @Param("triangles") long triangles, @Param("vertices") int vertices,
+                       @Param("faces") int faces, @Param("groups") int groups,
+                       @Param("minX") float minX, @Param("minY") float minY, @Param("minZ") float minZ,
+                       @Param("maxX") float maxX, @Param("maxY") float maxY, @Param("maxZ") float maxZ,
+                       @Param("ingestedAt") Instant ingestedAt);
+}
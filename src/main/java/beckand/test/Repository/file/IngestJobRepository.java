@@ -0,0 +1,15 @@
+package beckand.test.Repository.file;
+
+import beckand.test.Model.file.IngestJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IngestJobRepository extends JpaRepository<IngestJob, Long> {
+    Optional<IngestJob> findFirstByObjectKeyOrderByIdDesc(String objectKey);
+
+    List<IngestJob> findByObjectKey(String objectKey);
+}
@@ -0,0 +1,12 @@
+package beckand.test.Repository.file;
+
+import beckand.test.Model.file.UploadPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UploadPartRepository extends JpaRepository<UploadPart, Long> {
+    List<UploadPart> findBySessionIdOrderByPartNumberAsc(String sessionId);
+}
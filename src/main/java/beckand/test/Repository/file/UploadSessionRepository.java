@@ -0,0 +1,13 @@
+package beckand.test.Repository.file;
+
+import beckand.test.Model.file.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    List<UploadSession> findByUpdatedAtBefore(Instant updatedAt);
+}
@@ -9,5 +9,7 @@ import java.util.List;
 @Repository
 public interface ModelSliceRepository extends JpaRepository<ModelSlice, Integer> {
     List<ModelSlice> findByModelObjectKeyOrderByDisplayOrderAsc(String modelObjectKey);
+
+    List<ModelSlice> findByModelObjectKeyAndAxisOrderBySliceIndexAscIdAsc(String modelObjectKey, String axis);
 }
 
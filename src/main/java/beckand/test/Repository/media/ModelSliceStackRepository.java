@@ -0,0 +1,15 @@
+package beckand.test.Repository.media;
+
+import beckand.test.Model.media.ModelSliceStack;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ModelSliceStackRepository extends JpaRepository<ModelSliceStack, Integer> {
+    Optional<ModelSliceStack> findByModelObjectKeyAndAxis(String modelObjectKey, String axis);
+
+    List<ModelSliceStack> findByModelObjectKey(String modelObjectKey);
+}
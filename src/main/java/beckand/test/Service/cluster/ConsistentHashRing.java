@@ -0,0 +1,48 @@
+package beckand.test.Service.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Кольцо консистентного хеширования modelId → nodeId. У каждого узла virtualNodes точек на кольце, поэтому
+ * при входе/выходе узла переезжает только ~1/N моделей, а не все.
+ */
+public final class ConsistentHashRing {
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+        int replicas = Math.max(1, virtualNodes);
+        for (String nodeId : nodeIds) {
+            for (int i = 0; i < replicas; i++) {
+                ring.put(hash(nodeId + "#" + i), nodeId);
+            }
+        }
+    }
+
+    /** Узел-владелец ключа; null — кольцо пустое. */
+    public String nodeFor(String key) {
+        if (ring.isEmpty()) return null;
+        Map.Entry<Long, String> e = ring.ceilingEntry(hash(key));
+        return (e != null ? e : ring.firstEntry()).getValue();
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] d = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) h = (h << 8) | (d[i] & 0xFF);
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package beckand.test.Service.cluster;
+
+import beckand.test.DTO.cluster.ClusterMembershipDto;
+import beckand.test.DTO.cluster.RenderNodeDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Координатор render-узлов: хранит список живых узлов по heartbeat и номер эпохи членства.
+ * Работает в том экземпляре Atlas, где render.cluster.coordinator=true (достаточно одного на кластер);
+ * у остальных бин есть, но пуст. Кольцо хеширования координатор не строит — каждый узел строит его сам
+ * из одного и того же списка, поэтому владелец модели у всех совпадает.
+ */
+@Slf4j
+@Service
+public class RenderClusterCoordinator {
+
+    @Value("${render.cluster.coordinator:false}")
+    private boolean coordinator;
+
+    @Value("${render.cluster.node-ttl-ms:6000}")
+    private long nodeTtlMs;
+
+    private final Map<String, RenderNodeDto> nodes = new LinkedHashMap<>();
+    private long epoch;
+
+    public boolean isCoordinator() {
+        return coordinator;
+    }
+
+    /** Регистрация и heartbeat — один вызов: новый узел поднимает эпоху, известный только обновляет состояние. */
+    public synchronized ClusterMembershipDto heartbeat(RenderNodeDto node) {
+        if (!coordinator) {
+            throw new IllegalStateException("This node is not a render cluster coordinator");
+        }
+        if (node.getNodeId() == null || node.getNodeId().isBlank() || node.getUrl() == null || node.getUrl().isBlank()) {
+            throw new IllegalArgumentException("nodeId and url are required");
+        }
+        node.setLastSeenEpochMs(System.currentTimeMillis());
+        RenderNodeDto previous = nodes.put(node.getNodeId(), node);
+        if (previous == null || !previous.getUrl().equals(node.getUrl())) {
+            epoch++;
+            log.info("Render node joined: {} at {} (epoch {})", node.getNodeId(), node.getUrl(), epoch);
+        }
+        return membership();
+    }
+
+    /** Плановый уход узла (shutdown): эпоха меняется сразу, не дожидаясь TTL. */
+    public synchronized ClusterMembershipDto leave(String nodeId) {
+        if (nodes.remove(nodeId) != null) {
+            epoch++;
+            log.info("Render node left: {} (epoch {})", nodeId, epoch);
+        }
+        return membership();
+    }
+
+    public synchronized ClusterMembershipDto membership() {
+        ClusterMembershipDto dto = new ClusterMembershipDto();
+        dto.setEpoch(epoch);
+        List<RenderNodeDto> list = new ArrayList<>(nodes.values());
+        list.sort(Comparator.comparing(RenderNodeDto::getNodeId));
+        dto.setNodes(list);
+        return dto;
+    }
+
+    /** Узлы без heartbeat дольше TTL считаются упавшими — их модели переезжают на соседей по кольцу. */
+    @Scheduled(fixedDelayString = "${render.cluster.heartbeat-ms:2000}")
+    public synchronized void evictStaleNodes() {
+        if (!coordinator) return;
+        long deadline = System.currentTimeMillis() - nodeTtlMs;
+        boolean removed = nodes.values().removeIf(n -> {
+            if (n.getLastSeenEpochMs() >= deadline) return false;
+            log.warn("Render node {} missed heartbeats, removing from cluster", n.getNodeId());
+            return true;
+        });
+        if (removed) epoch++;
+    }
+}
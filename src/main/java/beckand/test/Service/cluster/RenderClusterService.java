@@ -0,0 +1,227 @@
+package beckand.test.Service.cluster;
+
+import beckand.test.DTO.cluster.ClusterMembershipDto;
+import beckand.test.DTO.cluster.RenderNodeDto;
+import beckand.test.DTO.cluster.RenderRouteDto;
+import beckand.test.Service.render.RenderQueue;
+import beckand.test.Service.render.RenderService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Render-узел в кластере: шлёт heartbeat координатору, держит кольцо консистентного хеширования по его списку
+ * и отвечает, какой узел владеет моделью. Владелец модели стабилен, пока состав не меняется, поэтому все сессии
+ * и /render одной модели попадают туда, где она уже загружена в GL-контекст. При входе/выходе узла кольцо
+ * перестраивается и публикуется {@link RenderRingChangedEvent}: сессии переехавших моделей закрываются,
+ * клиент переподключается к новому владельцу.
+ * <p>
+ * render.cluster.enabled=false (по умолчанию) — одиночный режим: все модели локальные.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RenderClusterService {
+
+    /** Запрос уже перенаправлен другим узлом — рендерить здесь, не пересылая дальше (защита от петель при смене кольца). */
+    public static final String ROUTED_HEADER = "X-Atlas-Render-Routed";
+
+    private final RenderClusterCoordinator coordinator;
+    private final RenderService renderService;
+    private final RenderQueue renderQueue;
+    private final ApplicationEventPublisher events;
+
+    @Value("${render.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${render.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${render.cluster.advertised-url:}")
+    private String advertisedUrl;
+
+    /** Пусто — координатор в этом же процессе (render.cluster.coordinator=true). */
+    @Value("${render.cluster.coordinator-url:}")
+    private String coordinatorUrl;
+
+    @Value("${render.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    private final RestClient restClient = RestClient.create();
+
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(List.of(), 1);
+    private volatile Map<String, RenderNodeDto> members = Map.of();
+    private volatile long epoch = -1;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        try {
+            if (nodeId == null || nodeId.isBlank()) {
+                nodeId = InetAddress.getLocalHost().getHostName() + ":" + serverPort;
+            }
+            if (advertisedUrl == null || advertisedUrl.isBlank()) {
+                advertisedUrl = "http://" + InetAddress.getLocalHost().getHostAddress() + ":" + serverPort;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot resolve render node address: " + e.getMessage(), e);
+        }
+        if (advertisedUrl.endsWith("/")) advertisedUrl = advertisedUrl.substring(0, advertisedUrl.length() - 1);
+        log.info("Render cluster mode: node {} at {}, coordinator {}", nodeId, advertisedUrl,
+                isLocalCoordinator() ? "local" : coordinatorUrl);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Модель обслуживается этим узлом. Пока кольцо пустое (координатор недоступен) — всё локально. */
+    public boolean isLocal(String modelId) {
+        if (!enabled) return true;
+        String owner = ring.nodeFor(modelId);
+        return owner == null || owner.equals(nodeId);
+    }
+
+    /** Узел-владелец модели; null — локально. */
+    public RenderNodeDto ownerOf(String modelId) {
+        if (isLocal(modelId)) return null;
+        return members.get(ring.nodeFor(modelId));
+    }
+
+    public RenderRouteDto route(String modelId) {
+        RenderNodeDto owner = ownerOf(modelId);
+        String base = owner != null ? owner.getUrl() : advertisedUrlOrEmpty();
+        RenderRouteDto dto = new RenderRouteDto();
+        dto.setModelId(modelId);
+        dto.setNodeId(owner != null ? owner.getNodeId() : nodeId);
+        dto.setHttpUrl(base);
+        // Ключ — один закодированный сегмент: пробелы, ?, #, % и кириллица не ломают URL и Location при 307
+        dto.setWsUrl(UriComponentsBuilder.fromUriString(base.replaceFirst("^http", "ws"))
+                .pathSegment("ws", "render", modelId)
+                .encode()
+                .build()
+                .toUriString());
+        return dto;
+    }
+
+    /**
+     * Переслать HTTP-рендер владельцу модели. Статус и Retry-After владельца (в т.ч. 503 при его очереди)
+     * возвращаются клиенту как есть. null — владелец недоступен, вызывающий рендерит локально.
+     */
+    public ResponseEntity<byte[]> proxyRender(RenderNodeDto owner, String objectKey, double azimuth, double elevation) {
+        URI uri = UriComponentsBuilder.fromUriString(owner.getUrl())
+                .path("/files/{objectKey}/render")
+                .queryParam("azimuth", azimuth)
+                .queryParam("elevation", elevation)
+                .buildAndExpand(objectKey)
+                .encode()
+                .toUri();
+        try {
+            return restClient.get()
+                    .uri(uri)
+                    .header(ROUTED_HEADER, nodeId)
+                    .exchange((request, response) -> {
+                        HttpHeaders headers = new HttpHeaders();
+                        if (response.getHeaders().getContentType() != null) {
+                            headers.setContentType(response.getHeaders().getContentType());
+                        }
+                        String retryAfter = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                        if (retryAfter != null) headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+                        return ResponseEntity.status(response.getStatusCode())
+                                .headers(headers)
+                                .body(response.getBody().readAllBytes());
+                    });
+        } catch (Exception e) {
+            log.warn("Render node {} unreachable for {}, rendering locally: {}", owner.getNodeId(), objectKey, e.getMessage());
+            return null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${render.cluster.heartbeat-ms:2000}")
+    public void heartbeat() {
+        if (!enabled) return;
+        RenderNodeDto self = new RenderNodeDto();
+        self.setNodeId(nodeId);
+        self.setUrl(advertisedUrl);
+        self.setResidentModelId(renderService.residentModelId());
+        self.setQueueDepth(renderQueue.depth());
+        try {
+            ClusterMembershipDto membership = isLocalCoordinator()
+                    ? coordinator.heartbeat(self)
+                    : restClient.post()
+                    .uri(coordinatorUrl + "/cluster/heartbeat")
+                    .body(self)
+                    .retrieve()
+                    .body(ClusterMembershipDto.class);
+            if (membership != null) applyMembership(membership);
+        } catch (Exception e) {
+            // Кольцо не трогаем: кратковременная недоступность координатора не должна гонять модели между узлами
+            log.warn("Render cluster heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void leave() {
+        if (!enabled) return;
+        try {
+            if (isLocalCoordinator()) {
+                coordinator.leave(nodeId);
+            } else {
+                restClient.post().uri(coordinatorUrl + "/cluster/leave?nodeId={nodeId}", nodeId).retrieve().toBodilessEntity();
+            }
+        } catch (Exception e) {
+            log.debug("Render cluster leave failed: {}", e.getMessage());
+        }
+    }
+
+    public ClusterMembershipDto localView() {
+        ClusterMembershipDto dto = new ClusterMembershipDto();
+        dto.setEpoch(epoch);
+        dto.setNodes(List.copyOf(members.values()));
+        return dto;
+    }
+
+    private void applyMembership(ClusterMembershipDto membership) {
+        Map<String, RenderNodeDto> next = membership.getNodes().stream()
+                .collect(Collectors.toUnmodifiableMap(RenderNodeDto::getNodeId, Function.identity(), (a, b) -> b));
+        // Эпоха сбрасывается при рестарте координатора, поэтому сравниваем и сам состав
+        boolean changed = membership.getEpoch() != epoch || !next.keySet().equals(members.keySet());
+        members = next;
+        if (!changed) return;
+        ring = new ConsistentHashRing(members.keySet(), virtualNodes);
+        epoch = membership.getEpoch();
+        log.info("Render ring rebuilt: epoch {}, nodes {}", epoch, members.keySet());
+        events.publishEvent(new RenderRingChangedEvent(epoch));
+    }
+
+    private boolean isLocalCoordinator() {
+        return coordinatorUrl == null || coordinatorUrl.isBlank();
+    }
+
+    private String advertisedUrlOrEmpty() {
+        return advertisedUrl != null ? advertisedUrl : "";
+    }
+}
@@ -0,0 +1,5 @@
+package beckand.test.Service.cluster;
+
+/** Состав кластера изменился и кольцо перестроено: часть моделей могла переехать на другие узлы. */
+public record RenderRingChangedEvent(long epoch) {
+}
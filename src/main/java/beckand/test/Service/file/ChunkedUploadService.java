@@ -0,0 +1,412 @@
+package beckand.test.Service.file;
+
+import beckand.test.DTO.file.UploadInitRequest;
+import beckand.test.DTO.file.UploadSessionDto;
+import beckand.test.Model.file.UploadPart;
+import beckand.test.Model.file.UploadSession;
+import beckand.test.Repository.file.UploadPartRepository;
+import beckand.test.Repository.file.UploadSessionRepository;
+import io.minio.ComposeObjectArgs;
+import io.minio.ComposeSource;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Загрузка больших моделей частями с возобновлением. Раньше файл до 2 ГБ шёл одним multipart-запросом через
+ * временные файлы Tomcat и одним putObject — обрыв на 90% означал загрузку с нуля.
+ * <p>
+ * Клиент открывает сессию (размер файла → размер и число частей), шлёт части PUT-ами в любом порядке и параллельно,
+ * по обрыву спрашивает состояние и догружает недостающие. Каждая часть сразу уходит потоком в MinIO отдельным
+ * объектом uploads/{uploadId}/{номер}; запрос занимает поток только на время своей части. Завершение склеивает
+ * части в итоговый объект на стороне MinIO (composeObject — multipart upload с копированием частей, без
+ * перекачки данных через приложение) в фоне; клиент следит за статусом.
+ * <p>
+ * Переходы состояния сессии — условные UPDATE по текущему статусу, а не сохранение прочитанной сущности: часть,
+ * которая грузилась, пока другой запрос начал сборку, не вернёт сессию в UPLOADING, и сборка запускается один раз.
+ * Каждая попытка части пишется в свой объект, а строка части обновляется upsert-ом уже после записи — повтор
+ * части не перезаписывает объект, который в это время читает composeObject.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    /** Минимум S3 для всех частей multipart, кроме последней. */
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final long MAX_PART_SIZE = 512L * 1024 * 1024;
+    /** Предел S3 на число частей. */
+    static final int MAX_PARTS = 10_000;
+    private static final String STAGING_PREFIX = "uploads/";
+
+    /**
+     * Принять часть одной командой: продлить сессию, если она ещё принимает части, и записать часть (повтор
+     * заменяет её). Строка сессии блокируется до конца команды, так что сборка или отмена видят часть целиком.
+     */
+    private static final String ACCEPT_PART_SQL = """
+            WITH s AS (
+                UPDATE upload_session SET updated_at = ?
+                 WHERE id = ? AND status IN ('UPLOADING', 'FAILED')
+                RETURNING id)
+            INSERT INTO upload_part (session_id, part_number, size, etag, s3_key, uploaded_at)
+            SELECT s.id, ?, ?, ?, ?, ? FROM s
+            ON CONFLICT (session_id, part_number) DO UPDATE
+               SET size = EXCLUDED.size, etag = EXCLUDED.etag, s3_key = EXCLUDED.s3_key, uploaded_at = EXCLUDED.uploaded_at""";
+
+    private static final String START_COMPLETE_SQL = """
+            UPDATE upload_session SET status = 'COMPLETING', error = NULL, updated_at = ?
+             WHERE id = ? AND status IN ('UPLOADING', 'FAILED')""";
+
+    private static final String FINISH_COMPLETE_SQL = """
+            UPDATE upload_session SET status = ?, error = ?, updated_at = ?
+             WHERE id = ? AND status = 'COMPLETING'""";
+
+    private static final String INTERRUPT_COMPLETE_SQL = """
+            UPDATE upload_session SET status = 'FAILED', error = 'Completion interrupted', updated_at = ?
+             WHERE id = ? AND status = 'COMPLETING' AND updated_at < ?""";
+
+    private static final String DELETE_SESSION_SQL = """
+            DELETE FROM upload_session WHERE id = ? AND status <> 'COMPLETING'""";
+
+    private static final String DELETE_STALE_SESSION_SQL = """
+            DELETE FROM upload_session WHERE id = ? AND status <> 'COMPLETING' AND updated_at < ?""";
+
+    private static final String DELETE_PARTS_SQL = "DELETE FROM upload_part WHERE session_id = ?";
+
+    /**
+     * ddl-auto=update не делает существующую колонку NOT NULL. Части без s3_key (записанные до него) собрать
+     * нельзя — они удаляются и считаются недостающими: клиент догрузит их по списку missingParts.
+     */
+    private static final String DELETE_KEYLESS_PARTS_SQL = "DELETE FROM upload_part WHERE s3_key IS NULL";
+    private static final String PART_KEY_NOT_NULL_SQL = "ALTER TABLE upload_part ALTER COLUMN s3_key SET NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MinioClient minioClient;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadPartRepository uploadPartRepository;
+    private final ModelObjectCache modelObjectCache;
+    private final ModelIngestService modelIngestService;
+    private final FileCatalogService fileCatalogService;
+    private final ObjectMetadataCache objectMetadataCache;
+
+    @Value("${minio.bucket}")
+    private String bucket;
+    @Value("${upload.multipart.part-size:16777216}")
+    private long defaultPartSize;
+    @Value("${upload.multipart.max-file-size:53687091200}")
+    private long maxFileSize;
+    /** Незавершённые сессии без активности дольше этого удаляются вместе с частями. */
+    @Value("${upload.multipart.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    private final AtomicInteger threadSeq = new AtomicInteger();
+    private ExecutorService completer;
+
+    @PostConstruct
+    private void init() {
+        int keyless = jdbcTemplate.update(DELETE_KEYLESS_PARTS_SQL);
+        if (keyless > 0) log.warn("Upload parts without s3_key dropped: {}", keyless);
+        jdbcTemplate.execute(PART_KEY_NOT_NULL_SQL);
+        completer = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "upload-complete-" + threadSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        completer.shutdownNow();
+    }
+
+    public UploadSessionDto initiate(UploadInitRequest request) {
+        if (request.getFileName() == null || request.getFileName().isBlank())
+            throw new IllegalArgumentException("fileName is required");
+        long total = request.getTotalSize() != null ? request.getTotalSize() : 0;
+        if (total <= 0) throw new IllegalArgumentException("totalSize must be positive");
+        if (total > maxFileSize) throw new IllegalArgumentException("File too large: " + total + " bytes (limit " + maxFileSize + ")");
+
+        long partSize = request.getPartSize() != null && request.getPartSize() > 0 ? request.getPartSize() : defaultPartSize;
+        partSize = Math.max(MIN_PART_SIZE, Math.min(MAX_PART_SIZE, partSize));
+        if (ceilDiv(total, partSize) > MAX_PARTS) {
+            // Не влезаем в 10 000 частей — крупнее части, кратно мегабайту
+            partSize = ceilDiv(ceilDiv(total, MAX_PARTS), 1024 * 1024) * 1024 * 1024;
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setObjectKey(request.getFileName());
+        session.setContentType(contentTypeFor(request.getFileName(), request.getContentType()));
+        session.setTotalSize(total);
+        session.setPartSize(partSize);
+        session.setPartCount(Math.toIntExact(ceilDiv(total, partSize)));
+        session = uploadSessionRepository.save(session);
+        log.info("Chunked upload started: id={} key={} bytes={} parts={}x{}", session.getId(), session.getObjectKey(),
+                total, session.getPartCount(), partSize);
+        return toDto(session, List.of());
+    }
+
+    /**
+     * Принять часть partNumber (с единицы). Длина должна совпадать с ожидаемой: partSize, у последней — остаток.
+     * Повторная отправка той же части заменяет её — так повторяется часть, ответ на которую не дошёл.
+     */
+    public UploadSessionDto uploadPart(String uploadId, int partNumber, InputStream body, long contentLength) {
+        UploadSession session = require(uploadId);
+        if (!acceptsParts(session))
+            throw new IllegalStateException("Upload " + uploadId + " is " + session.getStatus());
+        if (partNumber < 1 || partNumber > session.getPartCount())
+            throw new IllegalArgumentException("partNumber must be in [1, " + session.getPartCount() + "]");
+        long expected = expectedPartSize(session, partNumber);
+        if (contentLength != expected)
+            throw new IllegalArgumentException("Part " + partNumber + " must be " + expected + " bytes, got " + contentLength);
+
+        String stagingKey = stagingKey(uploadId, partNumber);
+        ObjectWriteResponse written;
+        try {
+            written = minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(stagingKey)
+                    .stream(body, expected, -1)
+                    .contentType("application/octet-stream")
+                    .build());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload part: " + e.getMessage(), e);
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        int accepted = jdbcTemplate.update(ACCEPT_PART_SQL, now, uploadId, partNumber, expected, written.etag(), stagingKey, now);
+        if (accepted == 0) {
+            // Пока часть грузилась, началась сборка или сессию отменили
+            removeQuietly(stagingKey);
+            UploadSession current = require(uploadId);
+            throw new IllegalStateException("Upload " + uploadId + " is " + current.getStatus());
+        }
+        return toDto(require(uploadId), uploadPartRepository.findBySessionIdOrderByPartNumberAsc(uploadId));
+    }
+
+    public Optional<UploadSessionDto> status(String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .map(s -> toDto(s, uploadPartRepository.findBySessionIdOrderByPartNumberAsc(uploadId)));
+    }
+
+    /** Все части приняты — склеить объект в фоне. Повторный вызов во время сборки ничего не делает. */
+    public UploadSessionDto complete(String uploadId) {
+        UploadSession session = require(uploadId);
+        List<UploadPart> parts = uploadPartRepository.findBySessionIdOrderByPartNumberAsc(uploadId);
+        if (acceptsParts(session)) {
+            UploadSessionDto state = toDto(session, parts);
+            if (!state.getMissingParts().isEmpty())
+                throw new IllegalStateException("Upload " + uploadId + " is missing parts " + abbreviate(state.getMissingParts()));
+            // Сборку запускает только тот, чей UPDATE перевёл сессию в COMPLETING
+            if (jdbcTemplate.update(START_COMPLETE_SQL, Timestamp.from(Instant.now()), uploadId) == 1) {
+                completer.execute(() -> compose(uploadId));
+            }
+            session = require(uploadId);
+            parts = uploadPartRepository.findBySessionIdOrderByPartNumberAsc(uploadId);
+        }
+        return toDto(session, parts);
+    }
+
+    /** Отменить загрузку: части из MinIO, сессию из БД. */
+    public void abort(String uploadId) {
+        if (jdbcTemplate.update(DELETE_SESSION_SQL, uploadId) == 1) {
+            discardParts(uploadId);
+        } else if (uploadSessionRepository.existsById(uploadId)) {
+            throw new IllegalStateException("Upload " + uploadId + " is being completed");
+        }
+    }
+
+    /** Брошенные сессии и давно завершённые записи. */
+    @Scheduled(fixedDelayString = "${upload.multipart.sweep-ms:3600000}")
+    void sweepStaleSessions() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(sessionTtlHours));
+        Timestamp cutoffTs = Timestamp.from(cutoff);
+        for (UploadSession session : uploadSessionRepository.findByUpdatedAtBefore(cutoff)) {
+            try {
+                if (session.getStatus() == UploadSession.Status.COMPLETING) {
+                    // Сборку прервал перезапуск: части целы, complete можно вызвать снова
+                    jdbcTemplate.update(INTERRUPT_COMPLETE_SQL, Timestamp.from(Instant.now()), session.getId(), cutoffTs);
+                    continue;
+                }
+                // Условие по updated_at: сессия, получившая часть после выборки, остаётся
+                if (jdbcTemplate.update(DELETE_STALE_SESSION_SQL, session.getId(), cutoffTs) == 0) continue;
+                discardParts(session.getId());
+                if (session.getStatus() != UploadSession.Status.COMPLETED)
+                    log.info("Stale chunked upload discarded: id={} key={}", session.getId(), session.getObjectKey());
+            } catch (RuntimeException e) {
+                log.warn("Could not discard upload {}: {}", session.getId(), e.toString());
+            }
+        }
+    }
+
+    private void compose(String uploadId) {
+        UploadSession session = uploadSessionRepository.findById(uploadId).orElse(null);
+        if (session == null) return;
+        long t0 = System.nanoTime();
+        UploadSession.Status status;
+        String error = null;
+        try {
+            List<UploadPart> parts = uploadPartRepository.findBySessionIdOrderByPartNumberAsc(uploadId);
+            if (parts.size() != session.getPartCount())
+                throw new IllegalStateException("Expected " + session.getPartCount() + " parts, found " + parts.size());
+            List<ComposeSource> sources = new ArrayList<>(parts.size());
+            for (UploadPart part : parts) {
+                sources.add(ComposeSource.builder().bucket(bucket).object(part.getS3Key()).build());
+            }
+            ObjectWriteResponse written = minioClient.composeObject(ComposeObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(session.getObjectKey())
+                    .sources(sources)
+                    .headers(Map.of("Content-Type", session.getContentType()))
+                    .build());
+            modelObjectCache.evict(session.getObjectKey());
+            objectMetadataCache.invalidate(session.getObjectKey());
+            fileCatalogService.record(session.getObjectKey(), session.getContentType(), session.getTotalSize(), written.etag());
+            removeStaging(uploadId);
+            jdbcTemplate.update(DELETE_PARTS_SQL, uploadId);
+            status = UploadSession.Status.COMPLETED;
+            modelIngestService.enqueue(session.getObjectKey());
+            log.info("Chunked upload completed: id={} key={} bytes={} ms={}", uploadId, session.getObjectKey(),
+                    session.getTotalSize(), (System.nanoTime() - t0) / 1_000_000);
+        } catch (Exception e) {
+            // Части остаются — complete можно повторить
+            log.warn("Chunked upload {} failed to complete: {}", uploadId, e.toString());
+            status = UploadSession.Status.FAILED;
+            error = e.getMessage();
+        }
+        jdbcTemplate.update(FINISH_COMPLETE_SQL, status.name(), error, Timestamp.from(Instant.now()), uploadId);
+    }
+
+    /** Части сессии, строка которой уже удалена. */
+    private void discardParts(String uploadId) {
+        jdbcTemplate.update(DELETE_PARTS_SQL, uploadId);
+        removeStaging(uploadId);
+    }
+
+    /** Все объекты частей сессии, включая заменённые повторной отправкой. */
+    private void removeStaging(String uploadId) {
+        List<DeleteObject> objects = new ArrayList<>();
+        try {
+            for (Result<Item> r : minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(bucket).prefix(STAGING_PREFIX + uploadId + "/").recursive(true).build())) {
+                objects.add(new DeleteObject(r.get().objectName()));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to list upload parts of {}: {}", uploadId, e.toString());
+            return;
+        }
+        if (objects.isEmpty()) return;
+        // removeObjects ленивый: запросы уходят по мере чтения результатов
+        for (Result<DeleteError> r : minioClient.removeObjects(RemoveObjectsArgs.builder().bucket(bucket).objects(objects).build())) {
+            try {
+                DeleteError error = r.get();
+                log.warn("Failed to remove upload part {}: {}", error.objectName(), error.message());
+            } catch (Exception e) {
+                log.warn("Failed to remove upload parts of {}: {}", uploadId, e.toString());
+            }
+        }
+    }
+
+    private void removeQuietly(String objectKey) {
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(objectKey).build());
+        } catch (Exception e) {
+            log.warn("Failed to remove upload part {}: {}", objectKey, e.toString());
+        }
+    }
+
+    private UploadSession require(String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new UploadNotFoundException(uploadId));
+    }
+
+    private UploadSessionDto toDto(UploadSession session, List<UploadPart> parts) {
+        UploadSessionDto dto = new UploadSessionDto();
+        dto.setUploadId(session.getId());
+        dto.setObjectKey(session.getObjectKey());
+        dto.setStatus(session.getStatus().name());
+        dto.setTotalSize(session.getTotalSize());
+        dto.setPartSize(session.getPartSize());
+        dto.setPartCount(session.getPartCount());
+        dto.setError(session.getError());
+        BitSet present = new BitSet(session.getPartCount() + 1);
+        long bytes = 0;
+        for (UploadPart p : parts) {
+            present.set(p.getPartNumber());
+            dto.getUploadedParts().add(p.getPartNumber());
+            bytes += p.getSize();
+        }
+        if (session.getStatus() == UploadSession.Status.COMPLETED) bytes = session.getTotalSize();
+        dto.setUploadedBytes(bytes);
+        if (acceptsParts(session)) {
+            for (int n = 1; n <= session.getPartCount(); n++) {
+                if (!present.get(n)) dto.getMissingParts().add(n);
+            }
+        }
+        return dto;
+    }
+
+    /** Неудачная сборка не закрывает сессию: части можно перезалить и снова вызвать complete. */
+    private static boolean acceptsParts(UploadSession s) {
+        return s.getStatus() == UploadSession.Status.UPLOADING || s.getStatus() == UploadSession.Status.FAILED;
+    }
+
+    private static long expectedPartSize(UploadSession s, int partNumber) {
+        return partNumber < s.getPartCount() ? s.getPartSize() : s.getTotalSize() - s.getPartSize() * (s.getPartCount() - 1);
+    }
+
+    /** Своё имя у каждой попытки части: повтор не пишет в объект, который может читать composeObject. */
+    private static String stagingKey(String uploadId, int partNumber) {
+        return STAGING_PREFIX + uploadId + "/" + String.format("%05d", partNumber) + "."
+                + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /** Как в FileService.uploadFile: OBJ — model/obj. */
+    private static String contentTypeFor(String fileName, String declared) {
+        if (fileName.toLowerCase().endsWith(".obj")) return "model/obj";
+        return declared != null && !declared.isBlank() ? declared : "application/octet-stream";
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+
+    private static String abbreviate(List<Integer> parts) {
+        return parts.size() <= 10 ? parts.toString() : parts.subList(0, 10) + " and " + (parts.size() - 10) + " more";
+    }
+
+    /** Сессии нет: не создавалась, отменена или удалена по сроку. */
+    public static class UploadNotFoundException extends RuntimeException {
+        public UploadNotFoundException(String uploadId) {
+            super("Upload not found: " + uploadId);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package beckand.test.Service.file;
+
+import beckand.test.DTO.file.FileDTO;
+import beckand.test.Mapper.FileMapper;
+import beckand.test.Model.file.FileAttributes;
+import beckand.test.Repository.file.FileAttributesRepository;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Каталог моделей в Postgres (FileAttributes). Раньше GET /files на каждый запрос обходил весь бакет рекурсивным
+ * listObjects — вместе с media/ и частями загрузок — и отдавал всё одним списком. Теперь список читается из
+ * таблицы страницами по индексу: keyset-пагинация (курсор — значение сортировки и id последней строки), так что
+ * страница N стоит столько же, сколько первая, при любом числе объектов.
+ * <p>
+ * Строки пишутся при загрузке; объекты, положенные в бакет мимо приложения или удалённые из него, подхватывает
+ * периодическая сверка с бакетом. Оба пути пишут INSERT ... ON CONFLICT по уникальному ключу объекта —
+ * одновременные загрузка и сверка не заводят вторую строку того же ключа.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileCatalogService {
+
+    /** Служебные объекты приложения — не модели. */
+    private static final List<String> INTERNAL_PREFIXES = List.of("media/", "uploads/");
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 500;
+
+    /** Загрузка: описание и сведения приёма у существующей строки сохраняются. */
+    private static final String RECORD_SQL = """
+            INSERT INTO file_attributes (s3_object_key, file_name, content_type, size, etag, last_modified)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (s3_object_key) DO UPDATE
+               SET file_name = EXCLUDED.file_name, content_type = EXCLUDED.content_type, size = EXCLUDED.size,
+                   etag = EXCLUDED.etag, last_modified = EXCLUDED.last_modified""";
+
+    /** Сверка: строку, записанную загрузкой после начала обхода, листинг не перетирает; тип не угадывается заново. */
+    private static final String RECONCILE_SQL = """
+            INSERT INTO file_attributes (s3_object_key, file_name, content_type, size, etag, last_modified)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (s3_object_key) DO UPDATE
+               SET content_type = COALESCE(file_attributes.content_type, EXCLUDED.content_type), size = EXCLUDED.size,
+                   etag = EXCLUDED.etag, last_modified = EXCLUDED.last_modified
+             WHERE file_attributes.last_modified IS NULL OR file_attributes.last_modified < ?""";
+
+    private static final String DESCRIBE_SQL = """
+            INSERT INTO file_attributes (s3_object_key, file_name, description) VALUES (?, ?, ?)
+            ON CONFLICT (s3_object_key) DO UPDATE SET description = EXCLUDED.description""";
+
+    private static final String KEY_CONSTRAINT_EXISTS_SQL = """
+            SELECT count(*) FROM pg_constraint
+             WHERE conname = 'file_attributes_key_uk' AND conrelid = 'file_attributes'::regclass""";
+
+    /** Описание — единственное, что вводит пользователь: переносится на остающуюся строку, если там пусто. */
+    private static final String DEDUP_CARRY_DESCRIPTION_SQL = """
+            UPDATE file_attributes k
+               SET description = (SELECT o.description FROM file_attributes o
+                                   WHERE o.s3_object_key = k.s3_object_key AND o.description IS NOT NULL
+                                   ORDER BY o.file_attributes_id DESC LIMIT 1)
+             WHERE k.description IS NULL
+               AND EXISTS (SELECT 1 FROM file_attributes o
+                            WHERE o.s3_object_key = k.s3_object_key AND o.description IS NOT NULL)""";
+
+    /** Из дублей ключа остаётся строка с самым свежим last_modified (при равенстве — последняя по id). */
+    private static final String DEDUP_SQL = """
+            DELETE FROM file_attributes
+             WHERE file_attributes_id IN (
+                   SELECT file_attributes_id FROM (
+                          SELECT file_attributes_id, row_number() OVER (PARTITION BY s3_object_key
+                                 ORDER BY last_modified DESC NULLS LAST, file_attributes_id DESC) AS rn
+                            FROM file_attributes
+                           WHERE s3_object_key IS NOT NULL) ranked
+                    WHERE rn > 1)""";
+
+    private static final String ADD_KEY_CONSTRAINT_SQL =
+            "ALTER TABLE file_attributes ADD CONSTRAINT file_attributes_key_uk UNIQUE (s3_object_key)";
+
+    private static final String REMOVE_SQL = """
+            DELETE FROM file_attributes
+             WHERE s3_object_key = ? AND (last_modified IS NULL OR last_modified < ?)""";
+
+    private final MinioClient minioClient;
+    private final FileAttributesRepository fileAttributesRepository;
+    private final FileMapper fileMapper;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMetadataCache objectMetadataCache;
+
+    @Value("${minio.bucket}")
+    private String bucket;
+
+    /** Поле сортировки → свойство сущности (только эти имена попадают в JPQL). */
+    public enum SortField {
+        NAME("s3ObjectKey"),
+        SIZE("size"),
+        MODIFIED("lastModified");
+
+        final String property;
+
+        SortField(String property) {
+            this.property = property;
+        }
+
+        public static SortField fromParam(String value) {
+            if (value == null || value.isBlank()) return NAME;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort: " + value + " (expected name, size or modified)");
+            }
+        }
+    }
+
+    public record Page(List<FileDTO> items, String nextCursor) { }
+
+    /**
+     * Уникальный ключ объекта, на который опираются все ON CONFLICT. ddl-auto=update молча пропускает
+     * ограничение, если в таблице уже есть дубли (строки до перехода на upsert), и тогда каждый upsert падает.
+     * Поэтому при старте: ограничения нет — убрать дубли и создать его; не вышло — приложение не стартует.
+     */
+    @PostConstruct
+    void ensureUniqueObjectKey() {
+        Integer exists = jdbcTemplate.queryForObject(KEY_CONSTRAINT_EXISTS_SQL, Integer.class);
+        if (exists != null && exists > 0) return;
+        try {
+            jdbcTemplate.update(DEDUP_CARRY_DESCRIPTION_SQL);
+            int removed = jdbcTemplate.update(DEDUP_SQL);
+            jdbcTemplate.execute(ADD_KEY_CONSTRAINT_SQL);
+            log.warn("File catalog: unique key file_attributes_key_uk created, duplicate rows removed={}", removed);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to create unique key on file_attributes.s3_object_key: " + e.getMessage(), e);
+        }
+    }
+
+    public static boolean isInternal(String objectKey) {
+        for (String prefix : INTERNAL_PREFIXES) {
+            if (objectKey.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /** Записать объект в каталог после загрузки; описание и сведения приёма у существующей строки сохраняются. */
+    public void record(String objectKey, String contentType, long size, String etag) {
+        if (isInternal(objectKey)) return;
+        jdbcTemplate.update(RECORD_SQL, objectKey, objectKey, contentType, size, ObjectMetadataCache.stripQuotes(etag),
+                Timestamp.from(Instant.now()));
+    }
+
+    /** Описание модели; строки ещё нет (объект не сверен) — заводится, остальное заполнит сверка. */
+    public void describe(String objectKey, String description) {
+        jdbcTemplate.update(DESCRIBE_SQL, objectKey, objectKey, description);
+    }
+
+    /**
+     * Страница каталога. cursor — из nextCursor предыдущей страницы (пусто — первая); type — точный Content-Type.
+     * Строки без значения поля сортировки (ещё не сверенные) в выдачу по этому полю не попадают.
+     */
+    public Page page(SortField sort, boolean descending, String type, String cursor, Integer limit) {
+        int n = Math.max(1, Math.min(MAX_LIMIT, limit != null ? limit : DEFAULT_LIMIT));
+        String field = "f." + sort.property;
+        String cmp = descending ? "<" : ">";
+        String dir = descending ? " desc" : " asc";
+        StringBuilder jpql = new StringBuilder("select f from FileAttributes f where " + field + " is not null");
+        if (type != null && !type.isBlank()) jpql.append(" and f.contentType = :type");
+        Cursor after = cursor != null && !cursor.isBlank() ? Cursor.decode(cursor, sort) : null;
+        if (after != null) {
+            jpql.append(" and (").append(field).append(' ').append(cmp).append(" :v or (")
+                    .append(field).append(" = :v and f.fileAttributesId ").append(cmp).append(" :id))");
+        }
+        jpql.append(" order by ").append(field).append(dir).append(", f.fileAttributesId").append(dir);
+
+        TypedQuery<FileAttributes> query = entityManager.createQuery(jpql.toString(), FileAttributes.class);
+        if (type != null && !type.isBlank()) query.setParameter("type", type.trim());
+        if (after != null) {
+            query.setParameter("v", after.value());
+            query.setParameter("id", after.id());
+        }
+        // Лишняя строка — признак следующей страницы
+        List<FileAttributes> rows = query.setMaxResults(n + 1).getResultList();
+        boolean more = rows.size() > n;
+        if (more) rows = rows.subList(0, n);
+        List<FileDTO> items = new ArrayList<>(rows.size());
+        for (FileAttributes fa : rows) items.add(fileMapper.toDTO(fa));
+        String next = more ? Cursor.of(rows.get(rows.size() - 1), sort).encode() : null;
+        return new Page(items, next);
+    }
+
+    /**
+     * Сверка каталога с бакетом: новые и изменённые объекты — в таблицу, строки исчезнувших — удалить;
+     * заодно сбрасываются устаревшие записи {@link ObjectMetadataCache}.
+     * Удаляются только строки, не тронутые с начала обхода, — загрузка во время сверки не теряется.
+     * Обход, прерванный ошибкой, ничего не удаляет.
+     */
+    @Scheduled(initialDelayString = "${files.catalog.reconcile-initial-delay-ms:15000}",
+            fixedDelayString = "${files.catalog.reconcile-ms:600000}")
+    public void reconcile() {
+        long t0 = System.nanoTime();
+        Instant started = Instant.now();
+        Map<String, Item> objects = new HashMap<>();
+        try {
+            Iterable<Result<Item>> results = minioClient.listObjects(
+                    ListObjectsArgs.builder().bucket(bucket).recursive(true).build());
+            for (Result<Item> r : results) {
+                Item item = r.get();
+                if (item.isDir() || isInternal(item.objectName())) continue;
+                objects.put(item.objectName(), item);
+            }
+        } catch (Exception e) {
+            log.warn("File catalog reconcile skipped, bucket listing failed: {}", e.toString());
+            return;
+        }
+
+        Map<String, String> etags = new HashMap<>(objects.size() * 2);
+        objects.forEach((key, item) -> etags.put(key, ObjectMetadataCache.stripQuotes(item.etag())));
+        objectMetadataCache.reconcile(etags);
+
+        Map<String, FileAttributes> rows = new HashMap<>();
+        for (FileAttributes fa : fileAttributesRepository.findAll()) {
+            if (fa.getS3ObjectKey() != null) rows.putIfAbsent(fa.getS3ObjectKey(), fa);
+        }
+        int added = 0;
+        int updated = 0;
+        int removed = 0;
+        Timestamp startedTs = Timestamp.from(started);
+        for (Item item : objects.values()) {
+            FileAttributes fa = rows.get(item.objectName());
+            String etag = ObjectMetadataCache.stripQuotes(item.etag());
+            Instant modified = item.lastModified() != null ? item.lastModified().toInstant() : null;
+            if (fa != null && Objects.equals(fa.getEtag(), etag) && Objects.equals(fa.getSize(), item.size())
+                    && fa.getLastModified() != null) continue;
+            int n = jdbcTemplate.update(RECONCILE_SQL, item.objectName(), item.objectName(), guessContentType(item.objectName()),
+                    item.size(), etag, Timestamp.from(modified != null ? modified : started), startedTs);
+            if (n == 0) continue;
+            if (fa == null) added++;
+            else updated++;
+        }
+        for (FileAttributes fa : rows.values()) {
+            if (objects.containsKey(fa.getS3ObjectKey())) continue;
+            // Условие по last_modified: объект, загруженный после начала обхода, не удаляется
+            removed += jdbcTemplate.update(REMOVE_SQL, fa.getS3ObjectKey(), startedTs);
+        }
+        log.info("File catalog reconciled: objects={} added={} updated={} removed={} ms={}",
+                objects.size(), added, updated, removed, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** listObjects не возвращает Content-Type; для OBJ — как при загрузке, остальное уточнит statObject. */
+    private static String guessContentType(String objectKey) {
+        return objectKey.toLowerCase(Locale.ROOT).endsWith(".obj") ? "model/obj" : "application/octet-stream";
+    }
+
+    /** Позиция в выдаче: значение поля сортировки и id последней строки страницы. */
+    record Cursor(Object value, Integer id) {
+
+        static Cursor of(FileAttributes fa, SortField sort) {
+            Object v = switch (sort) {
+                case NAME -> fa.getS3ObjectKey();
+                case SIZE -> fa.getSize();
+                case MODIFIED -> fa.getLastModified();
+            };
+            return new Cursor(v, fa.getFileAttributesId());
+        }
+
+        String encode() {
+            String v = value instanceof Instant i ? String.valueOf(i.toEpochMilli() * 1_000_000L + i.getNano() % 1_000_000)
+                    : String.valueOf(value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString((id + ":" + v).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token, SortField sort) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int colon = raw.indexOf(':');
+                Integer id = Integer.valueOf(raw.substring(0, colon));
+                String v = raw.substring(colon + 1);
+                Object value = switch (sort) {
+                    case NAME -> v;
+                    case SIZE -> Long.valueOf(v);
+                    case MODIFIED -> {
+                        long nanos = Long.parseLong(v);
+                        yield Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+                    }
+                };
+                return new Cursor(value, id);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor (it must come from the same sort)", e);
+            }
+        }
+    }
+}
@@ -5,7 +5,6 @@ import beckand.test.DTO.file.FileUploadRequest;
 import beckand.test.Model.file.FileAttributes;
 import beckand.test.Repository.file.FileAttributesRepository;
 import io.minio.*;
-import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,9 +12,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
-import java.net.ConnectException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -26,6 +22,10 @@ public class FileService {
     private final MinioClient minioClient;
     private final FileAttributesRepository fileAttributesRepository;
     private final ModelMediaService modelMediaService;
+    private final ModelObjectCache modelObjectCache;
+    private final ModelIngestService modelIngestService;
+    private final FileCatalogService fileCatalogService;
+    private final ObjectMetadataCache objectMetadataCache;
 
     @Value("${minio.bucket}")
     private String bucket;
@@ -40,7 +40,7 @@ public class FileService {
             if (fileName != null && fileName.toLowerCase().endsWith(".obj")) {
                 contentType = "model/obj";
             }
-            minioClient.putObject(
+            ObjectWriteResponse written = minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucket)
                             .object(fileName)
@@ -48,6 +48,10 @@ public class FileService {
                             .contentType(contentType)
                             .build()
             );
+            modelObjectCache.evict(fileName);
+            objectMetadataCache.invalidate(fileName);
+            fileCatalogService.record(fileName, contentType, file.getSize(), written.etag());
+            modelIngestService.enqueue(fileName);
 
             FileDTO dto = new FileDTO();
             dto.setFileType(contentType);
@@ -67,65 +71,46 @@ public class FileService {
                             .object(objectKey)
                             .build()
             );
+            modelObjectCache.evict(objectKey);
+            objectMetadataCache.invalidate(objectKey);
+            modelIngestService.forget(objectKey);
             fileAttributesRepository.findByS3ObjectKey(objectKey).ifPresent(fileAttributesRepository::delete);
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete file: " + e.getMessage(), e);
         }
     }
 
+    /** Метаданные из {@link ObjectMetadataCache}: в горячем пути (рендер, WebSocket, viewer-obj) без statObject. */
     public FileDTO getFileInfo(String objectKey) {
+        ObjectMetadataCache.ObjectMetadata meta;
         try {
-            StatObjectResponse stat = minioClient.statObject(
-                    StatObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(objectKey)
-                            .build()
-            );
-
-            FileDTO dto = new FileDTO();
-            dto.setS3ObjectKey(objectKey);
-            dto.setFileType(stat.contentType());
-            dto.setFileName(objectKey);
-            dto.setSize(stat.size());
-            return dto;
+            meta = objectMetadataCache.get(objectKey)
+                    .orElseThrow(() -> new IllegalStateException("Object does not exist: " + objectKey));
         } catch (Exception e) {
             throw new RuntimeException("Failed to get file info: " + e.getMessage(), e);
         }
+        FileDTO dto = new FileDTO();
+        dto.setS3ObjectKey(objectKey);
+        dto.setFileType(meta.contentType());
+        dto.setFileName(objectKey);
+        dto.setSize(meta.size());
+        dto.setLastModified(meta.lastModified() != null ? meta.lastModified().toInstant() : null);
+        return dto;
     }
 
+    /** Содержимое объекта через локальный кэш моделей: повторное чтение не ходит в MinIO, если ETag не изменился. */
     public InputStream getFileContent(String objectKey) {
         try {
-            return minioClient.getObject(GetObjectArgs.builder().bucket(bucket).object(objectKey).build());
+            return modelObjectCache.open(objectKey);
         } catch (Exception e) {
             throw new RuntimeException("Failed to get file content: " + e.getMessage(), e);
         }
     }
 
-    public List<FileDTO> getAllFiles() {
-        List<FileDTO> files = new ArrayList<>();
-        try {
-            Iterable<Result<Item>> results = minioClient.listObjects(
-                    ListObjectsArgs.builder()
-                            .bucket(bucket)
-                            .recursive(true)
-                            .build()
-            );
-            for (Result<Item> r : results) {
-                Item item = r.get();
-                if (item.isDir()) continue;
-                FileDTO dto = new FileDTO();
-                dto.setS3ObjectKey(item.objectName());
-                dto.setFileName(item.objectName());
-                files.add(dto);
-            }
-            return files;
-        } catch (Exception e) {
-            if (e.getCause() instanceof ConnectException) {
-                log.warn("MinIO недоступен: {}", e.getMessage());
-                return files;
-            }
-            throw new RuntimeException("Failed to list files: " + e.getMessage(), e);
-        }
+    /** Страница каталога моделей из Postgres (см. {@link FileCatalogService}), без обхода бакета. */
+    public FileCatalogService.Page listFiles(FileCatalogService.SortField sort, boolean descending, String type,
+                                             String cursor, Integer limit) {
+        return fileCatalogService.page(sort, descending, type, cursor, limit);
     }
 
     public Optional<FileAttributes> getFileAttributes(String objectKey) {
@@ -0,0 +1,12 @@
+package beckand.test.Service.file;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+
+/** Медиа-объект для ответа: тело (из памяти или потоком из MinIO), тип и время изменения. */
+public record MediaContent(Resource body, MediaType mediaType, long lastModified) {
+
+    public static MediaContent of(MinioObjectResource resource) {
+        return new MediaContent(resource, resource.mediaType(), resource.lastModified());
+    }
+}
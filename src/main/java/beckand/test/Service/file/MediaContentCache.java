@@ -0,0 +1,66 @@
+package beckand.test.Service.file;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Небольшие медиа (фото, срезы) в памяти, ограничение — суммарный объём. Ключи медиа — UUID и не перезаписываются,
+ * поэтому записи не устаревают: вытесняются только по LRU или при удалении объекта.
+ * Пролистывание стека срезов повторно читает одни и те же картинки — теперь без запросов к MinIO.
+ */
+@Component
+public class MediaContentCache {
+
+    @Value("${media.cache.max-bytes:67108864}")
+    private long maxBytes;
+    /** Объекты крупнее идут потоком из MinIO мимо кэша. */
+    @Value("${media.cache.max-object-bytes:2097152}")
+    private long maxObjectBytes;
+
+    private record Entry(byte[] bytes, MediaType mediaType, long lastModified) { }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    public long maxObjectBytes() {
+        return maxObjectBytes;
+    }
+
+    public synchronized MediaContent get(String s3Key) {
+        Entry e = entries.get(s3Key);
+        return e != null ? toContent(e) : null;
+    }
+
+    public MediaContent put(String s3Key, byte[] bytes, MediaType mediaType, long lastModified) {
+        Entry e = new Entry(bytes, mediaType, lastModified);
+        if (bytes.length > maxObjectBytes) return toContent(e);
+        synchronized (this) {
+            Entry previous = entries.put(s3Key, e);
+            if (previous != null) totalBytes -= previous.bytes().length;
+            totalBytes += bytes.length;
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (eldest.getKey().equals(s3Key)) continue;
+                it.remove();
+                totalBytes -= eldest.getValue().bytes().length;
+            }
+        }
+        return toContent(e);
+    }
+
+    public synchronized void evict(String s3Key) {
+        Entry e = entries.remove(s3Key);
+        if (e != null) totalBytes -= e.bytes().length;
+    }
+
+    private static MediaContent toContent(Entry e) {
+        return new MediaContent(new ByteArrayResource(e.bytes()), e.mediaType(), e.lastModified());
+    }
+}
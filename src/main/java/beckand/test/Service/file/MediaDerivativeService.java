@@ -0,0 +1,228 @@
+package beckand.test.Service.file;
+
+import beckand.test.Repository.media.ModelPhotoRepository;
+import beckand.test.Repository.media.ModelSliceRepository;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Уменьшенные копии загруженных фото и срезов ({@link MediaSize}). Раньше галерея в описании модели качала
+ * оригиналы в полном разрешении даже для миниатюр. Копии строятся после загрузки в своём пуле: оригинал
+ * декодируется один раз, размеры масштабируются и пишутся в MinIO параллельно, ключи копий записываются
+ * в ModelPhoto/ModelSlice. Загрузка не ждёт этого — пока копий нет, getMeta их просто не перечисляет.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaDerivativeService {
+
+    private final MinioClient minioClient;
+    private final ModelPhotoRepository modelPhotoRepository;
+    private final ModelSliceRepository modelSliceRepository;
+
+    @Value("${minio.bucket}")
+    private String bucket;
+    @Value("${media.derivatives.enabled:true}")
+    private boolean enabled;
+    @Value("${media.derivatives.threads:2}")
+    private int threads;
+    @Value("${media.derivatives.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    private final AtomicInteger threadSeq = new AtomicInteger();
+    private ExecutorService executor;
+
+    @PostConstruct
+    private void init() {
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "media-derive-" + threadSeq.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Фото: копии в JPEG. */
+    public void generatePhotoDerivatives(Integer photoId, String s3Key) {
+        submit(s3Key, "jpg", keys -> modelPhotoRepository.findById(photoId).ifPresentOrElse(p -> {
+            p.setThumbS3Key(keys.get(MediaSize.THUMB));
+            p.setMediumS3Key(keys.get(MediaSize.MEDIUM));
+            modelPhotoRepository.save(p);
+        }, () -> removeAll(keys.values())));
+    }
+
+    /** Срезы: копии в PNG — без артефактов сжатия на мелких структурах. */
+    public void generateSliceDerivatives(Integer sliceId, String s3Key) {
+        submit(s3Key, "png", keys -> modelSliceRepository.findById(sliceId).ifPresentOrElse(s -> {
+            s.setThumbS3Key(keys.get(MediaSize.THUMB));
+            s.setMediumS3Key(keys.get(MediaSize.MEDIUM));
+            modelSliceRepository.save(s);
+        }, () -> removeAll(keys.values())));
+    }
+
+    /** Ключ копии рядом с оригиналом: media/photos/{uuid}.jpg → media/photos/{uuid}-thumb.jpg. */
+    public static String derivativeKey(String originalKey, MediaSize size, String ext) {
+        int dot = originalKey.lastIndexOf('.');
+        String base = dot > originalKey.lastIndexOf('/') ? originalKey.substring(0, dot) : originalKey;
+        return base + "-" + size.param() + "." + ext;
+    }
+
+    /**
+     * Декодировать оригинал и отдать размеры пулу; по завершении всех — record с ключами удавшихся.
+     * Поток декодирования не ждёт размеров, так что пул из двух потоков не блокирует сам себя.
+     * Сущность, удалённая за это время, получает вызов record без строки в БД — копии удаляются там же.
+     */
+    private void submit(String s3Key, String format, Consumer<Map<MediaSize, String>> record) {
+        if (!enabled) return;
+        executor.execute(() -> {
+            BufferedImage original;
+            try (InputStream in = minioClient.getObject(GetObjectArgs.builder().bucket(bucket).object(s3Key).build())) {
+                original = ImageIO.read(in);
+            } catch (Exception e) {
+                log.warn("Derivatives skipped for {}: {}", s3Key, e.toString());
+                return;
+            }
+            if (original == null) {
+                log.debug("Derivatives skipped for {}: not a readable image", s3Key);
+                return;
+            }
+            int longSide = Math.max(original.getWidth(), original.getHeight());
+            Map<MediaSize, CompletableFuture<String>> parts = new EnumMap<>(MediaSize.class);
+            for (MediaSize size : MediaSize.values()) {
+                // Не увеличиваем: для маленького оригинала этот размер и есть оригинал
+                if (longSide <= size.maxSide()) continue;
+                parts.put(size, CompletableFuture.supplyAsync(() -> store(original, size, s3Key, format), executor));
+            }
+            if (parts.isEmpty()) return;
+            CompletableFuture.allOf(parts.values().toArray(CompletableFuture[]::new)).whenComplete((ignored, error) -> {
+                Map<MediaSize, String> keys = new EnumMap<>(MediaSize.class);
+                parts.forEach((size, f) -> {
+                    if (!f.isCompletedExceptionally()) keys.put(size, f.join());
+                });
+                if (error != null) log.warn("Some derivatives failed for {}: {}", s3Key, error.toString());
+                if (keys.isEmpty()) return;
+                try {
+                    record.accept(keys);
+                    log.debug("Derivatives stored for {}: {}", s3Key, keys.keySet());
+                } catch (RuntimeException e) {
+                    log.warn("Could not record derivatives for {}: {}", s3Key, e.toString());
+                }
+            });
+        });
+    }
+
+    private String store(BufferedImage original, MediaSize size, String originalKey, String format) {
+        BufferedImage scaled = scaleToFit(original, size.maxSide(), "jpg".equals(format));
+        String key = derivativeKey(originalKey, size, format);
+        try {
+            byte[] bytes = "jpg".equals(format) ? encodeJpeg(scaled, jpegQuality) : encodePng(scaled);
+            minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(key)
+                    .stream(new ByteArrayInputStream(bytes), bytes.length, -1)
+                    .contentType("jpg".equals(format) ? "image/jpeg" : "image/png")
+                    .build());
+            return key;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to store derivative " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Уменьшение по длинной стороне последовательными половинами и билинейным шагом в конце: один билинейный
+     * проход с большим коэффициентом даёт «рваные» миниатюры.
+     */
+    static BufferedImage scaleToFit(BufferedImage src, int maxSide, boolean opaque) {
+        double k = (double) maxSide / Math.max(src.getWidth(), src.getHeight());
+        int targetW = Math.max(1, (int) Math.round(src.getWidth() * k));
+        int targetH = Math.max(1, (int) Math.round(src.getHeight() * k));
+        int type = opaque || !src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage step = new BufferedImage(w, h, type);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = step;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) throw new IOException("No JPEG writers available");
+        ImageWriter writer = writers.next();
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(baos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0.1f, Math.min(1.0f, quality)));
+            writer.write(null, new IIOImage(image, null, null), param);
+            ios.flush();
+            return baos.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", baos)) throw new IOException("No PNG writers available");
+        return baos.toByteArray();
+    }
+
+    private void removeAll(Iterable<String> keys) {
+        List<String> failed = new ArrayList<>();
+        for (String key : keys) {
+            try {
+                minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(key).build());
+            } catch (Exception e) {
+                failed.add(key);
+            }
+        }
+        if (!failed.isEmpty()) log.warn("Orphan derivatives left in MinIO: {}", failed);
+    }
+}
@@ -0,0 +1,36 @@
+package beckand.test.Service.file;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/** Уменьшенные копии фото и срезов: по длинной стороне, без увеличения. */
+public enum MediaSize {
+    THUMB("thumb", 256),
+    MEDIUM("medium", 1024);
+
+    private final String param;
+    private final int maxSide;
+
+    MediaSize(String param, int maxSide) {
+        this.param = param;
+        this.maxSide = maxSide;
+    }
+
+    /** Значение параметра ?size= и суффикс ключа в MinIO. */
+    public String param() {
+        return param;
+    }
+
+    public int maxSide() {
+        return maxSide;
+    }
+
+    public static Optional<MediaSize> fromParam(String value) {
+        if (value == null || value.isBlank()) return Optional.empty();
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        for (MediaSize s : values()) {
+            if (s.param.equals(v)) return Optional.of(s);
+        }
+        return Optional.empty();
+    }
+}
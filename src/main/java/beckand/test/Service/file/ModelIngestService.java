@@ -0,0 +1,349 @@
+package beckand.test.Service.file;
+
+import beckand.test.DTO.file.IngestStatusDto;
+import beckand.test.Model.file.FileAttributes;
+import beckand.test.Model.file.IngestJob;
+import beckand.test.Repository.file.FileAttributesRepository;
+import beckand.test.Repository.file.IngestJobRepository;
+import de.javagl.obj.FloatTuple;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Конвейер приёма моделей. Раньше разбор OBJ, подсчёт треугольников, габарит и проверка лимита происходили
+ * при первом рендере — в задержке пользователя. Теперь загрузка ставит задание в ingest_job, а пул воркеров
+ * разбирает модель заранее: проверка (VALIDATE) и извлечение сведений (EXTRACT) в FileAttributes. Заодно модель
+ * оказывается в локальном кэше объектов ({@link ModelObjectCache}), и первый рендер не качает её из MinIO.
+ * <p>
+ * Задания забираются одним UPDATE с FOR UPDATE SKIP LOCKED — экземпляры приложения не мешают друг другу.
+ * Сбой чтения повторяется с экспоненциальной задержкой; непригодная модель сразу получает FAILED.
+ * Задание, воркер которого умер (RUNNING без движения дольше ingest.stale-after-ms), возвращается в очередь;
+ * живой воркер раз в ingest.heartbeat-ms продлевает свои задания, так что долгий разбор не забирают второй раз.
+ * Каждая смена стадии и итог — условный UPDATE по захвату (locked_by и номер попытки): задание, удалённое вместе
+ * с моделью или перехваченное после reclaim, воркер бросает и ничего не пишет.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelIngestService {
+
+    private static final String CLAIM_SQL = """
+            UPDATE ingest_job
+               SET status = 'RUNNING', locked_by = ?, locked_at = now(), attempts = attempts + 1, updated_at = now()
+             WHERE id IN (SELECT id FROM ingest_job
+                           WHERE status = 'PENDING' AND next_run_at <= now()
+                           ORDER BY next_run_at, id
+                           LIMIT ?
+                           FOR UPDATE SKIP LOCKED)
+            RETURNING id""";
+
+    private static final String RECLAIM_SQL = """
+            UPDATE ingest_job
+               SET status = 'PENDING', locked_by = NULL, locked_at = NULL, updated_at = now()
+             WHERE status = 'RUNNING' AND updated_at < ?""";
+
+    /** Захват задания этим воркером: locked_by и номер попытки (растёт при каждом захвате). */
+    private static final String OWNED = " WHERE id = ? AND status = 'RUNNING' AND locked_by = ? AND attempts = ?";
+
+    private static final String STAGE_SQL = "UPDATE ingest_job SET stage = ?, updated_at = now()" + OWNED;
+
+    private static final String HEARTBEAT_SQL = "UPDATE ingest_job SET updated_at = now()" + OWNED;
+
+    private static final String FINISH_SQL = """
+            UPDATE ingest_job
+               SET status = ?, last_error = ?, next_run_at = ?, locked_by = NULL, locked_at = NULL, updated_at = now()""" + OWNED;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MinioClient minioClient;
+    private final ModelObjectCache modelObjectCache;
+    private final IngestJobRepository ingestJobRepository;
+    private final FileAttributesRepository fileAttributesRepository;
+
+    @Value("${minio.bucket}")
+    private String bucket;
+    @Value("${ingest.enabled:true}")
+    private boolean enabled;
+    @Value("${ingest.workers:2}")
+    private int workers;
+    @Value("${ingest.max-attempts:5}")
+    private int maxAttempts;
+    /** Задержка перед повтором: base · 2^(попытка−1), не больше max. */
+    @Value("${ingest.backoff-base-ms:5000}")
+    private long backoffBaseMs;
+    @Value("${ingest.backoff-max-ms:600000}")
+    private long backoffMaxMs;
+    @Value("${ingest.stale-after-ms:900000}")
+    private long staleAfterMs;
+    /** Должно быть заметно меньше stale-after-ms. */
+    @Value("${ingest.heartbeat-ms:60000}")
+    private long heartbeatMs;
+    /** Тот же лимит, что у рендера; 0 = без лимита. */
+    @Value("${render.max-triangle-count:0}")
+    private long maxTriangleCount;
+
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName();
+    private final AtomicInteger threadSeq = new AtomicInteger();
+    private ExecutorService pool;
+    /** Свободные воркеры: забираем из очереди не больше, чем можем начать сразу. */
+    private Semaphore slots;
+    /** Задания, которые сейчас разбирает этот процесс: id → номер попытки. */
+    private final Map<Long, Integer> running = new ConcurrentHashMap<>();
+
+    /** Задание удалено или перехвачено другим воркером — дальше не работать. */
+    private static class JobLostException extends Exception {
+        JobLostException(Long id) {
+            super("Ingest job " + id + " is no longer owned by this worker");
+        }
+    }
+
+    /** Модель непригодна — повтор не поможет. */
+    static class IngestValidationException extends Exception {
+        IngestValidationException(String message) {
+            super(message);
+        }
+    }
+
+    @PostConstruct
+    private void init() {
+        int n = Math.max(1, workers);
+        slots = new Semaphore(n);
+        pool = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "model-ingest-" + threadSeq.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /** Поставить модель в очередь (после загрузки). Ждущее задание той же модели не дублируется, а запускается сейчас. */
+    public void enqueue(String objectKey) {
+        if (!enabled || objectKey == null || !objectKey.toLowerCase().endsWith(".obj")) return;
+        try {
+            IngestJob job = ingestJobRepository.findFirstByObjectKeyOrderByIdDesc(objectKey)
+                    .filter(j -> j.getStatus() == IngestJob.Status.PENDING)
+                    .orElseGet(IngestJob::new);
+            job.setObjectKey(objectKey);
+            job.setNextRunAt(Instant.now());
+            job.setUpdatedAt(Instant.now());
+            ingestJobRepository.save(job);
+        } catch (RuntimeException e) {
+            // Загрузка уже удалась; без задания модель разберётся при первом рендере, как раньше
+            log.warn("Could not enqueue ingest for {}: {}", objectKey, e.toString());
+        }
+    }
+
+    /** Модель удалена: её задания больше не нужны (идущее завершится и ничего не найдёт). */
+    public void forget(String objectKey) {
+        ingestJobRepository.deleteAll(ingestJobRepository.findByObjectKey(objectKey));
+    }
+
+    public Optional<IngestStatusDto> status(String objectKey) {
+        Optional<IngestJob> job = ingestJobRepository.findFirstByObjectKeyOrderByIdDesc(objectKey);
+        Optional<FileAttributes> fa = fileAttributesRepository.findByS3ObjectKey(objectKey)
+                .filter(a -> a.getIngestedAt() != null);
+        if (job.isEmpty() && fa.isEmpty()) return Optional.empty();
+        IngestStatusDto dto = new IngestStatusDto();
+        dto.setObjectKey(objectKey);
+        dto.setMaxAttempts(maxAttempts);
+        job.ifPresent(j -> {
+            dto.setJobId(j.getId());
+            dto.setStatus(j.getStatus().name());
+            dto.setStage(j.getStage() != null ? j.getStage().name() : null);
+            dto.setAttempts(j.getAttempts());
+            dto.setNextRunAt(j.getStatus() == IngestJob.Status.PENDING ? j.getNextRunAt() : null);
+            dto.setLastError(j.getLastError());
+            dto.setUpdatedAt(j.getUpdatedAt());
+        });
+        fa.ifPresent(a -> {
+            dto.setTriangleCount(a.getTriangleCount());
+            dto.setVertexCount(a.getVertexCount());
+            dto.setFaceCount(a.getFaceCount());
+            dto.setGroupCount(a.getGroupCount());
+            dto.setBoundsMin(new float[]{a.getBoundsMinX(), a.getBoundsMinY(), a.getBoundsMinZ()});
+            dto.setBoundsMax(new float[]{a.getBoundsMaxX(), a.getBoundsMaxY(), a.getBoundsMaxZ()});
+            dto.setIngestedAt(a.getIngestedAt());
+        });
+        return Optional.of(dto);
+    }
+
+    /** Забрать готовые задания по числу свободных воркеров. */
+    @Scheduled(fixedDelayString = "${ingest.poll-ms:2000}")
+    void poll() {
+        if (!enabled) return;
+        int free = slots.availablePermits();
+        if (free == 0) return;
+        List<Long> claimed;
+        try {
+            claimed = jdbcTemplate.queryForList(CLAIM_SQL, Long.class, workerId, free);
+        } catch (RuntimeException e) {
+            log.warn("Ingest queue poll failed: {}", e.toString());
+            return;
+        }
+        for (Long id : claimed) {
+            slots.acquireUninterruptibly();
+            try {
+                pool.execute(() -> {
+                    try {
+                        run(id);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+    }
+
+    /** Вернуть в очередь задания умерших воркеров. */
+    @Scheduled(fixedDelayString = "${ingest.reclaim-ms:60000}")
+    void reclaimStale() {
+        if (!enabled) return;
+        try {
+            int n = jdbcTemplate.update(RECLAIM_SQL, Timestamp.from(Instant.now().minusMillis(staleAfterMs)));
+            if (n > 0) log.warn("Ingest jobs reclaimed from dead workers: {}", n);
+        } catch (RuntimeException e) {
+            log.warn("Ingest reclaim failed: {}", e.toString());
+        }
+    }
+
+    /** Продлить задания этого процесса, пока модель качается и разбирается. */
+    @Scheduled(fixedDelayString = "${ingest.heartbeat-ms:60000}")
+    void heartbeat() {
+        running.forEach((id, attempts) -> {
+            try {
+                jdbcTemplate.update(HEARTBEAT_SQL, id, workerId, attempts);
+            } catch (RuntimeException e) {
+                log.warn("Ingest heartbeat failed for job {}: {}", id, e.toString());
+            }
+        });
+    }
+
+    private void run(Long id) {
+        IngestJob job = ingestJobRepository.findById(id).orElse(null);
+        if (job == null || job.getStatus() != IngestJob.Status.RUNNING || !workerId.equals(job.getLockedBy())) return;
+        int attempts = job.getAttempts();
+        running.put(id, attempts);
+        long t0 = System.nanoTime();
+        IngestJob.Status status;
+        String error = null;
+        Instant nextRunAt = job.getNextRunAt();
+        try {
+            stage(id, attempts, IngestJob.Stage.VALIDATE);
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(job.getObjectKey()).build());
+            Obj obj;
+            try (InputStream in = modelObjectCache.open(job.getObjectKey())) {
+                obj = ObjReader.read(in);
+            }
+            long triangles = validate(obj);
+
+            stage(id, attempts, IngestJob.Stage.EXTRACT);
+            extract(job.getObjectKey(), stat, obj, triangles);
+
+            status = IngestJob.Status.DONE;
+            log.info("Model ingested: key={} triangles={} attempt={} ms={}", job.getObjectKey(), triangles,
+                    attempts, (System.nanoTime() - t0) / 1_000_000);
+        } catch (JobLostException e) {
+            // Модель удалили или задание перехватили после reclaim — ничего не пишем
+            log.info("Ingest of {} abandoned: {}", job.getObjectKey(), e.getMessage());
+            return;
+        } catch (IngestValidationException e) {
+            status = IngestJob.Status.FAILED;
+            error = e.getMessage();
+            log.info("Model rejected by ingest: key={} reason={}", job.getObjectKey(), e.getMessage());
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (attempts >= maxAttempts) {
+                status = IngestJob.Status.FAILED;
+                log.warn("Ingest gave up on {} after {} attempts: {}", job.getObjectKey(), attempts, e.toString());
+            } else {
+                status = IngestJob.Status.PENDING;
+                nextRunAt = Instant.now().plus(backoff(attempts));
+                log.info("Ingest of {} failed (attempt {}), retry at {}: {}", job.getObjectKey(), attempts,
+                        nextRunAt, e.toString());
+            }
+        } finally {
+            running.remove(id);
+        }
+        jdbcTemplate.update(FINISH_SQL, status.name(), error, Timestamp.from(nextRunAt), id, workerId, attempts);
+    }
+
+    private long validate(Obj obj) throws IngestValidationException {
+        if (obj.getNumVertices() == 0 || obj.getNumFaces() == 0)
+            throw new IngestValidationException("Модель не содержит вершин или граней");
+        long triangles = 0;
+        for (int i = 0; i < obj.getNumFaces(); i++) {
+            int n = obj.getFace(i).getNumVertices();
+            if (n >= 3) triangles += n - 2;
+        }
+        if (triangles == 0) throw new IngestValidationException("Модель не содержит треугольников");
+        if (maxTriangleCount > 0 && triangles > maxTriangleCount) {
+            throw new IngestValidationException("Слишком плотная сетка: " + triangles + " треугольников (лимит "
+                    + maxTriangleCount + ")");
+        }
+        return triangles;
+    }
+
+    private void extract(String objectKey, StatObjectResponse stat, Obj obj, long triangles) {
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int i = 0; i < obj.getNumVertices(); i++) {
+            FloatTuple v = obj.getVertex(i);
+            min[0] = Math.min(min[0], v.getX());
+            min[1] = Math.min(min[1], v.getY());
+            min[2] = Math.min(min[2], v.getZ());
+            max[0] = Math.max(max[0], v.getX());
+            max[1] = Math.max(max[1], v.getY());
+            max[2] = Math.max(max[2], v.getZ());
+        }
+        // Только строка той версии объекта, что разбиралась: удалённую модель не воскрешаем, перезаписанную
+        // разберёт её собственное задание
+        String etag = ObjectMetadataCache.stripQuotes(stat.etag());
+        int updated = fileAttributesRepository.updateIngested(objectKey, etag, stat.contentType(), stat.size(),
+                triangles, obj.getNumVertices(), obj.getNumFaces(), obj.getNumGroups(),
+                min[0], min[1], min[2], max[0], max[1], max[2], Instant.now());
+        if (updated == 0) {
+            log.info("Ingest result for {} dropped: catalog row is gone or has another ETag", objectKey);
+        }
+    }
+
+    private Duration backoff(int attempt) {
+        long ms = backoffBaseMs << Math.min(20, Math.max(0, attempt - 1));
+        return Duration.ofMillis(Math.min(backoffMaxMs, ms));
+    }
+
+    private void stage(Long id, int attempts, IngestJob.Stage stage) throws JobLostException {
+        if (jdbcTemplate.update(STAGE_SQL, stage.name(), id, workerId, attempts) == 0) throw new JobLostException(id);
+    }
+}
@@ -3,7 +3,6 @@ package beckand.test.Service.file;
 import beckand.test.DTO.media.MediaItemDto;
 import beckand.test.DTO.model.ModelMetaResponse;
 import beckand.test.DTO.media.SliceItemDto;
-import beckand.test.Model.file.FileAttributes;
 import beckand.test.Model.media.ModelPhoto;
 import beckand.test.Model.media.ModelSlice;
 import beckand.test.Model.media.ModelVideo;
@@ -11,15 +10,20 @@ import beckand.test.Repository.file.FileAttributesRepository;
 import beckand.test.Repository.media.ModelPhotoRepository;
 import beckand.test.Repository.media.ModelSliceRepository;
 import beckand.test.Repository.media.ModelVideoRepository;
+import beckand.test.Service.render.section.MeshSectionService;
 import io.minio.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 @Service
@@ -32,12 +36,20 @@ public class ModelMediaService {
     private final ModelPhotoRepository modelPhotoRepository;
     private final ModelVideoRepository modelVideoRepository;
     private final ModelSliceRepository modelSliceRepository;
+    private final MediaContentCache mediaContentCache;
+    private final MediaDerivativeService mediaDerivativeService;
+    private final SliceStackService sliceStackService;
+    private final FileCatalogService fileCatalogService;
+    private final MeshSectionService meshSectionService;
 
     @Value("${minio.bucket}")
     private String bucket;
 
     private static final String MEDIA_PREFIX = "media/";
 
+    /** Ключ для отдачи: exact=false — запрошенной уменьшенной копии ещё нет, отдаётся оригинал. */
+    public record MediaKey(String s3Key, boolean exact) { }
+
     public ModelMetaResponse getMeta(String modelObjectKey) {
         ModelMetaResponse response = new ModelMetaResponse();
         fileAttributesRepository.findByS3ObjectKey(modelObjectKey)
@@ -47,6 +59,7 @@ public class ModelMediaService {
             MediaItemDto dto = new MediaItemDto();
             dto.setId(p.getId());
             dto.setDisplayOrder(p.getDisplayOrder());
+            dto.setSizes(availableSizes(p.getThumbS3Key(), p.getMediumS3Key()));
             response.getPhotos().add(dto);
         }
         for (ModelVideo v : modelVideoRepository.findByModelObjectKeyOrderByDisplayOrderAsc(modelObjectKey)) {
@@ -61,20 +74,14 @@ public class ModelMediaService {
             dto.setAxis(s.getAxis());
             dto.setSliceIndex(s.getSliceIndex());
             dto.setDisplayOrder(s.getDisplayOrder());
+            dto.setSizes(availableSizes(s.getThumbS3Key(), s.getMediumS3Key()));
             response.getSlices().add(dto);
         }
         return response;
     }
 
     public void updateDescription(String modelObjectKey, String description) {
-        FileAttributes fa = fileAttributesRepository.findByS3ObjectKey(modelObjectKey)
-                .orElseGet(() -> {
-                    FileAttributes newFa = new FileAttributes();
-                    newFa.setS3ObjectKey(modelObjectKey);
-                    return newFa;
-                });
-        fa.setDescription(description);
-        fileAttributesRepository.save(fa);
+        fileCatalogService.describe(modelObjectKey, description);
     }
 
     public MediaItemDto uploadPhoto(String modelObjectKey, MultipartFile file) {
@@ -86,6 +93,7 @@ public class ModelMediaService {
         p.setS3Key(s3Key);
         p.setDisplayOrder(0);
         p = modelPhotoRepository.save(p);
+        mediaDerivativeService.generatePhotoDerivatives(p.getId(), s3Key);
         MediaItemDto dto = new MediaItemDto();
         dto.setId(p.getId());
         dto.setDisplayOrder(p.getDisplayOrder());
@@ -111,6 +119,30 @@ public class ModelMediaService {
         String ext = getExtension(file.getOriginalFilename(), "png");
         String s3Key = MEDIA_PREFIX + "slices/" + UUID.randomUUID() + ext;
         putToMinio(s3Key, file);
+        return saveSlice(modelObjectKey, s3Key, axis, sliceIndex);
+    }
+
+    /**
+     * Срезы, посчитанные по сетке модели: count сечений оси через равные промежутки (по центрам интервалов),
+     * sliceIndex — номер сечения. Дальше они ничем не отличаются от загруженных вручную.
+     */
+    public List<SliceItemDto> generateSlices(String modelObjectKey, String axis, int count, Integer size) {
+        List<SliceItemDto> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MeshSectionService.SectionKey key = meshSectionService.key(modelObjectKey, axis, (i + 0.5) / count, size);
+            MediaContent png = meshSectionService.section(key);
+            String s3Key = MEDIA_PREFIX + "slices/" + UUID.randomUUID() + ".png";
+            try (InputStream in = png.body().getInputStream()) {
+                putToMinio(s3Key, in, png.body().contentLength(), MediaType.IMAGE_PNG_VALUE);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to upload media: " + e.getMessage(), e);
+            }
+            created.add(saveSlice(modelObjectKey, s3Key, key.axis().name().toLowerCase(Locale.ROOT), i));
+        }
+        return created;
+    }
+
+    private SliceItemDto saveSlice(String modelObjectKey, String s3Key, String axis, Integer sliceIndex) {
         ModelSlice s = new ModelSlice();
         s.setModelObjectKey(modelObjectKey);
         s.setS3Key(s3Key);
@@ -118,6 +150,8 @@ public class ModelMediaService {
         s.setSliceIndex(sliceIndex != null ? sliceIndex : 0);
         s.setDisplayOrder(0);
         s = modelSliceRepository.save(s);
+        mediaDerivativeService.generateSliceDerivatives(s.getId(), s3Key);
+        sliceStackService.scheduleRebuild(modelObjectKey, s.getAxis());
         SliceItemDto dto = new SliceItemDto();
         dto.setId(s.getId());
         dto.setAxis(s.getAxis());
@@ -128,7 +162,7 @@ public class ModelMediaService {
 
     public void deletePhoto(Integer id) {
         modelPhotoRepository.findById(id).ifPresent(p -> {
-            removeFromMinio(p.getS3Key());
+            removeMedia(p.getS3Key(), p.getThumbS3Key(), p.getMediumS3Key());
             modelPhotoRepository.delete(p);
         });
     }
@@ -142,36 +176,87 @@ public class ModelMediaService {
 
     public void deleteSlice(Integer id) {
         modelSliceRepository.findById(id).ifPresent(s -> {
-            removeFromMinio(s.getS3Key());
+            removeMedia(s.getS3Key(), s.getThumbS3Key(), s.getMediumS3Key());
             modelSliceRepository.delete(s);
+            sliceStackService.scheduleRebuild(s.getModelObjectKey(), s.getAxis());
         });
     }
 
-    public InputStream getPhotoContent(Integer id) {
+    /** Ключ фото нужного размера (size=null — оригинал). */
+    public MediaKey getPhotoKey(Integer id, MediaSize size) {
         ModelPhoto p = modelPhotoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Photo not found: " + id));
-        return getFromMinio(p.getS3Key());
+        return pickSize(size, p.getS3Key(), p.getThumbS3Key(), p.getMediumS3Key());
+    }
+
+    public String getVideoKey(Integer id) {
+        return modelVideoRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Video not found: " + id))
+                .getS3Key();
+    }
+
+    /**
+     * Сильный ETag медиа-объекта. Ключи — UUID, содержимое под ключом не меняется, поэтому ETag выводится
+     * из ключа и проверка If-None-Match не требует запроса к MinIO.
+     */
+    public static String mediaETag(String s3Key) {
+        return "\"" + s3Key.substring(s3Key.lastIndexOf('/') + 1) + "\"";
     }
 
-    public InputStream getVideoContent(Integer id) {
-        ModelVideo v = modelVideoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Video not found: " + id));
-        return getFromMinio(v.getS3Key());
+    /** Медиа-объект для потоковой отдачи (с поддержкой Range): размер и тип — из statObject, содержимое — лениво. */
+    public MinioObjectResource openMedia(String s3Key) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(s3Key).build());
+            return new MinioObjectResource(minioClient, bucket, s3Key, stat.size(), stat.lastModified(), stat.contentType());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get media: " + e.getMessage(), e);
+        }
     }
 
-    public InputStream getSliceContent(Integer id) {
+    /** Ключ среза нужного размера (size=null — оригинал). */
+    public MediaKey getSliceKey(Integer id, MediaSize size) {
         ModelSlice s = modelSliceRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Slice not found: " + id));
-        return getFromMinio(s.getS3Key());
+        return pickSize(size, s.getS3Key(), s.getThumbS3Key(), s.getMediumS3Key());
+    }
+
+    private static MediaKey pickSize(MediaSize size, String original, String thumb, String medium) {
+        if (size == null) return new MediaKey(original, true);
+        String derived = size == MediaSize.THUMB ? thumb : medium;
+        return derived != null ? new MediaKey(derived, true) : new MediaKey(original, false);
+    }
+
+    private static List<String> availableSizes(String thumb, String medium) {
+        List<String> sizes = new ArrayList<>(2);
+        if (thumb != null) sizes.add(MediaSize.THUMB.param());
+        if (medium != null) sizes.add(MediaSize.MEDIUM.param());
+        return sizes;
+    }
+
+    /**
+     * Фото или срез: небольшие объекты — из {@link MediaContentCache} (при промахе читаются целиком и кладутся туда),
+     * крупнее media.cache.max-object-bytes — потоком из MinIO.
+     */
+    public MediaContent loadMedia(String s3Key) {
+        MediaContent cached = mediaContentCache.get(s3Key);
+        if (cached != null) return cached;
+        MinioObjectResource resource = openMedia(s3Key);
+        if (resource.contentLength() > mediaContentCache.maxObjectBytes()) return MediaContent.of(resource);
+        try (InputStream in = resource.getInputStream()) {
+            return mediaContentCache.put(s3Key, in.readAllBytes(), resource.mediaType(), resource.lastModified());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get media: " + e.getMessage(), e);
+        }
     }
 
     public void deleteAllMediaForModel(String modelObjectKey) {
         modelPhotoRepository.findByModelObjectKeyOrderByDisplayOrderAsc(modelObjectKey)
-                .forEach(p -> { removeFromMinio(p.getS3Key()); modelPhotoRepository.delete(p); });
+                .forEach(p -> { removeMedia(p.getS3Key(), p.getThumbS3Key(), p.getMediumS3Key()); modelPhotoRepository.delete(p); });
         modelVideoRepository.findByModelObjectKeyOrderByDisplayOrderAsc(modelObjectKey)
                 .forEach(v -> { removeFromMinio(v.getS3Key()); modelVideoRepository.delete(v); });
         modelSliceRepository.findByModelObjectKeyOrderByDisplayOrderAsc(modelObjectKey)
-                .forEach(s -> { removeFromMinio(s.getS3Key()); modelSliceRepository.delete(s); });
+                .forEach(s -> { removeMedia(s.getS3Key(), s.getThumbS3Key(), s.getMediumS3Key()); modelSliceRepository.delete(s); });
+        sliceStackService.deleteStacks(modelObjectKey);
     }
 
     private String getExtension(String fileName, String defaultExt) {
@@ -180,32 +265,41 @@ public class ModelMediaService {
     }
 
     private void putToMinio(String s3Key, MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            putToMinio(s3Key, in, file.getSize(), file.getContentType() != null ? file.getContentType() : "application/octet-stream");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to upload media: " + e.getMessage(), e);
+        }
+    }
+
+    private void putToMinio(String s3Key, InputStream in, long size, String contentType) {
         try {
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucket)
                             .object(s3Key)
-                            .stream(file.getInputStream(), file.getSize(), -1)
-                            .contentType(file.getContentType() != null ? file.getContentType() : "application/octet-stream")
+                            .stream(in, size, -1)
+                            .contentType(contentType)
                             .build());
         } catch (Exception e) {
             throw new RuntimeException("Failed to upload media: " + e.getMessage(), e);
         }
     }
 
-    private void removeFromMinio(String s3Key) {
-        try {
-            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(s3Key).build());
-        } catch (Exception e) {
-            log.warn("Failed to remove from MinIO: {}", s3Key, e);
+    /** Оригинал и его уменьшенные копии: из MinIO и из кэша в памяти. */
+    private void removeMedia(String... s3Keys) {
+        for (String key : s3Keys) {
+            if (key == null) continue;
+            removeFromMinio(key);
+            mediaContentCache.evict(key);
         }
     }
 
-    private InputStream getFromMinio(String s3Key) {
+    private void removeFromMinio(String s3Key) {
         try {
-            return minioClient.getObject(GetObjectArgs.builder().bucket(bucket).object(s3Key).build());
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(s3Key).build());
         } catch (Exception e) {
-            throw new RuntimeException("Failed to get media: " + e.getMessage(), e);
+            log.warn("Failed to remove from MinIO: {}", s3Key, e);
         }
     }
 }
@@ -0,0 +1,301 @@
+package beckand.test.Service.file;
+
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Локальная копия объектов моделей из MinIO. Раньше каждая холодная загрузка модели заново тянула весь OBJ из S3,
+ * а под нагрузкой MinIO отвечал 503. Файл называется по SHA-256 от ключа объекта и ETag: актуальность
+ * проверяется по ETag ({@link ObjectMetadataCache} или statObject), изменённый объект получает новое имя, а старое вытесняется как обычно.
+ * <p>
+ * Размер кэша ограничен (LRU по последнему чтению). Одновременные промахи по одному объекту ждут одно скачивание.
+ * Каталог можно делить между веб-процессом и render-воркерами: файл появляется атомарным переименованием,
+ * а вытесненный файл, который кто-то ещё читает, удаляется только из каталога.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ModelObjectCache {
+
+    private static final String ENTRY_SUFFIX = ".obj";
+    private static final String PART_SUFFIX = ".part";
+
+    private final MinioClient minioClient;
+    /** В веб-процессе ETag берётся из кэша метаданных; render-воркер его не поднимает и спрашивает MinIO. */
+    private final ObjectProvider<ObjectMetadataCache> metadataCache;
+
+    @Value("${minio.bucket}")
+    private String bucket;
+    /** false — каждый раз читать из MinIO, как раньше. */
+    @Value("${minio.model-cache.enabled:true}")
+    private boolean enabled;
+    /** Пусто — ${java.io.tmpdir}/atlas-model-cache. */
+    @Value("${minio.model-cache.dir:}")
+    private String cacheDir;
+    @Value("${minio.model-cache.max-bytes:10737418240}")
+    private long maxBytes;
+
+    private Path root;
+    /** Имя файла → запись; порядок доступа — кандидаты на вытеснение в начале. Под монитором this. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    /** Идущие скачивания по имени файла. */
+    private final Map<String, CompletableFuture<Path>> downloads = new ConcurrentHashMap<>();
+
+    /** objectKey — null для файлов, найденных на диске при старте (ключ по имени не восстановить). */
+    private record Entry(String objectKey, long size) { }
+
+    @PostConstruct
+    private void init() throws IOException {
+        if (!enabled) return;
+        root = cacheDir == null || cacheDir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "atlas-model-cache")
+                : Path.of(cacheDir);
+        Files.createDirectories(root);
+        List<Path> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(existing::add);
+        }
+        // Старые — первыми: порядок вставки станет порядком вытеснения
+        existing.sort(Comparator.comparing(ModelObjectCache::lastModified));
+        synchronized (this) {
+            for (Path p : existing) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(PART_SUFFIX)) {
+                    // Недокачанный файл прошлого запуска; у живого соседа-воркера он будет пересоздан
+                    if (System.currentTimeMillis() - lastModified(p).toMillis() > 3_600_000L) Files.deleteIfExists(p);
+                } else if (name.endsWith(ENTRY_SUFFIX)) {
+                    long size = Files.size(p);
+                    entries.put(name, new Entry(null, size));
+                    totalBytes += size;
+                }
+            }
+            evictLocked(null);
+        }
+        log.info("Model object cache: dir={} entries={} bytes={} maxBytes={}", root, entries.size(), totalBytes, maxBytes);
+    }
+
+    /** Поток объекта: из локальной копии, при промахе — после скачивания из MinIO. */
+    public InputStream open(String objectKey) throws IOException {
+        if (!enabled) return getObject(objectKey, null);
+        Path file = fetch(objectKey);
+        try {
+            return Files.newInputStream(file);
+        } catch (NoSuchFileException evicted) {
+            // Файл вытеснил соседний процесс между проверкой и открытием
+            forget(file.getFileName().toString());
+            return Files.newInputStream(fetch(objectKey));
+        }
+    }
+
+    /** Путь к актуальной локальной копии объекта (кэш должен быть включён). */
+    public Path fetch(String objectKey) throws IOException {
+        String etag = stat(objectKey);
+        String name = entryName(objectKey, etag);
+        Path file = root.resolve(name);
+        if (touch(name, file)) return file;
+
+        CompletableFuture<Path> download = new CompletableFuture<>();
+        CompletableFuture<Path> running = downloads.putIfAbsent(name, download);
+        if (running != null) return awaitDownload(running);
+        try {
+            // Скачивание могло закончиться между touch и putIfAbsent
+            Path out = touch(name, file) ? file : download(objectKey, etag, name, file);
+            download.complete(out);
+            return out;
+        } catch (Throwable e) {
+            // Возможно, объект заменили мимо приложения и ETag из кэша метаданных устарел (matchETag не совпал)
+            ObjectMetadataCache metadata = metadataCache.getIfAvailable();
+            if (metadata != null) metadata.invalidate(objectKey);
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloads.remove(name, download);
+        }
+    }
+
+    /** Убрать локальные копии объекта (удалён или перезаписан). Файлы, найденные при старте, уйдут по LRU. */
+    public void evict(String objectKey) {
+        if (!enabled || objectKey == null) return;
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (objectKey.equals(e.getValue().objectKey())) {
+                    it.remove();
+                    totalBytes -= e.getValue().size();
+                    deleteQuietly(root.resolve(e.getKey()));
+                }
+            }
+        }
+    }
+
+    private Path download(String objectKey, String etag, String name, Path file) throws IOException {
+        long t0 = System.nanoTime();
+        Path part = Files.createTempFile(root, name, PART_SUFFIX);
+        try {
+            // matchETag: объект, заменённый после statObject, не попадёт в кэш под старым ETag
+            try (InputStream in = getObject(objectKey, etag)) {
+                Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(part, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(part);
+            throw e;
+        }
+        long size = Files.size(file);
+        synchronized (this) {
+            Entry previous = entries.put(name, new Entry(objectKey, size));
+            if (previous != null) totalBytes -= previous.size();
+            totalBytes += size;
+            evictLocked(name);
+        }
+        log.debug("Model object cached: key={} etag={} bytes={} ms={}", objectKey, etag, size, (System.nanoTime() - t0) / 1_000_000);
+        return file;
+    }
+
+    /**
+     * Файл на месте — отметить чтение. Файл, скачанный соседним процессом, принимается в индекс;
+     * удалённый соседом — забывается.
+     */
+    private synchronized boolean touch(String name, Path file) throws IOException {
+        Entry e = entries.get(name);
+        boolean exists = Files.exists(file);
+        if (e == null) {
+            if (!exists) return false;
+            long size = Files.size(file);
+            entries.put(name, new Entry(null, size));
+            totalBytes += size;
+            evictLocked(name);
+            return true;
+        }
+        if (!exists) {
+            entries.remove(name);
+            totalBytes -= e.size();
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized void forget(String name) {
+        Entry e = entries.remove(name);
+        if (e != null) totalBytes -= e.size();
+    }
+
+    /** Вытеснять самые давно читанные записи, пока кэш больше лимита; keep — только что скачанная. */
+    private void evictLocked(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().equals(keep)) continue;
+            it.remove();
+            totalBytes -= e.getValue().size();
+            deleteQuietly(root.resolve(e.getKey()));
+            log.debug("Model object evicted: {} ({} bytes)", e.getKey(), e.getValue().size());
+        }
+    }
+
+    private String stat(String objectKey) throws IOException {
+        ObjectMetadataCache metadata = metadataCache.getIfAvailable();
+        if (metadata != null) {
+            try {
+                return metadata.get(objectKey)
+                        .orElseThrow(() -> new IOException("Object does not exist: " + objectKey))
+                        .etag();
+            } catch (RuntimeException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        try {
+            return minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(objectKey).build()).etag();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("statObject failed for " + objectKey + ": " + e.getMessage(), e);
+        }
+    }
+
+    private InputStream getObject(String objectKey, String etag) throws IOException {
+        try {
+            GetObjectArgs.Builder args = GetObjectArgs.builder().bucket(bucket).object(objectKey);
+            if (etag != null) args.matchETag(etag);
+            return minioClient.getObject(args.build());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("getObject failed for " + objectKey + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Path awaitDownload(CompletableFuture<Path> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException("Shared download failed: " + cause, cause);
+        }
+    }
+
+    private static String entryName(String objectKey, String etag) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(objectKey.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update(String.valueOf(etag).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha.digest()) + ENTRY_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            log.debug("Could not delete cached model file {}: {}", p, e.toString());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package beckand.test.Service.file;
+
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Метаданные объектов моделей (statObject) в памяти. Раньше каждый /files/{key}, /viewer-obj, /render и холодная
+ * загрузка модели по WebSocket ходили в MinIO за statObject; теперь это поиск в хеш-таблице.
+ * <p>
+ * Запись живёт minio.metadata-cache.ttl-ms; отсутствующий ключ тоже запоминается (короче, negative-ttl-ms) —
+ * повторные запросы несуществующей модели не долбят MinIO. Загрузка и удаление через приложение сбрасывают запись
+ * сразу, изменения мимо приложения ловит сверка каталога с бакетом ({@link FileCatalogService#reconcile()}),
+ * а в худшем случае — TTL. Размер ограничен (LRU).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ObjectMetadataCache {
+
+    private final MinioClient minioClient;
+
+    @Value("${minio.bucket}")
+    private String bucket;
+    @Value("${minio.metadata-cache.enabled:true}")
+    private boolean enabled;
+    @Value("${minio.metadata-cache.ttl-ms:30000}")
+    private long ttlMs;
+    @Value("${minio.metadata-cache.negative-ttl-ms:5000}")
+    private long negativeTtlMs;
+    @Value("${minio.metadata-cache.max-entries:10000}")
+    private int maxEntries;
+
+    /** Метаданные объекта; etag — как вернул MinIO (без кавычек). */
+    public record ObjectMetadata(String objectKey, String contentType, long size, String etag, ZonedDateTime lastModified) { }
+
+    /** metadata == null — объекта нет. */
+    private record Entry(ObjectMetadata metadata, long expiresAt) { }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    /** Растёт при каждом сбросе: statObject, начатый до сброса, не кладёт в кэш устаревший ответ. */
+    private long generation;
+
+    /** Метаданные объекта; пусто — объекта нет. Прочие ошибки MinIO не кэшируются и пробрасываются. */
+    public Optional<ObjectMetadata> get(String objectKey) {
+        long now = System.currentTimeMillis();
+        long startedAt;
+        synchronized (this) {
+            Entry e = entries.get(objectKey);
+            if (e != null && e.expiresAt() > now) return Optional.ofNullable(e.metadata());
+            startedAt = generation;
+        }
+        ObjectMetadata metadata = stat(objectKey);
+        if (enabled) {
+            synchronized (this) {
+                if (startedAt == generation) {
+                    long ttl = metadata != null ? ttlMs : negativeTtlMs;
+                    entries.put(objectKey, new Entry(metadata, System.currentTimeMillis() + ttl));
+                    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+                    while (entries.size() > maxEntries && it.hasNext()) {
+                        it.next();
+                        it.remove();
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(metadata);
+    }
+
+    /** Объект загружен, перезаписан или удалён через приложение. */
+    public synchronized void invalidate(String objectKey) {
+        entries.remove(objectKey);
+        generation++;
+    }
+
+    /**
+     * Сверка с листингом бакета (ключ → ETag): записи с другим ETag, исчезнувших объектов и «нет объекта»
+     * для появившихся — сбросить. Ключи вне листинга (служебные) не трогаются, их держит TTL.
+     */
+    public synchronized void reconcile(Map<String, String> listedETags) {
+        int dropped = 0;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (FileCatalogService.isInternal(e.getKey())) continue;
+            ObjectMetadata m = e.getValue().metadata();
+            String current = listedETags.get(e.getKey());
+            boolean stale = m == null ? current != null : !Objects.equals(m.etag(), current);
+            if (stale) {
+                it.remove();
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            generation++;
+            log.debug("Object metadata cache: {} stale entries dropped by reconcile", dropped);
+        }
+    }
+
+    private ObjectMetadata stat(String objectKey) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(objectKey).build());
+            return new ObjectMetadata(objectKey, stat.contentType(), stat.size(), stripQuotes(stat.etag()), stat.lastModified());
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse() != null ? e.errorResponse().code() : null;
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) return null;
+            throw new RuntimeException("statObject failed for " + objectKey + ": " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("statObject failed for " + objectKey + ": " + e.getMessage(), e);
+        }
+    }
+
+    static String stripQuotes(String etag) {
+        if (etag == null) return null;
+        return etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"") ? etag.substring(1, etag.length() - 1) : etag;
+    }
+}
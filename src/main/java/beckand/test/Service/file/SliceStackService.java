@@ -0,0 +1,287 @@
+package beckand.test.Service.file;
+
+import beckand.test.DTO.media.SliceStackDto;
+import beckand.test.DTO.media.SliceStackEntryDto;
+import beckand.test.Model.media.ModelSlice;
+import beckand.test.Model.media.ModelSliceStack;
+import beckand.test.Repository.media.ModelSliceRepository;
+import beckand.test.Repository.media.ModelSliceStackRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Упакованные стеки срезов. Раньше просмотр КТ-стека из 300 срезов стоил 300 HTTP-запросов — по одному на картинку.
+ * Теперь изображения одной оси лежат подряд в одном объекте MinIO (media/stacks/{uuid}.bin), а индекс смещений — в
+ * model_slice_stack. Клиент берёт индекс один раз и запрашивает непрерывный диапазон срезов впереди позиции
+ * прокрутки — это один ranged GET к MinIO и один ответ.
+ * <p>
+ * Стек пересобирается после загрузки или удаления среза, с задержкой: пачка загрузок даёт одну сборку.
+ * Каждая сборка пишется под новым ключом, старый объект удаляется после сохранения индекса.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SliceStackService {
+
+    private static final String STACK_PREFIX = "media/stacks/";
+
+    private final MinioClient minioClient;
+    private final ModelSliceRepository modelSliceRepository;
+    private final ModelSliceStackRepository modelSliceStackRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${minio.bucket}")
+    private String bucket;
+    @Value("${media.slice-stack.enabled:true}")
+    private boolean enabled;
+    /** Задержка сборки после последнего изменения срезов оси. */
+    @Value("${media.slice-stack.debounce-ms:2000}")
+    private long debounceMs;
+    /** Потолок диапазона в одном ответе. */
+    @Value("${media.slice-stack.max-range-slices:64}")
+    private int maxRangeSlices;
+
+    /** Одна сборка за раз: стеки разных моделей не конкурируют за канал к MinIO с загрузками пользователей. */
+    private ScheduledExecutorService executor;
+    /** Отложенные сборки по (модель, ось). */
+    private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+
+    /** Диапазон стека для отдачи: срезы [from, from+entries.size()) и байты [offset, offset+length) объекта. */
+    public record StackRange(ModelSliceStack stack, int from, List<SliceStackEntryDto> entries, long offset, long length) { }
+
+    @PostConstruct
+    private void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "slice-stack-builder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Срезы оси изменились — пересобрать её стек после паузы. */
+    public void scheduleRebuild(String modelObjectKey, String axis) {
+        if (!enabled || modelObjectKey == null || axis == null) return;
+        String key = modelObjectKey + "\0" + axis;
+        pending.compute(key, (k, previous) -> {
+            if (previous != null) previous.cancel(false);
+            return executor.schedule(() -> {
+                pending.remove(k);
+                try {
+                    rebuild(modelObjectKey, axis);
+                } catch (RuntimeException e) {
+                    log.warn("Slice stack build failed for {} axis {}: {}", modelObjectKey, axis, e.toString());
+                }
+            }, debounceMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /** Индекс стека; пусто — стека нет (срезов нет или первая сборка ещё не прошла). */
+    public Optional<SliceStackDto> getStack(String modelObjectKey, String axis) {
+        return modelSliceStackRepository.findByModelObjectKeyAndAxis(modelObjectKey, axis).map(stack -> {
+            SliceStackDto dto = new SliceStackDto();
+            dto.setAxis(stack.getAxis());
+            dto.setVersion(version(stack));
+            dto.setSliceCount(stack.getSliceCount());
+            dto.setTotalBytes(stack.getTotalBytes());
+            dto.setSlices(readIndex(stack));
+            return dto;
+        });
+    }
+
+    /** Диапазон срезов стека; count обрезается до media.slice-stack.max-range-slices и до конца стека. */
+    public Optional<StackRange> getRange(String modelObjectKey, String axis, int from, int count) {
+        return modelSliceStackRepository.findByModelObjectKeyAndAxis(modelObjectKey, axis).map(stack -> {
+            List<SliceStackEntryDto> index = readIndex(stack);
+            int start = Math.max(0, Math.min(from, index.size()));
+            int end = Math.min(index.size(), start + Math.max(0, Math.min(count, maxRangeSlices)));
+            List<SliceStackEntryDto> entries = index.subList(start, end);
+            if (entries.isEmpty()) return new StackRange(stack, start, entries, 0, 0);
+            SliceStackEntryDto last = entries.get(entries.size() - 1);
+            long offset = entries.get(0).getOffset();
+            return new StackRange(stack, start, entries, offset, last.getOffset() + last.getLength() - offset);
+        });
+    }
+
+    /** Поток байт диапазона: один GET к MinIO с offset и length. */
+    public InputStream openRange(StackRange range) {
+        if (range.length() == 0) return InputStream.nullInputStream();
+        try {
+            return minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(range.stack().getS3Key())
+                    .offset(range.offset())
+                    .length(range.length())
+                    .build());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read slice stack: " + e.getMessage(), e);
+        }
+    }
+
+    /** Версия сборки — имя объекта стека: новый UUID на каждую пересборку. */
+    public static String version(ModelSliceStack stack) {
+        String key = stack.getS3Key();
+        int slash = key.lastIndexOf('/');
+        int dot = key.lastIndexOf('.');
+        return key.substring(slash + 1, dot > slash ? dot : key.length());
+    }
+
+    /** Модель удалена: стеки всех осей и их объекты. */
+    public void deleteStacks(String modelObjectKey) {
+        pending.entrySet().removeIf(e -> {
+            if (!e.getKey().startsWith(modelObjectKey + "\0")) return false;
+            e.getValue().cancel(false);
+            return true;
+        });
+        for (ModelSliceStack stack : modelSliceStackRepository.findByModelObjectKey(modelObjectKey)) {
+            modelSliceStackRepository.delete(stack);
+            removeFromMinio(stack.getS3Key());
+        }
+    }
+
+    /**
+     * Собрать стек оси заново: оригиналы срезов в порядке sliceIndex склеиваются во временный файл
+     * (размер заранее не известен, а putObject с известной длиной не делит объект на части), затем файл уходит в MinIO.
+     */
+    void rebuild(String modelObjectKey, String axis) {
+        List<ModelSlice> slices = modelSliceRepository.findByModelObjectKeyAndAxisOrderBySliceIndexAscIdAsc(modelObjectKey, axis);
+        Optional<ModelSliceStack> existing = modelSliceStackRepository.findByModelObjectKeyAndAxis(modelObjectKey, axis);
+        if (slices.isEmpty()) {
+            deleteStack(existing);
+            return;
+        }
+        long t0 = System.nanoTime();
+        String s3Key = STACK_PREFIX + UUID.randomUUID() + ".bin";
+        List<SliceStackEntryDto> index = new ArrayList<>(slices.size());
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile("slice-stack-", ".bin");
+            long offset = 0;
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                for (ModelSlice slice : slices) {
+                    StatObjectResponse stat;
+                    try {
+                        stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(slice.getS3Key()).build());
+                    } catch (ErrorResponseException e) {
+                        String code = e.errorResponse() != null ? e.errorResponse().code() : null;
+                        if (!"NoSuchKey".equals(code) && !"NoSuchObject".equals(code)) throw e;
+                        // Срез удалили во время сборки — его удаление назначит следующую
+                        log.debug("Slice {} skipped in stack {}: object is gone", slice.getId(), s3Key);
+                        continue;
+                    }
+                    // Ошибка посреди копирования оставила бы в файле часть среза и сдвинула все смещения
+                    // после него, поэтому она прерывает сборку целиком: стек остаётся прежним
+                    long length;
+                    try (InputStream in = minioClient.getObject(GetObjectArgs.builder()
+                            .bucket(bucket).object(slice.getS3Key()).build())) {
+                        length = in.transferTo(out);
+                    }
+                    SliceStackEntryDto entry = new SliceStackEntryDto();
+                    entry.setPosition(index.size());
+                    entry.setSliceId(slice.getId());
+                    entry.setSliceIndex(slice.getSliceIndex());
+                    entry.setOffset(offset);
+                    entry.setLength(length);
+                    entry.setContentType(stat.contentType());
+                    index.add(entry);
+                    offset += length;
+                }
+            }
+            if (index.isEmpty()) {
+                // Все срезы оси уже удалены из MinIO — старый стек отдавал бы их, как будто они есть
+                deleteStack(existing);
+                return;
+            }
+            try (InputStream in = Files.newInputStream(tmp)) {
+                minioClient.putObject(PutObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(s3Key)
+                        .stream(in, offset, -1)
+                        .contentType("application/octet-stream")
+                        .build());
+            }
+            ModelSliceStack stack = existing.orElseGet(ModelSliceStack::new);
+            String previousKey = stack.getS3Key();
+            stack.setModelObjectKey(modelObjectKey);
+            stack.setAxis(axis);
+            stack.setS3Key(s3Key);
+            stack.setSliceCount(index.size());
+            stack.setTotalBytes(offset);
+            stack.setIndexJson(objectMapper.writeValueAsString(index));
+            stack.setBuiltAt(Instant.now());
+            modelSliceStackRepository.save(stack);
+            if (previousKey != null) removeFromMinio(previousKey);
+            log.info("Slice stack built: model={} axis={} slices={} bytes={} ms={}",
+                    modelObjectKey, axis, index.size(), offset, (System.nanoTime() - t0) / 1_000_000);
+        } catch (Exception e) {
+            removeFromMinio(s3Key);
+            throw new RuntimeException("Failed to build slice stack: " + e.getMessage(), e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // временный файл — не страшно
+                }
+            }
+        }
+    }
+
+    private void deleteStack(Optional<ModelSliceStack> existing) {
+        existing.ifPresent(stack -> {
+            modelSliceStackRepository.delete(stack);
+            removeFromMinio(stack.getS3Key());
+        });
+    }
+
+    private List<SliceStackEntryDto> readIndex(ModelSliceStack stack) {
+        try {
+            return objectMapper.readValue(stack.getIndexJson(), new TypeReference<List<SliceStackEntryDto>>() { });
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to read slice stack index: " + e.getMessage(), e);
+        }
+    }
+
+    private void removeFromMinio(String s3Key) {
+        try {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(s3Key).build());
+        } catch (Exception e) {
+            log.warn("Failed to remove from MinIO: {}", s3Key, e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package beckand.test.Service.render;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Регулятор превью одной WebSocket-сессии. Вместо порогов по числу треугольников смотрит на реальное время кадра
+ * (ожидание очереди + рендер + JPEG + отправка) и держит его около бюджета: при перерасходе уменьшает размер
+ * превью и качество JPEG, упёршись в минимальный размер — огрубляет шаг угла; при устойчивом запасе
+ * возвращает всё обратно в обратном порядке. Стартовая точка — прежняя эвристика по треугольникам.
+ * <p>
+ * Экземпляр на сессию, вызовы из потока обработки сообщений этой сессии; синхронизация — на случай
+ * отчёта об отправке из другого потока.
+ */
+public class AdaptiveQualityController {
+
+    private static final double MIN_SCALE = 0.25;
+    private static final float MIN_QUALITY = 0.35f;
+    private static final int MAX_ANGLE_STEP = 12;
+    /** Кадров после изменения, прежде чем оценивать снова: EWMA должна увидеть новые параметры. */
+    private static final int COOLDOWN_FRAMES = 3;
+    /** Сколько подряд кадров с запасом нужно для шага вверх — повышаем осторожнее, чем понижаем. */
+    private static final int RECOVER_AFTER_FRAMES = 8;
+
+    private final double targetFrameNanos;
+    private final double maxScale;
+    private final float maxQuality;
+    private final int minAngleStep;
+
+    private double scale;
+    private float quality;
+    private int angleStep;
+    private double avgFrameNanos;
+    private int cooldown;
+    private int headroomStreak;
+    private int lastAz = Integer.MIN_VALUE;
+    private int lastEl = Integer.MIN_VALUE;
+    private long lastZoom = Long.MIN_VALUE;
+    private byte[] lastPreviewJpeg;
+
+    /**
+     * @param initial  стартовые параметры (эвристика RenderService по модели)
+     * @param ceiling  верхняя граница: то, что задал оператор в render.preview.*; выше не поднимаемся
+     */
+    public AdaptiveQualityController(long targetFrameMs, PreviewSettings initial, PreviewSettings ceiling) {
+        this.targetFrameNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(5, targetFrameMs));
+        this.maxScale = Math.max(MIN_SCALE, ceiling.getScale());
+        this.maxQuality = Math.max(MIN_QUALITY, ceiling.getJpegQuality());
+        this.minAngleStep = Math.max(1, ceiling.getAngleStepDeg());
+        this.scale = clamp(initial.getScale(), MIN_SCALE, maxScale);
+        this.quality = (float) clamp(initial.getJpegQuality(), MIN_QUALITY, maxQuality);
+        this.angleStep = (int) clamp(initial.getAngleStepDeg(), minAngleStep, MAX_ANGLE_STEP);
+    }
+
+    public synchronized PreviewSettings current() {
+        return new PreviewSettings(scale, quality, angleStep);
+    }
+
+    /**
+     * Превью с тем же квантованным углом и зумом, что и последнее отправленное, рендерить незачем — клиент его
+     * уже видит. Именно так более грубый шаг угла снижает нагрузку. Ответ клиенту всё равно нужен (он держит
+     * в пути один запрос), поэтому возвращается тот же кадр; null — ракурс новый, рендерить.
+     */
+    public synchronized RenderedFrame repeatOfLastPreview(int qAz, int qEl, double zoom) {
+        if (lastPreviewJpeg == null || qAz != lastAz || qEl != lastEl || zoomKey(zoom) != lastZoom) return null;
+        return RenderedFrame.cached(lastPreviewJpeg);
+    }
+
+    /**
+     * Превью ушло клиенту — запомнить его ракурс. Только после отправки: отклонённый очередью или отброшенный
+     * отправителем кадр клиент не видел, и тот же ракурс надо будет отрендерить снова.
+     */
+    public synchronized void onPreviewSent(int qAz, int qEl, double zoom, byte[] jpeg) {
+        lastAz = qAz;
+        lastEl = qEl;
+        lastZoom = zoomKey(zoom);
+        lastPreviewJpeg = jpeg;
+    }
+
+    /** Финальный кадр отправлен — следующее превью после него нужно в любом случае. */
+    public synchronized void resetLastPreview() {
+        lastAz = Integer.MIN_VALUE;
+        lastEl = Integer.MIN_VALUE;
+        lastZoom = Long.MIN_VALUE;
+        lastPreviewJpeg = null;
+    }
+
+    /** Учесть замер очередного превью. */
+    public synchronized void onPreviewFrame(RenderedFrame frame, long sendNanos) {
+        long frameNanos = frame.getQueueNanos() + frame.getRenderNanos() + frame.getEncodeNanos() + sendNanos;
+        avgFrameNanos = avgFrameNanos == 0 ? frameNanos : avgFrameNanos * 0.7 + frameNanos * 0.3;
+        if (cooldown > 0) {
+            cooldown--;
+            return;
+        }
+        if (avgFrameNanos > targetFrameNanos * 1.15) {
+            headroomStreak = 0;
+            degrade();
+        } else if (avgFrameNanos < targetFrameNanos * 0.6) {
+            if (++headroomStreak >= RECOVER_AFTER_FRAMES) {
+                headroomStreak = 0;
+                recover();
+            }
+        } else {
+            headroomStreak = 0;
+        }
+    }
+
+    public synchronized double averageFrameMs() {
+        return avgFrameNanos / 1_000_000.0;
+    }
+
+    private void degrade() {
+        // Масштабирование и JPEG ~ площади кадра: уменьшаем сторону пропорционально корню перерасхода
+        double factor = clamp(Math.sqrt(targetFrameNanos / avgFrameNanos), 0.7, 0.92);
+        double newScale = Math.max(MIN_SCALE, scale * factor);
+        float newQuality = Math.max(MIN_QUALITY, quality - 0.04f);
+        if (newScale == scale && newQuality == quality) {
+            if (angleStep >= MAX_ANGLE_STEP) return;
+            angleStep++;
+        }
+        scale = newScale;
+        quality = newQuality;
+        cooldown = COOLDOWN_FRAMES;
+    }
+
+    private void recover() {
+        if (angleStep > minAngleStep) {
+            angleStep--;
+        } else if (scale < maxScale || quality < maxQuality) {
+            scale = Math.min(maxScale, scale * 1.08);
+            quality = Math.min(maxQuality, quality + 0.02f);
+        } else {
+            return;
+        }
+        cooldown = COOLDOWN_FRAMES;
+    }
+
+    private static long zoomKey(double zoom) {
+        return Math.round(zoom * 100.0);
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
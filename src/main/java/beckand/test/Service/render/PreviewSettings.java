@@ -0,0 +1,15 @@
+package beckand.test.Service.render;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/** Параметры превью при вращении (final=false): доля размера кадра, качество JPEG и шаг квантования угла. */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class PreviewSettings {
+    private final double scale;
+    private final float jpegQuality;
+    private final int angleStepDeg;
+}
@@ -0,0 +1,109 @@
+package beckand.test.Service.render;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики рендера для Actuator/Prometheus: время стадий кадра (гистограммы), обращения к кэшу кадров и смены моделей.
+ * В render-воркере Actuator нет — метрики пишутся в локальный реестр и никуда не уходят; веб-процесс видит
+ * время воркера целиком как стадию render.
+ */
+@Component
+public class RenderMetrics {
+
+    /** Стадии кадра; в Prometheus — atlas_render_stage_seconds{stage="..."}. */
+    public enum Stage {
+        /** Разбор OBJ при смене модели. */
+        PARSE,
+        /** Сетка в VBO (или в память софтверного растеризатора). */
+        UPLOAD,
+        /** Ожидание билета RenderQueue. */
+        QUEUE,
+        /** Отрисовка; с воркерами — весь кадр в воркере, включая readback. */
+        RENDER,
+        /** glReadPixels / PBO; у софтверного бэкенда сюда попадает растеризация. */
+        READBACK,
+        /** RGBA снизу вверх → BufferedImage. */
+        CONVERT,
+        /** Уменьшение превью. */
+        SCALE,
+        /** JPEG. */
+        ENCODE,
+        /** Запись кадра в WebSocket. */
+        SEND;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter modelSwitches;
+
+    public RenderMetrics(ObjectProvider<MeterRegistry> registryProvider) {
+        this.registry = registryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("atlas.render.stage")
+                    .description("Время стадии кадра рендера")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry));
+        }
+        cacheHits = Counter.builder("atlas.render.cache.requests")
+                .description("Обращения к кэшу готовых кадров")
+                .tag("result", "hit")
+                .register(registry);
+        cacheMisses = Counter.builder("atlas.render.cache.requests")
+                .description("Обращения к кэшу готовых кадров")
+                .tag("result", "miss")
+                .register(registry);
+        modelSwitches = Counter.builder("atlas.render.model.switches")
+                .description("Смены модели в GL-контексте (разбор OBJ и загрузка VBO)")
+                .register(registry);
+        Gauge.builder("atlas.render.cache.hit.ratio", this, RenderMetrics::cacheHitRatio)
+                .description("Доля попаданий в кэш кадров с запуска")
+                .register(registry);
+    }
+
+    public void record(Stage stage, long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+
+    public void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    public void modelSwitched() {
+        modelSwitches.increment();
+    }
+
+    /** Датчик, значение которого снимается при каждом опросе (размер кэша, число сессий и т.п.). */
+    public <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value).description(description).register(registry);
+    }
+
+    private double cacheHitRatio() {
+        double hits = cacheHits.count();
+        double total = hits + cacheMisses.count();
+        return total > 0 ? hits / total : 0;
+    }
+}
@@ -0,0 +1,358 @@
+package beckand.test.Service.render;
+
+import beckand.test.DTO.render.RenderQueueStats;
+import beckand.test.DTO.render.RenderSessionStats;
+import beckand.test.Service.render.jfr.QueueWaitEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченная очередь к единственному GL-контексту. Раньше каждый поток Tomcat сам висел в ожидании renderLock,
+ * и под нагрузкой их копилось сколько угодно. Теперь одновременно рендерит один держатель билета, остальные
+ * ждут в очереди глубиной не больше render.queue.max-depth:
+ * <ul>
+ *     <li>превью (final=false) при полной очереди отклоняется сразу;</li>
+ *     <li>финальный кадр вытесняет самое старое ожидающее превью, и только если вытеснять нечего — отклоняется;</li>
+ *     <li>новое превью той же сессии вытесняет её же ещё не начатое превью — устаревший кадр никому не нужен.</li>
+ * </ul>
+ * Порядок выдачи: сначала финальные кадры и HTTP-рендеры (FIFO), затем превью сессий по deficit round robin,
+ * где стоимость кадра — фактическое время на GL. Пользователь, быстро крутящий тяжёлую модель, получает ту же
+ * долю GL-времени, что и остальные, а не весь контекст.
+ * <p>
+ * С render-воркерами контекстов несколько (по одному на процесс) — билеты выдаются, пока не заняты все.
+ */
+@Component
+public class RenderQueue {
+
+    @Value("${render.queue.max-depth:16}")
+    private int maxDepth;
+    /** Нижняя граница Retry-After; реальная подсказка = средняя длительность рендера × глубина очереди. */
+    @Value("${render.queue.retry-after-ms:200}")
+    private long minRetryAfterMs;
+    /** Квант DRR: сколько GL-времени сессия получает за один обход. */
+    @Value("${render.queue.quantum-ms:20}")
+    private long quantumMs;
+
+    /** Финальные кадры и HTTP-рендеры — всегда раньше превью. */
+    private final ArrayDeque<Ticket> priority = new ArrayDeque<>();
+    /** Сессии с ожидающими превью в порядке обхода DRR. */
+    private final ArrayDeque<Lane> activeLanes = new ArrayDeque<>();
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private int waitingCount;
+    /** Сколько билетов может держать контекст одновременно: 1 для GL в процессе, N для N воркеров. */
+    private int contexts = 1;
+    private final Set<Ticket> active = new HashSet<>();
+
+    private long admittedTotal;
+    private long rejectedTotal;
+    private long supersededTotal;
+    private long lastWaitNanos;
+    private long maxWaitNanos;
+    private double avgWaitNanos;
+    private double avgServiceNanos;
+
+    /** Билет на один доступ к GL-контексту. close() освобождает контекст или снимает билет с очереди. */
+    public final class Ticket implements AutoCloseable {
+        private final Lane lane;
+        private final boolean finalFrame;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<Void> grant = new CompletableFuture<>();
+        private long grantedNanos;
+
+        private Ticket(Lane lane, boolean finalFrame) {
+            this.lane = lane;
+            this.finalFrame = finalFrame;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    /** Очередь превью одной сессии + её статистика. */
+    private static final class Lane {
+        private final String streamKey;
+        private final ArrayDeque<Ticket> previews = new ArrayDeque<>();
+        private long deficitNanos;
+        private long admitted;
+        private long rendered;
+        private long superseded;
+        private long rejected;
+        private long lastWaitNanos;
+        private double avgWaitNanos;
+        private double avgServiceNanos;
+
+        private Lane(String streamKey) {
+            this.streamKey = streamKey;
+        }
+    }
+
+    /**
+     * Поставить запрос в очередь. streamKey — id WebSocket-сессии (null для HTTP); finalFrame=true для
+     * финальных кадров и HTTP-рендеров, они идут вне очереди превью и не вытесняются.
+     */
+    public Ticket admit(String streamKey, boolean finalFrame) throws RenderRejectedException {
+        synchronized (this) {
+            Lane lane = streamKey != null ? lanes.computeIfAbsent(streamKey, Lane::new) : null;
+            if (lane != null) supersedeWaitingPreviews(lane);
+            if (waitingCount >= Math.max(1, maxDepth)) {
+                Ticket victim = finalFrame ? oldestWaitingPreview() : null;
+                if (victim == null) {
+                    rejectedTotal++;
+                    if (lane != null) lane.rejected++;
+                    throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL, retryAfterMsLocked());
+                }
+                removeWaitingPreview(victim);
+                rejectedTotal++;
+                victim.lane.rejected++;
+                victim.grant.completeExceptionally(
+                        new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL, retryAfterMsLocked()));
+            }
+            Ticket ticket = new Ticket(lane, finalFrame);
+            if (finalFrame || lane == null) {
+                priority.addLast(ticket);
+            } else {
+                if (!activeLanes.contains(lane)) activeLanes.addLast(lane);
+                lane.previews.addLast(ticket);
+            }
+            waitingCount++;
+            admittedTotal++;
+            if (lane != null) lane.admitted++;
+            grantAvailableLocked();
+            return ticket;
+        }
+    }
+
+    /** Дождаться своей очереди. Ожидание — на CompletableFuture, а не на мониторе: поток не держит блокировок. */
+    public void await(Ticket ticket) throws IOException {
+        QueueWaitEvent event = new QueueWaitEvent();
+        event.begin();
+        String outcome = "failed";
+        try {
+            ticket.grant.get();
+            outcome = "granted";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RenderRejectedException rejected) {
+                outcome = "rejected";
+                throw rejected;
+            }
+            throw new IOException("Render queue failure", e.getCause());
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.sessionId = ticket.lane != null ? ticket.lane.streamKey : null;
+                event.finalFrame = ticket.finalFrame;
+                event.outcome = outcome;
+                event.depth = depth();
+                event.commit();
+            }
+        }
+    }
+
+    /** Сессия закрыта: снять её ожидающие превью и забыть статистику. */
+    public void forgetStream(String streamKey) {
+        if (streamKey == null) return;
+        synchronized (this) {
+            Lane lane = lanes.remove(streamKey);
+            if (lane == null) return;
+            for (Ticket t : lane.previews) {
+                t.grant.completeExceptionally(new RenderRejectedException(RenderRejectedException.Reason.SUPERSEDED, 0));
+            }
+            waitingCount -= lane.previews.size();
+            lane.previews.clear();
+            activeLanes.remove(lane);
+        }
+    }
+
+    /** Число параллельных контекстов рендера (пул воркеров задаёт его при старте). */
+    public void setContexts(int contexts) {
+        synchronized (this) {
+            this.contexts = Math.max(1, contexts);
+            grantAvailableLocked();
+        }
+    }
+
+    /** Подсказка клиенту, через сколько повторить запрос. */
+    public synchronized long retryAfterMs() {
+        return retryAfterMsLocked();
+    }
+
+    public synchronized int depth() {
+        return waitingCount;
+    }
+
+    public synchronized RenderQueueStats stats() {
+        RenderQueueStats s = new RenderQueueStats();
+        s.setMaxDepth(maxDepth);
+        s.setQueueDepth(waitingCount);
+        s.setPriorityDepth(priority.size());
+        s.setActiveSessions(activeLanes.size());
+        s.setRendering(!active.isEmpty());
+        s.setAvgWaitMs(avgWaitNanos / 1_000_000.0);
+        s.setMaxWaitMs(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        s.setLastWaitMs(TimeUnit.NANOSECONDS.toMillis(lastWaitNanos));
+        s.setAvgServiceMs(avgServiceNanos / 1_000_000.0);
+        s.setAdmittedTotal(admittedTotal);
+        s.setRejectedTotal(rejectedTotal);
+        s.setSupersededTotal(supersededTotal);
+        return s;
+    }
+
+    public synchronized List<RenderSessionStats> sessionStats() {
+        List<RenderSessionStats> result = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes.values()) {
+            RenderSessionStats s = new RenderSessionStats();
+            s.setSessionId(lane.streamKey);
+            s.setQueuedPreviews(lane.previews.size());
+            s.setAdmitted(lane.admitted);
+            s.setRendered(lane.rendered);
+            s.setSuperseded(lane.superseded);
+            s.setRejected(lane.rejected);
+            s.setLastWaitMs(TimeUnit.NANOSECONDS.toMillis(lane.lastWaitNanos));
+            s.setAvgWaitMs(lane.avgWaitNanos / 1_000_000.0);
+            s.setAvgServiceMs(lane.avgServiceNanos / 1_000_000.0);
+            s.setDeficitMs(lane.deficitNanos / 1_000_000.0);
+            result.add(s);
+        }
+        return result;
+    }
+
+    private void release(Ticket ticket) {
+        synchronized (this) {
+            if (active.remove(ticket)) {
+                long serviceNanos = System.nanoTime() - ticket.grantedNanos;
+                avgServiceNanos = ewma(avgServiceNanos, serviceNanos);
+                Lane lane = ticket.lane;
+                if (lane != null) {
+                    lane.rendered++;
+                    lane.avgServiceNanos = ewma(lane.avgServiceNanos, serviceNanos);
+                    // Финальные кадры идут вне DRR и дефицит сессии не тратят
+                    if (!ticket.finalFrame) lane.deficitNanos -= serviceNanos;
+                }
+                grantAvailableLocked();
+            } else if (removeWaiting(ticket)) {
+                // Вызвавший поток ушёл (прерывание/ошибка) до получения доступа — просто снимаем билет
+                ticket.grant.cancel(false);
+            }
+        }
+    }
+
+    private void grantAvailableLocked() {
+        while (active.size() < contexts && grantNextLocked()) {
+            // выдаём, пока есть свободные контексты и ожидающие
+        }
+    }
+
+    private boolean grantNextLocked() {
+        Ticket next = priority.pollFirst();
+        if (next == null) next = pollFairPreview();
+        if (next == null) return false;
+        waitingCount--;
+        long now = System.nanoTime();
+        long waitNanos = now - next.enqueuedNanos;
+        lastWaitNanos = waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        avgWaitNanos = ewma(avgWaitNanos, waitNanos);
+        if (next.lane != null) {
+            next.lane.lastWaitNanos = waitNanos;
+            next.lane.avgWaitNanos = ewma(next.lane.avgWaitNanos, waitNanos);
+        }
+        next.grantedNanos = now;
+        active.add(next);
+        next.grant.complete(null);
+        return true;
+    }
+
+    /**
+     * Deficit round robin: сессия в голове обхода рендерит, пока её дефицит положителен; иначе получает квант
+     * и уходит в конец. Дефицит растёт на каждом обходе, так что цикл всегда завершается.
+     */
+    private Ticket pollFairPreview() {
+        long quantumNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, quantumMs));
+        while (!activeLanes.isEmpty()) {
+            Lane lane = activeLanes.peekFirst();
+            if (lane.previews.isEmpty()) {
+                activeLanes.pollFirst();
+                lane.deficitNanos = 0;
+                continue;
+            }
+            if (lane.deficitNanos <= 0) {
+                lane.deficitNanos += quantumNanos;
+                activeLanes.addLast(activeLanes.pollFirst());
+                continue;
+            }
+            Ticket t = lane.previews.pollFirst();
+            if (lane.previews.isEmpty()) {
+                activeLanes.pollFirst();
+                // Дефицит не копится впрок: опустевшая сессия не должна потом монополизировать контекст
+                lane.deficitNanos = Math.min(lane.deficitNanos, quantumNanos);
+            }
+            return t;
+        }
+        return null;
+    }
+
+    private void supersedeWaitingPreviews(Lane lane) {
+        Iterator<Ticket> it = lane.previews.iterator();
+        while (it.hasNext()) {
+            Ticket t = it.next();
+            it.remove();
+            waitingCount--;
+            supersededTotal++;
+            lane.superseded++;
+            t.grant.completeExceptionally(new RenderRejectedException(RenderRejectedException.Reason.SUPERSEDED, 0));
+        }
+        // Место сессии в обходе DRR сохраняется: свежее превью встанет туда же, где ждало старое
+    }
+
+    private Ticket oldestWaitingPreview() {
+        Ticket oldest = null;
+        for (Lane lane : activeLanes) {
+            Ticket head = lane.previews.peekFirst();
+            if (head != null && (oldest == null || head.enqueuedNanos < oldest.enqueuedNanos)) oldest = head;
+        }
+        return oldest;
+    }
+
+    private boolean removeWaiting(Ticket ticket) {
+        if (priority.remove(ticket)) {
+            waitingCount--;
+            return true;
+        }
+        return ticket.lane != null && removeWaitingPreview(ticket);
+    }
+
+    private boolean removeWaitingPreview(Ticket ticket) {
+        Lane lane = ticket.lane;
+        if (!lane.previews.remove(ticket)) return false;
+        waitingCount--;
+        if (lane.previews.isEmpty()) activeLanes.remove(lane);
+        return true;
+    }
+
+    private long retryAfterMsLocked() {
+        long estimate = Math.round(avgServiceNanos / 1_000_000.0 * (waitingCount + 1) / contexts);
+        return Math.max(minRetryAfterMs, estimate);
+    }
+
+    private static double ewma(double avg, long sample) {
+        return avg == 0 ? sample : avg * 0.9 + sample * 0.1;
+    }
+}
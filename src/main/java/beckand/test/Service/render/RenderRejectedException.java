@@ -0,0 +1,30 @@
+package beckand.test.Service.render;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Кадр не будет отрендерен: очередь к GL-контексту переполнена или кадр вытеснен более свежим превью той же сессии.
+ * Для QUEUE_FULL клиенту отдаётся busy / 503 с Retry-After, SUPERSEDED молча пропускается.
+ */
+@Getter
+public class RenderRejectedException extends IOException {
+
+    public enum Reason { QUEUE_FULL, SUPERSEDED }
+
+    private final Reason reason;
+    private final long retryAfterMs;
+
+    public RenderRejectedException(Reason reason, long retryAfterMs) {
+        super(reason == Reason.QUEUE_FULL ? "Render queue is full" : "Render superseded by a newer frame");
+        this.reason = reason;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        // Штатная ситуация под нагрузкой — стек не нужен и не должен стоить CPU
+        return this;
+    }
+}
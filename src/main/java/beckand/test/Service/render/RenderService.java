@@ -1,13 +1,22 @@
 package beckand.test.Service.render;
 
-import com.jogamp.opengl.*;
-import com.jogamp.opengl.glu.GLU;
-import com.jogamp.opengl.util.FPSAnimator;
-import com.jogamp.nativewindow.AbstractGraphicsDevice;
 import de.javagl.obj.FloatTuple;
 import de.javagl.obj.Obj;
 import de.javagl.obj.ObjFace;
 import de.javagl.obj.ObjReader;
+import beckand.test.DTO.render.RenderWorkerStats;
+import beckand.test.Service.render.backend.JoglRenderBackend;
+import beckand.test.Service.render.backend.LwjglEglRenderBackend;
+import beckand.test.Service.render.backend.RenderBackend;
+import beckand.test.Service.render.backend.RenderView;
+import beckand.test.Service.render.backend.SoftwareRenderBackend;
+import beckand.test.Service.render.jfr.FramePhaseEvent;
+import beckand.test.Service.render.jfr.FrameTrace;
+import beckand.test.Service.render.jfr.MeshUploadEvent;
+import beckand.test.Service.render.jfr.ModelLoadEvent;
+import beckand.test.Service.render.jfr.RenderCacheEvent;
+import beckand.test.Service.render.worker.RenderWorkerPool;
+import beckand.test.Service.render.worker.WorkerFrame;
 import io.minio.MinioClient;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -29,8 +38,12 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -46,8 +59,6 @@ public class RenderService {
     private int angleStepDeg;
     @Value("${render.cache.max.entries:200}")
     private int maxCacheEntries;
-    @Value("${render.stream.fps:20}")
-    private int renderStreamFps;
     /** 0 отключает MSAA — нужно для Mesa/llvmpipe в Docker; для GPU можно 4–8 */
     @Value("${render.gl.samples:0}")
     private int renderGlSamples;
@@ -70,43 +81,63 @@ public class RenderService {
     @Value("${render.adaptive-heavy-model:true}")
     private boolean adaptiveHeavyModel;
 
-    private static final int MAX_RENDER_SIZE = 2048;
+    public static final int MAX_RENDER_SIZE = 2048;
+    private static final double FIELD_OF_VIEW_DEG = 45.0;
 
     private final Map<String, byte[]> renderCache = new ConcurrentHashMap<>();
-    private GLAutoDrawable drawable;
-    private FPSAnimator animator;
-    private GLU glu;
+    /**
+     * Рендеры «в полёте» по тому же ключу, что и renderCache (для превью — с суффиксом :preview).
+     * Одновременные одинаковые запросы (класс следит за кадром преподавателя) ждут один общий кадр.
+     */
+    private final Map<String, CompletableFuture<RenderedFrame>> inFlightRenders = new ConcurrentHashMap<>();
     private Obj currentModel;
     private float currentAzimuth = 0;
     private float currentElevation = 0;
     private float targetAzimuth = 0;
     private float targetElevation = 0;
-    private final Object renderLock = new Object();
-    private volatile boolean renderComplete = false;
-    private volatile boolean isInitialized = false;
     private ByteBuffer pixelBuffer;
-    private volatile boolean needsRender = true;
+    /** Куда читать пиксели вместо pixelBuffer (в render-воркере — слот кольца в общей памяти). */
+    private volatile ByteBuffer readbackTarget;
     private String currentModelId = null;
     private float centerX = 0, centerY = 0, centerZ = 0;
     /** Половина диагонали AABB после центрирования — для дистанции камеры и frustum. */
     private float modelBoundingRadius = 1f;
-    /** Треугольников после триангуляции (как VBO); для адаптивного превью и шага угла. */
+    /** Треугольников в загруженной сюда модели после триангуляции (как VBO). */
     private volatile long loadedModelTriangleCount = 0;
-    /** Множитель дистанции камеры (1 = по умолчанию; меньше — ближе, больше — дальше). Поле zoom в WebSocket. */
-    private volatile double cameraDistanceScale = 1.0;
+    /**
+     * Треугольников по моделям — для адаптивного превью и шага угла. С воркерами модели грузятся параллельно
+     * в разных процессах, поэтому число хранится по ключу модели, а не одним полем «последней загруженной».
+     */
+    private final Map<String, Long> modelTriangleCounts = new ConcurrentHashMap<>();
+    /**
+     * Множитель дистанции камеры для кадра, который рисуется сейчас (1 = по умолчанию; меньше — ближе,
+     * больше — дальше). Выставляет renderFrame из zoom запроса под билетом RenderQueue.
+     */
+    private double cameraDistanceScale = DEFAULT_ZOOM;
     private volatile int highQualityFrames = 0;
     private volatile long framesRendered = 0;
-    private volatile boolean glInfoLogged = false;
 
-    // --- GPU buffers (VBO) ---
     // Interleaved layout per-vertex: nx, ny, nz, x, y, z (6 floats)
     private static final int FLOATS_PER_VERTEX = 6;
     private static final int BYTES_PER_FLOAT = 4;
-    private static final int VBO_STRIDE_BYTES = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
-    private volatile Obj pendingUploadModel = null;
-    private volatile boolean vboDirty = false;
-    private int vboId = 0;
-    private int vboVertexCount = 0;
+    private static final double DEFAULT_ZOOM = 1.0;
+    private static final int MAX_TRIANGLE_COUNT_ENTRIES = 256;
+
+    @Autowired
+    private RenderQueue renderQueue;
+
+    @Autowired
+    private RenderMetrics metrics;
+
+    /**
+     * GL вынесен в отдельные процессы (render.workers.enabled): здесь контекст не создаётся, кадры приходят
+     * из воркеров через общую память. Падение нативного GL/Mesa убивает воркер, а не веб-сервер.
+     */
+    @Value("${render.workers.enabled:false}")
+    private boolean remoteWorkers;
+
+    @Autowired(required = false)
+    private RenderWorkerPool workerPool;
 
     @Autowired(required = false)
     private MinioClient minioClient;
@@ -114,232 +145,109 @@ public class RenderService {
     @Value("${minio.bucket:my-files}")
     private String bucket;
 
-    private boolean stubMode = false;
+    /**
+     * Чем считать кадры: auto — JOGL GL2, при неудаче софтверный растеризатор; jogl, lwjgl (EGL, core profile)
+     * или software — явно. GPU-бэкенд, который не поднялся или не принял сетку, заменяется софтверным.
+     */
+    @Value("${render.backend:auto}")
+    private String renderBackend;
+    private volatile RenderBackend backend;
+    /** Текущий бэкенд — {@link SoftwareRenderBackend}: GL не поднялся, упала загрузка VBO или так настроено. */
+    private volatile boolean softwareMode = false;
+    /** Потоков софтверного растеризатора; 0 — по числу ядер. */
+    @Value("${render.software.threads:0}")
+    private int softwareThreads;
+    @Value("${render.software.tile-size:64}")
+    private int softwareTileSize;
 
     @PostConstruct
     private void initializeRenderer() {
-        try {
-            System.setProperty("java.awt.headless", "true");
-            GLProfile.initSingleton();
-            boolean useXvfb = !"0".equals(System.getenv("USE_XVFB"));
-            log.info("Render init: USE_XVFB={} DISPLAY='{}' __EGL_VENDOR_LIBRARY_FILENAMES='{}'",
-                    useXvfb ? "1" : "0",
-                    System.getenv("DISPLAY"),
-                    System.getenv("__EGL_VENDOR_LIBRARY_FILENAMES"));
-
-            int width = Math.max(1, Math.min(MAX_RENDER_SIZE, renderWidth > 0 ? renderWidth : 1280));
-            int height = Math.max(1, Math.min(MAX_RENDER_SIZE, renderHeight > 0 ? renderHeight : 720));
-            renderWidth = width;
-            renderHeight = height;
-            ensurePixelBufferCapacity();
-            stubMode = false;
-
-            GLProfile profile = GLProfile.get(GLProfile.GL2);
-            if (profile == null) throw new RuntimeException("GL2 profile is not available");
-
-            GLCapabilities capabilities = new GLCapabilities(profile);
-            boolean softwareGl = "1".equals(System.getenv("LIBGL_ALWAYS_SOFTWARE"));
-            capabilities.setHardwareAccelerated(!softwareGl);
-            capabilities.setDoubleBuffered(true);
-            capabilities.setDepthBits(24);
-            int samples = Math.max(0,Math.min(16, renderGlSamples));
-            capabilities.setSampleBuffers(samples > 0);
-            capabilities.setNumSamples(samples > 0 ? samples : 0);
-            capabilities.setOnscreen(false);
-            log.info("GL capabilities: hardwareAccelerated={} msaaSamples={}", !softwareGl, samples);
-
-            GLDrawableFactory factory = null;
-            try {
-                log.info("Attempting EGL offscreen context...");
-                Class<?> eglClass;
-                try {
-                    eglClass = Class.forName("com.jogamp.opengl.egl.EGLDrawableFactory");
-                } catch (ClassNotFoundException ignored) {
-                    eglClass = Class.forName("jogamp.opengl.egl.EGLDrawableFactory");
-                }
-
-                java.lang.reflect.Method getFactory = eglClass.getMethod("getEGLFactory");
-                factory = (GLDrawableFactory) getFactory.invoke(null);
-                if (factory != null) {
-                    AbstractGraphicsDevice device = factory.getDefaultDevice();
-                    DefaultGLCapabilitiesChooser chooser = new DefaultGLCapabilitiesChooser();
-                    drawable = factory.createOffscreenAutoDrawable(device, capabilities, chooser, renderWidth, renderHeight);
-                    log.info("Using EGL for headless GPU rendering");
-                }
-            } catch (Throwable e) {
-                log.warn("EGL not available, falling back to default offscreen: {} - {}", e.getClass().getSimpleName(), e.getMessage());
-                if (log.isDebugEnabled()) log.debug("EGL init failure", e);
-            }
-            if (drawable == null) {
-                if ("0".equals(System.getenv("USE_XVFB"))) {
-                    throw new RuntimeException("EGL init failed and USE_XVFB=0, refusing X11/GLX fallback");
-                }
-                factory = GLDrawableFactory.getFactory(profile);
-                drawable = factory.createOffscreenAutoDrawable(null, capabilities, null, renderWidth, renderHeight);
-            }
+        System.setProperty("java.awt.headless", "true");
+        int width = Math.max(1, Math.min(MAX_RENDER_SIZE, renderWidth > 0 ? renderWidth : 1280));
+        int height = Math.max(1, Math.min(MAX_RENDER_SIZE, renderHeight > 0 ? renderHeight : 720));
+        renderWidth = width;
+        renderHeight = height;
+        registerGauges();
+        if (remoteWorkers) {
+            log.info("Render runs in worker processes ({}x{}), no GL context in this process", renderWidth, renderHeight);
+            return;
+        }
+        ensurePixelBufferCapacity();
+        backend = startBackend();
+    }
 
-            drawable.addGLEventListener(new GLEventListener() {
-                @Override
-                public void init(GLAutoDrawable d) {
-                    GL gl = d.getGL();
-                    if (!(gl instanceof GL2 gl2)) throw new RuntimeException("GL2 is not available");
-                    logGlInfoOnce(gl2);
-                    gl2.glClearColor(0.06f, 0.06f, 0.08f, 1.0f);
-                    gl2.glEnable(GL2.GL_DEPTH_TEST);
-                    if (backFaceCulling) {
-                        gl2.glEnable(GL2.GL_CULL_FACE);
-                        gl2.glCullFace(GL.GL_BACK);
-                        gl2.glFrontFace(GL.GL_CCW);
-                    } else {
-                        gl2.glDisable(GL2.GL_CULL_FACE);
-                    }
-                    gl2.glEnable(GL2.GL_LIGHTING);
-                    gl2.glEnable(GL2.GL_NORMALIZE);
-                    gl2.glShadeModel(GL2.GL_SMOOTH);
-                    gl2.glEnable(GL2.GL_LIGHT0);
-                    gl2.glEnable(GL2.GL_LIGHT1);
-                    gl2.glEnable(GL2.GL_COLOR_MATERIAL);
-                    gl2.glColorMaterial(GL2.GL_FRONT_AND_BACK, GL2.GL_AMBIENT_AND_DIFFUSE);
-                    isInitialized = true;
-                }
+    private void registerGauges() {
+        metrics.gauge("atlas.render.cache.entries", "Кадров в кэше готовых JPEG", renderCache, Map::size);
+        metrics.gauge("atlas.render.cache.bytes", "Объём кэша готовых JPEG", renderCache, RenderService::cacheBytes);
+        metrics.gauge("atlas.render.resident.models", "Моделей, загруженных в GL-контексты (этого процесса или воркеров)",
+                this, RenderService::residentModelCount);
+    }
 
-                @Override
-                public void dispose(GLAutoDrawable d) {
-                    try {
-                        GL gl = d.getGL();
-                        if (gl instanceof GL2 gl2) {
-                            deleteVbo(gl2);
-                        }
-                    } catch (Throwable ignored) { }
-                    isInitialized = false;
-                }
+    private static double cacheBytes(Map<String, byte[]> cache) {
+        long bytes = 0;
+        for (byte[] jpeg : cache.values()) bytes += jpeg.length;
+        return bytes;
+    }
 
-                @Override
-                public void display(GLAutoDrawable d) {
-                    if (!isInitialized) return;
-                    GL gl = d.getGL();
-                    if (!(gl instanceof GL2 gl2)) return;
-                    if (!glInfoLogged) logGlInfoOnce(gl2);
-                    if (Math.abs(currentAzimuth - targetAzimuth) > 0.01f || Math.abs(currentElevation - targetElevation) > 0.01f)
-                        needsRender = true;
-                    if (!needsRender) return;
-
-                    long t0 = System.nanoTime();
-                    gl2.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
-                    float delta = 0.2f;
-                    currentAzimuth += (targetAzimuth - currentAzimuth) * delta;
-                    currentElevation += (targetElevation - currentElevation) * delta;
-                    while (currentAzimuth > 360) currentAzimuth -= 360;
-                    while (currentAzimuth < 0) currentAzimuth += 360;
-                    currentElevation = Math.max(-80, Math.min(80, currentElevation));
-
-                    // Upload model VBO on GL thread (safe) when model changes
-                    if (vboDirty && pendingUploadModel != null) {
-                        try {
-                            uploadModelToVbo(gl2, pendingUploadModel);
-                            pendingUploadModel = null;
-                            vboDirty = false;
-                        } catch (Throwable e) {
-                            // If VBO upload fails, fall back to stub (better than hard crash)
-                            log.warn("VBO upload failed, switching to stub: {} - {}", e.getClass().getSimpleName(), e.getMessage());
-                            stubMode = true;
-                            return;
-                        }
-                    }
-
-                    gl2.glMatrixMode(GL2.GL_PROJECTION);
-                    gl2.glLoadIdentity();
-                    double camDistBase = Math.max(modelBoundingRadius * 2.8, 0.15);
-                    double camDist = camDistBase * cameraDistanceScale;
-                    double zNear = Math.max(camDist * 0.008, 0.01);
-                    double zFar = Math.max(camDist * 50.0, modelBoundingRadius * 30.0 + 50.0);
-                    glu.gluPerspective(45.0, (double) renderWidth / renderHeight, zNear, zFar);
-                    gl2.glMatrixMode(GL2.GL_MODELVIEW);
-                    gl2.glLoadIdentity();
-
-                    double az = Math.toRadians(currentAzimuth);
-                    double el = Math.toRadians(currentElevation);
-                    double x = camDist * Math.cos(el) * Math.sin(az);
-                    double y = camDist * Math.sin(el);
-                    double z = camDist * Math.cos(el) * Math.cos(az);
-                    // После glTranslate(-center) модель в начале координат — смотреть на (0,0,0), не на centerX/Y/Z в OBJ.
-                    glu.gluLookAt(x, y, z, 0, 0, 0, 0, 1, 0);
-
-                    if (currentModel != null && vboId != 0 && vboVertexCount > 0) {
-                        gl2.glPushMatrix();
-                        gl2.glTranslatef(-centerX, -centerY, -centerZ);
-                        gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, vboId);
-                        gl2.glEnableClientState(GL2.GL_NORMAL_ARRAY);
-                        gl2.glEnableClientState(GL2.GL_VERTEX_ARRAY);
-                        gl2.glNormalPointer(GL.GL_FLOAT, VBO_STRIDE_BYTES, 0L);
-                        gl2.glVertexPointer(3, GL.GL_FLOAT, VBO_STRIDE_BYTES, (long) (3 * BYTES_PER_FLOAT));
-                        gl2.glDrawArrays(GL.GL_TRIANGLES, 0, vboVertexCount);
-                        gl2.glDisableClientState(GL2.GL_VERTEX_ARRAY);
-                        gl2.glDisableClientState(GL2.GL_NORMAL_ARRAY);
-                        gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
-                        gl2.glPopMatrix();
-                    }
-
-                    gl2.glReadBuffer(GL.GL_BACK);
-                    gl2.glReadPixels(0, 0, renderWidth, renderHeight, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, pixelBuffer);
-                    pixelBuffer.rewind();
-                    needsRender = false;
-                    framesRendered++;
-                    if (framesRendered == 1 || framesRendered % 120 == 0) {
-                        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
-                        log.debug("Render frame done: {}x{} ms={} az={} el={} faces={} verts={} vboVerts={}",
-                                renderWidth, renderHeight, ms, currentAzimuth, currentElevation,
-                                currentModel != null ? currentModel.getNumFaces() : 0,
-                                currentModel != null ? currentModel.getNumVertices() : 0,
-                                vboVertexCount);
-                    }
-                    synchronized (renderLock) {
-                        renderComplete = true;
-                        renderLock.notifyAll();
-                    }
-                }
+    private double residentModelCount() {
+        if (!remoteWorkers) return currentModelId != null ? 1 : 0;
+        if (workerPool == null) return 0;
+        return workerPool.stats().stream()
+                .map(RenderWorkerStats::getResidentModelId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .count();
+    }
 
-                @Override
-                public void reshape(GLAutoDrawable d, int x, int y, int width, int height) {
-                    GL gl = d.getGL();
-                    if (gl instanceof GL2 gl2) gl2.glViewport(0, 0, width, height);
-                }
-            });
+    private RenderBackend startBackend() {
+        String requested = renderBackend == null ? "auto" : renderBackend.trim().toLowerCase(Locale.ROOT);
+        RenderBackend gpu = switch (requested) {
+            case "software" -> null;
+            case "lwjgl" -> new LwjglEglRenderBackend(renderGlSamples);
+            case "jogl", "auto" -> new JoglRenderBackend(renderGlSamples);
+            default -> {
+                log.warn("Unknown render.backend='{}', using auto", renderBackend);
+                yield new JoglRenderBackend(renderGlSamples);
+            }
+        };
+        if (gpu != null) {
+            try {
+                gpu.init(renderWidth, renderHeight);
+                log.info("Render backend: {} ({}x{})", gpu.name(), renderWidth, renderHeight);
+                softwareMode = false;
+                return gpu;
+            } catch (Throwable e) {
+                log.warn("{} render backend init failed, using software rasterizer: {}", gpu.name(), e.toString());
+                gpu.close();
+            }
+        }
+        return startSoftwareBackend();
+    }
 
-            glu = new GLU();
-            int fps = Math.max(1, Math.min(60, renderStreamFps));
-            animator = new FPSAnimator(drawable, fps);
-            animator.start();
-            log.info("Render animator started at {} FPS ({}x{})", fps, renderWidth, renderHeight);
+    private RenderBackend startSoftwareBackend() {
+        SoftwareRenderBackend software = new SoftwareRenderBackend(softwareThreads, softwareTileSize);
+        software.init(renderWidth, renderHeight);
+        softwareMode = true;
+        log.info("Software rasterizer started: {} threads, {}x{}", software.threads(), renderWidth, renderHeight);
+        return software;
+    }
 
-            long start = System.currentTimeMillis();
-            while (!isInitialized && System.currentTimeMillis() - start < 5000) Thread.sleep(100);
-            if (!isInitialized) throw new RuntimeException("Failed to initialize OpenGL context");
-        } catch (Throwable e) {
-            log.warn("OpenGL init failed, using stub: {}", e.toString());
-            stubMode = true;
-        }
+    /** Дистанция камеры до центра модели — общая для всех бэкендов. */
+    private double cameraDistance() {
+        return Math.max(modelBoundingRadius * 2.8, 0.15) * cameraDistanceScale;
     }
 
-    private void logGlInfoOnce(GL2 gl2) {
-        if (glInfoLogged) return;
-        glInfoLogged = true;
-        String vendor = safeGlString(gl2, GL2.GL_VENDOR);
-        String renderer = safeGlString(gl2, GL2.GL_RENDERER);
-        String version = safeGlString(gl2, GL2.GL_VERSION);
-        String sl = safeGlString(gl2, GL2.GL_SHADING_LANGUAGE_VERSION);
-        log.info("OpenGL context initialized. vendor='{}' renderer='{}' version='{}' glsl='{}'",
-                vendor, renderer, version, sl);
+    private static double nearPlane(double camDist) {
+        return Math.max(camDist * 0.008, 0.01);
     }
 
-    private String safeGlString(GL2 gl2, int what) {
-        try { return gl2.glGetString(what); } catch (Throwable t) { return null; }
+    private double farPlane(double camDist) {
+        return Math.max(camDist * 50.0, modelBoundingRadius * 30.0 + 50.0);
     }
 
     @PreDestroy
     private void shutdownRenderer() {
-        if (animator != null && animator.isStarted()) animator.stop();
-        if (drawable != null) drawable.destroy();
+        if (backend != null) backend.close();
     }
 
     private void ensurePixelBufferCapacity() {
@@ -350,35 +258,40 @@ public class RenderService {
         }
     }
 
-    private void deleteVbo(GL2 gl2) {
-        if (vboId != 0) {
-            try {
-                gl2.glDeleteBuffers(1, new int[]{vboId}, 0);
-            } catch (Throwable ignored) { }
-            vboId = 0;
-            vboVertexCount = 0;
+    /**
+     * Отдать сетку текущей модели бэкенду. GPU-бэкенд, не принявший её (нехватка видеопамяти, ошибка драйвера),
+     * заменяется софтверным — лучше медленный кадр, чем никакого.
+     */
+    private void uploadCurrentModel() throws IOException {
+        FloatBuffer interleaved = buildInterleavedNormalPosBuffer(currentModel);
+        int vertexCount = interleaved.remaining() / FLOATS_PER_VERTEX;
+        MeshUploadEvent event = new MeshUploadEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        try {
+            backend.loadMesh(interleaved, vertexCount);
+        } catch (IOException | RuntimeException e) {
+            if (softwareMode) throw e;
+            log.warn("VBO upload failed, switching to software rendering: {} - {}", e.getClass().getSimpleName(), e.getMessage());
+            RenderBackend failed = backend;
+            backend = startSoftwareBackend();
+            failed.close();
+            backend.loadMesh(interleaved, vertexCount);
+            event.softwareFallback = true;
+        }
+        metrics.record(RenderMetrics.Stage.UPLOAD, System.nanoTime() - t0);
+        event.end();
+        if (event.shouldCommit()) {
+            event.modelId = currentModelId;
+            event.backend = backend.name();
+            event.vertexCount = vertexCount;
+            event.bytes = (long) interleaved.remaining() * BYTES_PER_FLOAT;
+            event.commit();
         }
     }
 
-    private void uploadModelToVbo(GL2 gl2, Obj model) {
-        if (model == null) return;
-        // (Re)create VBO for current model
-        deleteVbo(gl2);
-        FloatBuffer interleaved = buildInterleavedNormalPosBuffer(model);
-        int verts = interleaved.remaining() / FLOATS_PER_VERTEX;
-        if (verts <= 0) throw new IllegalStateException("No vertices for VBO");
-
-        int[] ids = new int[1];
-        gl2.glGenBuffers(1, ids, 0);
-        vboId = ids[0];
-        gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, vboId);
-        gl2.glBufferData(GL.GL_ARRAY_BUFFER, (long) interleaved.remaining() * BYTES_PER_FLOAT, interleaved, GL.GL_STATIC_DRAW);
-        gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
-        vboVertexCount = verts;
-        log.info("VBO uploaded: id={} vertices={} (triangles={})", vboId, vboVertexCount, vboVertexCount / 3);
-    }
-
-    private FloatBuffer buildInterleavedNormalPosBuffer(Obj model) {
+    /** Чередующийся буфер nx, ny, nz, x, y, z с нормалью грани, n-угольники — веером. Статичен ради JMH-замеров. */
+    static FloatBuffer buildInterleavedNormalPosBuffer(Obj model) {
         // Conservative estimate: fan-triangulate polygons (n-2 triangles)
         long triCount = 0;
         for (int i = 0; i < model.getNumFaces(); i++) {
@@ -436,7 +349,7 @@ public class RenderService {
         return fb;
     }
 
-    private void putVertex(FloatBuffer fb, float nx, float ny, float nz, FloatTuple v) {
+    private static void putVertex(FloatBuffer fb, float nx, float ny, float nz, FloatTuple v) {
         fb.put(nx).put(ny).put(nz);
         fb.put(v.getX()).put(v.getY()).put(v.getZ());
     }
@@ -462,15 +375,31 @@ public class RenderService {
         }
     }
 
+    /** Центр AABB и половина его диагонали. */
+    record ModelBounds(float centerX, float centerY, float centerZ, float radius) { }
+
     private void updateModelBounds() {
         if (currentModel == null) {
             loadedModelTriangleCount = 0;
             return;
         }
+        ModelBounds bounds = computeModelBounds(currentModel);
+        centerX = bounds.centerX();
+        centerY = bounds.centerY();
+        centerZ = bounds.centerZ();
+        modelBoundingRadius = bounds.radius();
+        loadedModelTriangleCount = countTriangles(currentModel);
+        rememberTriangleCount(currentModelId, loadedModelTriangleCount);
+        if (adaptiveHeavyModel && loadedModelTriangleCount > 400_000) {
+            log.info("Тяжёлая сетка: {} тр. — при вращении включено адаптивное превью (меньше лагов)", loadedModelTriangleCount);
+        }
+    }
+
+    static ModelBounds computeModelBounds(Obj model) {
         float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
         float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
-        for (int i = 0; i < currentModel.getNumVertices(); i++) {
-            FloatTuple v = currentModel.getVertex(i);
+        for (int i = 0; i < model.getNumVertices(); i++) {
+            FloatTuple v = model.getVertex(i);
             minX = Math.min(minX, v.getX());
             minY = Math.min(minY, v.getY());
             minZ = Math.min(minZ, v.getZ());
@@ -478,24 +407,30 @@ public class RenderService {
             maxY = Math.max(maxY, v.getY());
             maxZ = Math.max(maxZ, v.getZ());
         }
-        centerX = (minX + maxX) / 2f;
-        centerY = (minY + maxY) / 2f;
-        centerZ = (minZ + maxZ) / 2f;
         float dx = maxX - minX;
         float dy = maxY - minY;
         float dz = maxZ - minZ;
         float diag = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
-        modelBoundingRadius = Math.max(diag * 0.5f, 1e-4f);
-        loadedModelTriangleCount = countTriangles(currentModel);
-        if (adaptiveHeavyModel && loadedModelTriangleCount > 400_000) {
-            log.info("Тяжёлая сетка: {} тр. — при вращении включено адаптивное превью (меньше лагов)", loadedModelTriangleCount);
+        return new ModelBounds((minX + maxX) / 2f, (minY + maxY) / 2f, (minZ + maxZ) / 2f, Math.max(diag * 0.5f, 1e-4f));
+    }
+
+    private void rememberTriangleCount(String objectKey, long triangles) {
+        if (objectKey == null) return;
+        if (!modelTriangleCounts.containsKey(objectKey) && modelTriangleCounts.size() >= MAX_TRIANGLE_COUNT_ENTRIES) {
+            Iterator<String> it = modelTriangleCounts.keySet().iterator();
+            if (it.hasNext()) modelTriangleCounts.remove(it.next());
         }
+        modelTriangleCounts.put(objectKey, triangles);
+    }
+
+    /** Треугольников в модели по последней её загрузке; 0 — модель ещё не грузилась (эвристики как для лёгкой). */
+    private long triangleCount(String objectKey) {
+        return objectKey != null ? modelTriangleCounts.getOrDefault(objectKey, 0L) : 0;
     }
 
-    private int effectiveAngleStepDeg() {
+    private int effectiveAngleStepDeg(long n) {
         if (!adaptiveHeavyModel) return Math.max(1, angleStepDeg);
         int base = Math.max(1, angleStepDeg);
-        long n = loadedModelTriangleCount;
         if (n > 3_500_000L) return Math.max(base, 12);
         if (n > 2_000_000L) return Math.max(base, 8);
         if (n > 1_000_000L) return Math.max(base, 6);
@@ -504,12 +439,11 @@ public class RenderService {
         return base;
     }
 
-    private double effectivePreviewScale(boolean finalFrame) {
+    private double effectivePreviewScale(boolean finalFrame, long n) {
         if (finalFrame || !adaptiveHeavyModel) {
             return Math.min(1.0, Math.max(0.25, previewScale));
         }
         double ps = Math.min(1.0, Math.max(0.25, previewScale));
-        long n = loadedModelTriangleCount;
         if (n > 3_500_000L) return Math.min(ps, 0.26);
         if (n > 2_000_000L) return Math.min(ps, 0.34);
         if (n > 1_000_000L) return Math.min(ps, 0.45);
@@ -518,11 +452,10 @@ public class RenderService {
         return ps;
     }
 
-    private float effectivePreviewJpegQuality(boolean finalFrame) {
+    private float effectivePreviewJpegQuality(boolean finalFrame, long n) {
         if (finalFrame) return Math.max(0.85f, jpegQuality);
         if (!adaptiveHeavyModel) return clampPreviewJpegQuality(previewJpegQuality);
         float q = clampPreviewJpegQuality(previewJpegQuality);
-        long n = loadedModelTriangleCount;
         if (n > 3_500_000L) return Math.min(q, 0.52f);
         if (n > 2_000_000L) return Math.min(q, 0.62f);
         if (n > 1_000_000L) return Math.min(q, 0.72f);
@@ -530,13 +463,30 @@ public class RenderService {
         return q;
     }
 
-    private int quantizeAngle(double angle) {
-        int step = effectiveAngleStepDeg();
+    private int quantizeAngle(String objectKey, double angle) {
+        return quantizeAngle(angle, effectiveAngleStepDeg(triangleCount(objectKey)));
+    }
+
+    /** Квантование угла с заданным шагом (шаг превью у каждой сессии свой — см. AdaptiveQualityController). */
+    public int quantizeAngle(double angle, int stepDeg) {
+        int step = Math.max(1, stepDeg);
         int a = (int) Math.round(angle / step) * step;
         return Math.max(-360, Math.min(360, a));
     }
 
-    private byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+    /** Параметры превью по прежней эвристике (число треугольников модели) — стартовая точка регулятора. */
+    public PreviewSettings defaultPreviewSettings(String objectKey) {
+        long n = triangleCount(objectKey);
+        return new PreviewSettings(effectivePreviewScale(false, n), effectivePreviewJpegQuality(false, n), effectiveAngleStepDeg(n));
+    }
+
+    /** Потолок превью, заданный оператором (render.preview.*, render.angle.step.deg). */
+    public PreviewSettings maxPreviewSettings() {
+        return new PreviewSettings(Math.min(1.0, Math.max(0.25, previewScale)),
+                clampPreviewJpegQuality(previewJpegQuality), Math.max(1, angleStepDeg));
+    }
+
+    static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
         Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
         if (!writers.hasNext()) throw new IOException("No JPEG writers available");
         ImageWriter writer = writers.next();
@@ -558,12 +508,14 @@ public class RenderService {
         return Math.min(0.95f, Math.max(0.35f, q));
     }
 
-    /** GL readPixels — нижний ряд первый; в BufferedImage Y сверху вниз. */
-    private void fillRgbFromGlReadBuffer(BufferedImage dst) {
-        int w = renderWidth;
-        int h = renderHeight;
+    /**
+     * GL readPixels — нижний ряд первый; в BufferedImage Y сверху вниз. src — pixelBuffer своего контекста
+     * или слот воркера в общей памяти: пиксели читаются оттуда сразу в растр, без промежуточной копии.
+     */
+    static void fillRgbFromGlReadBuffer(ByteBuffer pb, BufferedImage dst) {
+        int w = dst.getWidth();
+        int h = dst.getHeight();
         int[] pixels = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
-        ByteBuffer pb = pixelBuffer;
         for (int y = 0; y < h; y++) {
             int srcRow = (h - 1 - y) * w * 4;
             int dstRow = y * w;
@@ -574,223 +526,388 @@ public class RenderService {
         }
     }
 
-    private byte[] renderStubJpeg(String objectKey, double azimuth, double elevation) throws IOException {
-        BufferedImage bi = new BufferedImage(Math.max(1, renderWidth), Math.max(1, renderHeight), BufferedImage.TYPE_INT_RGB);
-        java.awt.Graphics2D g = bi.createGraphics();
-        g.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setColor(new java.awt.Color(15, 15, 20));
-        g.fillRect(0, 0, renderWidth, renderHeight);
-        g.setColor(new java.awt.Color(180, 180, 190));
-        g.setFont(new java.awt.Font("SansSerif", java.awt.Font.BOLD, 18));
-        g.drawString("Stub Render", 20, 30);
-        g.drawString("object: " + objectKey, 20, 55);
-        g.drawString(String.format("az=%.1f el=%.1f", azimuth, elevation), 20, 75);
-        g.dispose();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(bi, "jpeg", baos);
-        return baos.toByteArray();
-    }
-
     public byte[] renderModel(String objectKey, InputStream modelStream, String fileType, double azimuth, double elevation) throws IOException {
-        if (stubMode || !isInitialized) return renderStubJpeg(objectKey, azimuth, elevation);
         ensurePixelBufferCapacity();
-        int qAz = quantizeAngle(azimuth);
-        int qEl = quantizeAngle(elevation);
-        String cacheKey = objectKey + ":" + qAz + ":" + qEl + ":" + renderWidth + "x" + renderHeight + zoomCacheSuffix();
+        int qAz = quantizeAngle(objectKey, azimuth);
+        int qEl = quantizeAngle(objectKey, elevation);
+        // HTTP-превью в каталоге — всегда без зума
+        String cacheKey = renderCacheKey(objectKey, qAz, qEl, DEFAULT_ZOOM);
         byte[] cached = renderCache.get(cacheKey);
+        recordCacheLookup(objectKey, cacheKey, cached != null);
         if (cached != null) return cached;
 
+        return renderSingleFlight(cacheKey, () -> renderFullFrame(objectKey, modelStream, cacheKey, qAz, qEl)).getJpeg();
+    }
+
+    private void recordCacheLookup(String objectKey, String cacheKey, boolean hit) {
+        if (hit) {
+            metrics.cacheHit();
+        } else {
+            metrics.cacheMiss();
+        }
+        RenderCacheEvent event = new RenderCacheEvent();
+        if (event.shouldCommit()) {
+            event.modelId = objectKey;
+            event.cacheKey = cacheKey;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    private RenderedFrame renderFullFrame(String objectKey, InputStream modelStream, String cacheKey, int qAz, int qEl) throws IOException {
+        long t0 = System.nanoTime();
+        FrameTrace trace = new FrameTrace(objectKey, null, true, jpegQuality);
+        BufferedImage image;
+        long tRender0;
+        // HTTP-рендер (превью в каталоге) приравнивается к финальному кадру: не вытесняется превью сессий
+        try (RenderQueue.Ticket ticket = renderQueue.admit(null, true)) {
+            renderQueue.await(ticket);
+            tRender0 = System.nanoTime();
+            metrics.record(RenderMetrics.Stage.QUEUE, tRender0 - t0);
+            image = renderToImage(objectKey, modelStream, qAz, qEl, DEFAULT_ZOOM, trace);
+        }
+        long tEncode0 = System.nanoTime();
+        byte[] out = encodeTraced(image, jpegQuality, trace);
+        metrics.record(RenderMetrics.Stage.ENCODE, System.nanoTime() - tEncode0);
+        if (renderCache.size() >= maxCacheEntries) {
+            Iterator<String> it = renderCache.keySet().iterator();
+            if (it.hasNext()) renderCache.remove(it.next());
+        }
+        renderCache.put(cacheKey, out);
+        return new RenderedFrame(out, tRender0 - t0, tEncode0 - tRender0, System.nanoTime() - tEncode0, false);
+    }
+
+    /**
+     * Загрузка модели (при смене), один кадр GL и копия readback в BufferedImage.
+     * Вызывать только с билетом RenderQueue: GL-контекст и pixelBuffer один на процесс.
+     * С воркерами билет означает свободный воркер; модель он берёт из MinIO сам, modelStream не нужен.
+     */
+    private BufferedImage renderToImage(String objectKey, InputStream modelStream, int qAz, int qEl, double zoom,
+                                        FrameTrace trace) throws IOException {
+        BufferedImage full = new BufferedImage(renderWidth, renderHeight, BufferedImage.TYPE_INT_RGB);
+        if (remoteWorkers) {
+            FramePhaseEvent renderEvent = FrameTrace.begin();
+            long t0 = System.nanoTime();
+            try (WorkerFrame frame = workerPool.render(objectKey, qAz, qEl, clampZoom(zoom))) {
+                // Сетку грузит воркер — число треугольников для эвристик качества приходит в его ответе
+                long triangles = frame.triangleCount();
+                rememberTriangleCount(objectKey, triangles);
+                long tConvert0 = System.nanoTime();
+                metrics.record(RenderMetrics.Stage.RENDER, tConvert0 - t0);
+                trace.commit(renderEvent, "render", "worker", renderWidth, renderHeight, triangles);
+                FramePhaseEvent convertEvent = FrameTrace.begin();
+                fillRgbFromGlReadBuffer(frame.pixels(), full);
+                metrics.record(RenderMetrics.Stage.CONVERT, System.nanoTime() - tConvert0);
+                trace.commit(convertEvent, "convert", "worker", renderWidth, renderHeight, triangles);
+            }
+            return full;
+        }
+        renderFrame(objectKey, modelStream, qAz, qEl, zoom, trace);
+        FramePhaseEvent convertEvent = FrameTrace.begin();
+        long tConvert0 = System.nanoTime();
+        fillRgbFromGlReadBuffer(pixelBuffer, full);
+        metrics.record(RenderMetrics.Stage.CONVERT, System.nanoTime() - tConvert0);
+        trace.commit(convertEvent, "convert", backend.name(), renderWidth, renderHeight, loadedModelTriangleCount);
+        return full;
+    }
+
+    /** JPEG с событием стадии encode. */
+    private static byte[] encodeTraced(BufferedImage image, float quality, FrameTrace trace) throws IOException {
+        FramePhaseEvent event = FrameTrace.begin();
+        byte[] out = encodeJpeg(image, quality);
+        trace.commit(event, "encode", null, image.getWidth(), image.getHeight(), 0, out.length);
+        return out;
+    }
+
+    /**
+     * Кадр для render-воркера: RGBA снизу вверх, как отдаёт glReadPixels, прямо в target — слот кольца
+     * в общей памяти, который веб-процесс читает без копирования. Задания воркер выполняет по одному.
+     */
+    public void renderRawFrame(String objectKey, InputStream modelStream, int qAz, int qEl, double zoom,
+                               ByteBuffer target) throws IOException {
+        readbackTarget = target;
+        try {
+            renderFrame(objectKey, modelStream, qAz, qEl, zoom, new FrameTrace(objectKey, null, false, 0));
+        } finally {
+            readbackTarget = null;
+        }
+    }
+
+    /** Загрузить модель при смене, выставить камеру и получить кадр от бэкенда в readback-буфере. */
+    private void renderFrame(String objectKey, InputStream modelStream, int qAz, int qEl, double zoom,
+                             FrameTrace trace) throws IOException {
         if (!objectKey.equals(currentModelId)) {
-            currentModel = ObjReader.read(modelStream);
-            if (currentModel.getNumFaces() == 0 || currentModel.getNumVertices() == 0)
-                throw new IOException("Модель не содержит вершин или граней");
-            validateTriangleBudget(currentModel);
-            currentModelId = objectKey;
-            updateModelBounds();
-            pendingUploadModel = currentModel;
-            vboDirty = true;
-            renderCache.clear();
+            if (modelStream == null) {
+                throw new IOException("Поток модели обязателен при первой загрузке объекта: " + objectKey);
+            }
+            switchModel(objectKey, modelStream);
         }
 
         targetAzimuth = qAz;
         targetElevation = qEl;
+        // Камера ровно на квантованном углу: для JPEG по WS кадр должен совпадать с ключом кэша
         currentAzimuth = qAz;
         currentElevation = qEl;
         while (currentAzimuth > 360f) currentAzimuth -= 360f;
         while (currentAzimuth < 0f) currentAzimuth += 360f;
         currentElevation = Math.max(-80f, Math.min(80f, currentElevation));
+        cameraDistanceScale = clampZoom(zoom);
+        drawCurrentView(trace);
+    }
 
-        needsRender = true;
-        synchronized (renderLock) {
-            renderComplete = false;
-            while (!renderComplete) {
-                try { renderLock.wait(10); } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Interrupted", e);
-                }
+    private void switchModel(String objectKey, InputStream modelStream) throws IOException {
+        ModelLoadEvent event = new ModelLoadEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        currentModel = ObjReader.read(modelStream);
+        metrics.record(RenderMetrics.Stage.PARSE, System.nanoTime() - t0);
+        metrics.modelSwitched();
+        if (currentModel.getNumFaces() == 0 || currentModel.getNumVertices() == 0)
+            throw new IOException("Модель не содержит вершин или граней");
+        validateTriangleBudget(currentModel);
+        currentModelId = objectKey;
+        updateModelBounds();
+        event.end();
+        if (event.shouldCommit()) {
+            event.modelId = objectKey;
+            event.vertices = currentModel.getNumVertices();
+            event.faces = currentModel.getNumFaces();
+            event.triangles = loadedModelTriangleCount;
+            event.commit();
+        }
+        renderCache.clear();
+        uploadCurrentModel();
+    }
+
+    /** Нарисовать текущую модель под currentAzimuth/currentElevation и прочитать кадр (формат glReadPixels). */
+    private void drawCurrentView(FrameTrace trace) throws IOException {
+        FramePhaseEvent renderEvent = FrameTrace.begin();
+        long t0 = System.nanoTime();
+        double camDist = cameraDistance();
+        RenderView view = new RenderView(currentAzimuth, currentElevation, camDist, nearPlane(camDist), farPlane(camDist),
+                FIELD_OF_VIEW_DEG, centerX, centerY, centerZ, backFaceCulling);
+        RenderBackend current = backend;
+        current.drawView(view);
+        long tRead0 = System.nanoTime();
+        metrics.record(RenderMetrics.Stage.RENDER, tRead0 - t0);
+        trace.commit(renderEvent, "render", current.name(), renderWidth, renderHeight, loadedModelTriangleCount);
+        FramePhaseEvent readbackEvent = FrameTrace.begin();
+        current.readPixels(readbackTarget != null ? readbackTarget : pixelBuffer);
+        metrics.record(RenderMetrics.Stage.READBACK, System.nanoTime() - tRead0);
+        trace.commit(readbackEvent, "readback", current.name(), renderWidth, renderHeight, loadedModelTriangleCount);
+        framesRendered++;
+        if (framesRendered == 1 || framesRendered % 120 == 0) {
+            log.debug("Render frame done: backend={} {}x{} ms={} az={} el={} triangles={}", current.name(),
+                    renderWidth, renderHeight, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0),
+                    currentAzimuth, currentElevation, loadedModelTriangleCount);
+        }
+    }
+
+    /** Множитель дистанции камеры из запроса (клиент: zoom в WebSocket), в допустимых пределах. */
+    static double clampZoom(double zoom) {
+        if (Double.isNaN(zoom) || Double.isInfinite(zoom)) return DEFAULT_ZOOM;
+        return Math.max(0.2, Math.min(5.0, zoom));
+    }
+
+    private String renderCacheKey(String objectKey, int qAz, int qEl, double zoom) {
+        return objectKey + ":" + qAz + ":" + qEl + ":" + renderWidth + "x" + renderHeight
+                + ":z" + Math.round(clampZoom(zoom) * 100.0);
+    }
+
+    @FunctionalInterface
+    private interface FrameProducer {
+        RenderedFrame produce() throws IOException;
+    }
+
+    /**
+     * Первый запрос с данным ключом рендерит сам, остальные ждут его результат (и ошибку тоже).
+     * Исключение — лидера вытеснило более свежее превью его же сессии: это не отказ для ожидающих, они
+     * заходят заново и один из них становится лидером.
+     * Запись удаляется сразу после завершения — дальше кадр берётся из renderCache.
+     */
+    private RenderedFrame renderSingleFlight(String flightKey, FrameProducer producer) throws IOException {
+        while (true) {
+            CompletableFuture<RenderedFrame> flight = new CompletableFuture<>();
+            CompletableFuture<RenderedFrame> leader = inFlightRenders.putIfAbsent(flightKey, flight);
+            if (leader == null) return leadFlight(flightKey, flight, producer);
+            try {
+                return awaitInFlight(leader);
+            } catch (RenderRejectedException e) {
+                if (e.getReason() != RenderRejectedException.Reason.SUPERSEDED) throw e;
             }
         }
+    }
 
-        BufferedImage image = new BufferedImage(renderWidth, renderHeight, BufferedImage.TYPE_INT_RGB);
-        fillRgbFromGlReadBuffer(image);
-        byte[] out = encodeJpeg(image, jpegQuality);
-        if (renderCache.size() >= maxCacheEntries) {
-            Iterator<String> it = renderCache.keySet().iterator();
-            if (it.hasNext()) renderCache.remove(it.next());
+    private RenderedFrame leadFlight(String flightKey, CompletableFuture<RenderedFrame> flight,
+                                     FrameProducer producer) throws IOException {
+        try {
+            RenderedFrame out = producer.produce();
+            flight.complete(out);
+            return out;
+        } catch (Throwable e) {
+            // Ожидающие не должны зависнуть и при Error (OOM на огромной сетке и т.п.)
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightRenders.remove(flightKey, flight);
         }
-        renderCache.put(cacheKey, out);
-        return out;
     }
 
-    /** Множитель дистанции камеры для серверного рендера (клиент: zoom в WebSocket). */
-    public void setCameraDistanceScale(double scale) {
-        if (Double.isNaN(scale) || Double.isInfinite(scale)) return;
-        if (scale < 0.2) scale = 0.2;
-        if (scale > 5.0) scale = 5.0;
-        this.cameraDistanceScale = scale;
+    private static RenderedFrame awaitInFlight(CompletableFuture<RenderedFrame> leader) throws IOException {
+        long t0 = System.nanoTime();
+        try {
+            // Для этого запроса «рендер» — ожидание чужого кадра; кодирование уже сделано лидером
+            return new RenderedFrame(leader.get().getJpeg(), 0, System.nanoTime() - t0, 0, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException("Shared render failed: " + cause, cause);
+        }
+    }
+
+    /** Треугольников в модели, загруженной последней (в воркере — в его GL-контекст). */
+    public long loadedTriangleCount() {
+        return loadedModelTriangleCount;
     }
 
-    private String zoomCacheSuffix() {
-        return ":z" + Math.round(cameraDistanceScale * 100.0);
+    /** Модель, загруженная сейчас в GL-контекст (null — нет); узел сообщает её координатору кластера. */
+    public String residentModelId() {
+        if (remoteWorkers) return workerPool != null ? workerPool.lastResidentModelId() : null;
+        return currentModelId;
     }
 
-    /** Модель уже в памяти и на GPU — повторно тянуть объект из MinIO не нужно (снижает нагрузку на S3). */
+    /**
+     * Модель уже в памяти и на GPU — повторно тянуть объект из MinIO не нужно (снижает нагрузку на S3).
+     * С воркерами поток модели не нужен никогда: воркер читает объект сам.
+     */
     public boolean isModelLoaded(String objectKey) {
-        return objectKey != null && objectKey.equals(currentModelId) && currentModel != null && !stubMode && isInitialized;
+        if (remoteWorkers) return objectKey != null;
+        return objectKey != null && objectKey.equals(currentModelId) && currentModel != null && backend != null;
     }
 
-    public byte[] renderModelAdaptive(String objectKey, InputStream modelStream, String fileType, double azimuth, double elevation, boolean finalFrame) throws IOException {
-        if (stubMode || !isInitialized) return renderStubJpeg(objectKey, azimuth, elevation);
+    /**
+     * Кадр для WebSocket-вращения. sessionId — ключ потока в RenderQueue: новое превью сессии вытесняет
+     * её же ещё не начатое. При переполнении очереди бросается {@link RenderRejectedException}.
+     * zoom — множитель дистанции камеры этого запроса: входит в ключ кэша и уходит в задание рендера,
+     * общего состояния между сессиями нет.
+     * preview — параметры превью от регулятора сессии; null = эвристика по модели. Финальный кадр их не использует.
+     */
+    public RenderedFrame renderModelAdaptive(String sessionId, String objectKey, InputStream modelStream, String fileType,
+                                             double azimuth, double elevation, double zoom, boolean finalFrame,
+                                             PreviewSettings preview) throws IOException {
         long tAll0 = System.nanoTime();
         ensurePixelBufferCapacity();
-        int qAz = quantizeAngle(azimuth);
-        int qEl = quantizeAngle(elevation);
+        PreviewSettings settings = finalFrame || preview == null ? defaultPreviewSettings(objectKey) : preview;
+        int step = finalFrame ? effectiveAngleStepDeg(triangleCount(objectKey)) : settings.getAngleStepDeg();
+        int qAz = quantizeAngle(azimuth, step);
+        int qEl = quantizeAngle(elevation, step);
+        String key = renderCacheKey(objectKey, qAz, qEl, zoom);
 
         if (finalFrame) {
-            String key = objectKey + ":" + qAz + ":" + qEl + ":" + renderWidth + "x" + renderHeight + zoomCacheSuffix();
             byte[] cached = renderCache.get(key);
-            if (cached != null) return cached;
+            recordCacheLookup(objectKey, key, cached != null);
+            if (cached != null) return RenderedFrame.cached(cached);
         }
 
-        if (!objectKey.equals(currentModelId)) {
-            if (modelStream == null) {
-                throw new IOException("Поток модели обязателен при первой загрузке объекта: " + objectKey);
-            }
-            currentModel = ObjReader.read(modelStream);
-            if (currentModel.getNumFaces() == 0 || currentModel.getNumVertices() == 0)
-                throw new IOException("Модель не содержит вершин или граней");
-            validateTriangleBudget(currentModel);
-            currentModelId = objectKey;
-            updateModelBounds();
-            pendingUploadModel = currentModel;
-            vboDirty = true;
-            renderCache.clear();
-        }
+        // Превью и финальный кадр одного ракурса кодируются по-разному — в полёте это разные ключи;
+        // превью разных сессий совпадают, только если совпали и их параметры.
+        String flightKey = finalFrame ? key : key + ":preview:" + Math.round(settings.getScale() * 100)
+                + ":" + Math.round(settings.getJpegQuality() * 100);
+        RenderedFrame out = renderSingleFlight(flightKey,
+                () -> renderAdaptiveFrame(objectKey, modelStream, key, sessionId, qAz, qEl, zoom, finalFrame, settings));
 
-        targetAzimuth = qAz;
-        targetElevation = qEl;
-        // Один кадр на запрос: без мгновенного совпадения current≈target сглаживание (20%/тик) даёт кадр «не там»
-        // и визуальные рывки при следующем target. Для JPEG по WS камера должна совпадать с квантованным углом.
-        currentAzimuth = qAz;
-        currentElevation = qEl;
-        while (currentAzimuth > 360f) currentAzimuth -= 360f;
-        while (currentAzimuth < 0f) currentAzimuth += 360f;
-        currentElevation = Math.max(-80f, Math.min(80f, currentElevation));
+        long allMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tAll0);
+        log.debug("Render adaptive: id={} final={} totalMs={} queueMs={} renderMs={} encodeMs={} outBytes={} az={} el={}",
+                objectKey, finalFrame, allMs, TimeUnit.NANOSECONDS.toMillis(out.getQueueNanos()),
+                TimeUnit.NANOSECONDS.toMillis(out.getRenderNanos()), TimeUnit.NANOSECONDS.toMillis(out.getEncodeNanos()),
+                out.getJpeg().length, qAz, qEl);
 
-        needsRender = true;
-        synchronized (renderLock) {
-            renderComplete = false;
-            while (!renderComplete) {
-                try {
-                    renderLock.wait(10);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Interrupted", e);
-                }
-            }
-        }
+        return out;
+    }
 
-        BufferedImage full = new BufferedImage(renderWidth, renderHeight, BufferedImage.TYPE_INT_RGB);
-        fillRgbFromGlReadBuffer(full);
+    private RenderedFrame renderAdaptiveFrame(String objectKey, InputStream modelStream, String key, String sessionId,
+                                              int qAz, int qEl, double zoom, boolean finalFrame,
+                                              PreviewSettings preview) throws IOException {
+        long t0 = System.nanoTime();
+        long tRender0;
+        BufferedImage full;
+        // Качество финального кадра зависит от настроек, не от регулятора
+        float quality = finalFrame ? effectivePreviewJpegQuality(true, 0) : preview.getJpegQuality();
+        FrameTrace trace = new FrameTrace(objectKey, sessionId, finalFrame, quality);
+        try (RenderQueue.Ticket ticket = renderQueue.admit(sessionId, finalFrame)) {
+            renderQueue.await(ticket);
+            tRender0 = System.nanoTime();
+            metrics.record(RenderMetrics.Stage.QUEUE, tRender0 - t0);
+            full = renderToImage(objectKey, modelStream, qAz, qEl, zoom, trace);
+        }
 
+        // Масштаб и JPEG — уже вне очереди: следующий запрос в это время рендерит на GL
+        long tEncode0 = System.nanoTime();
         BufferedImage toEncode = full;
-        float quality = effectivePreviewJpegQuality(finalFrame);
         if (!finalFrame) {
-            double scale = effectivePreviewScale(false);
-            int w = Math.max(1, (int) Math.round(renderWidth * scale));
-            int h = Math.max(1, (int) Math.round(renderHeight * scale));
-            BufferedImage scaled = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-            java.awt.Graphics2D g2 = scaled.createGraphics();
-            g2.setRenderingHint(java.awt.RenderingHints.KEY_INTERPOLATION, java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2.drawImage(full, 0, 0, w, h, null);
-            g2.dispose();
-            toEncode = scaled;
-        }
-
-        byte[] out = encodeJpeg(toEncode, quality);
+            FramePhaseEvent scaleEvent = FrameTrace.begin();
+            toEncode = scalePreview(full, preview.getScale());
+            metrics.record(RenderMetrics.Stage.SCALE, System.nanoTime() - tEncode0);
+            trace.commit(scaleEvent, "scale", null, toEncode.getWidth(), toEncode.getHeight(), 0);
+        }
+
+        long tJpeg0 = System.nanoTime();
+        byte[] out = encodeTraced(toEncode, quality, trace);
+        metrics.record(RenderMetrics.Stage.ENCODE, System.nanoTime() - tJpeg0);
         if (finalFrame) {
-            String key = objectKey + ":" + qAz + ":" + qEl + ":" + renderWidth + "x" + renderHeight + zoomCacheSuffix();
             if (renderCache.size() >= maxCacheEntries) {
                 Iterator<String> it = renderCache.keySet().iterator();
                 if (it.hasNext()) renderCache.remove(it.next());
             }
             renderCache.put(key, out);
         }
+        return new RenderedFrame(out, tRender0 - t0, tEncode0 - tRender0, System.nanoTime() - tEncode0, false);
+    }
 
-        long allMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tAll0);
-        log.debug("Render adaptive: id={} final={} totalMs={} outBytes={} az={} el={}",
-                objectKey, finalFrame, allMs, out.length, qAz, qEl);
-
-        return out;
+    /** Уменьшение кадра под превью (билинейно). */
+    static BufferedImage scalePreview(BufferedImage full, double scale) {
+        int w = Math.max(1, (int) Math.round(full.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(full.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(java.awt.RenderingHints.KEY_INTERPOLATION, java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(full, 0, 0, w, h, null);
+        g2.dispose();
+        return scaled;
     }
 
     public void loadModelIfNeeded(String objectKey, InputStream modelStream) throws IOException {
         if (!objectKey.equals(currentModelId)) {
-            currentModel = ObjReader.read(modelStream);
-            if (currentModel.getNumFaces() == 0 || currentModel.getNumVertices() == 0)
-                throw new IOException("Модель не содержит вершин или граней");
-            validateTriangleBudget(currentModel);
-            currentModelId = objectKey;
-            updateModelBounds();
-            needsRender = true;
+            switchModel(objectKey, modelStream);
             highQualityFrames = Math.max(highQualityFrames, 3);
-            pendingUploadModel = currentModel;
-            vboDirty = true;
-            renderCache.clear();
         }
     }
 
     public void updateAngles(double azimuth, double elevation, boolean highQualityNext) {
-        targetAzimuth = quantizeAngle(azimuth);
-        targetElevation = quantizeAngle(elevation);
-        needsRender = true;
+        targetAzimuth = quantizeAngle(currentModelId, azimuth);
+        targetElevation = quantizeAngle(currentModelId, elevation);
         if (highQualityNext) highQualityFrames = Math.max(highQualityFrames, 3);
     }
 
     public byte[] grabEncodedFrame() throws IOException {
-        if (stubMode || !isInitialized)
-            return renderStubJpeg(currentModelId != null ? currentModelId : "stub", currentAzimuth, currentElevation);
+        if (remoteWorkers) throw new IOException("Continuous frames are not available with render workers");
+        ensurePixelBufferCapacity();
         boolean highQuality = highQualityFrames > 0;
         if (highQualityFrames > 0) highQualityFrames--;
 
-        if (needsRender) {
-            synchronized (renderLock) {
-                long start = System.currentTimeMillis();
-                while (!renderComplete && System.currentTimeMillis() - start < 500) {
-                    try {
-                        renderLock.wait(10);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new IOException("Interrupted", e);
-                    }
-                }
-            }
-        }
+        // Анимации больше нет — кадр рисуется по запросу, сразу под целевой угол
+        currentAzimuth = targetAzimuth;
+        currentElevation = targetElevation;
+        float quality = highQuality ? Math.max(0.85f, jpegQuality) : effectivePreviewJpegQuality(false, loadedModelTriangleCount);
+        drawCurrentView(new FrameTrace(currentModelId, null, highQuality, quality));
 
         BufferedImage full = new BufferedImage(renderWidth, renderHeight, BufferedImage.TYPE_INT_RGB);
-        fillRgbFromGlReadBuffer(full);
+        fillRgbFromGlReadBuffer(pixelBuffer, full);
 
-        float quality = highQuality ? Math.max(0.85f, jpegQuality) : effectivePreviewJpegQuality(false);
         return encodeJpeg(full, quality);
     }
 
@@ -0,0 +1,25 @@
+package beckand.test.Service.render;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JPEG-кадр и замеры его стадий. Для кадра из кэша или чужого рендера в полёте (single-flight)
+ * времена — те, что видел этот запрос: ожидание результата попадает в renderNanos.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class RenderedFrame {
+    private final byte[] jpeg;
+    /** Ожидание билета RenderQueue. */
+    private final long queueNanos;
+    /** Загрузка модели (при смене), GL-кадр и readback. */
+    private final long renderNanos;
+    /** Масштабирование превью и JPEG. */
+    private final long encodeNanos;
+    private final boolean cacheHit;
+
+    static RenderedFrame cached(byte[] jpeg) {
+        return new RenderedFrame(jpeg, 0, 0, 0, true);
+    }
+}
@@ -0,0 +1,310 @@
+package beckand.test.Service.render.backend;
+
+import com.jogamp.nativewindow.AbstractGraphicsDevice;
+import com.jogamp.opengl.*;
+import com.jogamp.opengl.glu.GLU;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * JOGL GL2, фиксированный конвейер: VBO с чередующимися нормалями/позициями, два источника света,
+ * GL_COLOR_MATERIAL. Контекст — offscreen EGL, при его отсутствии — offscreen по умолчанию (GLX/Xvfb).
+ * <p>
+ * Раньше кадры рисовал FPSAnimator по флагу needsRender, а запрос ждал его сигнала. Теперь каждая операция —
+ * drawable.invoke(true, …) на собственном GL-потоке: без анимации JOGL выполняет её прямо в display() этого
+ * потока, без опроса и лишних кадров. Автосмена буферов выключена, поэтому readPixels читает GL_BACK
+ * того кадра, что нарисовал drawView.
+ */
+@Slf4j
+public final class JoglRenderBackend implements RenderBackend {
+
+    private static final int FLOATS_PER_VERTEX = 6;
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int VBO_STRIDE_BYTES = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    /** 0 отключает MSAA — нужно для Mesa/llvmpipe в Docker; для GPU можно 4–8 */
+    private final int samples;
+    private int width;
+    private int height;
+    private GLAutoDrawable drawable;
+    private GLU glu;
+    private ExecutorService glThread;
+    private volatile boolean initialized;
+    private int vboId;
+    private int vboVertexCount;
+
+    @FunctionalInterface
+    private interface GlTask {
+        void run(GL2 gl) throws Exception;
+    }
+
+    public JoglRenderBackend(int samples) {
+        this.samples = samples;
+    }
+
+    @Override
+    public String name() {
+        return "jogl";
+    }
+
+    @Override
+    public void init(int width, int height) throws Exception {
+        this.width = width;
+        this.height = height;
+        glThread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "gl-render");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            glThread.submit(() -> {
+                createDrawable();
+                drawable.display();
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            close();
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        }
+        if (!initialized) {
+            close();
+            throw new IllegalStateException("Failed to initialize OpenGL context");
+        }
+    }
+
+    private void createDrawable() throws Exception {
+        GLProfile.initSingleton();
+        boolean useXvfb = !"0".equals(System.getenv("USE_XVFB"));
+        log.info("Render init: USE_XVFB={} DISPLAY='{}' __EGL_VENDOR_LIBRARY_FILENAMES='{}'",
+                useXvfb ? "1" : "0",
+                System.getenv("DISPLAY"),
+                System.getenv("__EGL_VENDOR_LIBRARY_FILENAMES"));
+
+        GLProfile profile = GLProfile.get(GLProfile.GL2);
+        if (profile == null) throw new RuntimeException("GL2 profile is not available");
+
+        GLCapabilities capabilities = new GLCapabilities(profile);
+        boolean softwareGl = "1".equals(System.getenv("LIBGL_ALWAYS_SOFTWARE"));
+        capabilities.setHardwareAccelerated(!softwareGl);
+        capabilities.setDoubleBuffered(true);
+        capabilities.setDepthBits(24);
+        int msaa = Math.max(0, Math.min(16, samples));
+        capabilities.setSampleBuffers(msaa > 0);
+        capabilities.setNumSamples(msaa > 0 ? msaa : 0);
+        capabilities.setOnscreen(false);
+        log.info("GL capabilities: hardwareAccelerated={} msaaSamples={}", !softwareGl, msaa);
+
+        GLDrawableFactory factory;
+        try {
+            log.info("Attempting EGL offscreen context...");
+            Class<?> eglClass;
+            try {
+                eglClass = Class.forName("com.jogamp.opengl.egl.EGLDrawableFactory");
+            } catch (ClassNotFoundException ignored) {
+                eglClass = Class.forName("jogamp.opengl.egl.EGLDrawableFactory");
+            }
+
+            java.lang.reflect.Method getFactory = eglClass.getMethod("getEGLFactory");
+            factory = (GLDrawableFactory) getFactory.invoke(null);
+            if (factory != null) {
+                AbstractGraphicsDevice device = factory.getDefaultDevice();
+                DefaultGLCapabilitiesChooser chooser = new DefaultGLCapabilitiesChooser();
+                drawable = factory.createOffscreenAutoDrawable(device, capabilities, chooser, width, height);
+                log.info("Using EGL for headless GPU rendering");
+            }
+        } catch (Throwable e) {
+            log.warn("EGL not available, falling back to default offscreen: {} - {}", e.getClass().getSimpleName(), e.getMessage());
+            if (log.isDebugEnabled()) log.debug("EGL init failure", e);
+        }
+        if (drawable == null) {
+            if (!useXvfb) {
+                throw new RuntimeException("EGL init failed and USE_XVFB=0, refusing X11/GLX fallback");
+            }
+            factory = GLDrawableFactory.getFactory(profile);
+            drawable = factory.createOffscreenAutoDrawable(null, capabilities, null, width, height);
+        }
+        drawable.setAutoSwapBufferMode(false);
+        glu = new GLU();
+
+        drawable.addGLEventListener(new GLEventListener() {
+            @Override
+            public void init(GLAutoDrawable d) {
+                GL gl = d.getGL();
+                if (!(gl instanceof GL2 gl2)) throw new RuntimeException("GL2 is not available");
+                logGlInfo(gl2);
+                gl2.glClearColor(0.06f, 0.06f, 0.08f, 1.0f);
+                gl2.glEnable(GL2.GL_DEPTH_TEST);
+                gl2.glFrontFace(GL.GL_CCW);
+                gl2.glCullFace(GL.GL_BACK);
+                gl2.glEnable(GL2.GL_LIGHTING);
+                gl2.glEnable(GL2.GL_NORMALIZE);
+                gl2.glShadeModel(GL2.GL_SMOOTH);
+                gl2.glEnable(GL2.GL_LIGHT0);
+                gl2.glEnable(GL2.GL_LIGHT1);
+                gl2.glEnable(GL2.GL_COLOR_MATERIAL);
+                gl2.glColorMaterial(GL2.GL_FRONT_AND_BACK, GL2.GL_AMBIENT_AND_DIFFUSE);
+                gl2.glViewport(0, 0, width, height);
+                initialized = true;
+            }
+
+            @Override
+            public void dispose(GLAutoDrawable d) {
+                try {
+                    GL gl = d.getGL();
+                    if (gl instanceof GL2 gl2) deleteVbo(gl2);
+                } catch (Throwable ignored) { }
+                initialized = false;
+            }
+
+            @Override
+            public void display(GLAutoDrawable d) {
+                // Вся работа — в GLRunnable через invoke()
+            }
+
+            @Override
+            public void reshape(GLAutoDrawable d, int x, int y, int w, int h) {
+                GL gl = d.getGL();
+                if (gl instanceof GL2 gl2) gl2.glViewport(0, 0, w, h);
+            }
+        });
+    }
+
+    @Override
+    public void loadMesh(FloatBuffer interleaved, int vertexCount) throws IOException {
+        if (vertexCount <= 0) throw new IllegalStateException("No vertices for VBO");
+        onGlThread(gl -> {
+            deleteVbo(gl);
+            int[] ids = new int[1];
+            gl.glGenBuffers(1, ids, 0);
+            vboId = ids[0];
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vboId);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) vertexCount * VBO_STRIDE_BYTES, interleaved, GL.GL_STATIC_DRAW);
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+            int error = gl.glGetError();
+            if (error != GL.GL_NO_ERROR) {
+                deleteVbo(gl);
+                throw new IOException("VBO upload failed: GL error 0x" + Integer.toHexString(error));
+            }
+            vboVertexCount = vertexCount;
+            log.info("VBO uploaded: id={} vertices={} (triangles={})", vboId, vboVertexCount, vboVertexCount / 3);
+        });
+    }
+
+    @Override
+    public void drawView(RenderView view) throws IOException {
+        onGlThread(gl -> {
+            if (view.cullBackFaces()) gl.glEnable(GL2.GL_CULL_FACE);
+            else gl.glDisable(GL2.GL_CULL_FACE);
+            gl.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
+
+            gl.glMatrixMode(GL2.GL_PROJECTION);
+            gl.glLoadIdentity();
+            glu.gluPerspective(view.fovYDeg(), (double) width / height, view.zNear(), view.zFar());
+            gl.glMatrixMode(GL2.GL_MODELVIEW);
+            gl.glLoadIdentity();
+
+            double az = Math.toRadians(view.azimuthDeg());
+            double el = Math.toRadians(view.elevationDeg());
+            double x = view.distance() * Math.cos(el) * Math.sin(az);
+            double y = view.distance() * Math.sin(el);
+            double z = view.distance() * Math.cos(el) * Math.cos(az);
+            // После glTranslate(-center) модель в начале координат — смотреть на (0,0,0), не на centerX/Y/Z в OBJ.
+            glu.gluLookAt(x, y, z, 0, 0, 0, 0, 1, 0);
+
+            if (vboId != 0 && vboVertexCount > 0) {
+                gl.glPushMatrix();
+                gl.glTranslatef(-view.centerX(), -view.centerY(), -view.centerZ());
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vboId);
+                gl.glEnableClientState(GL2.GL_NORMAL_ARRAY);
+                gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+                gl.glNormalPointer(GL.GL_FLOAT, VBO_STRIDE_BYTES, 0L);
+                gl.glVertexPointer(3, GL.GL_FLOAT, VBO_STRIDE_BYTES, (long) (3 * BYTES_PER_FLOAT));
+                gl.glDrawArrays(GL.GL_TRIANGLES, 0, vboVertexCount);
+                gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+                gl.glDisableClientState(GL2.GL_NORMAL_ARRAY);
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+                gl.glPopMatrix();
+            }
+        });
+    }
+
+    @Override
+    public void readPixels(ByteBuffer target) throws IOException {
+        onGlThread(gl -> {
+            gl.glReadBuffer(GL.GL_BACK);
+            gl.glReadPixels(0, 0, width, height, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, target);
+            target.rewind();
+        });
+    }
+
+    @Override
+    public void close() {
+        if (glThread == null) return;
+        try {
+            glThread.submit(() -> {
+                if (drawable != null) drawable.destroy();
+            }).get();
+        } catch (Exception e) {
+            log.debug("GL drawable destroy failed: {}", e.toString());
+        }
+        glThread.shutdownNow();
+    }
+
+    /** Выполнить task на GL-потоке с текущим контекстом и дождаться; исключения task пробрасываются вызывающему. */
+    private void onGlThread(GlTask task) throws IOException {
+        Future<?> done = glThread.submit(() -> {
+            Throwable[] failure = new Throwable[1];
+            boolean ran = drawable.invoke(true, d -> {
+                try {
+                    task.run(d.getGL().getGL2());
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+                return true;
+            });
+            if (!ran) throw new IOException("GL drawable is not realized");
+            if (failure[0] instanceof Exception e) throw e;
+            if (failure[0] instanceof Error e) throw e;
+            return null;
+        });
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IOException("GL task failed: " + cause, cause);
+        }
+    }
+
+    private void deleteVbo(GL2 gl2) {
+        if (vboId != 0) {
+            try {
+                gl2.glDeleteBuffers(1, new int[]{vboId}, 0);
+            } catch (Throwable ignored) { }
+            vboId = 0;
+            vboVertexCount = 0;
+        }
+    }
+
+    private static void logGlInfo(GL2 gl2) {
+        log.info("OpenGL context initialized. vendor='{}' renderer='{}' version='{}' glsl='{}'",
+                safeGlString(gl2, GL2.GL_VENDOR), safeGlString(gl2, GL2.GL_RENDERER),
+                safeGlString(gl2, GL2.GL_VERSION), safeGlString(gl2, GL2.GL_SHADING_LANGUAGE_VERSION));
+    }
+
+    private static String safeGlString(GL2 gl2, int what) {
+        try { return gl2.glGetString(what); } catch (Throwable t) { return null; }
+    }
+}
@@ -0,0 +1,444 @@
+package beckand.test.Service.render.backend;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.egl.EGL;
+import org.lwjgl.egl.EGLCapabilities;
+import org.lwjgl.egl.EXTDeviceEnumeration;
+import org.lwjgl.egl.EXTPlatformBase;
+import org.lwjgl.egl.EXTPlatformDevice;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.Configuration;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.egl.EGL10.*;
+import static org.lwjgl.egl.EGL12.EGL_RENDERABLE_TYPE;
+import static org.lwjgl.egl.EGL12.eglBindAPI;
+import static org.lwjgl.egl.EGL14.EGL_OPENGL_API;
+import static org.lwjgl.egl.EGL14.EGL_OPENGL_BIT;
+import static org.lwjgl.egl.EGL15.*;
+import static org.lwjgl.opengl.GL33C.*;
+import static org.lwjgl.opengl.GL44C.GL_MAP_COHERENT_BIT;
+import static org.lwjgl.opengl.GL44C.GL_MAP_PERSISTENT_BIT;
+import static org.lwjgl.opengl.GL44C.glBufferStorage;
+
+/**
+ * LWJGL 3 + EGL без X-сервера: core profile (4.4, иначе 3.3), кадр рисуется в FBO шейдерами, а не
+ * фиксированным конвейером. Контекст и все вызовы GL — на одном собственном потоке.
+ * <p>
+ * Освещение повторяет GL2-бэкенд по умолчанию: 0.2 ambient + диффузный свет из камеры, цвет вершины белый.
+ * На 4.4 сетка лежит в неизменяемом буфере (glBufferStorage), а кадр читается через постоянно отображённый
+ * PBO: glReadPixels уходит асинхронно, после fence пиксели копируются из отображения в target одним memcpy.
+ * На 3.3 — обычный glReadPixels в target.
+ */
+@Slf4j
+public final class LwjglEglRenderBackend implements RenderBackend {
+
+    private static final int FLOATS_PER_VERTEX = 6;
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int VBO_STRIDE_BYTES = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+    private static final long READBACK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final String VERTEX_SHADER = """
+            #version 330 core
+            layout(location = 0) in vec3 aNormal;
+            layout(location = 1) in vec3 aPosition;
+            uniform mat4 uMvp;
+            uniform mat3 uNormalMatrix;
+            out float vShade;
+            void main() {
+                vec3 n = normalize(uNormalMatrix * aNormal);
+                vShade = min(0.2 + max(n.z, 0.0), 1.0);
+                gl_Position = uMvp * vec4(aPosition, 1.0);
+            }
+            """;
+
+    private static final String FRAGMENT_SHADER = """
+            #version 330 core
+            in float vShade;
+            out vec4 fragColor;
+            void main() {
+                fragColor = vec4(vec3(vShade), 1.0);
+            }
+            """;
+
+    /** 0 — без MSAA; иначе FBO с мультисэмплингом и resolve перед чтением. */
+    private final int samples;
+    private int width;
+    private int height;
+    private ExecutorService glThread;
+
+    private long display = EGL_NO_DISPLAY;
+    private long surface = EGL_NO_SURFACE;
+    private long context = EGL_NO_CONTEXT;
+    private boolean gl44;
+
+    private int program;
+    private int mvpLocation;
+    private int normalMatrixLocation;
+    private int vao;
+    private int vbo;
+    private int vertexCount;
+    private int drawFbo;
+    private int resolveFbo;
+    private int[] renderbuffers = new int[0];
+    private int pbo;
+    private ByteBuffer pboMapping;
+
+    @FunctionalInterface
+    private interface GlTask {
+        void run() throws Exception;
+    }
+
+    public LwjglEglRenderBackend(int samples) {
+        this.samples = Math.max(0, Math.min(16, samples));
+    }
+
+    @Override
+    public String name() {
+        return "lwjgl";
+    }
+
+    @Override
+    public void init(int width, int height) throws Exception {
+        this.width = width;
+        this.height = height;
+        glThread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "egl-render");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            onGlThread(() -> {
+                // Функции GL берутся через eglGetProcAddress, а не GLX
+                Configuration.OPENGL_CONTEXT_API.set("EGL");
+                createContext();
+                createPipeline();
+            });
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void createContext() {
+        display = initializeDisplay();
+        if (!eglBindAPI(EGL_OPENGL_API)) throw new IllegalStateException("eglBindAPI(EGL_OPENGL_API) failed");
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer configAttribs = stack.ints(
+                    EGL_SURFACE_TYPE, EGL_PBUFFER_BIT,
+                    EGL_RENDERABLE_TYPE, EGL_OPENGL_BIT,
+                    EGL_RED_SIZE, 8, EGL_GREEN_SIZE, 8, EGL_BLUE_SIZE, 8,
+                    EGL_NONE);
+            PointerBuffer configs = stack.mallocPointer(1);
+            IntBuffer count = stack.mallocInt(1);
+            if (!eglChooseConfig(display, configAttribs, configs, count) || count.get(0) == 0) {
+                throw new IllegalStateException("No EGL config with OpenGL and pbuffer support");
+            }
+            long config = configs.get(0);
+            // FBO — цель рендера; pbuffer 1×1 нужен только чтобы сделать контекст текущим
+            surface = eglCreatePbufferSurface(display, config, stack.ints(EGL_WIDTH, 1, EGL_HEIGHT, 1, EGL_NONE));
+            if (surface == EGL_NO_SURFACE) throw new IllegalStateException("eglCreatePbufferSurface failed: 0x" + Integer.toHexString(eglGetError()));
+
+            for (int[] version : new int[][]{{4, 4}, {3, 3}}) {
+                context = eglCreateContext(display, config, EGL_NO_CONTEXT, stack.ints(
+                        EGL_CONTEXT_MAJOR_VERSION, version[0],
+                        EGL_CONTEXT_MINOR_VERSION, version[1],
+                        EGL_CONTEXT_OPENGL_PROFILE_MASK, EGL_CONTEXT_OPENGL_CORE_PROFILE_BIT,
+                        EGL_NONE));
+                if (context != EGL_NO_CONTEXT) break;
+                log.info("EGL core context {}.{} not available", version[0], version[1]);
+            }
+            if (context == EGL_NO_CONTEXT) throw new IllegalStateException("No OpenGL 3.3+ core context via EGL");
+        }
+        if (!eglMakeCurrent(display, surface, surface, context)) {
+            throw new IllegalStateException("eglMakeCurrent failed: 0x" + Integer.toHexString(eglGetError()));
+        }
+        GLCapabilities caps = GL.createCapabilities();
+        gl44 = caps.OpenGL44;
+        log.info("OpenGL context initialized (EGL). vendor='{}' renderer='{}' version='{}' glsl='{}'",
+                glGetString(GL_VENDOR), glGetString(GL_RENDERER), glGetString(GL_VERSION),
+                glGetString(GL_SHADING_LANGUAGE_VERSION));
+    }
+
+    /** EGL_DEFAULT_DISPLAY, а если он не инициализируется (нет X/Wayland) — первое EGL-устройство. */
+    private static long initializeDisplay() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer major = stack.mallocInt(1);
+            IntBuffer minor = stack.mallocInt(1);
+            long dpy = eglGetDisplay(EGL_DEFAULT_DISPLAY);
+            if (dpy != EGL_NO_DISPLAY && eglInitialize(dpy, major, minor)) {
+                log.info("EGL {}.{} on default display", major.get(0), minor.get(0));
+                return dpy;
+            }
+            EGLCapabilities client = EGL.getCapabilities();
+            if (!client.EGL_EXT_device_enumeration || !client.EGL_EXT_platform_device) {
+                throw new IllegalStateException("EGL default display failed and device platform is not supported");
+            }
+            PointerBuffer devices = stack.mallocPointer(8);
+            IntBuffer found = stack.mallocInt(1);
+            if (!EXTDeviceEnumeration.eglQueryDevicesEXT(devices, found) || found.get(0) == 0) {
+                throw new IllegalStateException("No EGL devices");
+            }
+            for (int i = 0; i < found.get(0); i++) {
+                dpy = EXTPlatformBase.eglGetPlatformDisplayEXT(EXTPlatformDevice.EGL_PLATFORM_DEVICE_EXT, devices.get(i), (IntBuffer) null);
+                if (dpy != EGL_NO_DISPLAY && eglInitialize(dpy, major, minor)) {
+                    log.info("EGL {}.{} on device #{}", major.get(0), minor.get(0), i);
+                    return dpy;
+                }
+            }
+            throw new IllegalStateException("No EGL device could be initialized");
+        }
+    }
+
+    private void createPipeline() {
+        program = linkProgram(compileShader(GL_VERTEX_SHADER, VERTEX_SHADER), compileShader(GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        mvpLocation = glGetUniformLocation(program, "uMvp");
+        normalMatrixLocation = glGetUniformLocation(program, "uNormalMatrix");
+        vao = glGenVertexArrays();
+
+        int color = glGenRenderbuffers();
+        int depth = glGenRenderbuffers();
+        drawFbo = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, drawFbo);
+        glBindRenderbuffer(GL_RENDERBUFFER, color);
+        glRenderbufferStorageMultisample(GL_RENDERBUFFER, samples, GL_RGBA8, width, height);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, color);
+        glBindRenderbuffer(GL_RENDERBUFFER, depth);
+        glRenderbufferStorageMultisample(GL_RENDERBUFFER, samples, GL_DEPTH_COMPONENT24, width, height);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depth);
+        checkFramebuffer("draw");
+        renderbuffers = new int[]{color, depth};
+
+        resolveFbo = drawFbo;
+        if (samples > 0) {
+            int resolved = glGenRenderbuffers();
+            resolveFbo = glGenFramebuffers();
+            glBindFramebuffer(GL_FRAMEBUFFER, resolveFbo);
+            glBindRenderbuffer(GL_RENDERBUFFER, resolved);
+            glRenderbufferStorage(GL_RENDERBUFFER, GL_RGBA8, width, height);
+            glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, resolved);
+            checkFramebuffer("resolve");
+            renderbuffers = new int[]{color, depth, resolved};
+        }
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+
+        if (gl44) {
+            int flags = GL_MAP_READ_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            long bytes = (long) width * height * 4;
+            pbo = glGenBuffers();
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, pbo);
+            glBufferStorage(GL_PIXEL_PACK_BUFFER, bytes, flags);
+            pboMapping = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, bytes, flags);
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+            if (pboMapping == null) throw new IllegalStateException("Persistent PBO mapping failed");
+        }
+
+        glBindFramebuffer(GL_FRAMEBUFFER, drawFbo);
+        glViewport(0, 0, width, height);
+        glClearColor(0.06f, 0.06f, 0.08f, 1.0f);
+        glEnable(GL_DEPTH_TEST);
+        glFrontFace(GL_CCW);
+        glCullFace(GL_BACK);
+        glPixelStorei(GL_PACK_ALIGNMENT, 1);
+        checkError("pipeline setup");
+        log.info("EGL render target: {}x{} msaaSamples={} readback={}", width, height, samples,
+                gl44 ? "persistent PBO" : "glReadPixels");
+    }
+
+    @Override
+    public void loadMesh(FloatBuffer interleaved, int vertexCount) throws IOException {
+        if (vertexCount <= 0) throw new IllegalStateException("No vertices for VBO");
+        onGlThread(() -> {
+            deleteMesh();
+            glBindVertexArray(vao);
+            vbo = glGenBuffers();
+            glBindBuffer(GL_ARRAY_BUFFER, vbo);
+            FloatBuffer data = interleaved.duplicate();
+            data.limit(data.position() + vertexCount * FLOATS_PER_VERTEX);
+            // Сетка не меняется до следующей модели — неизменяемое хранилище драйвер размещает оптимально
+            if (gl44) glBufferStorage(GL_ARRAY_BUFFER, data, 0);
+            else glBufferData(GL_ARRAY_BUFFER, data, GL_STATIC_DRAW);
+            glVertexAttribPointer(0, 3, GL_FLOAT, false, VBO_STRIDE_BYTES, 0L);
+            glVertexAttribPointer(1, 3, GL_FLOAT, false, VBO_STRIDE_BYTES, 3L * BYTES_PER_FLOAT);
+            glEnableVertexAttribArray(0);
+            glEnableVertexAttribArray(1);
+            glBindVertexArray(0);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            int error = glGetError();
+            if (error != GL_NO_ERROR) {
+                deleteMesh();
+                throw new IOException("VBO upload failed: GL error 0x" + Integer.toHexString(error));
+            }
+            this.vertexCount = vertexCount;
+            log.info("VBO uploaded: id={} vertices={} (triangles={})", vbo, vertexCount, vertexCount / 3);
+        });
+    }
+
+    @Override
+    public void drawView(RenderView view) throws IOException {
+        onGlThread(() -> {
+            glBindFramebuffer(GL_FRAMEBUFFER, drawFbo);
+            if (view.cullBackFaces()) glEnable(GL_CULL_FACE);
+            else glDisable(GL_CULL_FACE);
+            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+            if (vbo == 0 || vertexCount == 0) return;
+            glUseProgram(program);
+            glUniformMatrix4fv(mvpLocation, false, view.modelViewProjection((double) width / height));
+            glUniformMatrix3fv(normalMatrixLocation, false, view.normalMatrix());
+            glBindVertexArray(vao);
+            glDrawArrays(GL_TRIANGLES, 0, vertexCount);
+            glBindVertexArray(0);
+            glUseProgram(0);
+        });
+    }
+
+    @Override
+    public void readPixels(ByteBuffer target) throws IOException {
+        onGlThread(() -> {
+            if (resolveFbo != drawFbo) {
+                glBindFramebuffer(GL_READ_FRAMEBUFFER, drawFbo);
+                glBindFramebuffer(GL_DRAW_FRAMEBUFFER, resolveFbo);
+                glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GL_COLOR_BUFFER_BIT, GL_NEAREST);
+            }
+            glBindFramebuffer(GL_READ_FRAMEBUFFER, resolveFbo);
+            if (pboMapping == null) {
+                glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, target);
+            } else {
+                glBindBuffer(GL_PIXEL_PACK_BUFFER, pbo);
+                glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, 0L);
+                glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+                long fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+                int status = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, READBACK_TIMEOUT_NANOS);
+                glDeleteSync(fence);
+                if (status != GL_ALREADY_SIGNALED && status != GL_CONDITION_SATISFIED) {
+                    throw new IOException("GPU readback did not complete: 0x" + Integer.toHexString(status));
+                }
+                MemoryUtil.memCopy(MemoryUtil.memAddress(pboMapping, 0), MemoryUtil.memAddress(target, 0), (long) width * height * 4);
+            }
+            glBindFramebuffer(GL_FRAMEBUFFER, drawFbo);
+            target.rewind();
+            checkError("readPixels");
+        });
+    }
+
+    @Override
+    public void close() {
+        if (glThread == null) return;
+        try {
+            glThread.submit(this::destroyContext).get();
+        } catch (Exception e) {
+            log.debug("EGL context destroy failed: {}", e.toString());
+        }
+        glThread.shutdownNow();
+    }
+
+    private void destroyContext() {
+        if (context != EGL_NO_CONTEXT) {
+            deleteMesh();
+            if (pboMapping != null) {
+                glBindBuffer(GL_PIXEL_PACK_BUFFER, pbo);
+                glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+                glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+                pboMapping = null;
+            }
+            if (pbo != 0) glDeleteBuffers(pbo);
+            if (resolveFbo != drawFbo) glDeleteFramebuffers(resolveFbo);
+            if (drawFbo != 0) glDeleteFramebuffers(drawFbo);
+            if (renderbuffers.length > 0) glDeleteRenderbuffers(renderbuffers);
+            if (vao != 0) glDeleteVertexArrays(vao);
+            if (program != 0) glDeleteProgram(program);
+            GL.setCapabilities(null);
+            eglMakeCurrent(display, EGL_NO_SURFACE, EGL_NO_SURFACE, EGL_NO_CONTEXT);
+            eglDestroyContext(display, context);
+            context = EGL_NO_CONTEXT;
+        }
+        if (surface != EGL_NO_SURFACE) {
+            eglDestroySurface(display, surface);
+            surface = EGL_NO_SURFACE;
+        }
+        if (display != EGL_NO_DISPLAY) {
+            eglTerminate(display);
+            display = EGL_NO_DISPLAY;
+        }
+    }
+
+    private void deleteMesh() {
+        if (vbo != 0) {
+            glDeleteBuffers(vbo);
+            vbo = 0;
+            vertexCount = 0;
+        }
+    }
+
+    /** Выполнить task на потоке контекста и дождаться; исключения task пробрасываются вызывающему. */
+    private void onGlThread(GlTask task) throws IOException {
+        Callable<Void> call = () -> {
+            task.run();
+            return null;
+        };
+        try {
+            glThread.submit(call).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IOException("GL task failed: " + cause, cause);
+        }
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = glCreateShader(type);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE) {
+            String info = glGetShaderInfoLog(shader);
+            glDeleteShader(shader);
+            throw new IllegalStateException("Shader compile failed: " + info);
+        }
+        return shader;
+    }
+
+    private static int linkProgram(int vertexShader, int fragmentShader) {
+        int program = glCreateProgram();
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glLinkProgram(program);
+        glDeleteShader(vertexShader);
+        glDeleteShader(fragmentShader);
+        if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+            String info = glGetProgramInfoLog(program);
+            glDeleteProgram(program);
+            throw new IllegalStateException("Program link failed: " + info);
+        }
+        return program;
+    }
+
+    private static void checkFramebuffer(String what) {
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            throw new IllegalStateException("Incomplete " + what + " framebuffer: 0x" + Integer.toHexString(status));
+        }
+    }
+
+    private static void checkError(String what) {
+        int error = glGetError();
+        if (error != GL_NO_ERROR) throw new IllegalStateException(what + ": GL error 0x" + Integer.toHexString(error));
+    }
+}
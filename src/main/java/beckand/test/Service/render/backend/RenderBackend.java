@@ -0,0 +1,34 @@
+package beckand.test.Service.render.backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Чем считается кадр: JOGL GL2 (фиксированный конвейер), LWJGL/EGL (core profile) или софтверный растеризатор.
+ * Выбирается render.backend. RenderService вызывает методы под билетом RenderQueue — по одному за раз,
+ * потоки у бэкенда свои (GL-контекст живёт на одном потоке).
+ * <p>
+ * Сетка — чередующийся буфер nx, ny, nz, x, y, z на вершину, по три вершины на треугольник.
+ * Пиксели — RGBA, нижняя строка первой (как glReadPixels).
+ */
+public interface RenderBackend extends AutoCloseable {
+
+    /** Короткое имя для логов и статистики. */
+    String name();
+
+    /** Поднять контекст/потоки. Исключение — бэкенд недоступен на этой машине. */
+    void init(int width, int height) throws Exception;
+
+    /** Заменить текущую сетку. Буфер после передачи не меняется: GPU-бэкенды копируют его в VBO, софтверный рисует из него. */
+    void loadMesh(FloatBuffer interleaved, int vertexCount) throws IOException;
+
+    /** Нарисовать текущую сетку с заданной камеры. */
+    void drawView(RenderView view) throws IOException;
+
+    /** Прочитать последний нарисованный кадр в target (width × height × 4 байт). */
+    void readPixels(ByteBuffer target) throws IOException;
+
+    @Override
+    void close();
+}
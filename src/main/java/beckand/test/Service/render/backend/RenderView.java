@@ -0,0 +1,62 @@
+package beckand.test.Service.render.backend;
+
+/**
+ * Что рисовать: камера на сфере вокруг центра модели (азимут/возвышение в градусах), перспектива
+ * и режим отсечения граней. Одинаков для всех бэкендов — кадр не должен зависеть от того, чем он посчитан.
+ * Матрицы — как у gluPerspective/gluLookAt с моделью, сдвинутой на -center; column-major, как ждёт GL.
+ */
+public record RenderView(double azimuthDeg, double elevationDeg, double distance, double zNear, double zFar,
+                         double fovYDeg, float centerX, float centerY, float centerZ, boolean cullBackFaces) {
+
+    /** Projection · View · Translate(-center), 16 чисел column-major. */
+    public float[] modelViewProjection(double aspect) {
+        double[] v = viewMatrix();
+        double f = 1.0 / Math.tan(Math.toRadians(fovYDeg) / 2.0);
+        double p00 = f / aspect;
+        double p22 = (zFar + zNear) / (zNear - zFar);
+        double p23 = 2.0 * zFar * zNear / (zNear - zFar);
+        float[] m = new float[16];
+        for (int col = 0; col < 4; col++) {
+            double x = v[col * 4], y = v[col * 4 + 1], z = v[col * 4 + 2], w = v[col * 4 + 3];
+            m[col * 4] = (float) (p00 * x);
+            m[col * 4 + 1] = (float) (f * y);
+            m[col * 4 + 2] = (float) (p22 * z + p23 * w);
+            m[col * 4 + 3] = (float) -z;
+        }
+        return m;
+    }
+
+    /** Поворот нормалей в координаты глаза (верхний 3×3 вида — ортонормирован), 9 чисел column-major. */
+    public float[] normalMatrix() {
+        double[] v = viewMatrix();
+        return new float[]{
+                (float) v[0], (float) v[1], (float) v[2],
+                (float) v[4], (float) v[5], (float) v[6],
+                (float) v[8], (float) v[9], (float) v[10]};
+    }
+
+    /** gluLookAt(eye → 0, up = Y) · Translate(-center), column-major. */
+    private double[] viewMatrix() {
+        double az = Math.toRadians(azimuthDeg);
+        double el = Math.toRadians(elevationDeg);
+        double ex = distance * Math.cos(el) * Math.sin(az);
+        double ey = distance * Math.sin(el);
+        double ez = distance * Math.cos(el) * Math.cos(az);
+        double len = Math.sqrt(ex * ex + ey * ey + ez * ez);
+        double fx = -ex / len, fy = -ey / len, fz = -ez / len;
+        double sx = -fz, sy = 0, sz = fx;
+        double sl = Math.sqrt(sx * sx + sz * sz);
+        sx /= sl;
+        sz /= sl;
+        double ux = sy * fz - sz * fy, uy = sz * fx - sx * fz, uz = sx * fy - sy * fx;
+        // Строки: s, u, -f; перенос: -R·eye, затем сдвиг модели на -center
+        double tx = -(sx * ex + sy * ey + sz * ez) - (sx * centerX + sy * centerY + sz * centerZ);
+        double ty = -(ux * ex + uy * ey + uz * ez) - (ux * centerX + uy * centerY + uz * centerZ);
+        double tz = (fx * ex + fy * ey + fz * ez) + (fx * centerX + fy * centerY + fz * centerZ);
+        return new double[]{
+                sx, ux, -fx, 0,
+                sy, uy, -fy, 0,
+                sz, uz, -fz, 0,
+                tx, ty, tz, 1};
+    }
+}
@@ -0,0 +1,390 @@
+package beckand.test.Service.render.backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Софтверный растеризатор на случай, когда GL-контекст не поднялся (нет EGL/GLX, сломанный драйвер).
+ * Повторяет то, что делает display() на фиксированном конвейере GL2:
+ * <ul>
+ *     <li>камера gluPerspective(45°) + gluLookAt на начало координат, модель сдвинута на -center;</li>
+ *     <li>тест глубины GL_LESS, отсечение задних граней при CCW-лицевых (render.back-face-culling);</li>
+ *     <li>освещение по умолчанию: глобальный ambient 0.2 + LIGHT0 (направленный, (0,0,1) в координатах глаза,
+ *     диффузный 1.0). У LIGHT1 диффузная и зеркальная составляющие по умолчанию чёрные, вклада он не даёт;</li>
+ *     <li>материал белый (GL_COLOR_MATERIAL без glColor), нормали граней нормализуются, как с GL_NORMALIZE.</li>
+ * </ul>
+ * Вход — тот же чередующийся буфер, что уходит в VBO (nx, ny, nz, x, y, z на вершину, по три на треугольник).
+ * Выход — RGBA снизу вверх, как после glReadPixels, поэтому дальше кадр идёт тем же путём, что и GL-кадр.
+ * <p>
+ * Кадр считается в два параллельных прохода: треугольники делятся на порции, каждая порция проецируется
+ * и раскладывается по тайлам экрана; затем тайлы растеризуются независимо — у каждого свой кусок
+ * буфера глубины и цвета, синхронизация не нужна. Вызывать из одного потока за раз (под билетом RenderQueue).
+ */
+public final class SoftwareRasterizer implements AutoCloseable {
+
+    private static final int FLOATS_PER_VERTEX = 6;
+    /** Экранный треугольник: x, y, z трёх вершин + освещённость. */
+    private static final int TRI_FLOATS = 10;
+    private static final float GLOBAL_AMBIENT = 0.2f;
+    /** glClearColor(0.06, 0.06, 0.08) в байтах RGBA, little-endian int. */
+    private static final int CLEAR_RGBA = 0xFF000000 | 20 << 16 | 15 << 8 | 15;
+
+    private final int threads;
+    private final int tileSize;
+    private final ExecutorService pool;
+    private final Chunk[] chunks;
+
+    private int width;
+    private int height;
+    private int tilesX;
+    private int tilesY;
+    private float[] depth = new float[0];
+
+    /** Порция треугольников: её экранные треугольники и списки по тайлам. Пишет только свой поток. */
+    private static final class Chunk {
+        private float[] tris = new float[TRI_FLOATS * 4096];
+        private int triCount;
+        private IntList[] bins = new IntList[0];
+        private final float[] clip = new float[4 * 4 * 2];
+
+        private void reset(int tiles) {
+            triCount = 0;
+            if (bins.length != tiles) {
+                bins = new IntList[tiles];
+                for (int i = 0; i < tiles; i++) bins[i] = new IntList();
+            } else {
+                for (IntList b : bins) b.size = 0;
+            }
+        }
+    }
+
+    private static final class IntList {
+        private int[] data = new int[64];
+        private int size;
+
+        private void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+
+    /** Матрицы кадра в виде скаляров — без аллокаций в горячем цикле. */
+    private static final class View {
+        float sx, sy, sz, ux, uy, uz, fx, fy, fz;
+        float tx, ty, tz;
+        float p00, p11, p22, p23;
+        float cx, cy, cz;
+        float halfW, halfH;
+        boolean cull;
+    }
+
+    /**
+     * @param threads  потоков растеризации; 0 — по числу ядер
+     * @param tileSize сторона тайла в пикселях
+     */
+    public SoftwareRasterizer(int threads, int tileSize) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.tileSize = Math.max(16, tileSize);
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "sw-raster-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.chunks = new Chunk[this.threads];
+        for (int i = 0; i < chunks.length; i++) chunks[i] = new Chunk();
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Отрисовать vertexCount вершин (кратно трём) из vertices в target: width×height RGBA, нижняя строка первой.
+     */
+    public void render(FloatBuffer vertices, int vertexCount, RenderView camera, ByteBuffer target,
+                       int width, int height) throws IOException {
+        if (target.capacity() < width * height * 4) {
+            throw new IllegalArgumentException("Target buffer is smaller than " + width + "x" + height + " RGBA");
+        }
+        resize(width, height);
+        View view = view(camera, width, height);
+        int triangles = vertexCount / 3;
+
+        List<Callable<Void>> binning = new ArrayList<>(chunks.length);
+        for (int c = 0; c < chunks.length; c++) {
+            Chunk chunk = chunks[c];
+            int from = (int) ((long) triangles * c / chunks.length);
+            int to = (int) ((long) triangles * (c + 1) / chunks.length);
+            binning.add(() -> {
+                bin(chunk, vertices, from, to, view);
+                return null;
+            });
+        }
+        runAll(binning);
+
+        ByteBuffer out = target.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        AtomicInteger nextTile = new AtomicInteger();
+        int tileCount = tilesX * tilesY;
+        List<Callable<Void>> raster = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            raster.add(() -> {
+                // Тайлы разбираются по одному: пустые быстрые, плотные медленные — так потоки не простаивают
+                for (int t = nextTile.getAndIncrement(); t < tileCount; t = nextTile.getAndIncrement()) {
+                    rasterTile(t, out);
+                }
+                return null;
+            });
+        }
+        runAll(raster);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private void resize(int w, int h) {
+        if (w == width && h == height) {
+            for (Chunk c : chunks) c.reset(tilesX * tilesY);
+            return;
+        }
+        width = w;
+        height = h;
+        tilesX = (w + tileSize - 1) / tileSize;
+        tilesY = (h + tileSize - 1) / tileSize;
+        depth = new float[w * h];
+        for (Chunk c : chunks) c.reset(tilesX * tilesY);
+    }
+
+    private static View view(RenderView c, int width, int height) {
+        double az = Math.toRadians(c.azimuthDeg());
+        double el = Math.toRadians(c.elevationDeg());
+        double ex = c.distance() * Math.cos(el) * Math.sin(az);
+        double ey = c.distance() * Math.sin(el);
+        double ez = c.distance() * Math.cos(el) * Math.cos(az);
+        // gluLookAt(eye, 0, up=(0,1,0)): f — направление взгляда, s — вправо, u — вверх
+        double len = Math.sqrt(ex * ex + ey * ey + ez * ez);
+        double fx = -ex / len, fy = -ey / len, fz = -ez / len;
+        double sx = fy * 0 - fz * 1, sy = fz * 0 - fx * 0, sz = fx * 1 - fy * 0;
+        double sl = Math.sqrt(sx * sx + sy * sy + sz * sz);
+        sx /= sl;
+        sy /= sl;
+        sz /= sl;
+        double ux = sy * fz - sz * fy, uy = sz * fx - sx * fz, uz = sx * fy - sy * fx;
+
+        View v = new View();
+        v.sx = (float) sx; v.sy = (float) sy; v.sz = (float) sz;
+        v.ux = (float) ux; v.uy = (float) uy; v.uz = (float) uz;
+        v.fx = (float) fx; v.fy = (float) fy; v.fz = (float) fz;
+        v.tx = (float) -(sx * ex + sy * ey + sz * ez);
+        v.ty = (float) -(ux * ex + uy * ey + uz * ez);
+        v.tz = (float) (fx * ex + fy * ey + fz * ez);
+        // gluPerspective
+        double f = 1.0 / Math.tan(Math.toRadians(c.fovYDeg()) / 2.0);
+        double aspect = (double) width / height;
+        v.p00 = (float) (f / aspect);
+        v.p11 = (float) f;
+        v.p22 = (float) ((c.zFar() + c.zNear()) / (c.zNear() - c.zFar()));
+        v.p23 = (float) (2.0 * c.zFar() * c.zNear() / (c.zNear() - c.zFar()));
+        v.cx = c.centerX();
+        v.cy = c.centerY();
+        v.cz = c.centerZ();
+        v.halfW = width * 0.5f;
+        v.halfH = height * 0.5f;
+        v.cull = c.cullBackFaces();
+        return v;
+    }
+
+    /** Проход 1: вершины → clip space, отсечение по ближней плоскости, проекция, раскладка по тайлам. */
+    private void bin(Chunk chunk, FloatBuffer vb, int from, int to, View v) {
+        float[] clip = chunk.clip;
+        for (int t = from; t < to; t++) {
+            int base = t * 3 * FLOATS_PER_VERTEX;
+            float nx = vb.get(base), ny = vb.get(base + 1), nz = vb.get(base + 2);
+            // Освещённость: нормаль в координатах глаза, LIGHT0 светит вдоль +z глаза
+            float nez = -(v.fx * nx + v.fy * ny + v.fz * nz);
+            float nex = v.sx * nx + v.sy * ny + v.sz * nz;
+            float ney = v.ux * nx + v.uy * ny + v.uz * nz;
+            float nl = (float) Math.sqrt(nex * nex + ney * ney + nez * nez);
+            float lambert = nl > 1e-12f ? Math.max(0f, nez / nl) : 0f;
+            float shade = Math.min(1f, GLOBAL_AMBIENT + lambert);
+
+            int inside = 0;
+            for (int k = 0; k < 3; k++) {
+                int o = base + k * FLOATS_PER_VERTEX + 3;
+                float px = vb.get(o) - v.cx, py = vb.get(o + 1) - v.cy, pz = vb.get(o + 2) - v.cz;
+                float ex = v.sx * px + v.sy * py + v.sz * pz + v.tx;
+                float ey = v.ux * px + v.uy * py + v.uz * pz + v.ty;
+                float ez = -(v.fx * px + v.fy * py + v.fz * pz) + v.tz;
+                int c = k * 4;
+                clip[c] = v.p00 * ex;
+                clip[c + 1] = v.p11 * ey;
+                clip[c + 2] = v.p22 * ez + v.p23;
+                clip[c + 3] = -ez;
+                if (clip[c + 2] >= -clip[c + 3]) inside++;
+            }
+            if (inside == 0) continue;
+            if (inside == 3) {
+                emit(chunk, clip, 0, 4, 8, shade, v);
+                continue;
+            }
+            int n = clipNear(clip);
+            for (int k = 1; k + 1 < n; k++) emit(chunk, clip, 12, 12 + k * 4, 12 + (k + 1) * 4, shade, v);
+        }
+    }
+
+    /**
+     * Отсечение треугольника clip[0..11] плоскостью z = -w (ближняя плоскость GL). Результат — многоугольник
+     * из 3–4 вершин в clip[12..], возвращает число вершин.
+     */
+    private static int clipNear(float[] clip) {
+        int n = 0;
+        for (int i = 0; i < 3; i++) {
+            int a = i * 4, b = ((i + 1) % 3) * 4;
+            float da = clip[a + 2] + clip[a + 3];
+            float db = clip[b + 2] + clip[b + 3];
+            if (da >= 0) {
+                System.arraycopy(clip, a, clip, 12 + n * 4, 4);
+                n++;
+            }
+            if ((da >= 0) != (db >= 0)) {
+                float s = da / (da - db);
+                int o = 12 + n * 4;
+                for (int j = 0; j < 4; j++) clip[o + j] = clip[a + j] + (clip[b + j] - clip[a + j]) * s;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void emit(Chunk chunk, float[] clip, int a, int b, int c, float shade, View v) {
+        float wa = 1f / clip[a + 3], wb = 1f / clip[b + 3], wc = 1f / clip[c + 3];
+        float x0 = (clip[a] * wa + 1f) * v.halfW, y0 = (clip[a + 1] * wa + 1f) * v.halfH, z0 = clip[a + 2] * wa;
+        float x1 = (clip[b] * wb + 1f) * v.halfW, y1 = (clip[b + 1] * wb + 1f) * v.halfH, z1 = clip[b + 2] * wb;
+        float x2 = (clip[c] * wc + 1f) * v.halfW, y2 = (clip[c + 1] * wc + 1f) * v.halfH, z2 = clip[c + 2] * wc;
+        if (z0 > 1f && z1 > 1f && z2 > 1f) return;
+
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (area == 0f || Float.isNaN(area)) return;
+        if (area < 0f) {
+            // Обход по часовой в окне — задняя грань (glFrontFace(GL_CCW))
+            if (v.cull) return;
+            float tx = x1, ty = y1, tz = z1;
+            x1 = x2; y1 = y2; z1 = z2;
+            x2 = tx; y2 = ty; z2 = tz;
+        }
+
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+        if (minX > maxX || minY > maxY) return;
+
+        int idx = chunk.triCount;
+        int o = idx * TRI_FLOATS;
+        if (o + TRI_FLOATS > chunk.tris.length) chunk.tris = Arrays.copyOf(chunk.tris, chunk.tris.length * 2);
+        float[] tr = chunk.tris;
+        tr[o] = x0; tr[o + 1] = y0; tr[o + 2] = z0;
+        tr[o + 3] = x1; tr[o + 4] = y1; tr[o + 5] = z1;
+        tr[o + 6] = x2; tr[o + 7] = y2; tr[o + 8] = z2;
+        tr[o + 9] = shade;
+        chunk.triCount++;
+
+        int tx0 = minX / tileSize, tx1 = maxX / tileSize;
+        int ty0 = minY / tileSize, ty1 = maxY / tileSize;
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) chunk.bins[ty * tilesX + tx].add(idx);
+        }
+    }
+
+    /** Проход 2: очистка тайла и растеризация его треугольников в порядке подачи (как glDrawArrays). */
+    private void rasterTile(int tile, ByteBuffer out) {
+        int bx0 = (tile % tilesX) * tileSize;
+        int by0 = (tile / tilesX) * tileSize;
+        int bx1 = Math.min(width, bx0 + tileSize);
+        int by1 = Math.min(height, by0 + tileSize);
+        for (int y = by0; y < by1; y++) {
+            int row = y * width;
+            Arrays.fill(depth, row + bx0, row + bx1, 1f);
+            for (int x = bx0; x < bx1; x++) out.putInt((row + x) << 2, CLEAR_RGBA);
+        }
+        for (Chunk chunk : chunks) {
+            IntList bin = chunk.bins[tile];
+            float[] tr = chunk.tris;
+            for (int i = 0; i < bin.size; i++) {
+                rasterTriangle(tr, bin.data[i] * TRI_FLOATS, bx0, by0, bx1, by1, out);
+            }
+        }
+    }
+
+    private void rasterTriangle(float[] tr, int o, int bx0, int by0, int bx1, int by1, ByteBuffer out) {
+        float x0 = tr[o], y0 = tr[o + 1], z0 = tr[o + 2];
+        float x1 = tr[o + 3], y1 = tr[o + 4], z1 = tr[o + 5];
+        float x2 = tr[o + 6], y2 = tr[o + 7], z2 = tr[o + 8];
+        int g = Math.round(tr[o + 9] * 255f);
+        int rgba = 0xFF000000 | g << 16 | g << 8 | g;
+
+        int minX = Math.max(bx0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = Math.min(bx1 - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int minY = Math.max(by0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxY = Math.min(by1 - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+        if (minX > maxX || minY > maxY) return;
+
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        float invArea = 1f / area;
+        // Рёберные функции в центре пикселя и их приращения по x и y
+        float px = minX + 0.5f, py = minY + 0.5f;
+        float e0 = (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1);
+        float e1 = (x0 - x2) * (py - y2) - (y0 - y2) * (px - x2);
+        float e2 = (x1 - x0) * (py - y0) - (y1 - y0) * (px - x0);
+        float e0dx = -(y2 - y1), e1dx = -(y0 - y2), e2dx = -(y1 - y0);
+        float e0dy = x2 - x1, e1dy = x0 - x2, e2dy = x1 - x0;
+
+        for (int y = minY; y <= maxY; y++) {
+            float w0 = e0, w1 = e1, w2 = e2;
+            int row = y * width;
+            for (int x = minX; x <= maxX; x++) {
+                if (w0 >= 0f && w1 >= 0f && w2 >= 0f) {
+                    float z = (w0 * z0 + w1 * z1 + w2 * z2) * invArea;
+                    int p = row + x;
+                    if (z < depth[p] && z >= -1f) {
+                        depth[p] = z;
+                        out.putInt(p << 2, rgba);
+                    }
+                }
+                w0 += e0dx;
+                w1 += e1dx;
+                w2 += e2dx;
+            }
+            e0 += e0dy;
+            e1 += e1dy;
+            e2 += e2dy;
+        }
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws IOException {
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IOException("Software render failed: " + cause, cause);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package beckand.test.Service.render.backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Бэкенд без GPU: {@link SoftwareRasterizer} на всех ядрах. Кадр растеризуется прямо в буфер назначения
+ * при readPixels — отдельного буфера кадра и лишней копии нет. Запасной вариант для любого другого бэкенда.
+ */
+public final class SoftwareRenderBackend implements RenderBackend {
+
+    private final int threads;
+    private final int tileSize;
+    private SoftwareRasterizer rasterizer;
+    private FloatBuffer mesh;
+    private int vertexCount;
+    private RenderView view;
+    private int width;
+    private int height;
+
+    public SoftwareRenderBackend(int threads, int tileSize) {
+        this.threads = threads;
+        this.tileSize = tileSize;
+    }
+
+    @Override
+    public String name() {
+        return "software";
+    }
+
+    @Override
+    public void init(int width, int height) {
+        this.width = width;
+        this.height = height;
+        rasterizer = new SoftwareRasterizer(threads, tileSize);
+    }
+
+    public int threads() {
+        return rasterizer.threads();
+    }
+
+    @Override
+    public void loadMesh(FloatBuffer interleaved, int vertexCount) {
+        this.mesh = interleaved;
+        this.vertexCount = vertexCount;
+    }
+
+    @Override
+    public void drawView(RenderView view) {
+        this.view = view;
+    }
+
+    @Override
+    public void readPixels(ByteBuffer target) throws IOException {
+        if (view == null) throw new IllegalStateException("drawView must be called before readPixels");
+        rasterizer.render(mesh, mesh != null ? vertexCount : 0, view, target, width, height);
+    }
+
+    @Override
+    public void close() {
+        if (rasterizer != null) rasterizer.close();
+    }
+}
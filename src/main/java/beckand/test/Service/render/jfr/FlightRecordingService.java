@@ -0,0 +1,105 @@
+package beckand.test.Service.render.jfr;
+
+import beckand.test.DTO.diagnostics.FlightRecordingStatus;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Запись Java Flight Recorder по запросу администратора: события atlas.render.* (загрузка модели, VBO, стадии кадра,
+ * кэш, очередь, отправка) вместе со стандартными событиями JVM. Одна запись на процесс; она живёт в памяти
+ * и на диске JFR с ограничением по возрасту и размеру, пока её не остановят.
+ * <p>
+ * Render-воркеры — отдельные JVM: их записывают через render.workers.jvm-args=-XX:StartFlightRecording=...
+ */
+@Slf4j
+@Service
+public class FlightRecordingService {
+
+    private Recording recording;
+    private String settingsName;
+    private long maxAgeMinutes;
+    private long maxSizeMb;
+
+    /** Начать запись. settings — встроенная конфигурация JFR: default (~1% накладных) или profile. Пусто, если уже идёт. */
+    public synchronized Optional<FlightRecordingStatus> start(String settings, long maxAgeMinutes, long maxSizeMb)
+            throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) return Optional.empty();
+        closeRecording();
+        String config = settings == null || settings.isBlank() ? "default" : settings.trim();
+        Recording r = new Recording(Configuration.getConfiguration(config));
+        r.setName("atlas-" + System.currentTimeMillis());
+        r.setToDisk(true);
+        r.setMaxAge(Duration.ofMinutes(Math.max(1, maxAgeMinutes)));
+        r.setMaxSize(Math.max(1, maxSizeMb) * 1024 * 1024);
+        r.start();
+        recording = r;
+        settingsName = config;
+        this.maxAgeMinutes = Math.max(1, maxAgeMinutes);
+        this.maxSizeMb = Math.max(1, maxSizeMb);
+        log.info("JFR recording started: name={} settings={} maxAgeMin={} maxSizeMb={}",
+                r.getName(), config, this.maxAgeMinutes, this.maxSizeMb);
+        return Optional.of(statusLocked());
+    }
+
+    /** Остановить запись; данные остаются доступны для dump до следующего start. */
+    public synchronized Optional<FlightRecordingStatus> stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) return Optional.empty();
+        recording.stop();
+        log.info("JFR recording stopped: name={} size={}", recording.getName(), recording.getSize());
+        return Optional.of(statusLocked());
+    }
+
+    /** Выгрузить данные записи (идущей или остановленной) во временный файл. Вызывающий удаляет его после отдачи. */
+    public synchronized Optional<Path> dump() throws IOException {
+        if (recording == null) return Optional.empty();
+        RecordingState state = recording.getState();
+        if (state != RecordingState.RUNNING && state != RecordingState.STOPPED) return Optional.empty();
+        Path file = Files.createTempFile(recording.getName() + "-", ".jfr");
+        recording.dump(file);
+        return Optional.of(file);
+    }
+
+    public synchronized Optional<FlightRecordingStatus> status() {
+        return recording == null ? Optional.empty() : Optional.of(statusLocked());
+    }
+
+    private FlightRecordingStatus statusLocked() {
+        FlightRecordingStatus s = new FlightRecordingStatus();
+        s.setId(recording.getId());
+        s.setName(recording.getName());
+        s.setState(recording.getState().name());
+        s.setSettings(settingsName);
+        s.setStartTime(recording.getStartTime() != null ? recording.getStartTime().toString() : null);
+        if (recording.getStartTime() != null) {
+            long end = recording.getStopTime() != null ? recording.getStopTime().toEpochMilli() : System.currentTimeMillis();
+            s.setDurationMs(end - recording.getStartTime().toEpochMilli());
+        }
+        s.setSizeBytes(recording.getSize());
+        s.setMaxAgeMinutes(maxAgeMinutes);
+        s.setMaxSizeMb(maxSizeMb);
+        return s;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @PreDestroy
+    private synchronized void shutdown() {
+        closeRecording();
+    }
+}
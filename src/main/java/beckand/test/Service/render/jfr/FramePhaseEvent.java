@@ -0,0 +1,38 @@
+package beckand.test.Service.render.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Одна стадия кадра: render, readback, convert, scale или encode. Поля заполняет {@link FrameTrace}. */
+@Name("atlas.render.FramePhase")
+@Label("Render Frame Phase")
+@Category({"Atlas", "Render"})
+@Description("Стадия серверного кадра: отрисовка, readback, конвертация, масштаб или JPEG")
+@StackTrace(false)
+public class FramePhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+    @Label("Model")
+    String modelId;
+    @Label("Session")
+    String sessionId;
+    @Label("Final Frame")
+    boolean finalFrame;
+    @Label("Width")
+    int width;
+    @Label("Height")
+    int height;
+    @Label("JPEG Quality")
+    float quality;
+    @Label("Triangles")
+    long triangles;
+    @Label("Backend")
+    String backend;
+    @Label("Output Size")
+    @DataAmount
+    long outputBytes;
+}
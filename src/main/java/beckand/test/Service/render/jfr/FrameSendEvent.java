@@ -0,0 +1,31 @@
+package beckand.test.Service.render.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** Запись одного сообщения в WebSocket-сессию потоком отправки. */
+@Name("atlas.render.FrameSend")
+@Label("Frame Send")
+@Category({"Atlas", "Render"})
+@Description("Передача кадра или служебного сообщения клиенту")
+@StackTrace(false)
+public class FrameSendEvent extends jdk.jfr.Event {
+    @Label("Session")
+    public String sessionId;
+    @Label("Model")
+    public String modelId;
+    /** preview или reliable (финальный кадр, busy). */
+    @Label("Kind")
+    public String kind;
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+    @Label("Time In Send Buffer")
+    @Timespan
+    public long queuedNanos;
+}
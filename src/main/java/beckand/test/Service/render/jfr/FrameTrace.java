@@ -0,0 +1,36 @@
+package beckand.test.Service.render.jfr;
+
+/**
+ * Чей кадр считается: модель, WebSocket-сессия (null — HTTP-рендер или воркер), финальный ли он и с каким
+ * качеством JPEG. Передаётся по цепочке рендера и подписывает события стадий.
+ */
+public record FrameTrace(String modelId, String sessionId, boolean finalFrame, float quality) {
+
+    /** Начать стадию. Пока запись JFR не идёт, событие не коммитится и поля не заполняются. */
+    public static FramePhaseEvent begin() {
+        FramePhaseEvent event = new FramePhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    public void commit(FramePhaseEvent event, String phase, String backend, int width, int height, long triangles) {
+        commit(event, phase, backend, width, height, triangles, 0);
+    }
+
+    public void commit(FramePhaseEvent event, String phase, String backend, int width, int height, long triangles,
+                       long outputBytes) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.phase = phase;
+        event.modelId = modelId;
+        event.sessionId = sessionId;
+        event.finalFrame = finalFrame;
+        event.quality = quality;
+        event.backend = backend;
+        event.width = width;
+        event.height = height;
+        event.triangles = triangles;
+        event.outputBytes = outputBytes;
+        event.commit();
+    }
+}
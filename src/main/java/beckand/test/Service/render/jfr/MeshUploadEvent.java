@@ -0,0 +1,28 @@
+package beckand.test.Service.render.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Загрузка сетки в бэкенд (VBO или память софтверного растеризатора). */
+@Name("atlas.render.MeshUpload")
+@Label("Mesh Upload")
+@Category({"Atlas", "Render"})
+@Description("Сетка текущей модели уходит в VBO; при отказе GPU — в софтверный растеризатор")
+@StackTrace(false)
+public class MeshUploadEvent extends jdk.jfr.Event {
+    @Label("Model")
+    public String modelId;
+    @Label("Backend")
+    public String backend;
+    @Label("Vertices")
+    public int vertexCount;
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+    @Label("Fell Back To Software")
+    public boolean softwareFallback;
+}
@@ -0,0 +1,24 @@
+package beckand.test.Service.render.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Смена модели в контексте: разбор OBJ, проверка лимита треугольников и габариты. */
+@Name("atlas.render.ModelLoad")
+@Label("Model Load")
+@Category({"Atlas", "Render"})
+@Description("Разбор OBJ и подготовка модели при смене")
+@StackTrace(false)
+public class ModelLoadEvent extends jdk.jfr.Event {
+    @Label("Model")
+    public String modelId;
+    @Label("Vertices")
+    public long vertices;
+    @Label("Faces")
+    public long faces;
+    @Label("Triangles")
+    public long triangles;
+}
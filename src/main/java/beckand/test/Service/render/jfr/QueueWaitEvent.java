@@ -0,0 +1,25 @@
+package beckand.test.Service.render.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Ожидание билета RenderQueue. */
+@Name("atlas.render.QueueWait")
+@Label("Render Queue Wait")
+@Category({"Atlas", "Render"})
+@Description("Ожидание GL-контекста (или воркера) в очереди рендера")
+@StackTrace(false)
+public class QueueWaitEvent extends jdk.jfr.Event {
+    @Label("Session")
+    public String sessionId;
+    @Label("Final Frame")
+    public boolean finalFrame;
+    /** granted, rejected или failed. */
+    @Label("Outcome")
+    public String outcome;
+    @Label("Queue Depth")
+    public int depth;
+}
@@ -0,0 +1,22 @@
+package beckand.test.Service.render.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Обращение к кэшу готовых кадров (мгновенное событие). */
+@Name("atlas.render.CacheLookup")
+@Label("Render Cache Lookup")
+@Category({"Atlas", "Render"})
+@Description("Поиск готового JPEG в кэше кадров")
+@StackTrace(false)
+public class RenderCacheEvent extends jdk.jfr.Event {
+    @Label("Model")
+    public String modelId;
+    @Label("Cache Key")
+    public String cacheKey;
+    @Label("Hit")
+    public boolean hit;
+}
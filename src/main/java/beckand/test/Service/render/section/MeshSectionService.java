@@ -0,0 +1,244 @@
+package beckand.test.Service.render.section;
+
+import beckand.test.Service.file.MediaContent;
+import beckand.test.Service.file.MediaContentCache;
+import beckand.test.Service.file.ModelObjectCache;
+import beckand.test.Service.file.ObjectMetadataCache;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Срезы, посчитанные по сетке модели, — без подготовки снаружи и загрузки через uploadSlice. Плоскость задаётся осью
+ * и долей диапазона модели вдоль неё; пересечение с треугольниками ({@link SectionMesh}) собирается в контуры,
+ * контуры заливаются по правилу чётности (полости остаются пустыми) и пишутся в PNG. Кадр сечения — габарит модели
+ * в плоскости с полями, одинаковый для всех позиций оси, так что сечения листаются без «прыжков».
+ * <p>
+ * С GL-контекстом RenderService это не связано: сетка для сечений держится отдельно (последние несколько моделей),
+ * готовые PNG — в {@link MediaContentCache} под ключом с ETag объекта модели, поэтому заменённая модель
+ * не отдаёт старые сечения.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MeshSectionService {
+
+    private static final Color FILL = new Color(0xD9, 0xDE, 0xE6);
+    private static final Color OUTLINE = new Color(0x2B, 0x6C, 0xB0);
+    /** Поля вокруг габарита модели, доля стороны. */
+    private static final double MARGIN = 0.04;
+    /** Шаг позиции в ключе кэша: соседние запросы при прокрутке попадают в одну запись. */
+    private static final double POSITION_STEP = 1.0 / 4096;
+
+    private final ModelObjectCache modelObjectCache;
+    private final MediaContentCache mediaContentCache;
+    private final ObjectMetadataCache objectMetadataCache;
+
+    @Value("${render.section.default-size:512}")
+    private int defaultSize;
+    @Value("${render.section.max-size:2048}")
+    private int maxSize;
+    /** Сколько моделей держать разобранными для сечений. */
+    @Value("${render.section.mesh-cache-size:2}")
+    private int meshCacheSize;
+    /** Тот же лимит, что у рендера; 0 = без лимита. */
+    @Value("${render.max-triangle-count:0}")
+    private long maxTriangleCount;
+
+    /** ETag объекта модели → разобранная сетка (или её загрузка). Порядок доступа — для вытеснения. */
+    private final LinkedHashMap<String, CompletableFuture<SectionMesh>> meshes = new LinkedHashMap<>(8, 0.75f, true);
+
+    /** Нормализованный запрос сечения: позиция квантована, размер в пределах лимита, версия — ETag модели. */
+    public record SectionKey(String objectKey, String modelETag, SectionMesh.Axis axis, double position, int size) {
+
+        public String cacheKey() {
+            return "sections/" + modelETag + "/" + objectKey + "/" + axis.name().toLowerCase(Locale.ROOT)
+                    + "/" + String.format(Locale.ROOT, "%.6f", position) + "/" + size;
+        }
+
+        /** Сильный ETag ответа: та же версия модели и те же параметры — те же байты. */
+        public String etag() {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(cacheKey().getBytes(StandardCharsets.UTF_8));
+                return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Разобрать параметры запроса. position — доля диапазона модели вдоль оси (0..1), size — длинная сторона PNG.
+     * ETag модели — из {@link ObjectMetadataCache}, в MinIO обычно не обращается.
+     */
+    public SectionKey key(String objectKey, String axis, double position, Integer size) {
+        if (Double.isNaN(position)) throw new IllegalArgumentException("position must be a number in [0, 1]");
+        double p = Math.round(Math.max(0, Math.min(1, position)) / POSITION_STEP) * POSITION_STEP;
+        int s = Math.max(16, Math.min(maxSize, size != null && size > 0 ? size : defaultSize));
+        Optional<ObjectMetadataCache.ObjectMetadata> metadata;
+        try {
+            metadata = objectMetadataCache.get(objectKey);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get model: " + e.getMessage(), e);
+        }
+        String etag = metadata.orElseThrow(() -> new ModelNotFoundException(objectKey)).etag();
+        return new SectionKey(objectKey, etag, SectionMesh.Axis.fromParam(axis), p, s);
+    }
+
+    /** PNG сечения: из кэша или посчитанный. */
+    public MediaContent section(SectionKey key) {
+        MediaContent cached = mediaContentCache.get(key.cacheKey());
+        if (cached != null) return cached;
+        long t0 = System.nanoTime();
+        SectionMesh mesh = mesh(key);
+        float[] segments = mesh.intersect(key.axis(), mesh.planeAt(key.axis(), key.position()));
+        BufferedImage image = rasterize(mesh, key.axis(), segments, key.size());
+        byte[] png;
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            if (!ImageIO.write(image, "png", baos)) throw new IOException("No PNG writers available");
+            png = baos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode section: " + e.getMessage(), e);
+        }
+        log.debug("Section {} {} @{}: segments={} bytes={} ms={}", key.objectKey(), key.axis(), key.position(),
+                segments.length / 4, png.length, (System.nanoTime() - t0) / 1_000_000);
+        return mediaContentCache.put(key.cacheKey(), png, MediaType.IMAGE_PNG, System.currentTimeMillis());
+    }
+
+    /**
+     * Контуры сечения в кадре габарита модели: u — вправо, v — вверх. Заливка по чётности (внутренние контуры —
+     * полости), поверх — контур линией.
+     */
+    static BufferedImage rasterize(SectionMesh mesh, SectionMesh.Axis axis, float[] segments, int size) {
+        double u0 = mesh.min(axis, true);
+        double v0 = mesh.min(axis, false);
+        double du = Math.max(mesh.max(axis, true) - u0, 1e-9);
+        double dv = Math.max(mesh.max(axis, false) - v0, 1e-9);
+        double scale = size * (1 - 2 * MARGIN) / Math.max(du, dv);
+        int w = Math.max(1, (int) Math.round(du * scale + 2 * MARGIN * size));
+        int h = Math.max(1, (int) Math.round(dv * scale + 2 * MARGIN * size));
+        double offU = (w - du * scale) / 2;
+        double offV = (h - dv * scale) / 2;
+
+        float eps = (float) (Math.hypot(du, dv) * 1e-6);
+        List<float[]> contours = SectionMesh.contours(segments, eps);
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        for (float[] line : contours) {
+            for (int p = 0; p < line.length; p += 2) {
+                double x = offU + (line[p] - u0) * scale;
+                double y = h - (offV + (line[p + 1] - v0) * scale);
+                if (p == 0) path.moveTo(x, y);
+                else path.lineTo(x, y);
+            }
+            path.closePath();
+        }
+
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.setColor(FILL);
+            g.fill(path);
+            g.setColor(OUTLINE);
+            g.setStroke(new BasicStroke(Math.max(1f, size / 512f)));
+            g.draw(path);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /** Сетка модели нужной версии; одновременные запросы по новой модели ждут один разбор. */
+    private SectionMesh mesh(SectionKey key) {
+        CompletableFuture<SectionMesh> load;
+        boolean owner = false;
+        synchronized (meshes) {
+            load = meshes.get(key.modelETag());
+            if (load == null) {
+                load = new CompletableFuture<>();
+                meshes.put(key.modelETag(), load);
+                owner = true;
+                Iterator<Map.Entry<String, CompletableFuture<SectionMesh>>> it = meshes.entrySet().iterator();
+                while (meshes.size() > Math.max(1, meshCacheSize) && it.hasNext()) {
+                    if (it.next().getValue() != load) it.remove();
+                }
+            }
+        }
+        if (owner) {
+            try {
+                load.complete(parse(key.objectKey()));
+            } catch (Throwable e) {
+                // В том числе OutOfMemoryError на большой сетке: незавершённый future повесил бы всех ждущих
+                synchronized (meshes) {
+                    meshes.remove(key.modelETag(), load);
+                }
+                load.completeExceptionally(e);
+            }
+        }
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading model for section", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new RuntimeException("Failed to load model for section: " + cause.getMessage(), cause);
+        }
+    }
+
+    private SectionMesh parse(String objectKey) {
+        long t0 = System.nanoTime();
+        Obj obj;
+        try (InputStream in = modelObjectCache.open(objectKey)) {
+            obj = ObjReader.read(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load model for section: " + e.getMessage(), e);
+        }
+        SectionMesh mesh = SectionMesh.of(obj);
+        if (maxTriangleCount > 0 && mesh.triangleCount() > maxTriangleCount) {
+            throw new IllegalStateException("Too many triangles for sectioning: " + mesh.triangleCount()
+                    + " (limit " + maxTriangleCount + ")");
+        }
+        log.info("Section mesh ready: model={} triangles={} ms={}", objectKey, mesh.triangleCount(),
+                (System.nanoTime() - t0) / 1_000_000);
+        return mesh;
+    }
+
+    /** Модели с таким ключом нет в бакете. */
+    public static class ModelNotFoundException extends RuntimeException {
+        public ModelNotFoundException(String objectKey) {
+            super("Model not found: " + objectKey);
+        }
+    }
+}
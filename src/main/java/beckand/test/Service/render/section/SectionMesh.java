@@ -0,0 +1,316 @@
+package beckand.test.Service.render.section;
+
+import de.javagl.obj.FloatTuple;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjFace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Треугольники модели для поперечных сечений и индекс интервалов по каждой оси. Диапазон модели по оси делится
+ * на корзины; треугольник записывается во все корзины, которые пересекает его проекция на ось. Сечение плоскостью
+ * проверяет только треугольники своей корзины, а не всю сетку — на плотных КТ-сетках это сотни треугольников
+ * вместо миллионов.
+ */
+public final class SectionMesh {
+
+    /** Оси сечения, как у ModelSlice.axis; для каждой — какие координаты идут в u и v картинки. */
+    public enum Axis {
+        X(0, 1, 2), Y(1, 0, 2), Z(2, 0, 1);
+
+        final int normal;
+        final int u;
+        final int v;
+
+        Axis(int normal, int u, int v) {
+            this.normal = normal;
+            this.u = u;
+            this.v = v;
+        }
+
+        public static Axis fromParam(String value) {
+            if (value != null) {
+                for (Axis a : values()) {
+                    if (a.name().equalsIgnoreCase(value.trim())) return a;
+                }
+            }
+            throw new IllegalArgumentException("Unknown slice axis: " + value + " (expected x, y or z)");
+        }
+    }
+
+    private static final int MAX_BUCKETS = 4096;
+
+    /** x0 y0 z0 x1 y1 z1 x2 y2 z2 на треугольник. */
+    private final float[] triangles;
+    private final int triangleCount;
+    private final float[] min = new float[3];
+    private final float[] max = new float[3];
+    /** По оси: начало списка корзины b в bucketTriangles — bucketStart[b], конец — bucketStart[b + 1]. */
+    private final int[][] bucketStart = new int[3][];
+    private final int[][] bucketTriangles = new int[3][];
+    private final int buckets;
+
+    private SectionMesh(float[] triangles, int triangleCount) {
+        this.triangles = triangles;
+        this.triangleCount = triangleCount;
+        for (int a = 0; a < 3; a++) {
+            min[a] = Float.POSITIVE_INFINITY;
+            max[a] = Float.NEGATIVE_INFINITY;
+        }
+        for (int i = 0; i < triangleCount * 9; i += 3) {
+            for (int a = 0; a < 3; a++) {
+                min[a] = Math.min(min[a], triangles[i + a]);
+                max[a] = Math.max(max[a], triangles[i + a]);
+            }
+        }
+        // ~2·√n корзин: список корзины короткий, а треугольник редко попадает больше чем в две
+        buckets = (int) Math.max(1, Math.min(MAX_BUCKETS, 2 * Math.sqrt(triangleCount)));
+        for (int a = 0; a < 3; a++) buildIndex(a);
+    }
+
+    /** Сетка из OBJ: n-угольники — веером, как при загрузке в VBO. */
+    public static SectionMesh of(Obj model) {
+        long count = 0;
+        for (int i = 0; i < model.getNumFaces(); i++) {
+            int n = model.getFace(i).getNumVertices();
+            if (n >= 3) count += n - 2;
+        }
+        if (count == 0) throw new IllegalStateException("Model has no drawable faces");
+        if (count * 9 > Integer.MAX_VALUE) throw new IllegalStateException("Model too large for sectioning: " + count + " triangles");
+        float[] tris = new float[Math.toIntExact(count * 9)];
+        int p = 0;
+        for (int i = 0; i < model.getNumFaces(); i++) {
+            ObjFace face = model.getFace(i);
+            int n = face.getNumVertices();
+            if (n < 3) continue;
+            FloatTuple v0 = model.getVertex(face.getVertexIndex(0));
+            for (int k = 1; k + 1 < n; k++) {
+                p = put(tris, p, v0);
+                p = put(tris, p, model.getVertex(face.getVertexIndex(k)));
+                p = put(tris, p, model.getVertex(face.getVertexIndex(k + 1)));
+            }
+        }
+        return new SectionMesh(tris, (int) count);
+    }
+
+    /** Сетка из готового массива (9 float на треугольник). */
+    public static SectionMesh of(float[] triangles) {
+        if (triangles.length < 9 || triangles.length % 9 != 0) throw new IllegalArgumentException("Expected 9 floats per triangle");
+        return new SectionMesh(triangles, triangles.length / 9);
+    }
+
+    private static int put(float[] tris, int p, FloatTuple v) {
+        tris[p] = v.getX();
+        tris[p + 1] = v.getY();
+        tris[p + 2] = v.getZ();
+        return p + 3;
+    }
+
+    public int triangleCount() {
+        return triangleCount;
+    }
+
+    public float min(Axis axis, boolean u) {
+        return min[u ? axis.u : axis.v];
+    }
+
+    public float max(Axis axis, boolean u) {
+        return max[u ? axis.u : axis.v];
+    }
+
+    /** Координата плоскости по доле диапазона модели вдоль оси: 0 — минимум, 1 — максимум. */
+    public float planeAt(Axis axis, double position) {
+        return (float) (min[axis.normal] + (max[axis.normal] - min[axis.normal]) * position);
+    }
+
+    private void buildIndex(int a) {
+        int[] start = new int[buckets + 1];
+        // Первый проход — размеры корзин, второй — заполнение (CSR, без списков на корзину)
+        for (int t = 0; t < triangleCount; t++) {
+            int b0 = bucket(a, triMin(t, a));
+            int b1 = bucket(a, triMax(t, a));
+            for (int b = b0; b <= b1; b++) start[b + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) start[b + 1] += start[b];
+        int[] fill = start.clone();
+        int[] list = new int[start[buckets]];
+        for (int t = 0; t < triangleCount; t++) {
+            int b0 = bucket(a, triMin(t, a));
+            int b1 = bucket(a, triMax(t, a));
+            for (int b = b0; b <= b1; b++) list[fill[b]++] = t;
+        }
+        bucketStart[a] = start;
+        bucketTriangles[a] = list;
+    }
+
+    private int bucket(int a, float value) {
+        float extent = max[a] - min[a];
+        if (extent <= 0) return 0;
+        int b = (int) ((value - min[a]) / extent * buckets);
+        return Math.max(0, Math.min(buckets - 1, b));
+    }
+
+    private float triMin(int t, int a) {
+        int i = t * 9 + a;
+        return Math.min(triangles[i], Math.min(triangles[i + 3], triangles[i + 6]));
+    }
+
+    private float triMax(int t, int a) {
+        int i = t * 9 + a;
+        return Math.max(triangles[i], Math.max(triangles[i + 3], triangles[i + 6]));
+    }
+
+    /**
+     * Отрезки пересечения плоскости с треугольниками: u0 v0 u1 v1 подряд. Вершина ровно на плоскости считается
+     * лежащей над ней — так ребро по плоскости не даёт вырожденных и двойных отрезков.
+     */
+    public float[] intersect(Axis axis, float plane) {
+        int a = axis.normal;
+        if (plane < min[a] || plane > max[a]) return new float[0];
+        int b = bucket(a, plane);
+        int from = bucketStart[a][b];
+        int to = bucketStart[a][b + 1];
+        float[] out = new float[Math.max(16, (to - from) * 4)];
+        int n = 0;
+        float[] hit = new float[4];
+        for (int k = from; k < to; k++) {
+            int base = bucketTriangles[a][k] * 9;
+            int found = 0;
+            for (int e = 0; e < 3 && found < 2; e++) {
+                int i = base + e * 3;
+                int j = base + ((e + 1) % 3) * 3;
+                float di = triangles[i + a] - plane;
+                float dj = triangles[j + a] - plane;
+                if ((di >= 0) == (dj >= 0)) continue;
+                if (di >= 0) {
+                    // Всегда от нижней вершины к верхней: соседний треугольник посчитает точку общего ребра
+                    // теми же операциями, и концы отрезков совпадут бит в бит
+                    int tmp = i;
+                    i = j;
+                    j = tmp;
+                    float td = di;
+                    di = dj;
+                    dj = td;
+                }
+                float s = di / (di - dj);
+                hit[found * 2] = triangles[i + axis.u] + (triangles[j + axis.u] - triangles[i + axis.u]) * s;
+                hit[found * 2 + 1] = triangles[i + axis.v] + (triangles[j + axis.v] - triangles[i + axis.v]) * s;
+                found++;
+            }
+            if (found < 2) continue;
+            out[n++] = hit[0];
+            out[n++] = hit[1];
+            out[n++] = hit[2];
+            out[n++] = hit[3];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Собрать отрезки в ломаные по общим концам. Концы сравниваются с допуском eps (доля диагонали сечения) —
+     * точки пересечения одного ребра из двух соседних треугольников совпадают с точностью до округления.
+     * Замкнутый контур повторяет первую точку в конце; разомкнутые (дыры в сетке) остаются как есть.
+     */
+    public static List<float[]> contours(float[] segments, float eps) {
+        int count = segments.length / 4;
+        List<float[]> result = new ArrayList<>();
+        if (count == 0) return result;
+        float inv = 1f / Math.max(eps, Float.MIN_NORMAL);
+        // Конец → отрезки, у которых он есть (номер отрезка * 2 + 0/1 — какой конец)
+        Map<Long, List<Integer>> ends = new HashMap<>(count * 3);
+        for (int s = 0; s < count; s++) {
+            for (int end = 0; end < 2; end++) {
+                ends.computeIfAbsent(pointKey(segments, s, end, inv), k -> new ArrayList<>(2)).add(s * 2 + end);
+            }
+        }
+        boolean[] used = new boolean[count];
+        for (int s = 0; s < count; s++) {
+            // Плоскость через вершину даёт отрезки нулевой длины — в контур они ничего не добавляют
+            if (pointKey(segments, s, 0, inv) == pointKey(segments, s, 1, inv)) used[s] = true;
+        }
+        for (int s = 0; s < count; s++) {
+            if (used[s]) continue;
+            used[s] = true;
+            FloatList forward = new FloatList();
+            forward.add(segments[s * 4], segments[s * 4 + 1]);
+            forward.add(segments[s * 4 + 2], segments[s * 4 + 3]);
+            extend(segments, ends, used, forward, s, 1, inv);
+            boolean closed = pointKey(forward, 0, inv) == pointKey(forward, forward.size / 2 - 1, inv);
+            if (!closed) {
+                // Разомкнутая — дотянуть и в обратную сторону от начала
+                FloatList backward = new FloatList();
+                backward.add(segments[s * 4], segments[s * 4 + 1]);
+                extend(segments, ends, used, backward, s, 0, inv);
+                forward = backward.reversedThen(forward, 1);
+            }
+            result.add(forward.toArray());
+        }
+        return result;
+    }
+
+    /** Идти от конца end отрезка s по цепочке соседей, дописывая их дальние концы в line. */
+    private static void extend(float[] segments, Map<Long, List<Integer>> ends, boolean[] used,
+                               FloatList line, int s, int end, float inv) {
+        int current = s;
+        int currentEnd = end;
+        while (true) {
+            long key = pointKey(segments, current, currentEnd, inv);
+            int next = -1;
+            int nextEnd = -1;
+            for (int ref : ends.get(key)) {
+                int seg = ref >> 1;
+                if (used[seg]) continue;
+                next = seg;
+                nextEnd = 1 - (ref & 1);
+                break;
+            }
+            if (next < 0) return;
+            used[next] = true;
+            line.add(segments[next * 4 + nextEnd * 2], segments[next * 4 + nextEnd * 2 + 1]);
+            current = next;
+            currentEnd = nextEnd;
+        }
+    }
+
+    private static long pointKey(float[] segments, int s, int end, float inv) {
+        return pack(segments[s * 4 + end * 2], segments[s * 4 + end * 2 + 1], inv);
+    }
+
+    private static long pointKey(FloatList line, int point, float inv) {
+        return pack(line.data[point * 2], line.data[point * 2 + 1], inv);
+    }
+
+    private static long pack(float u, float v, float inv) {
+        long qu = Math.round((double) u * inv);
+        long qv = Math.round((double) v * inv);
+        return (qu << 32) ^ (qv & 0xffffffffL);
+    }
+
+    /** Растущий массив пар u, v без упаковки в Float. */
+    private static final class FloatList {
+        float[] data = new float[32];
+        int size;
+
+        void add(float u, float v) {
+            if (size + 2 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = u;
+            data[size++] = v;
+        }
+
+        /** Эта ломаная задом наперёд, затем tail без первых skipPoints точек (они уже есть). */
+        FloatList reversedThen(FloatList tail, int skipPoints) {
+            FloatList out = new FloatList();
+            for (int p = size / 2 - 1; p >= 0; p--) out.add(data[p * 2], data[p * 2 + 1]);
+            for (int p = skipPoints; p < tail.size / 2; p++) out.add(tail.data[p * 2], tail.data[p * 2 + 1]);
+            return out;
+        }
+
+        float[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package beckand.test.Service.render.worker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Кольцо кадров в общей памяти: файл (по умолчанию в /dev/shm), отображённый в память и веб-процессом,
+ * и воркером. Слот — один RGBA-кадр renderWidth×renderHeight. Воркер читает glReadPixels прямо в слот,
+ * веб-процесс конвертирует пиксели из того же слота в растр для JPEG — кадр не проходит через сокет и кучу.
+ * Владение слотами ведёт веб-процесс: номер слота приходит воркеру в задании.
+ */
+public final class FrameRing implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final int slotBytes;
+    private final int slots;
+
+    private FrameRing(FileChannel channel, MappedByteBuffer mapped, int slotBytes, int slots) {
+        this.channel = channel;
+        this.mapped = mapped;
+        this.slotBytes = slotBytes;
+        this.slots = slots;
+    }
+
+    /** Создать (или пересоздать нужного размера) файл кольца — сторона веб-процесса. */
+    public static FrameRing create(Path file, int width, int height, int slots) throws IOException {
+        int slotBytes = Math.multiplyExact(Math.multiplyExact(width, height), 4);
+        long size = (long) slotBytes * slots;
+        if (size > Integer.MAX_VALUE) throw new IOException("Frame ring too large: " + size + " bytes");
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new FrameRing(ch, ch.map(FileChannel.MapMode.READ_WRITE, 0, size), slotBytes, slots);
+    }
+
+    /** Открыть существующее кольцо — сторона воркера. */
+    public static FrameRing open(Path file, int width, int height, int slots) throws IOException {
+        int slotBytes = Math.multiplyExact(Math.multiplyExact(width, height), 4);
+        long size = (long) slotBytes * slots;
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (ch.size() < size) {
+            ch.close();
+            throw new IOException("Frame ring " + file + " is " + ch.size() + " bytes, expected " + size);
+        }
+        return new FrameRing(ch, ch.map(FileChannel.MapMode.READ_WRITE, 0, size), slotBytes, slots);
+    }
+
+    /** Вид на слот: собственные position/limit, общая память. */
+    public ByteBuffer slot(int index) {
+        if (index < 0 || index >= slots) throw new IllegalArgumentException("Bad frame slot: " + index);
+        return mapped.slice(index * slotBytes, slotBytes).order(ByteOrder.nativeOrder());
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
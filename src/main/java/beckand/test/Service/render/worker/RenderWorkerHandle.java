@@ -0,0 +1,66 @@
+package beckand.test.Service.render.worker;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * Один render-воркер глазами веб-процесса: процесс, соединение, кольцо кадров и состояние.
+ * Изменяется только под замком {@link RenderWorkerPool}.
+ */
+final class RenderWorkerHandle {
+
+    final int index;
+    final Path socketPath;
+    final Path ringPath;
+
+    Process process;
+    SocketChannel channel;
+    FrameRing ring;
+    /** Соединение установлено, воркер принимает задания. */
+    boolean ready;
+    /** Идёт запуск (в фоне) — второй не начинать. */
+    boolean starting;
+    /** Задание отправлено, ответа ещё нет. */
+    boolean busy;
+    final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    String residentModelId;
+    long residentTriangles;
+    long lastUsedNanos;
+    long nextStartAtMillis;
+    int restarts;
+    int consecutiveFailures;
+    long jobs;
+    long failures;
+    double avgRenderNanos;
+    String lastError;
+
+    RenderWorkerHandle(int index, Path socketPath, Path ringPath) {
+        this.index = index;
+        this.socketPath = socketPath;
+        this.ringPath = ringPath;
+    }
+
+    boolean canTakeJob() {
+        return ready && !busy && !freeSlots.isEmpty();
+    }
+
+    /** Закрыть соединение и кольцо и убить процесс; слоты, ещё читаемые веб-процессом, вернутся через close кадра. */
+    void shutdown() {
+        ready = false;
+        busy = false;
+        residentModelId = null;
+        residentTriangles = 0;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) { }
+            channel = null;
+        }
+        if (process != null) {
+            process.destroyForcibly();
+            process = null;
+        }
+    }
+}
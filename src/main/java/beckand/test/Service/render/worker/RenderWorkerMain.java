@@ -0,0 +1,124 @@
+package beckand.test.Service.render.worker;
+
+import beckand.test.Service.file.ModelObjectCache;
+import beckand.test.Service.render.RenderMetrics;
+import beckand.test.Service.render.RenderQueue;
+import beckand.test.Service.render.RenderService;
+import beckand.test.config.MinioConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Процесс render-воркера: только RenderService (GL-контекст), очередь и MinIO-клиент, без веба, JPA и WebSocket.
+ * Запускается {@link RenderWorkerPool}; обслуживает одно соединение от веб-процесса и завершается вместе с ним.
+ * Модель воркер читает сам — через общий с веб-процессом дисковый кэш {@link ModelObjectCache}, кадр пишет в слот {@link FrameRing}, указанный в задании.
+ * Без @Configuration намеренно: сканирование компонентов веб-приложения этот класс не подхватывает.
+ */
+@Slf4j
+@Import({RenderService.class, RenderQueue.class, RenderMetrics.class, MinioConfig.class, ModelObjectCache.class})
+public class RenderWorkerMain {
+
+    static final String SOCKET_PROPERTY = "render.worker.socket";
+    static final String RING_PROPERTY = "render.worker.ring";
+    static final String SLOTS_PROPERTY = "render.worker.slots";
+    static final String INDEX_PROPERTY = "render.worker.index";
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(RenderWorkerMain.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+        int exitCode = 0;
+        try {
+            serve(ctx);
+        } catch (Exception e) {
+            log.error("Render worker failed", e);
+            exitCode = 1;
+        } finally {
+            ctx.close();
+        }
+        // FPSAnimator держит свой поток — без exit процесс не завершится
+        System.exit(exitCode);
+    }
+
+    private static void serve(ConfigurableApplicationContext ctx) throws IOException {
+        Environment env = ctx.getEnvironment();
+        Path socketPath = Path.of(env.getRequiredProperty(SOCKET_PROPERTY));
+        Path ringPath = Path.of(env.getRequiredProperty(RING_PROPERTY));
+        int slots = env.getRequiredProperty(SLOTS_PROPERTY, Integer.class);
+        int index = env.getProperty(INDEX_PROPERTY, Integer.class, 0);
+        int width = env.getRequiredProperty("render.width", Integer.class);
+        int height = env.getRequiredProperty("render.height", Integer.class);
+
+        RenderService renderService = ctx.getBean(RenderService.class);
+        ModelObjectCache modelCache = ctx.getBean(ModelObjectCache.class);
+
+        // Веб-процесс умер, не закрыв соединение (kill -9) — воркер не должен остаться сиротой
+        ProcessHandle.current().parent().ifPresent(parent -> parent.onExit().thenRun(() -> {
+            log.warn("Render worker {}: parent process exited", index);
+            System.exit(0);
+        }));
+
+        try (FrameRing ring = FrameRing.open(ringPath, width, height, slots);
+             ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            Files.deleteIfExists(socketPath);
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            log.info("Render worker {} listening on {} ({}x{}, {} slots)", index, socketPath, width, height, slots);
+            try (SocketChannel ch = server.accept()) {
+                while (true) {
+                    RenderWorkerProtocol.Request req;
+                    try {
+                        req = RenderWorkerProtocol.readRequest(ch);
+                    } catch (EOFException closed) {
+                        log.info("Render worker {}: web process disconnected", index);
+                        return;
+                    }
+                    RenderWorkerProtocol.writeResponse(ch, handle(req, renderService, modelCache, ring, width, height));
+                }
+            } finally {
+                Files.deleteIfExists(socketPath);
+            }
+        }
+    }
+
+    private static RenderWorkerProtocol.Response handle(RenderWorkerProtocol.Request req, RenderService renderService,
+                                                        ModelObjectCache modelCache, FrameRing ring,
+                                                        int width, int height) {
+        if (req.type() == RenderWorkerProtocol.TYPE_PING) {
+            return new RenderWorkerProtocol.Response(RenderWorkerProtocol.STATUS_OK, req.jobId(), width, height, 0,
+                    renderService.loadedTriangleCount(), null);
+        }
+        long t0 = System.nanoTime();
+        try {
+            String key = req.objectKey();
+            if (renderService.isModelLoaded(key)) {
+                renderService.renderRawFrame(key, null, req.azimuth(), req.elevation(), req.zoom(), ring.slot(req.slot()));
+            } else {
+                try (InputStream in = modelCache.open(key)) {
+                    renderService.renderRawFrame(key, in, req.azimuth(), req.elevation(), req.zoom(), ring.slot(req.slot()));
+                }
+            }
+            return new RenderWorkerProtocol.Response(RenderWorkerProtocol.STATUS_OK, req.jobId(), width, height,
+                    System.nanoTime() - t0, renderService.loadedTriangleCount(), null);
+        } catch (Exception e) {
+            log.warn("Render job {} failed for {}: {}", req.jobId(), req.objectKey(), e.toString());
+            return new RenderWorkerProtocol.Response(RenderWorkerProtocol.STATUS_ERROR, req.jobId(), width, height,
+                    System.nanoTime() - t0, 0, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package beckand.test.Service.render.worker;
+
+import beckand.test.DTO.render.RenderWorkerStats;
+import beckand.test.Service.render.RenderQueue;
+import beckand.test.Service.render.RenderRejectedException;
+import beckand.test.Service.render.RenderService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Пул render-воркеров: отдельные JVM с собственным GL-контекстом (RenderWorkerMain). Задания — по Unix-сокету,
+ * кадры — через {@link FrameRing} в общей памяти. Воркер, упавший в нативном GL/Mesa или зависший дольше
+ * render.workers.job-timeout-ms, убивается и перезапускается с нарастающей паузой; веб-процесс при этом живёт.
+ * Простаивающий воркер раз в render.workers.ping-ms получает PING: не ответивший за ping-timeout-ms считается
+ * зависшим и тоже перезапускается, не дожидаясь таймаута первого же задания.
+ * <p>
+ * RenderQueue получает число контекстов = число воркеров, так что одновременно держателей билетов не больше,
+ * чем воркеров. Задание идёт воркеру, у которого модель уже загружена, иначе — самому давно не использованному.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RenderWorkerPool {
+
+    private static final long MAX_RESTART_BACKOFF_MS = 30_000;
+
+    private final RenderQueue renderQueue;
+
+    @Value("${render.workers.enabled:false}")
+    private boolean enabled;
+    /** 0 — по ядрам: половина доступных процессоров, минимум один. */
+    @Value("${render.workers.count:0}")
+    private int workerCount;
+    /** Каталог для сокетов и колец; пусто — /dev/shm, если есть, иначе java.io.tmpdir. */
+    @Value("${render.workers.dir:}")
+    private String workDir;
+    @Value("${render.workers.ring-slots:3}")
+    private int ringSlots;
+    @Value("${render.workers.jvm-args:-Xmx2g}")
+    private String jvmArgs;
+    @Value("${render.workers.startup-timeout-ms:60000}")
+    private long startupTimeoutMs;
+    @Value("${render.workers.job-timeout-ms:30000}")
+    private long jobTimeoutMs;
+    @Value("${render.workers.ping-timeout-ms:5000}")
+    private long pingTimeoutMs;
+    /** Сколько ждать свободного воркера, прежде чем ответить busy / 503. */
+    @Value("${render.workers.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    @Value("${render.width:1280}")
+    private int renderWidth;
+    @Value("${render.height:720}")
+    private int renderHeight;
+
+    @Value("${minio.endpoint}")
+    private String minioEndpoint;
+    @Value("${minio.access-key}")
+    private String minioAccessKey;
+    @Value("${minio.secret-key}")
+    private String minioSecretKey;
+    @Value("${minio.bucket}")
+    private String minioBucket;
+
+    private final List<RenderWorkerHandle> workers = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final AtomicInteger jobSeq = new AtomicInteger();
+    private ExecutorService starter;
+    private ScheduledExecutorService watchdog;
+    private volatile String lastResidentModelId;
+    private int width;
+    private int height;
+
+    @PostConstruct
+    private void init() throws IOException {
+        if (!enabled) return;
+        width = Math.max(1, Math.min(RenderService.MAX_RENDER_SIZE, renderWidth > 0 ? renderWidth : 1280));
+        height = Math.max(1, Math.min(RenderService.MAX_RENDER_SIZE, renderHeight > 0 ? renderHeight : 720));
+        int n = workerCount > 0 ? workerCount : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int slots = Math.max(2, Math.min(255, ringSlots));
+        Path dir = resolveWorkDir();
+        Files.createDirectories(dir);
+        for (int i = 0; i < n; i++) {
+            RenderWorkerHandle w = new RenderWorkerHandle(i, dir.resolve("render-worker-" + i + ".sock"),
+                    dir.resolve("render-worker-" + i + ".ring"));
+            // Кольцо живёт столько же, сколько веб-процесс: перезапущенный воркер открывает тот же файл,
+            // а кадры, которые ещё читаются, не теряют память под собой
+            w.ring = FrameRing.create(w.ringPath, width, height, slots);
+            for (int s = 0; s < slots; s++) w.freeSlots.add(s);
+            workers.add(w);
+        }
+        starter = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "render-worker-start");
+            t.setDaemon(true);
+            return t;
+        });
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "render-worker-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        renderQueue.setContexts(n);
+        log.info("Render workers: {} x {}x{}, {} ring slots each, dir {}", n, width, height, slots, dir);
+        superviseWorkers();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Последняя модель, загруженная каким-либо воркером (для heartbeat кластера). */
+    public String lastResidentModelId() {
+        return lastResidentModelId;
+    }
+
+    /**
+     * Отрендерить кадр на свободном воркере. Вызывать с билетом RenderQueue. Если воркер упал посреди задания,
+     * кадр один раз повторяется на другом (или на перезапущенном) воркере.
+     */
+    public WorkerFrame render(String objectKey, int azimuth, int elevation, double zoom) throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            RenderWorkerHandle w = acquire(objectKey);
+            try {
+                return runJob(w, objectKey, azimuth, elevation, zoom);
+            } catch (WorkerJobException e) {
+                // Воркер жив и ответил ошибкой (нет объекта, битый OBJ, лимит треугольников) — повтор не поможет
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+                log.warn("Render worker {} failed on {}: {}", w.index, objectKey, e.toString());
+            }
+        }
+        throw failure;
+    }
+
+    public List<RenderWorkerStats> stats() {
+        lock.lock();
+        try {
+            List<RenderWorkerStats> result = new ArrayList<>(workers.size());
+            for (RenderWorkerHandle w : workers) {
+                RenderWorkerStats s = new RenderWorkerStats();
+                s.setIndex(w.index);
+                s.setPid(w.process != null ? w.process.pid() : -1);
+                s.setReady(w.ready);
+                s.setBusy(w.busy);
+                s.setFreeSlots(w.freeSlots.size());
+                s.setResidentModelId(w.residentModelId);
+                s.setResidentTriangles(w.residentTriangles);
+                s.setJobs(w.jobs);
+                s.setFailures(w.failures);
+                s.setRestarts(w.restarts);
+                s.setAvgRenderMs(w.avgRenderNanos / 1_000_000.0);
+                s.setLastError(w.lastError);
+                result.add(s);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Поднять упавшие и ещё не запущенные воркеры (с паузой после падения). */
+    @Scheduled(fixedDelayString = "${render.workers.supervise-ms:2000}")
+    public void superviseWorkers() {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (RenderWorkerHandle w : workers) {
+                if (w.ready && w.process != null && !w.process.isAlive()) {
+                    markFailedLocked(w, "process exited with " + w.process.exitValue());
+                }
+                if (!w.ready && !w.starting && now >= w.nextStartAtMillis) {
+                    w.starting = true;
+                    starter.execute(() -> start(w));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Проверить простаивающие воркеры: зависший процесс (GL, GC, SIGSTOP) убивается и перезапускается. */
+    @Scheduled(fixedDelayString = "${render.workers.ping-ms:10000}")
+    public void pingWorkers() {
+        if (!enabled) return;
+        List<RenderWorkerHandle> idle = new ArrayList<>();
+        lock.lock();
+        try {
+            for (RenderWorkerHandle w : workers) {
+                if (w.ready && !w.busy) {
+                    // Занят пингом — задание к нему не пойдёт, ответы в канале не перемешаются
+                    w.busy = true;
+                    idle.add(w);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (RenderWorkerHandle w : idle) ping(w);
+    }
+
+    private void ping(RenderWorkerHandle w) {
+        int jobId = jobSeq.incrementAndGet();
+        SocketChannel ch;
+        Process process;
+        lock.lock();
+        try {
+            ch = w.channel;
+            process = w.process;
+        } finally {
+            lock.unlock();
+        }
+        ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+            log.warn("Render worker {} did not answer ping in {} ms, killing", w.index, pingTimeoutMs);
+            if (process != null) process.destroyForcibly();
+        }, pingTimeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            RenderWorkerProtocol.writeRequest(ch, new RenderWorkerProtocol.Request(RenderWorkerProtocol.TYPE_PING,
+                    0, jobId, 0, 0, 0f, null));
+            RenderWorkerProtocol.Response resp = RenderWorkerProtocol.readResponse(ch);
+            timeout.cancel(false);
+            if (resp.jobId() != jobId) throw new IOException("Render worker protocol desync: ping " + resp.jobId() + " != " + jobId);
+            lock.lock();
+            try {
+                w.busy = false;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            timeout.cancel(false);
+            lock.lock();
+            try {
+                markFailedLocked(w, "ping failed: " + e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            for (RenderWorkerHandle w : workers) {
+                w.shutdown();
+                try {
+                    w.ring.close();
+                } catch (IOException ignored) { }
+                try {
+                    Files.deleteIfExists(w.ringPath);
+                    Files.deleteIfExists(w.socketPath);
+                } catch (IOException ignored) { }
+            }
+        } finally {
+            lock.unlock();
+        }
+        starter.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    private RenderWorkerHandle acquire(String objectKey) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        lock.lock();
+        try {
+            while (true) {
+                RenderWorkerHandle best = null;
+                for (RenderWorkerHandle w : workers) {
+                    if (!w.canTakeJob()) continue;
+                    if (objectKey.equals(w.residentModelId)) {
+                        best = w;
+                        break;
+                    }
+                    if (best == null || w.lastUsedNanos < best.lastUsedNanos) best = w;
+                }
+                if (best != null) {
+                    best.busy = true;
+                    best.lastUsedNanos = System.nanoTime();
+                    return best;
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    // Все воркеры заняты, перезапускаются или держат слоты — та же ситуация, что переполненная очередь
+                    throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL, renderQueue.retryAfterMs());
+                }
+                try {
+                    changed.awaitNanos(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private WorkerFrame runJob(RenderWorkerHandle w, String objectKey, int azimuth, int elevation, double zoom) throws IOException {
+        int slot;
+        SocketChannel ch;
+        lock.lock();
+        try {
+            slot = w.freeSlots.pollFirst();
+            ch = w.channel;
+        } finally {
+            lock.unlock();
+        }
+        int jobId = jobSeq.incrementAndGet();
+        Process process = w.process;
+        // Зависший GL не отвечает никогда: по таймауту процесс убивается, чтение из сокета обрывается
+        ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+            log.warn("Render worker {} exceeded {} ms on {}, killing", w.index, jobTimeoutMs, objectKey);
+            if (process != null) process.destroyForcibly();
+        }, jobTimeoutMs, TimeUnit.MILLISECONDS);
+        boolean slotHandedOut = false;
+        try {
+            RenderWorkerProtocol.writeRequest(ch, new RenderWorkerProtocol.Request(RenderWorkerProtocol.TYPE_RENDER,
+                    slot, jobId, azimuth, elevation, (float) zoom, objectKey));
+            RenderWorkerProtocol.Response resp = RenderWorkerProtocol.readResponse(ch);
+            timeout.cancel(false);
+            if (resp.jobId() != jobId) throw new IOException("Render worker protocol desync: job " + resp.jobId() + " != " + jobId);
+            if (resp.status() != RenderWorkerProtocol.STATUS_OK) {
+                lock.lock();
+                try {
+                    w.failures++;
+                    w.lastError = resp.message();
+                } finally {
+                    lock.unlock();
+                }
+                throw new WorkerJobException(resp.message() != null ? resp.message() : "Render worker error");
+            }
+            if (resp.width() != width || resp.height() != height) {
+                throw new IOException("Render worker frame " + resp.width() + "x" + resp.height() + " != ring " + width + "x" + height);
+            }
+            lock.lock();
+            try {
+                w.jobs++;
+                w.consecutiveFailures = 0;
+                w.residentModelId = objectKey;
+                w.residentTriangles = resp.triangles();
+                w.avgRenderNanos = w.avgRenderNanos == 0 ? resp.renderNanos() : w.avgRenderNanos * 0.9 + resp.renderNanos() * 0.1;
+            } finally {
+                lock.unlock();
+            }
+            lastResidentModelId = objectKey;
+            slotHandedOut = true;
+            return new WorkerFrame(w.ring.slot(slot), resp.renderNanos(), resp.triangles(), () -> releaseSlot(w, slot));
+        } catch (WorkerJobException e) {
+            throw e;
+        } catch (IOException e) {
+            timeout.cancel(false);
+            lock.lock();
+            try {
+                markFailedLocked(w, e.toString());
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        } finally {
+            lock.lock();
+            try {
+                w.busy = false;
+                if (!slotHandedOut) w.freeSlots.addLast(slot);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void releaseSlot(RenderWorkerHandle w, int slot) {
+        lock.lock();
+        try {
+            w.freeSlots.addLast(slot);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void markFailedLocked(RenderWorkerHandle w, String reason) {
+        if (!w.ready && w.process == null) return;
+        w.failures++;
+        w.lastError = reason;
+        w.shutdown();
+        long backoff = scheduleRestartLocked(w);
+        log.warn("Render worker {} is down ({}), restart in {} ms", w.index, reason, backoff);
+        changed.signalAll();
+    }
+
+    /** Пауза перед перезапуском растёт с каждым падением подряд: воркер, падающий сразу, не крутится в цикле. */
+    private long scheduleRestartLocked(RenderWorkerHandle w) {
+        w.restarts++;
+        w.consecutiveFailures++;
+        long backoff = Math.min(MAX_RESTART_BACKOFF_MS, 500L << Math.min(6, w.consecutiveFailures - 1));
+        w.nextStartAtMillis = System.currentTimeMillis() + backoff;
+        return backoff;
+    }
+
+    /** Запуск процесса и ожидание сокета: воркер открывает его только после инициализации GL. */
+    private void start(RenderWorkerHandle w) {
+        Process process = null;
+        try {
+            Files.deleteIfExists(w.socketPath);
+            ProcessBuilder pb = new ProcessBuilder(workerCommand(w));
+            pb.environment().put("MINIO_ENDPOINT", minioEndpoint);
+            pb.environment().put("MINIO_ACCESS_KEY", minioAccessKey);
+            pb.environment().put("MINIO_SECRET_KEY", minioSecretKey);
+            pb.environment().put("MINIO_BUCKET", minioBucket);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            process = pb.start();
+            log.info("Render worker {} started, pid {}", w.index, process.pid());
+
+            SocketChannel ch = connect(w, process);
+            lock.lock();
+            try {
+                w.process = process;
+                w.channel = ch;
+                w.ready = true;
+                w.starting = false;
+                w.residentModelId = null;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            log.info("Render worker {} ready", w.index);
+        } catch (Exception e) {
+            if (process != null) process.destroyForcibly();
+            lock.lock();
+            try {
+                w.starting = false;
+                w.lastError = e.toString();
+                scheduleRestartLocked(w);
+            } finally {
+                lock.unlock();
+            }
+            log.warn("Render worker {} failed to start: {}", w.index, e.toString());
+        }
+    }
+
+    private SocketChannel connect(RenderWorkerHandle w, Process process) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + startupTimeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) throw new IOException("Render worker exited during startup: " + process.exitValue());
+            if (Files.exists(w.socketPath)) {
+                try {
+                    SocketChannel ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+                    ch.connect(UnixDomainSocketAddress.of(w.socketPath));
+                    return ch;
+                } catch (IOException notYet) {
+                    // сокет создан, но accept ещё не готов
+                }
+            }
+            Thread.sleep(100);
+        }
+        throw new IOException("Render worker did not open " + w.socketPath + " in " + startupTimeoutMs + " ms");
+    }
+
+    private List<String> workerCommand(RenderWorkerHandle w) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : jvmArgs.trim().split("\\s+")) {
+            if (!arg.isEmpty()) cmd.add(arg);
+        }
+        cmd.add("-Djava.awt.headless=true");
+        String classPath = System.getProperty("java.class.path");
+        cmd.add("-cp");
+        cmd.add(classPath);
+        if (classPath.endsWith(".jar") && !classPath.contains(File.pathSeparator)) {
+            // bootJar: классы приложения лежат в BOOT-INF, запускаем через лаунчер Spring Boot
+            cmd.add("-Dloader.main=" + RenderWorkerMain.class.getName());
+            cmd.add("org.springframework.boot.loader.launch.PropertiesLauncher");
+        } else {
+            cmd.add(RenderWorkerMain.class.getName());
+        }
+        cmd.add("--render.workers.enabled=false");
+        cmd.add("--render.width=" + width);
+        cmd.add("--render.height=" + height);
+        cmd.add("--" + RenderWorkerMain.SOCKET_PROPERTY + "=" + w.socketPath);
+        cmd.add("--" + RenderWorkerMain.RING_PROPERTY + "=" + w.ringPath);
+        cmd.add("--" + RenderWorkerMain.SLOTS_PROPERTY + "=" + w.ring.slots());
+        cmd.add("--" + RenderWorkerMain.INDEX_PROPERTY + "=" + w.index);
+        return cmd;
+    }
+
+    private Path resolveWorkDir() {
+        if (workDir != null && !workDir.isBlank()) return Path.of(workDir);
+        Path shm = Path.of("/dev/shm");
+        Path base = Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Path.of(System.getProperty("java.io.tmpdir"));
+        return base.resolve("atlas-render-" + ProcessHandle.current().pid());
+    }
+
+    /** Воркер ответил ошибкой задания — процесс исправен, перезапуск и повтор не нужны. */
+    private static final class WorkerJobException extends IOException {
+        private WorkerJobException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package beckand.test.Service.render.worker;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Задания веб-процесс → воркер по Unix-сокету. Little-endian, фиксированный заголовок + строка UTF-8:
+ * <pre>
+ * запрос (20 байт): u8 type, u8 slot, u16 keyLength, u32 jobId, i32 azimuth, i32 elevation, f32 zoom; ключ объекта
+ * ответ  (32 байта): u8 status, u8 0, u16 messageLength, u32 jobId, u32 width, u32 height, u64 renderNanos,
+ *                   u64 triangles; сообщение
+ * </pre>
+ * Пиксели в сокет не попадают — они уже в слоте {@link FrameRing}. Ответ OK на RENDER означает, что слот заполнен;
+ * triangles — число треугольников загруженной в воркер модели (для эвристик качества веб-процесса).
+ * PING пул шлёт простаивающим воркерам: не ответивший вовремя считается зависшим и перезапускается.
+ */
+final class RenderWorkerProtocol {
+
+    static final byte TYPE_RENDER = 1;
+    static final byte TYPE_PING = 2;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    static final int REQUEST_HEADER = 20;
+    static final int RESPONSE_HEADER = 32;
+
+    private RenderWorkerProtocol() {
+    }
+
+    record Request(byte type, int slot, int jobId, int azimuth, int elevation, float zoom, String objectKey) {
+    }
+
+    record Response(byte status, int jobId, int width, int height, long renderNanos, long triangles, String message) {
+    }
+
+    static void writeRequest(SocketChannel ch, Request r) throws IOException {
+        byte[] key = r.objectKey() != null ? r.objectKey().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer b = ByteBuffer.allocate(REQUEST_HEADER + key.length).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(r.type()).put((byte) r.slot()).putShort((short) key.length).putInt(r.jobId())
+                .putInt(r.azimuth()).putInt(r.elevation()).putFloat(r.zoom()).put(key);
+        writeFully(ch, b.flip());
+    }
+
+    static Request readRequest(SocketChannel ch) throws IOException {
+        ByteBuffer h = readFully(ch, REQUEST_HEADER);
+        byte type = h.get();
+        int slot = h.get() & 0xFF;
+        int keyLength = h.getShort() & 0xFFFF;
+        int jobId = h.getInt();
+        int az = h.getInt();
+        int el = h.getInt();
+        float zoom = h.getFloat();
+        String key = keyLength > 0 ? StandardCharsets.UTF_8.decode(readFully(ch, keyLength)).toString() : null;
+        return new Request(type, slot, jobId, az, el, zoom, key);
+    }
+
+    static void writeResponse(SocketChannel ch, Response r) throws IOException {
+        byte[] msg = r.message() != null ? r.message().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int msgLength = Math.min(msg.length, 0xFFFF);
+        ByteBuffer b = ByteBuffer.allocate(RESPONSE_HEADER + msgLength).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(r.status()).put((byte) 0).putShort((short) msgLength).putInt(r.jobId())
+                .putInt(r.width()).putInt(r.height()).putLong(r.renderNanos()).putLong(r.triangles()).put(msg, 0, msgLength);
+        writeFully(ch, b.flip());
+    }
+
+    static Response readResponse(SocketChannel ch) throws IOException {
+        ByteBuffer h = readFully(ch, RESPONSE_HEADER);
+        byte status = h.get();
+        h.get();
+        int msgLength = h.getShort() & 0xFFFF;
+        int jobId = h.getInt();
+        int width = h.getInt();
+        int height = h.getInt();
+        long renderNanos = h.getLong();
+        long triangles = h.getLong();
+        String msg = msgLength > 0 ? StandardCharsets.UTF_8.decode(readFully(ch, msgLength)).toString() : null;
+        return new Response(status, jobId, width, height, renderNanos, triangles, msg);
+    }
+
+    private static void writeFully(SocketChannel ch, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) ch.write(b);
+    }
+
+    private static ByteBuffer readFully(SocketChannel ch, int n) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(n).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining()) {
+            if (ch.read(b) < 0) throw new EOFException("Render worker connection closed");
+        }
+        return b.flip();
+    }
+}
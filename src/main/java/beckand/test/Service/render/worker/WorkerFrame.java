@@ -0,0 +1,44 @@
+package beckand.test.Service.render.worker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Готовый кадр воркера: RGBA снизу вверх прямо в слоте общей памяти. Слот занят до close() —
+ * закрывать сразу после конвертации в растр, иначе воркеру не во что рендерить следующий кадр.
+ */
+public final class WorkerFrame implements AutoCloseable {
+
+    private final ByteBuffer pixels;
+    private final Runnable release;
+    private final long renderNanos;
+    private final long triangleCount;
+    private boolean closed;
+
+    WorkerFrame(ByteBuffer pixels, long renderNanos, long triangleCount, Runnable release) {
+        this.pixels = pixels;
+        this.renderNanos = renderNanos;
+        this.triangleCount = triangleCount;
+        this.release = release;
+    }
+
+    public ByteBuffer pixels() {
+        return pixels;
+    }
+
+    /** Время рендера внутри воркера (загрузка модели при смене + кадр + readback). */
+    public long renderNanos() {
+        return renderNanos;
+    }
+
+    /** Треугольников в модели, загруженной в воркер. */
+    public long triangleCount() {
+        return triangleCount;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        release.run();
+    }
+}
@@ -3,11 +3,23 @@ package beckand.test.config;
 import io.minio.BucketExistsArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpMetricsEventListener;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @Slf4j
 public class MinioConfig {
@@ -24,16 +36,53 @@ public class MinioConfig {
     @Value("${minio.secret-key}")
     private String secretKey;
 
+    /**
+     * MinioClient выполняет запросы через очередь OkHttp Dispatcher, а у неё по умолчанию не больше 5 запросов на хост —
+     * это и был потолок параллельных чтений из MinIO. Лимиты настраиваются, а в режиме виртуальных потоков
+     * сами вызовы идут на виртуальных потоках.
+     */
+    @Value("${minio.max-concurrent-requests:64}")
+    private int maxConcurrentRequests;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /** Время запросов к MinIO (minio.requests в Prometheus); в render-воркере реестра нет — без метрик. */
     @Bean
-    public MinioClient minioClient() {
+    public MinioClient minioClient(ObjectProvider<MeterRegistry> meterRegistry) {
+        Dispatcher dispatcher = virtualThreads
+                ? new Dispatcher(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("minio-io-", 0).factory()))
+                : new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(1, maxConcurrentRequests));
+        dispatcher.setMaxRequestsPerHost(Math.max(1, maxConcurrentRequests));
+        long timeout = TimeUnit.MINUTES.toMillis(5);
+        OkHttpClient.Builder httpBuilder = HttpUtils.newDefaultHttpClient(timeout, timeout, timeout)
+                .newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(Math.max(5, maxConcurrentRequests), 5, TimeUnit.MINUTES));
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            httpBuilder.eventListener(OkHttpMetricsEventListener.builder(registry, "minio.requests")
+                    .uriMapper(MinioConfig::metricsUri)
+                    .build());
+        }
+        OkHttpClient httpClient = httpBuilder.build();
         MinioClient client = MinioClient.builder()
                 .endpoint(endpoint)
                 .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
                 .build();
         ensureBucket(client);
         return client;
     }
 
+    /** Ключи объектов в тег не попадают — иначе по серии на каждый файл. */
+    private static String metricsUri(Request request) {
+        List<String> segments = request.url().pathSegments();
+        if (segments.size() > 1) return "/{bucket}/{object}";
+        return segments.get(0).isEmpty() ? "/" : "/{bucket}";
+    }
+
     private void ensureBucket(MinioClient client) {
         try {
             if (!client.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
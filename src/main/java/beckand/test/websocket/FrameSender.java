@@ -0,0 +1,220 @@
+package beckand.test.websocket;
+
+import beckand.test.DTO.render.FrameSenderStats;
+import beckand.test.Service.render.jfr.FrameSendEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Отправка кадров одной сессии вне потока обработки сообщений. sendMessage блокирует до конца передачи,
+ * и раньше студент на медленном Wi-Fi держал поток (а через него и конвейер рендера) на всё время передачи.
+ * <p>
+ * Одновременно идёт не больше одной отправки на сессию. Превью хранится в одном слоте: если клиент не успел
+ * принять предыдущее, оно заменяется свежим. Финальные кадры и служебные сообщения не выбрасываются никогда;
+ * если даже они не помещаются в буфер — клиент безнадёжно отстал, сессия закрывается.
+ */
+@Slf4j
+public class FrameSender {
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final long bufferLimitBytes;
+
+    private final ArrayDeque<Outgoing> reliable = new ArrayDeque<>();
+    private Outgoing latestPreview;
+    private long bufferedBytes;
+    private boolean draining;
+    private boolean closed;
+
+    private long sentMessages;
+    private long sentBytes;
+    private long droppedPreviews;
+    private long lastLagNanos;
+    private long maxLagNanos;
+    private double avgLagNanos;
+
+    private static final class Outgoing {
+        private final WebSocketMessage<?> message;
+        private final int size;
+        private final long enqueuedNanos = System.nanoTime();
+        private final LongConsumer onSent;
+        private final boolean preview;
+
+        private Outgoing(WebSocketMessage<?> message, LongConsumer onSent, boolean preview) {
+            this.message = message;
+            this.size = message.getPayloadLength();
+            this.onSent = onSent;
+            this.preview = preview;
+        }
+    }
+
+    public FrameSender(WebSocketSession session, Executor executor, long bufferLimitBytes) {
+        this.session = session;
+        this.executor = executor;
+        this.bufferLimitBytes = bufferLimitBytes;
+    }
+
+    /** Превью: заменяет ещё не отправленное превью. onSent получает длительность самой передачи в наносекундах. */
+    public void sendPreview(WebSocketMessage<?> message, LongConsumer onSent) {
+        synchronized (this) {
+            if (closed) return;
+            dropPendingPreviewLocked();
+            Outgoing o = new Outgoing(message, onSent, true);
+            latestPreview = o;
+            bufferedBytes += o.size;
+            scheduleLocked();
+        }
+    }
+
+    /** Финальный кадр: гарантированно уходит; ожидающее превью теряет смысл и выбрасывается. */
+    public void sendFinal(WebSocketMessage<?> message, LongConsumer onSent) {
+        synchronized (this) {
+            if (closed) return;
+            dropPendingPreviewLocked();
+            enqueueReliableLocked(new Outgoing(message, onSent, false));
+        }
+    }
+
+    /** Служебное сообщение (busy и т.п.): гарантированно, порядок с финальными кадрами сохраняется. */
+    public void sendControl(WebSocketMessage<?> message) {
+        synchronized (this) {
+            if (closed) return;
+            enqueueReliableLocked(new Outgoing(message, null, false));
+        }
+    }
+
+    public synchronized FrameSenderStats stats() {
+        FrameSenderStats s = new FrameSenderStats();
+        s.setSessionId(session.getId());
+        s.setBufferedBytes(bufferedBytes);
+        s.setPendingMessages(reliable.size() + (latestPreview != null ? 1 : 0));
+        s.setSentMessages(sentMessages);
+        s.setSentBytes(sentBytes);
+        s.setDroppedPreviews(droppedPreviews);
+        s.setLastLagMs(TimeUnit.NANOSECONDS.toMillis(lastLagNanos));
+        s.setAvgLagMs(avgLagNanos / 1_000_000.0);
+        s.setMaxLagMs(TimeUnit.NANOSECONDS.toMillis(maxLagNanos));
+        return s;
+    }
+
+    /** Закрыть соединение с кодом status: неотправленное отбрасывается, закрытие — в потоке отправки. */
+    public void closeSession(CloseStatus status) {
+        close();
+        executor.execute(() -> closeQuietly(status));
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            reliable.clear();
+            latestPreview = null;
+            bufferedBytes = 0;
+        }
+    }
+
+    private void dropPendingPreviewLocked() {
+        if (latestPreview == null) return;
+        bufferedBytes -= latestPreview.size;
+        latestPreview = null;
+        droppedPreviews++;
+    }
+
+    private void enqueueReliableLocked(Outgoing o) {
+        if (bufferedBytes + o.size > bufferLimitBytes && !reliable.isEmpty()) {
+            log.warn("WS send buffer overflow: session={} buffered={} limit={} — closing slow client",
+                    session.getId(), bufferedBytes, bufferLimitBytes);
+            closed = true;
+            reliable.clear();
+            bufferedBytes = 0;
+            executor.execute(() -> closeQuietly(CloseStatus.SESSION_NOT_RELIABLE));
+            return;
+        }
+        reliable.addLast(o);
+        bufferedBytes += o.size;
+        scheduleLocked();
+    }
+
+    private void scheduleLocked() {
+        if (draining) return;
+        draining = true;
+        executor.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            Outgoing next;
+            synchronized (this) {
+                next = reliable.pollFirst();
+                if (next == null) {
+                    next = latestPreview;
+                    latestPreview = null;
+                }
+                if (next == null || closed) {
+                    draining = false;
+                    return;
+                }
+                bufferedBytes -= next.size;
+            }
+            FrameSendEvent event = new FrameSendEvent();
+            event.begin();
+            long t0 = System.nanoTime();
+            try {
+                if (!session.isOpen()) {
+                    close();
+                    continue;
+                }
+                session.sendMessage(next.message);
+            } catch (Exception e) {
+                log.debug("WS send failed (session={}): {}", session.getId(), e.toString());
+                close();
+                continue;
+            }
+            long now = System.nanoTime();
+            commitSendEvent(event, next, t0);
+            synchronized (this) {
+                long lag = now - next.enqueuedNanos;
+                sentMessages++;
+                sentBytes += next.size;
+                lastLagNanos = lag;
+                maxLagNanos = Math.max(maxLagNanos, lag);
+                avgLagNanos = avgLagNanos == 0 ? lag : avgLagNanos * 0.9 + lag * 0.1;
+            }
+            if (next.onSent != null) {
+                try {
+                    next.onSent.accept(now - t0);
+                } catch (RuntimeException e) {
+                    log.debug("WS onSent callback failed (session={}): {}", session.getId(), e.toString());
+                }
+            }
+        }
+    }
+
+    private void commitSendEvent(FrameSendEvent event, Outgoing sent, long sendStartNanos) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.sessionId = session.getId();
+        Object modelId = session.getAttributes().get(RenderHandshakeInterceptor.MODEL_ID_ATTR);
+        event.modelId = modelId != null ? modelId.toString() : null;
+        event.kind = sent.preview ? "preview" : "reliable";
+        event.bytes = sent.size;
+        event.queuedNanos = sendStartNanos - sent.enqueuedNanos;
+        event.commit();
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            if (session.isOpen()) session.close(status);
+        } catch (Exception ignored) { }
+    }
+}
@@ -0,0 +1,92 @@
+package beckand.test.websocket;
+
+import beckand.test.DTO.render.FrameSenderStats;
+import beckand.test.Service.render.RenderMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/** Отправители кадров по WebSocket-сессиям и общий пул потоков отправки. */
+@Component
+public class FrameSenderRegistry {
+
+    /** Сколько байт может ждать отправки на одну сессию, прежде чем медленный клиент будет отключён. */
+    @Value("${render.ws.send-buffer-bytes:8388608}")
+    private long sendBufferBytes;
+
+    /** Тот же флаг, что переводит Tomcat на виртуальные потоки: отправка к медленному клиенту стоит не дороже. */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private RenderMetrics metrics;
+
+    private final Map<String, FrameSender> senders = new ConcurrentHashMap<>();
+    private final AtomicInteger threadSeq = new AtomicInteger();
+    private ExecutorService sendExecutor;
+
+    @PostConstruct
+    private void init() {
+        sendExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-send-", 0).factory())
+                : Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "ws-send-" + threadSeq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        metrics.gauge("atlas.websocket.sessions", "Открытые WebSocket-сессии рендера", senders, Map::size);
+    }
+
+    public FrameSender register(WebSocketSession session) {
+        return senders.computeIfAbsent(session.getId(), id -> new FrameSender(session, sendExecutor, sendBufferBytes));
+    }
+
+    /**
+     * Отправитель сессии или null, если сессия уже закрыта (unregister). Заводится только в register —
+     * кадр, дорендеренный после закрытия, не должен создавать отправитель, который никто не уберёт.
+     */
+    public FrameSender get(WebSocketSession session) {
+        return senders.get(session.getId());
+    }
+
+    public void unregister(WebSocketSession session) {
+        FrameSender sender = senders.remove(session.getId());
+        if (sender != null) sender.close();
+    }
+
+    /** Закрыть все сессии, подходящие под filter (например, модели, переехавшие на другой render-узел). */
+    public int closeSessions(Predicate<WebSocketSession> filter, CloseStatus status) {
+        int closed = 0;
+        for (FrameSender sender : senders.values()) {
+            if (filter.test(sender.session())) {
+                sender.closeSession(status);
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    public List<FrameSenderStats> stats() {
+        List<FrameSenderStats> result = new ArrayList<>(senders.size());
+        for (FrameSender sender : senders.values()) result.add(sender.stats());
+        return result;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,64 @@
+package beckand.test.websocket;
+
+import beckand.test.DTO.cluster.RenderNodeDto;
+import beckand.test.Service.cluster.RenderClusterService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Разбирает URL сокета один раз при подключении: modelId (раньше вычислялся substring/split на каждое сообщение)
+ * и версию протокола из ?proto=. Подпротокол atlas.render.v2 уточняется после рукопожатия.
+ * В кластерном режиме рукопожатие к модели чужого узла отклоняется 307 с адресом владельца в Location.
+ * Браузер редирект рукопожатия не выполняет, поэтому веб-клиент берёт адрес заранее из /cluster/route
+ * (и заново — при закрытии 4010); Location — для остальных клиентов.
+ */
+public class RenderHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String MODEL_ID_ATTR = "atlas.modelId";
+    public static final String PROTOCOL_ATTR = "atlas.protocol";
+    private static final String PATH_PREFIX = "/ws/render/";
+
+    private final RenderClusterService clusterService;
+
+    public RenderHandshakeInterceptor(RenderClusterService clusterService) {
+        this.clusterService = clusterService;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        URI uri = request.getURI();
+        String path = uri.getPath();
+        if (path == null) return false;
+        int idx = path.indexOf(PATH_PREFIX);
+        // getPath() уже декодирован: ключи вида folder/model.obj (%2F) сохраняются целиком
+        String modelId = idx >= 0 ? path.substring(idx + PATH_PREFIX.length()) : path.substring(path.lastIndexOf('/') + 1);
+        if (modelId.isEmpty()) return false;
+        RenderNodeDto owner = clusterService.ownerOf(modelId);
+        if (owner != null) {
+            String location = clusterService.route(modelId).getWsUrl();
+            if (uri.getRawQuery() != null) location += "?" + uri.getRawQuery();
+            response.setStatusCode(HttpStatus.TEMPORARY_REDIRECT);
+            response.getHeaders().set(HttpHeaders.LOCATION, location);
+            return false;
+        }
+        attributes.put(MODEL_ID_ATTR, modelId);
+
+        String proto = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("proto");
+        attributes.put(PROTOCOL_ATTR, "2".equals(proto) ? RenderProtocol.V2 : RenderProtocol.V1);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
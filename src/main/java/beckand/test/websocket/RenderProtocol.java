@@ -0,0 +1,126 @@
+package beckand.test.websocket;
+
+import beckand.test.Service.render.RenderedFrame;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Протокол /ws/render/{modelId}.
+ * <p>
+ * <b>v1</b> (по умолчанию): клиент шлёт JSON {"type":"rotate","azimuth","elevation","zoom","final"},
+ * сервер отвечает голым JPEG; busy — текстом JSON.
+ * <p>
+ * <b>v2</b> — подпротокол {@value #SUBPROTOCOL_V2} (Sec-WebSocket-Protocol) или ?proto=2. Все числа little-endian.
+ * <pre>
+ * клиент → сервер, 20 байт:
+ *   0  u8   type        1 = rotate
+ *   1  u8   flags       bit0 = final
+ *   2  u16  reserved    0
+ *   4  u32  seq
+ *   8  f32  azimuth
+ *   12 f32  elevation
+ *   16 f32  zoom
+ *
+ * сервер → клиент, кадр: заголовок 32 байта + JPEG
+ *   0  u8   type        0x81 = frame
+ *   1  u8   flags       bit0 = final, bit1 = из кэша
+ *   2  u16  headerLen   32 (клиент пропускает headerLen байт — заголовок можно расширять)
+ *   4  u32  seq         seq запроса, по которому отрендерен кадр
+ *   8  u32  queueMicros   ожидание очереди рендера
+ *   12 u32  renderMicros  GL-кадр и readback
+ *   16 u32  encodeMicros  масштаб и JPEG
+ *   20 u32  serverMicros  от получения запроса до постановки в отправку
+ *   24 u32  jpegLength
+ *   28 u32  reserved
+ *
+ * сервер → клиент, busy: 12 байт
+ *   0  u8   type        0x82 = busy
+ *   1  u8   flags       0
+ *   2  u16  headerLen   12
+ *   4  u32  seq
+ *   8  u32  retryAfterMs
+ * </pre>
+ * JSON-сообщения в v2 тоже принимаются (поле seq необязательно), ответы идут в формате v2.
+ */
+public final class RenderProtocol {
+
+    public static final String SUBPROTOCOL_V2 = "atlas.render.v2";
+    public static final int V1 = 1;
+    public static final int V2 = 2;
+
+    static final int TYPE_ROTATE = 1;
+    static final int TYPE_FRAME = 0x81;
+    static final int TYPE_BUSY = 0x82;
+    static final int ROTATE_LENGTH = 20;
+    static final int FRAME_HEADER_LENGTH = 32;
+    static final int BUSY_LENGTH = 12;
+    private static final int FLAG_FINAL = 1;
+    private static final int FLAG_CACHE_HIT = 1 << 1;
+
+    private RenderProtocol() {
+    }
+
+    /** Бинарный rotate (v2); null — не rotate или битое сообщение. */
+    public static RotateCommand decodeRotate(ByteBuffer payload, long receivedNanos) {
+        if (payload.remaining() < ROTATE_LENGTH) return null;
+        ByteBuffer b = payload.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if ((b.get(0) & 0xFF) != TYPE_ROTATE) return null;
+        int flags = b.get(1) & 0xFF;
+        long seq = b.getInt(4) & 0xFFFFFFFFL;
+        float az = b.getFloat(8);
+        float el = b.getFloat(12);
+        float zoom = b.getFloat(16);
+        if (!Float.isFinite(az) || !Float.isFinite(el)) return null;
+        return new RotateCommand(seq, az, el, Float.isFinite(zoom) && zoom > 0 ? zoom : 1.0,
+                (flags & FLAG_FINAL) != 0, receivedNanos);
+    }
+
+    /** JSON rotate (v1 и v2); null — сообщение другого типа. */
+    public static RotateCommand parseJsonRotate(JsonNode root, long receivedNanos) {
+        if (!"rotate".equals(root.path("type").asText(""))) return null;
+        return new RotateCommand(
+                root.path("seq").asLong(0),
+                root.path("azimuth").asDouble(0),
+                root.path("elevation").asDouble(0),
+                root.path("zoom").asDouble(1.0),
+                root.path("final").asBoolean(false),
+                receivedNanos);
+    }
+
+    public static ByteBuffer encodeFrame(RotateCommand cmd, RenderedFrame frame) {
+        byte[] jpeg = frame.getJpeg();
+        ByteBuffer b = ByteBuffer.allocate(FRAME_HEADER_LENGTH + jpeg.length).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = (cmd.isFinalFrame() ? FLAG_FINAL : 0) | (frame.isCacheHit() ? FLAG_CACHE_HIT : 0);
+        b.put((byte) TYPE_FRAME);
+        b.put((byte) flags);
+        b.putShort((short) FRAME_HEADER_LENGTH);
+        b.putInt((int) cmd.getSeq());
+        b.putInt(micros(frame.getQueueNanos()));
+        b.putInt(micros(frame.getRenderNanos()));
+        b.putInt(micros(frame.getEncodeNanos()));
+        b.putInt(micros(System.nanoTime() - cmd.getReceivedNanos()));
+        b.putInt(jpeg.length);
+        b.putInt(0);
+        b.put(jpeg);
+        b.flip();
+        return b;
+    }
+
+    public static ByteBuffer encodeBusy(long seq, long retryAfterMs) {
+        ByteBuffer b = ByteBuffer.allocate(BUSY_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        b.put((byte) TYPE_BUSY);
+        b.put((byte) 0);
+        b.putShort((short) BUSY_LENGTH);
+        b.putInt((int) seq);
+        b.putInt((int) Math.min(Integer.MAX_VALUE, Math.max(0, retryAfterMs)));
+        b.flip();
+        return b;
+    }
+
+    private static int micros(long nanos) {
+        return (int) Math.min(0xFFFFFFFFL, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+}
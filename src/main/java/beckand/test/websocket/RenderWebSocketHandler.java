@@ -1,77 +1,87 @@
 package beckand.test.websocket;
 
 import beckand.test.DTO.file.FileDTO;
+import beckand.test.Service.cluster.RenderClusterService;
+import beckand.test.Service.cluster.RenderRingChangedEvent;
 import beckand.test.Service.file.FileService;
+import beckand.test.Service.render.AdaptiveQualityController;
+import beckand.test.Service.render.PreviewSettings;
+import beckand.test.Service.render.RenderMetrics;
+import beckand.test.Service.render.RenderQueue;
+import beckand.test.Service.render.RenderRejectedException;
 import beckand.test.Service.render.RenderService;
-import com.fasterxml.jackson.databind.JsonNode;
+import beckand.test.Service.render.RenderedFrame;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 
 import java.io.EOFException;
 import java.io.InputStream;
-import java.net.URI;
 import java.nio.channels.ClosedChannelException;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class RenderWebSocketHandler implements WebSocketHandler {
+public class RenderWebSocketHandler implements WebSocketHandler, SubProtocolCapable {
 
     private final FileService fileService;
     private final RenderService renderService;
+    private final RenderQueue renderQueue;
+    private final FrameSenderRegistry frameSenders;
+    private final RenderClusterService clusterService;
+    private final RenderMetrics metrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final String QUALITY_ATTR = "atlas.previewQuality";
+    /** Модель сессии теперь принадлежит другому узлу: клиент заново спрашивает /cluster/route и переподключается. */
+    public static final CloseStatus MODEL_MOVED = new CloseStatus(4010, "model moved to another render node");
+
+    /** Подстраивать превью под измеренное время кадра (иначе — только эвристика по числу треугольников). */
+    @Value("${render.adaptive.controller:true}")
+    private boolean adaptiveController;
+    /** Бюджет на кадр превью: очередь + рендер + JPEG + отправка. 66 мс ≈ 15 кадров/с. */
+    @Value("${render.adaptive.target-frame-ms:66}")
+    private long targetFrameMs;
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        log.debug("WebSocket connected: {}", session.getId());
+        if (RenderProtocol.SUBPROTOCOL_V2.equals(session.getAcceptedProtocol())) {
+            session.getAttributes().put(RenderHandshakeInterceptor.PROTOCOL_ATTR, RenderProtocol.V2);
+        }
+        frameSenders.register(session);
+        log.debug("WebSocket connected: {} model={} protocol=v{}", session.getId(),
+                session.getAttributes().get(RenderHandshakeInterceptor.MODEL_ID_ATTR), protocolVersion(session));
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(RenderProtocol.SUBPROTOCOL_V2);
     }
 
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) {
+        long receivedNanos = System.nanoTime();
+        RotateCommand cmd = null;
         try {
-            if (message instanceof TextMessage textMessage) {
-                long tAll0 = System.nanoTime();
-                URI uri = session.getUri();
-                if (uri == null) return;
-                String path = uri.getPath();
-                if (path == null) return;
-                String modelId = path.substring(path.lastIndexOf('/') + 1).split("\\?")[0];
-
-                JsonNode root = objectMapper.readTree(textMessage.getPayload());
-                String type = root.path("type").asText("");
-                if (!"rotate".equals(type)) return;
-                double azimuth = root.path("azimuth").asDouble(0);
-                double elevation = root.path("elevation").asDouble(0);
-                boolean finalFrame = root.path("final").asBoolean(false);
-                double zoom = root.path("zoom").asDouble(1.0);
-                renderService.setCameraDistanceScale(zoom);
-
-                // Рендер на сервере; при уже загруженной модели не дергаем MinIO (иначе 503 / rate limit).
-                long metaMs = 0;
-                long tRender0 = System.nanoTime();
-                byte[] jpeg;
-                if (renderService.isModelLoaded(modelId)) {
-                    jpeg = renderService.renderModelAdaptive(modelId, null, null, azimuth, elevation, finalFrame);
-                } else {
-                    long tMeta0 = System.nanoTime();
-                    FileDTO info = fileService.getFileInfo(modelId);
-                    metaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tMeta0);
-                    try (InputStream is = fileService.getFileContent(modelId)) {
-                        jpeg = renderService.renderModelAdaptive(modelId, is, info.getFileType(), azimuth, elevation, finalFrame);
-                    }
-                }
-                long renderMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tRender0);
-                long tSend0 = System.nanoTime();
-                session.sendMessage(new BinaryMessage(jpeg));
-                long sendMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tSend0);
-                long allMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tAll0);
-                log.debug("WS rotate: session={} model={} final={} az={} el={} zoom={} bytes={} metaMs={} renderMs={} sendMs={} totalMs={}",
-                        session.getId(), modelId, finalFrame, azimuth, elevation, zoom, jpeg.length, metaMs, renderMs, sendMs, allMs);
+            if (message instanceof BinaryMessage binaryMessage) {
+                cmd = RenderProtocol.decodeRotate(binaryMessage.getPayload(), receivedNanos);
+            } else if (message instanceof TextMessage textMessage) {
+                cmd = RenderProtocol.parseJsonRotate(objectMapper.readTree(textMessage.getPayload()), receivedNanos);
             }
+            if (cmd == null) return;
+            String modelId = (String) session.getAttributes().get(RenderHandshakeInterceptor.MODEL_ID_ATTR);
+            if (modelId == null) return;
+            handleRotate(session, modelId, cmd);
+        } catch (RenderRejectedException e) {
+            handleRejected(session, cmd, e);
         } catch (Exception e) {
             if (isBenignClientDisconnect(e)) {
                 log.debug("WebSocket client gone during rotate (session={}): {}", session.getId(), e.toString());
@@ -86,6 +96,121 @@ public class RenderWebSocketHandler implements WebSocketHandler {
         }
     }
 
+    private void handleRotate(WebSocketSession session, String modelId, RotateCommand cmd) throws Exception {
+        boolean finalFrame = cmd.isFinalFrame();
+        double azimuth = cmd.getAzimuth();
+        double elevation = cmd.getElevation();
+        double zoom = cmd.getZoom();
+
+        AdaptiveQualityController quality = (AdaptiveQualityController) session.getAttributes().get(QUALITY_ATTR);
+        PreviewSettings preview = quality != null ? quality.current() : null;
+        int qAz = preview != null ? renderService.quantizeAngle(azimuth, preview.getAngleStepDeg()) : 0;
+        int qEl = preview != null ? renderService.quantizeAngle(elevation, preview.getAngleStepDeg()) : 0;
+        if (!finalFrame && quality != null) {
+            RenderedFrame repeat = quality.repeatOfLastPreview(qAz, qEl, zoom);
+            if (repeat != null) {
+                // Тот же ракурс — без рендера, но с ответом: клиент ждёт кадр на каждый запрос
+                send(session, cmd, repeat, sendNanos -> log.debug("WS rotate repeated: session={} seq={} az={} el={}",
+                        session.getId(), cmd.getSeq(), qAz, qEl));
+                return;
+            }
+        }
+
+        // Рендер на сервере; при уже загруженной модели не дергаем MinIO (иначе 503 / rate limit).
+        long metaMs = 0;
+        long tRender0 = System.nanoTime();
+        RenderedFrame frame;
+        if (renderService.isModelLoaded(modelId)) {
+            frame = renderService.renderModelAdaptive(session.getId(), modelId, null, null, azimuth, elevation, zoom, finalFrame, preview);
+        } else {
+            long tMeta0 = System.nanoTime();
+            FileDTO info = fileService.getFileInfo(modelId);
+            metaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tMeta0);
+            try (InputStream is = fileService.getFileContent(modelId)) {
+                frame = renderService.renderModelAdaptive(session.getId(), modelId, is, info.getFileType(), azimuth, elevation, zoom, finalFrame, preview);
+            }
+        }
+        byte[] jpeg = frame.getJpeg();
+        long renderMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tRender0);
+        long metaMsFinal = metaMs;
+        LongConsumer onSent = sendNanos -> {
+            metrics.record(RenderMetrics.Stage.SEND, sendNanos);
+            if (!finalFrame && quality != null) quality.onPreviewSent(qAz, qEl, zoom, jpeg);
+            observeQuality(session, modelId, quality, frame, finalFrame, sendNanos);
+            log.debug("WS rotate: session={} model={} seq={} final={} az={} el={} zoom={} bytes={} metaMs={} renderMs={} sendMs={} totalMs={} preview={}",
+                    session.getId(), modelId, cmd.getSeq(), finalFrame, azimuth, elevation, zoom, jpeg.length, metaMsFinal, renderMs,
+                    TimeUnit.NANOSECONDS.toMillis(sendNanos), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cmd.getReceivedNanos()), preview);
+        };
+        send(session, cmd, frame, onSent);
+    }
+
+    /** Отправка — в потоке FrameSender: поток обработки сообщений не ждёт медленного клиента. */
+    private void send(WebSocketSession session, RotateCommand cmd, RenderedFrame frame, LongConsumer onSent) {
+        BinaryMessage out = protocolVersion(session) == RenderProtocol.V2
+                ? new BinaryMessage(RenderProtocol.encodeFrame(cmd, frame))
+                : new BinaryMessage(frame.getJpeg());
+        FrameSender sender = frameSenders.get(session);
+        if (sender == null) {
+            log.debug("WS frame dropped, session already closed: session={} seq={}", session.getId(), cmd.getSeq());
+            return;
+        }
+        if (cmd.isFinalFrame()) {
+            sender.sendFinal(out, onSent);
+        } else {
+            sender.sendPreview(out, onSent);
+        }
+    }
+
+    private static int protocolVersion(WebSocketSession session) {
+        Object v = session.getAttributes().get(RenderHandshakeInterceptor.PROTOCOL_ATTR);
+        return v instanceof Integer i ? i : RenderProtocol.V1;
+    }
+
+    /**
+     * Регулятор качества заводится после первого кадра — к этому моменту модель загружена и стартовые параметры
+     * по её сложности известны. Финальные кадры в регулятор не идут: их качество фиксировано.
+     */
+    private void observeQuality(WebSocketSession session, String modelId, AdaptiveQualityController quality,
+                                RenderedFrame frame, boolean finalFrame, long sendNanos) {
+        if (!adaptiveController) return;
+        if (quality == null) {
+            session.getAttributes().put(QUALITY_ATTR, new AdaptiveQualityController(
+                    targetFrameMs, renderService.defaultPreviewSettings(modelId), renderService.maxPreviewSettings()));
+            return;
+        }
+        if (finalFrame) {
+            quality.resetLastPreview();
+        } else if (!frame.isCacheHit()) {
+            quality.onPreviewFrame(frame, sendNanos);
+        }
+    }
+
+    /**
+     * Кадра не будет — клиенту busy (v1: текст {"type":"busy","retryAfterMs":N}, v2: бинарный busy с seq запроса).
+     * Клиент держит в пути один запрос и ждёт ответа на него, поэтому отвечаем на каждый: при переполнении
+     * очереди он повторит запрос через retryAfterMs, вытесненное превью — retryAfterMs=0, шлёт следующее сразу.
+     */
+    private void handleRejected(WebSocketSession session, RotateCommand cmd, RenderRejectedException e) {
+        boolean superseded = e.getReason() == RenderRejectedException.Reason.SUPERSEDED;
+        if (superseded) log.debug("WS rotate superseded: session={}", session.getId());
+        long retryAfterMs = superseded ? 0 : e.getRetryAfterMs();
+        try {
+            FrameSender sender = frameSenders.get(session);
+            if (sender == null || !session.isOpen()) return;
+            if (protocolVersion(session) == RenderProtocol.V2) {
+                long seq = cmd != null ? cmd.getSeq() : 0;
+                sender.sendControl(new BinaryMessage(RenderProtocol.encodeBusy(seq, retryAfterMs)));
+            } else {
+                ObjectNode busy = objectMapper.createObjectNode();
+                busy.put("type", "busy");
+                busy.put("retryAfterMs", retryAfterMs);
+                sender.sendControl(new TextMessage(objectMapper.writeValueAsString(busy)));
+            }
+        } catch (Exception sendError) {
+            log.debug("WS busy notify failed (session={}): {}", session.getId(), sendError.toString());
+        }
+    }
+
     /** Клиент закрыл вкладку / обновил страницу — типичный broken pipe при sendBinary. */
     private static boolean isBenignClientDisconnect(Throwable t) {
         while (t != null) {
@@ -114,9 +239,21 @@ public class RenderWebSocketHandler implements WebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) {
+        renderQueue.forgetStream(session.getId());
+        frameSenders.unregister(session);
         log.debug("WebSocket closed: {} - {}", session.getId(), closeStatus);
     }
 
+    /** Кольцо перестроено: сессии моделей, ушедших с этого узла, закрываются — GL-контекст достанется новым владельцам. */
+    @EventListener
+    public void onRenderRingChanged(RenderRingChangedEvent event) {
+        int moved = frameSenders.closeSessions(session -> {
+            Object modelId = session.getAttributes().get(RenderHandshakeInterceptor.MODEL_ID_ATTR);
+            return modelId != null && !clusterService.isLocal(modelId.toString());
+        }, MODEL_MOVED);
+        if (moved > 0) log.info("Render ring epoch {}: closed {} WebSocket session(s) of moved models", event.epoch(), moved);
+    }
+
     @Override
     public boolean supportsPartialMessages() {
         return false;
@@ -0,0 +1,18 @@
+package beckand.test.websocket;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** Запрос кадра от клиента — из JSON (v1) или бинарного сообщения (v2). */
+@Getter
+@RequiredArgsConstructor
+public final class RotateCommand {
+    /** Номер запроса клиента; в v1 без поля seq — 0. Возвращается в заголовке кадра v2. */
+    private final long seq;
+    private final double azimuth;
+    private final double elevation;
+    private final double zoom;
+    private final boolean finalFrame;
+    /** Момент получения сообщения сервером — от него считается serverMicros в ответе. */
+    private final long receivedNanos;
+}
@@ -1,5 +1,6 @@
 package beckand.test.websocket;
 
+import beckand.test.Service.cluster.RenderClusterService;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
@@ -10,14 +11,17 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final RenderWebSocketHandler renderWebSocketHandler;
+    private final RenderClusterService clusterService;
 
-    public WebSocketConfig(RenderWebSocketHandler renderWebSocketHandler) {
+    public WebSocketConfig(RenderWebSocketHandler renderWebSocketHandler, RenderClusterService clusterService) {
         this.renderWebSocketHandler = renderWebSocketHandler;
+        this.clusterService = clusterService;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(renderWebSocketHandler, "/ws/render/{modelId}")
+                .addInterceptors(new RenderHandshakeInterceptor(clusterService))
                 .setAllowedOriginPatterns("*");
     }
 }
@@ -0,0 +1,48 @@
+package beckand.test.Service.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    @Test
+    void emptyRingOwnsNothing() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), 64);
+
+        assertTrue(ring.isEmpty());
+        assertNull(ring.nodeFor("model.obj"));
+    }
+
+    @Test
+    void sameMembersGiveSameOwners() {
+        ConsistentHashRing a = new ConsistentHashRing(List.of("n1", "n2", "n3"), 64);
+        ConsistentHashRing b = new ConsistentHashRing(List.of("n3", "n1", "n2"), 64);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.nodeFor("model-" + i), b.nodeFor("model-" + i));
+        }
+    }
+
+    @Test
+    void addingNodeMovesOnlyItsShare() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("n1", "n2", "n3"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("n1", "n2", "n3", "n4"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < 4000; i++) {
+            String key = "model-" + i;
+            String owner = after.nodeFor(key);
+            if (!owner.equals(before.nodeFor(key))) {
+                moved++;
+                // Переезжает только на новый узел, между старыми ничего не перетасовывается
+                assertEquals("n4", owner);
+            }
+        }
+        assertTrue(moved > 500 && moved < 1500, "moved " + moved + " of 4000");
+    }
+}
@@ -0,0 +1,299 @@
+package beckand.test.Service.file;
+
+import beckand.test.DTO.file.UploadInitRequest;
+import beckand.test.DTO.file.UploadSessionDto;
+import beckand.test.Model.file.UploadPart;
+import beckand.test.Model.file.UploadSession;
+import beckand.test.Repository.file.UploadPartRepository;
+import beckand.test.Repository.file.UploadSessionRepository;
+import io.minio.ComposeObjectArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChunkedUploadServiceTest {
+
+    private static final long PART = ChunkedUploadService.MIN_PART_SIZE;
+    private static final String ID = "u1";
+
+    private final RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+    private final MinioClient minioClient = mock(MinioClient.class);
+    private final UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+    private final UploadPartRepository parts = mock(UploadPartRepository.class);
+    private final ModelObjectCache modelObjectCache = mock(ModelObjectCache.class);
+    private final ModelIngestService modelIngestService = mock(ModelIngestService.class);
+    private final FileCatalogService fileCatalogService = mock(FileCatalogService.class);
+    private final ObjectMetadataCache objectMetadataCache = mock(ObjectMetadataCache.class);
+    private final ExecutorService completer = mock(ExecutorService.class);
+    private ChunkedUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ChunkedUploadService(jdbc, minioClient, sessions, parts, modelObjectCache, modelIngestService,
+                fileCatalogService, objectMetadataCache);
+        ReflectionTestUtils.setField(service, "bucket", "models");
+        ReflectionTestUtils.setField(service, "defaultPartSize", 16L * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "maxFileSize", 50L * 1024 * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "completer", completer);
+    }
+
+    @Test
+    void initiateSplitsFileIntoParts() {
+        when(sessions.save(any(UploadSession.class))).thenAnswer(inv -> inv.getArgument(0));
+        UploadInitRequest request = new UploadInitRequest();
+        request.setFileName("scan.OBJ");
+        request.setTotalSize(100L * 1024 * 1024 + 1);
+        request.setPartSize(1024L);
+
+        UploadSessionDto dto = service.initiate(request);
+
+        // Часть меньше минимума S3 поднимается до 5 МиБ
+        assertEquals(PART, dto.getPartSize());
+        assertEquals(21, dto.getPartCount());
+        assertEquals(21, dto.getMissingParts().size());
+        assertEquals("UPLOADING", dto.getStatus());
+    }
+
+    @Test
+    void partOfWrongLengthIsRejectedBeforeUpload() {
+        when(sessions.findById(ID)).thenReturn(Optional.of(session(UploadSession.Status.UPLOADING)));
+
+        assertThrows(IllegalArgumentException.class, () -> service.uploadPart(ID, 3, body(), PART));
+        assertThrows(IllegalArgumentException.class, () -> service.uploadPart(ID, 4, body(), 100));
+
+        verifyNoInteractions(minioClient);
+    }
+
+    @Test
+    void partIsRefusedWhileCompleting() {
+        when(sessions.findById(ID)).thenReturn(Optional.of(session(UploadSession.Status.COMPLETING)));
+
+        assertThrows(IllegalStateException.class, () -> service.uploadPart(ID, 1, body(), PART));
+
+        verifyNoInteractions(minioClient);
+        assertTrue(jdbc.statements.isEmpty());
+    }
+
+    @Test
+    void everyPartAttemptGetsItsOwnObject() throws Exception {
+        when(sessions.findById(ID)).thenReturn(Optional.of(session(UploadSession.Status.UPLOADING)));
+        when(minioClient.putObject(any(PutObjectArgs.class))).thenReturn(written("etag-1"));
+
+        service.uploadPart(ID, 1, body(), PART);
+        service.uploadPart(ID, 1, body(), PART);
+
+        List<Object[]> accepted = jdbc.argumentsOf("INSERT INTO upload_part");
+        assertEquals(2, accepted.size());
+        Object[] args = accepted.get(0);
+        assertEquals(ID, args[1]);
+        assertEquals(1, args[2]);
+        assertEquals(PART, args[3]);
+        assertEquals("etag-1", args[4]);
+        String firstKey = (String) args[5];
+        String secondKey = (String) accepted.get(1)[5];
+        assertTrue(firstKey.startsWith("uploads/u1/00001."), firstKey);
+        assertNotEquals(firstKey, secondKey);
+    }
+
+    @Test
+    void partFinishedAfterCompletionStartedIsDiscarded() throws Exception {
+        when(sessions.findById(ID)).thenReturn(
+                Optional.of(session(UploadSession.Status.UPLOADING)),
+                Optional.of(session(UploadSession.Status.COMPLETING)));
+        when(minioClient.putObject(any(PutObjectArgs.class))).thenReturn(written("etag-1"));
+        jdbc.rows.put("INSERT INTO upload_part", 0);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> service.uploadPart(ID, 2, body(), PART));
+
+        assertTrue(e.getMessage().contains("COMPLETING"), e.getMessage());
+        ArgumentCaptor<PutObjectArgs> put = ArgumentCaptor.forClass(PutObjectArgs.class);
+        verify(minioClient).putObject(put.capture());
+        ArgumentCaptor<RemoveObjectArgs> removed = ArgumentCaptor.forClass(RemoveObjectArgs.class);
+        verify(minioClient).removeObject(removed.capture());
+        assertEquals(put.getValue().object(), removed.getValue().object());
+    }
+
+    @Test
+    void completeRequiresAllParts() {
+        when(sessions.findById(ID)).thenReturn(Optional.of(session(UploadSession.Status.UPLOADING)));
+        when(parts.findBySessionIdOrderByPartNumberAsc(ID)).thenReturn(List.of(part(1, PART), part(2, PART)));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> service.complete(ID));
+
+        assertTrue(e.getMessage().contains("[3]"), e.getMessage());
+        assertTrue(jdbc.argumentsOf("status = 'COMPLETING'").isEmpty());
+        verifyNoInteractions(completer);
+    }
+
+    @Test
+    void onlyTheRequestThatStartedCompletionComposes() {
+        // Оба запроса прочитали UPLOADING, но UPDATE в COMPLETING проходит только у первого
+        when(sessions.findById(ID)).thenReturn(Optional.of(session(UploadSession.Status.UPLOADING)));
+        when(parts.findBySessionIdOrderByPartNumberAsc(ID)).thenReturn(allParts());
+
+        service.complete(ID);
+        jdbc.rows.put("SET status = 'COMPLETING'", 0);
+        service.complete(ID);
+
+        assertEquals(2, jdbc.argumentsOf("SET status = 'COMPLETING'").size());
+        verify(completer, times(1)).execute(any(Runnable.class));
+    }
+
+    @Test
+    void composedUploadIsRecordedAndFinished() throws Exception {
+        runCompletionInline();
+        UploadSession session = session(UploadSession.Status.UPLOADING);
+        when(sessions.findById(ID)).thenReturn(Optional.of(session));
+        when(parts.findBySessionIdOrderByPartNumberAsc(ID)).thenReturn(allParts());
+        when(minioClient.composeObject(any(ComposeObjectArgs.class))).thenReturn(written("etag-final"));
+        when(minioClient.listObjects(any(ListObjectsArgs.class))).thenReturn(List.of());
+
+        service.complete(ID);
+
+        ArgumentCaptor<ComposeObjectArgs> composed = ArgumentCaptor.forClass(ComposeObjectArgs.class);
+        verify(minioClient).composeObject(composed.capture());
+        assertEquals(3, composed.getValue().sources().size());
+        assertEquals("uploads/u1/00002.abcd1234", composed.getValue().sources().get(1).object());
+        verify(fileCatalogService).record("scan.obj", "model/obj", session.getTotalSize(), "etag-final");
+        verify(modelIngestService).enqueue("scan.obj");
+        assertEquals(1, jdbc.argumentsOf("DELETE FROM upload_part").size());
+        Object[] finished = jdbc.argumentsOf("WHERE id = ? AND status = 'COMPLETING'").get(0);
+        assertEquals("COMPLETED", finished[0]);
+    }
+
+    @Test
+    void failedCompositionLeavesSessionRetryable() throws Exception {
+        runCompletionInline();
+        when(sessions.findById(ID)).thenReturn(Optional.of(session(UploadSession.Status.UPLOADING)));
+        when(parts.findBySessionIdOrderByPartNumberAsc(ID)).thenReturn(allParts());
+        when(minioClient.composeObject(any(ComposeObjectArgs.class))).thenThrow(new IllegalStateException("MinIO is down"));
+
+        service.complete(ID);
+
+        Object[] finished = jdbc.argumentsOf("WHERE id = ? AND status = 'COMPLETING'").get(0);
+        assertEquals("FAILED", finished[0]);
+        assertEquals("MinIO is down", finished[1]);
+        assertTrue(jdbc.argumentsOf("DELETE FROM upload_part").isEmpty());
+        verify(modelIngestService, never()).enqueue(any());
+    }
+
+    @Test
+    void abortIsRefusedWhileCompleting() {
+        jdbc.rows.put("DELETE FROM upload_session", 0);
+        when(sessions.existsById(ID)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> service.abort(ID));
+
+        assertTrue(jdbc.argumentsOf("DELETE FROM upload_part").isEmpty());
+        verifyNoInteractions(minioClient);
+    }
+
+    @Test
+    void abortDiscardsParts() {
+        when(minioClient.listObjects(any(ListObjectsArgs.class))).thenReturn(List.of());
+
+        service.abort(ID);
+
+        assertEquals(1, jdbc.argumentsOf("DELETE FROM upload_part").size());
+        verify(minioClient).listObjects(any(ListObjectsArgs.class));
+    }
+
+    private void runCompletionInline() {
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(0).run();
+            return null;
+        }).when(completer).execute(any(Runnable.class));
+    }
+
+    /** Три части: две по PART и последняя в 100 байт. */
+    private static UploadSession session(UploadSession.Status status) {
+        UploadSession s = new UploadSession();
+        s.setId(ID);
+        s.setObjectKey("scan.obj");
+        s.setContentType("model/obj");
+        s.setTotalSize(2 * PART + 100);
+        s.setPartSize(PART);
+        s.setPartCount(3);
+        s.setStatus(status);
+        return s;
+    }
+
+    private static List<UploadPart> allParts() {
+        return List.of(part(1, PART), part(2, PART), part(3, 100));
+    }
+
+    private static UploadPart part(int number, long size) {
+        UploadPart p = new UploadPart();
+        p.setSessionId(ID);
+        p.setPartNumber(number);
+        p.setSize(size);
+        p.setEtag("etag-" + number);
+        p.setS3Key(String.format("uploads/u1/%05d.abcd1234", number));
+        return p;
+    }
+
+    private static ObjectWriteResponse written(String etag) {
+        ObjectWriteResponse response = mock(ObjectWriteResponse.class);
+        when(response.etag()).thenReturn(etag);
+        return response;
+    }
+
+    private static ByteArrayInputStream body() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    /** JdbcTemplate без базы: запоминает UPDATE и отвечает заданным числом строк (по умолчанию 1). */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        final List<String> statements = new ArrayList<>();
+        final List<Object[]> arguments = new ArrayList<>();
+        /** Фрагмент SQL → сколько строк «изменил» такой UPDATE. */
+        final Map<String, Integer> rows = new HashMap<>();
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.add(sql);
+            arguments.add(args);
+            for (Map.Entry<String, Integer> e : rows.entrySet()) {
+                if (sql.contains(e.getKey())) return e.getValue();
+            }
+            return 1;
+        }
+
+        List<Object[]> argumentsOf(String fragment) {
+            List<Object[]> result = new ArrayList<>();
+            for (int i = 0; i < statements.size(); i++) {
+                if (statements.get(i).contains(fragment)) result.add(arguments.get(i));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package beckand.test.Service.file;
+
+import beckand.test.Mapper.FileMapper;
+import beckand.test.Model.file.FileAttributes;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FileCatalogServiceTest {
+
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private FileMapper fileMapper;
+    @Mock
+    private TypedQuery<FileAttributes> query;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @InjectMocks
+    private FileCatalogService service;
+
+    @Test
+    void nameCursorRoundTripsKeysWithColons() {
+        FileAttributes fa = row(42, "scans/ct:01.obj", 10L, null);
+
+        String token = FileCatalogService.Cursor.of(fa, FileCatalogService.SortField.NAME).encode();
+
+        assertEquals(new FileCatalogService.Cursor("scans/ct:01.obj", 42),
+                FileCatalogService.Cursor.decode(token, FileCatalogService.SortField.NAME));
+    }
+
+    @Test
+    void sizeCursorRoundTrips() {
+        String token = FileCatalogService.Cursor.of(row(7, "a.obj", 5_000_000_000L, null),
+                FileCatalogService.SortField.SIZE).encode();
+
+        assertEquals(new FileCatalogService.Cursor(5_000_000_000L, 7),
+                FileCatalogService.Cursor.decode(token, FileCatalogService.SortField.SIZE));
+    }
+
+    @Test
+    void modifiedCursorKeepsNanosecondsAndPreEpochInstants() {
+        for (Instant t : List.of(Instant.parse("2024-03-01T10:15:30.123456789Z"), Instant.parse("1969-12-31T23:59:59.123456789Z"))) {
+            String token = FileCatalogService.Cursor.of(row(3, "a.obj", 1L, t), FileCatalogService.SortField.MODIFIED).encode();
+
+            assertEquals(new FileCatalogService.Cursor(t, 3),
+                    FileCatalogService.Cursor.decode(token, FileCatalogService.SortField.MODIFIED));
+        }
+    }
+
+    @Test
+    void rejectsForeignOrBrokenCursor() {
+        String nameToken = FileCatalogService.Cursor.of(row(1, "a.obj", 1L, null), FileCatalogService.SortField.NAME).encode();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> FileCatalogService.Cursor.decode(nameToken, FileCatalogService.SortField.SIZE));
+        assertThrows(IllegalArgumentException.class,
+                () -> FileCatalogService.Cursor.decode("not a cursor!", FileCatalogService.SortField.NAME));
+    }
+
+    @Test
+    void descendingPageContinuesBelowLastRow() {
+        when(entityManager.createQuery(anyString(), eq(FileAttributes.class))).thenReturn(query);
+        when(query.setMaxResults(3)).thenReturn(query);
+        FileAttributes last = row(1, "a.obj", 100L, null);
+        when(query.getResultList()).thenReturn(
+                List.of(row(3, "c.obj", 300L, null), row(2, "b.obj", 200L, null), last),
+                List.of(last));
+
+        FileCatalogService.Page first = service.page(FileCatalogService.SortField.SIZE, true, null, null, 2);
+        FileCatalogService.Page second = service.page(FileCatalogService.SortField.SIZE, true, null, first.nextCursor(), 2);
+
+        assertEquals(2, first.items().size());
+        assertNotNull(first.nextCursor());
+        assertEquals(1, second.items().size());
+        assertNull(second.nextCursor());
+        ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager, times(2)).createQuery(jpql.capture(), eq(FileAttributes.class));
+        List<String> queries = jpql.getAllValues();
+        assertTrue(queries.get(0).endsWith(" order by f.size desc, f.fileAttributesId desc"), queries.get(0));
+        assertTrue(queries.get(1).contains(" and (f.size < :v or (f.size = :v and f.fileAttributesId < :id))"), queries.get(1));
+        verify(query).setParameter("v", 200L);
+        verify(query).setParameter("id", 2);
+    }
+
+    @Test
+    void ascendingPageContinuesAboveLastRow() {
+        when(entityManager.createQuery(anyString(), eq(FileAttributes.class))).thenReturn(query);
+        when(query.setMaxResults(11)).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of());
+        String cursor = FileCatalogService.Cursor.of(row(5, "m.obj", 1L, null), FileCatalogService.SortField.NAME).encode();
+
+        service.page(FileCatalogService.SortField.NAME, false, "model/obj", cursor, 10);
+
+        ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager).createQuery(jpql.capture(), eq(FileAttributes.class));
+        String q = jpql.getValue();
+        assertTrue(q.contains(" and f.contentType = :type"), q);
+        assertTrue(q.contains(" and (f.s3ObjectKey > :v or (f.s3ObjectKey = :v and f.fileAttributesId > :id))"), q);
+        assertTrue(q.endsWith(" order by f.s3ObjectKey asc, f.fileAttributesId asc"), q);
+        verify(query).setParameter("type", "model/obj");
+        verify(query).setParameter("v", "m.obj");
+    }
+
+    @Test
+    void existingUniqueKeyIsLeftAlone() {
+        when(jdbcTemplate.queryForObject(contains("pg_constraint"), eq(Integer.class))).thenReturn(1);
+
+        service.ensureUniqueObjectKey();
+
+        verify(jdbcTemplate, never()).update(anyString());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void missingUniqueKeyIsCreatedAfterDedup() {
+        when(jdbcTemplate.queryForObject(contains("pg_constraint"), eq(Integer.class))).thenReturn(0);
+        when(jdbcTemplate.update(startsWith("DELETE FROM file_attributes"))).thenReturn(3);
+
+        service.ensureUniqueObjectKey();
+
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).update(startsWith("UPDATE file_attributes"));
+        order.verify(jdbcTemplate).update(startsWith("DELETE FROM file_attributes"));
+        order.verify(jdbcTemplate).execute(contains("ADD CONSTRAINT file_attributes_key_uk UNIQUE (s3_object_key)"));
+    }
+
+    @Test
+    void failedUniqueKeyStopsStartup() {
+        when(jdbcTemplate.queryForObject(contains("pg_constraint"), eq(Integer.class))).thenReturn(0);
+        doThrow(new IllegalStateException("could not create unique index"))
+                .when(jdbcTemplate).execute(contains("ADD CONSTRAINT"));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> service.ensureUniqueObjectKey());
+
+        assertTrue(e.getMessage().contains("could not create unique index"), e.getMessage());
+    }
+
+    private static FileAttributes row(int id, String key, Long size, Instant modified) {
+        FileAttributes fa = new FileAttributes();
+        fa.setFileAttributesId(id);
+        fa.setS3ObjectKey(key);
+        fa.setSize(size);
+        fa.setLastModified(modified);
+        return fa;
+    }
+}
@@ -0,0 +1,82 @@
+package beckand.test.Service.file;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MediaContentCacheTest {
+
+    private final MediaContentCache cache = new MediaContentCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "maxBytes", 10L);
+        ReflectionTestUtils.setField(cache, "maxObjectBytes", 6L);
+    }
+
+    @Test
+    void cachedEntryIsReturnedWithTypeAndTime() {
+        cache.put("a", new byte[]{1, 2, 3}, MediaType.IMAGE_PNG, 42L);
+
+        MediaContent content = cache.get("a");
+
+        assertArrayEquals(new byte[]{1, 2, 3}, ((ByteArrayResource) content.body()).getByteArray());
+        assertEquals(MediaType.IMAGE_PNG, content.mediaType());
+        assertEquals(42L, content.lastModified());
+    }
+
+    @Test
+    void largeObjectIsServedButNotKept() {
+        MediaContent content = cache.put("big", new byte[7], MediaType.IMAGE_JPEG, 1L);
+
+        assertEquals(7L, ((ByteArrayResource) content.body()).contentLength());
+        assertNull(cache.get("big"));
+    }
+
+    @Test
+    void leastRecentlyReadEntryIsEvictedOverLimit() {
+        cache.put("a", new byte[4], MediaType.IMAGE_PNG, 1L);
+        cache.put("b", new byte[4], MediaType.IMAGE_PNG, 1L);
+        // Чтение делает a свежее b
+        cache.get("a");
+
+        cache.put("c", new byte[4], MediaType.IMAGE_PNG, 1L);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    void replacingEntryDoesNotLeakBytes() {
+        cache.put("a", new byte[6], MediaType.IMAGE_PNG, 1L);
+        cache.put("a", new byte[2], MediaType.IMAGE_PNG, 2L);
+
+        cache.put("b", new byte[6], MediaType.IMAGE_PNG, 1L);
+
+        // 2 + 6 в пределах 10: если бы старые 6 байт a остались в счёте, a был бы вытеснен
+        assertEquals(2L, cache.get("a").lastModified());
+        assertNotNull(cache.get("b"));
+    }
+
+    @Test
+    void evictFreesSpace() {
+        cache.put("a", new byte[6], MediaType.IMAGE_PNG, 1L);
+        cache.evict("a");
+        cache.evict("missing");
+
+        cache.put("b", new byte[6], MediaType.IMAGE_PNG, 1L);
+        cache.put("c", new byte[4], MediaType.IMAGE_PNG, 1L);
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+}
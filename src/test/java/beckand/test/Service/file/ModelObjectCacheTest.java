@@ -0,0 +1,218 @@
+package beckand.test.Service.file;
+
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ModelObjectCacheTest {
+
+    private final MinioClient minioClient = mock(MinioClient.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<ObjectMetadataCache> metadataProvider = mock(ObjectProvider.class);
+    @TempDir
+    Path dir;
+    private final Map<String, Deque<String>> etags = new HashMap<>();
+    private final Map<String, Deque<String>> bodies = new HashMap<>();
+    private ModelObjectCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenAnswer(inv ->
+                statResponse(next(etags, inv.<StatObjectArgs>getArgument(0).object())));
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(inv -> {
+            String key = inv.<GetObjectArgs>getArgument(0).object();
+            return object(key, next(bodies, key));
+        });
+        cache = new ModelObjectCache(minioClient, metadataProvider);
+        ReflectionTestUtils.setField(cache, "bucket", "models");
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", dir.toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L);
+    }
+
+    @Test
+    void secondOpenIsServedFromDisk() throws Exception {
+        init();
+        stat("a.obj", "e1");
+        content("a.obj", "v 1 2 3");
+
+        assertEquals("v 1 2 3", read("a.obj"));
+        assertEquals("v 1 2 3", read("a.obj"));
+
+        ArgumentCaptor<GetObjectArgs> args = ArgumentCaptor.forClass(GetObjectArgs.class);
+        verify(minioClient, times(1)).getObject(args.capture());
+        // Скачивание привязано к ETag из statObject
+        assertEquals("e1", args.getValue().matchETag());
+        assertEquals(1, cachedFiles().size());
+    }
+
+    @Test
+    void changedETagDownloadsNewCopy() throws Exception {
+        init();
+        stat("a.obj", "e1", "e2");
+        content("a.obj", "old", "new");
+
+        assertEquals("old", read("a.obj"));
+        assertEquals("new", read("a.obj"));
+
+        verify(minioClient, times(2)).getObject(any(GetObjectArgs.class));
+        assertEquals(2, cachedFiles().size());
+    }
+
+    @Test
+    void leastRecentlyReadEntryIsEvictedOverLimit() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxBytes", 10L);
+        init();
+        stat("a.obj", "ea");
+        stat("b.obj", "eb");
+        content("a.obj", "aaaaaa");
+        content("b.obj", "bbbbbb");
+
+        Path a = cache.fetch("a.obj");
+        Path b = cache.fetch("b.obj");
+
+        assertFalse(Files.exists(a));
+        assertTrue(Files.exists(b));
+        assertEquals(List.of(b), cachedFiles());
+    }
+
+    @Test
+    void evictRemovesLocalCopy() throws Exception {
+        init();
+        stat("a.obj", "e1");
+        content("a.obj", "v1");
+        Path file = cache.fetch("a.obj");
+
+        cache.evict("a.obj");
+
+        assertFalse(Files.exists(file));
+        assertEquals("v1", read("a.obj"));
+        verify(minioClient, times(2)).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    void failedDownloadInvalidatesMetadata() throws Exception {
+        ObjectMetadataCache metadata = mock(ObjectMetadataCache.class);
+        when(metadataProvider.getIfAvailable()).thenReturn(metadata);
+        when(metadata.get("a.obj")).thenReturn(Optional.of(
+                new ObjectMetadataCache.ObjectMetadata("a.obj", "model/obj", 3, "stale", null)));
+        doThrow(new IOException("precondition failed")).when(minioClient).getObject(any(GetObjectArgs.class));
+        init();
+
+        assertThrows(IOException.class, () -> cache.open("a.obj"));
+
+        verify(metadata).invalidate("a.obj");
+        verify(minioClient, never()).statObject(any(StatObjectArgs.class));
+        assertTrue(cachedFiles().isEmpty());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void startupKeepsFinishedFilesAndDropsStaleParts() throws Exception {
+        Path kept = Files.writeString(dir.resolve("kept.obj"), "v");
+        Path stale = Files.writeString(dir.resolve("x.obj.part"), "v");
+        Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minusSeconds(7200)));
+        Path fresh = Files.writeString(dir.resolve("y.obj.part"), "v");
+
+        init();
+
+        assertTrue(Files.exists(kept));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    void disabledCacheReadsMinioEveryTime() throws Exception {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        init();
+        content("a.obj", "v1");
+
+        assertEquals("v1", read("a.obj"));
+        assertEquals("v1", read("a.obj"));
+
+        verify(minioClient, never()).statObject(any(StatObjectArgs.class));
+        verify(minioClient, times(2)).getObject(any(GetObjectArgs.class));
+        assertTrue(cachedFiles().isEmpty());
+    }
+
+    private void init() {
+        ReflectionTestUtils.invokeMethod(cache, "init");
+    }
+
+    /** ETag объекта по очереди, по одному на statObject; последний повторяется. */
+    private void stat(String key, String... etag) {
+        etags.computeIfAbsent(key, k -> new ArrayDeque<>()).addAll(List.of(etag));
+    }
+
+    /** Содержимое объекта по очереди, по одному на getObject; последнее повторяется. */
+    private void content(String key, String... body) {
+        bodies.computeIfAbsent(key, k -> new ArrayDeque<>()).addAll(List.of(body));
+    }
+
+    private static String next(Map<String, Deque<String>> queues, String key) {
+        Deque<String> q = queues.get(key);
+        return q.size() > 1 ? q.poll() : q.peek();
+    }
+
+    private static StatObjectResponse statResponse(String etag) {
+        StatObjectResponse response = mock(StatObjectResponse.class);
+        when(response.etag()).thenReturn(etag);
+        return response;
+    }
+
+    private static GetObjectResponse object(String key, String body) {
+        return new GetObjectResponse(Headers.of(), "models", "", key,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String read(String key) throws IOException {
+        try (InputStream in = cache.open(key)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private List<Path> cachedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".obj")).toList();
+        }
+    }
+}
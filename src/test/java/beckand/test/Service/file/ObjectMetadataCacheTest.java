@@ -0,0 +1,191 @@
+package beckand.test.Service.file;
+
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ObjectMetadataCacheTest {
+
+    private final MinioClient minioClient = mock(MinioClient.class);
+    /** Ключ → ETag в бакете; нет ключа — NoSuchKey. */
+    private final Map<String, String> bucket = new HashMap<>();
+    private ObjectMetadataCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenAnswer(inv -> {
+            String key = inv.<StatObjectArgs>getArgument(0).object();
+            String etag = bucket.get(key);
+            if (etag == null) throw notFound();
+            StatObjectResponse stat = mock(StatObjectResponse.class);
+            when(stat.etag()).thenReturn(etag);
+            when(stat.size()).thenReturn(3L);
+            when(stat.contentType()).thenReturn("model/obj");
+            return stat;
+        });
+        cache = new ObjectMetadataCache(minioClient);
+        ReflectionTestUtils.setField(cache, "bucket", "models");
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "negativeTtlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+    }
+
+    @Test
+    void repeatedLookupIsServedFromMemory() throws Exception {
+        bucket.put("a.obj", "\"e1\"");
+
+        ObjectMetadataCache.ObjectMetadata first = cache.get("a.obj").orElseThrow();
+        cache.get("a.obj");
+
+        assertEquals("e1", first.etag());
+        assertEquals(3L, first.size());
+        assertEquals("model/obj", first.contentType());
+        verify(minioClient, times(1)).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void missingObjectIsRememberedToo() throws Exception {
+        assertEquals(Optional.empty(), cache.get("nope.obj"));
+        assertEquals(Optional.empty(), cache.get("nope.obj"));
+
+        verify(minioClient, times(1)).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void otherErrorsAreNotCached() throws Exception {
+        doThrow(new IOException("connection reset")).when(minioClient).statObject(any(StatObjectArgs.class));
+
+        assertThrows(RuntimeException.class, () -> cache.get("a.obj"));
+        assertThrows(RuntimeException.class, () -> cache.get("a.obj"));
+
+        verify(minioClient, times(2)).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void expiredEntryIsFetchedAgain() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttlMs", 0L);
+        bucket.put("a.obj", "e1");
+        cache.get("a.obj");
+        bucket.put("a.obj", "e2");
+
+        assertEquals("e2", cache.get("a.obj").orElseThrow().etag());
+    }
+
+    @Test
+    void invalidateDropsEntry() throws Exception {
+        bucket.put("a.obj", "e1");
+        cache.get("a.obj");
+        bucket.put("a.obj", "e2");
+
+        cache.invalidate("a.obj");
+
+        assertEquals("e2", cache.get("a.obj").orElseThrow().etag());
+    }
+
+    @Test
+    void statStartedBeforeInvalidateIsNotCached() throws Exception {
+        bucket.put("a.obj", "e1");
+        doAnswer(inv -> {
+            // Объект перезаписали, пока шёл statObject: ответ уже устарел
+            cache.invalidate("a.obj");
+            StatObjectResponse stat = mock(StatObjectResponse.class);
+            when(stat.etag()).thenReturn(bucket.get("a.obj"));
+            return stat;
+        }).when(minioClient).statObject(any(StatObjectArgs.class));
+
+        cache.get("a.obj");
+        cache.get("a.obj");
+
+        verify(minioClient, times(2)).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void reconcileDropsOnlyStaleEntries() throws Exception {
+        bucket.put("same.obj", "e1");
+        bucket.put("changed.obj", "e1");
+        bucket.put("gone.obj", "e1");
+        bucket.put("media/p.png", "e1");
+        for (String key : new String[]{"same.obj", "changed.obj", "gone.obj", "media/p.png", "new.obj"}) cache.get(key);
+        bucket.put("changed.obj", "e2");
+        bucket.remove("gone.obj");
+        bucket.put("new.obj", "e1");
+
+        cache.reconcile(Map.of("same.obj", "e1", "changed.obj", "e2", "new.obj", "e1"));
+
+        assertEquals("e1", cache.get("same.obj").orElseThrow().etag());
+        assertEquals("e2", cache.get("changed.obj").orElseThrow().etag());
+        assertTrue(cache.get("gone.obj").isEmpty());
+        assertEquals("e1", cache.get("new.obj").orElseThrow().etag());
+        // Служебные ключи в листинге каталога не видны — их держит TTL
+        assertEquals("e1", cache.get("media/p.png").orElseThrow().etag());
+        verify(minioClient, times(5 + 3)).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedOverLimit() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        bucket.put("a.obj", "e1");
+        bucket.put("b.obj", "e1");
+        bucket.put("c.obj", "e1");
+
+        cache.get("a.obj");
+        cache.get("b.obj");
+        cache.get("a.obj");
+        cache.get("c.obj");
+        cache.get("a.obj");
+        cache.get("b.obj");
+
+        // a, b, c и b повторно после вытеснения
+        verify(minioClient, times(4)).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void disabledCacheAlwaysAsksMinio() throws Exception {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        bucket.put("a.obj", "e1");
+
+        cache.get("a.obj");
+        cache.get("a.obj");
+
+        verify(minioClient, times(2)).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    void stripsETagQuotes() {
+        assertEquals("abc", ObjectMetadataCache.stripQuotes("\"abc\""));
+        assertEquals("abc", ObjectMetadataCache.stripQuotes("abc"));
+        assertEquals("\"", ObjectMetadataCache.stripQuotes("\""));
+        assertNull(ObjectMetadataCache.stripQuotes(null));
+    }
+
+    private static ErrorResponseException notFound() {
+        ErrorResponse response = mock(ErrorResponse.class);
+        when(response.code()).thenReturn("NoSuchKey");
+        ErrorResponseException e = mock(ErrorResponseException.class);
+        when(e.errorResponse()).thenReturn(response);
+        return e;
+    }
+}
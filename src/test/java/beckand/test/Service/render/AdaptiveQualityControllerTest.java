@@ -0,0 +1,112 @@
+package beckand.test.Service.render;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveQualityControllerTest {
+
+    private static final PreviewSettings CEILING = new PreviewSettings(0.75, 0.84f, 2);
+
+    @Test
+    void sentPreviewIsRepeatedForSameQuantizedView() {
+        AdaptiveQualityController controller = new AdaptiveQualityController(66, CEILING, CEILING);
+        byte[] jpeg = {1, 2, 3};
+
+        assertNull(controller.repeatOfLastPreview(10, 20, 1.0));
+        controller.onPreviewSent(10, 20, 1.0, jpeg);
+
+        RenderedFrame repeat = controller.repeatOfLastPreview(10, 20, 1.001);
+        assertArrayEquals(jpeg, repeat.getJpeg());
+        assertTrue(repeat.isCacheHit());
+        assertNull(controller.repeatOfLastPreview(12, 20, 1.0));
+        assertNull(controller.repeatOfLastPreview(10, 20, 1.5));
+    }
+
+    @Test
+    void viewIsNotRememberedUntilSent() {
+        AdaptiveQualityController controller = new AdaptiveQualityController(66, CEILING, CEILING);
+
+        // Превью отклонено очередью: onPreviewSent не вызывался — тот же ракурс рендерится снова
+        assertNull(controller.repeatOfLastPreview(10, 20, 1.0));
+        assertNull(controller.repeatOfLastPreview(10, 20, 1.0));
+    }
+
+    @Test
+    void finalFrameResetsLastPreview() {
+        AdaptiveQualityController controller = new AdaptiveQualityController(66, CEILING, CEILING);
+        controller.onPreviewSent(10, 20, 1.0, new byte[1]);
+
+        controller.resetLastPreview();
+
+        assertNull(controller.repeatOfLastPreview(10, 20, 1.0));
+    }
+
+    @Test
+    void initialSettingsAreClampedToCeiling() {
+        AdaptiveQualityController controller = new AdaptiveQualityController(66,
+                new PreviewSettings(1.0, 0.95f, 1), CEILING);
+
+        PreviewSettings current = controller.current();
+
+        assertEquals(0.75, current.getScale(), 1e-9);
+        assertEquals(0.84f, current.getJpegQuality(), 1e-6f);
+        assertEquals(2, current.getAngleStepDeg());
+    }
+
+    @Test
+    void slowFramesDegradeSizeAndQualityThenAngleStep() {
+        AdaptiveQualityController controller = new AdaptiveQualityController(66, CEILING, CEILING);
+
+        feed(controller, 5, 200);
+
+        PreviewSettings degraded = controller.current();
+        assertTrue(degraded.getScale() < CEILING.getScale());
+        assertTrue(degraded.getJpegQuality() < CEILING.getJpegQuality());
+        assertEquals(2, degraded.getAngleStepDeg());
+
+        feed(controller, 400, 200);
+
+        PreviewSettings floor = controller.current();
+        assertEquals(0.25, floor.getScale(), 1e-9);
+        assertEquals(0.35f, floor.getJpegQuality(), 1e-6f);
+        assertEquals(12, floor.getAngleStepDeg());
+    }
+
+    @Test
+    void sustainedHeadroomRecoversToCeiling() {
+        AdaptiveQualityController controller = new AdaptiveQualityController(66, CEILING, CEILING);
+        feed(controller, 400, 200);
+
+        feed(controller, 2000, 5);
+
+        PreviewSettings recovered = controller.current();
+        assertEquals(CEILING.getScale(), recovered.getScale(), 1e-9);
+        assertEquals(CEILING.getJpegQuality(), recovered.getJpegQuality(), 1e-6f);
+        assertEquals(CEILING.getAngleStepDeg(), recovered.getAngleStepDeg());
+    }
+
+    @Test
+    void framesWithinBudgetChangeNothing() {
+        AdaptiveQualityController controller = new AdaptiveQualityController(66, CEILING, CEILING);
+
+        feed(controller, 100, 60);
+
+        PreviewSettings current = controller.current();
+        assertEquals(CEILING.getScale(), current.getScale(), 1e-9);
+        assertEquals(60.0, controller.averageFrameMs(), 1e-6);
+    }
+
+    private static void feed(AdaptiveQualityController controller, int frames, long frameMs) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(frameMs);
+        for (int i = 0; i < frames; i++) {
+            // Всё время кадра — в рендере, отправка мгновенная
+            controller.onPreviewFrame(new RenderedFrame(new byte[0], 0, nanos, 0, false), 0);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package beckand.test.Service.render;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class RenderQueueTest {
+
+    private RenderQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new RenderQueue();
+        ReflectionTestUtils.setField(queue, "maxDepth", 2);
+        ReflectionTestUtils.setField(queue, "minRetryAfterMs", 200L);
+        ReflectionTestUtils.setField(queue, "quantumMs", 5L);
+    }
+
+    @Test
+    void finalFramesAreGrantedBeforeWaitingPreviews() throws Exception {
+        RenderQueue.Ticket holder = queue.admit(null, true);
+        assertGranted(holder);
+        RenderQueue.Ticket preview = queue.admit("a", false);
+        RenderQueue.Ticket finalFrame = queue.admit("b", true);
+
+        holder.close();
+
+        assertGranted(finalFrame);
+        assertEquals(1, queue.depth());
+        finalFrame.close();
+        assertGranted(preview);
+        assertEquals(0, queue.depth());
+    }
+
+    @Test
+    void sessionThatHeldTheContextLongerWaitsForOtherLanes() throws Exception {
+        RenderQueue.Ticket slow = queue.admit("a", false);
+        assertGranted(slow);
+        // Превью "a" заняло контекст на несколько квантов — его дефицит уходит в минус
+        Thread.sleep(30);
+        RenderQueue.Ticket other = queue.admit("b", false);
+        RenderQueue.Ticket again = queue.admit("a", false);
+
+        slow.close();
+
+        assertGranted(other);
+        assertEquals(1, queue.depth());
+        other.close();
+        assertGranted(again);
+    }
+
+    @Test
+    void previewIsRejectedWhenQueueIsFull() throws Exception {
+        RenderQueue.Ticket holder = queue.admit(null, true);
+        queue.admit("a", false);
+        queue.admit("b", false);
+
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> queue.admit("c", false));
+
+        assertEquals(RenderRejectedException.Reason.QUEUE_FULL, e.getReason());
+        assertEquals(200L, e.getRetryAfterMs());
+        assertEquals(1, queue.stats().getRejectedTotal());
+        assertEquals(2, queue.depth());
+        holder.close();
+    }
+
+    @Test
+    void finalFrameEvictsOldestWaitingPreview() throws Exception {
+        RenderQueue.Ticket holder = queue.admit(null, true);
+        RenderQueue.Ticket oldest = queue.admit("a", false);
+        RenderQueue.Ticket newer = queue.admit("b", false);
+
+        RenderQueue.Ticket finalFrame = queue.admit("c", true);
+
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> queue.await(oldest));
+        assertEquals(RenderRejectedException.Reason.QUEUE_FULL, e.getReason());
+        assertEquals(2, queue.depth());
+        holder.close();
+        assertGranted(finalFrame);
+        finalFrame.close();
+        assertGranted(newer);
+    }
+
+    @Test
+    void finalFrameIsRejectedWhenNothingCanBeEvicted() throws Exception {
+        RenderQueue.Ticket holder = queue.admit(null, true);
+        queue.admit(null, true);
+        queue.admit("a", true);
+
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> queue.admit("b", true));
+
+        assertEquals(RenderRejectedException.Reason.QUEUE_FULL, e.getReason());
+        holder.close();
+    }
+
+    @Test
+    void newPreviewSupersedesWaitingPreviewOfSameSession() throws Exception {
+        RenderQueue.Ticket holder = queue.admit(null, true);
+        RenderQueue.Ticket stale = queue.admit("a", false);
+        RenderQueue.Ticket fresh = queue.admit("a", false);
+
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> queue.await(stale));
+
+        assertEquals(RenderRejectedException.Reason.SUPERSEDED, e.getReason());
+        assertEquals(1, queue.depth());
+        assertEquals(1, queue.stats().getSupersededTotal());
+        holder.close();
+        assertGranted(fresh);
+    }
+
+    @Test
+    void forgetStreamDropsWaitingPreviews() throws Exception {
+        RenderQueue.Ticket holder = queue.admit(null, true);
+        RenderQueue.Ticket waiting = queue.admit("a", false);
+
+        queue.forgetStream("a");
+
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> queue.await(waiting));
+        assertEquals(RenderRejectedException.Reason.SUPERSEDED, e.getReason());
+        assertEquals(0, queue.depth());
+        assertEquals(0, queue.sessionStats().size());
+        holder.close();
+    }
+
+    @Test
+    void closingWaitingTicketFreesItsPlace() throws Exception {
+        RenderQueue.Ticket holder = queue.admit(null, true);
+        RenderQueue.Ticket waiting = queue.admit("a", false);
+
+        waiting.close();
+
+        assertEquals(0, queue.depth());
+        holder.close();
+        assertFalse(queue.stats().isRendering());
+    }
+
+    @Test
+    void everyContextGetsATicket() throws Exception {
+        queue.setContexts(2);
+        RenderQueue.Ticket first = queue.admit("a", false);
+        RenderQueue.Ticket second = queue.admit("b", false);
+        RenderQueue.Ticket third = queue.admit("c", false);
+
+        assertGranted(first);
+        assertGranted(second);
+        assertEquals(1, queue.depth());
+        first.close();
+        assertGranted(third);
+    }
+
+    private void assertGranted(RenderQueue.Ticket ticket) {
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> queue.await(ticket));
+    }
+}
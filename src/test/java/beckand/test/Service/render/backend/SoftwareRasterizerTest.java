@@ -0,0 +1,128 @@
+package beckand.test.Service.render.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SoftwareRasterizerTest {
+
+    private static final int W = 64;
+    private static final int H = 64;
+    /** glClearColor(0.06, 0.06, 0.08): R, G, B. */
+    private static final int[] CLEAR = {15, 15, 20};
+
+    @Test
+    void emptyFrameIsClearColor() throws Exception {
+        ByteBuffer out = render(new float[0], 2, 16, true);
+
+        assertPixel(out, 0, 0, CLEAR);
+        assertPixel(out, W / 2, H / 2, CLEAR);
+        assertEquals((byte) 0xFF, out.get(3));
+    }
+
+    @Test
+    void facingQuadIsFullyLitAndLeavesBackgroundClear() throws Exception {
+        ByteBuffer out = render(quad(0f, 0, 0, 1, false), 2, 16, true);
+
+        // ambient 0.2 + LIGHT0 вдоль взгляда, с насыщением до 1
+        assertPixel(out, W / 2, H / 2, gray(255));
+        assertPixel(out, 0, 0, CLEAR);
+        assertPixel(out, W - 1, H - 1, CLEAR);
+    }
+
+    @Test
+    void backFacesAreCulledOnlyWhenEnabled() throws Exception {
+        float[] back = quad(0f, 0, 0, -1, true);
+
+        assertPixel(render(back, 2, 16, true), W / 2, H / 2, CLEAR);
+        // Нормаль от камеры — только ambient
+        assertPixel(render(back, 2, 16, false), W / 2, H / 2, gray(51));
+    }
+
+    @Test
+    void nearerTriangleWinsRegardlessOfOrder() throws Exception {
+        float[] near = quad(0.5f, 0, 0, 1, false);
+        float[] far = quad(-0.5f, 1, 0, 0, false);
+
+        assertPixel(render(concat(near, far), 2, 16, true), W / 2, H / 2, gray(255));
+        assertPixel(render(concat(far, near), 2, 16, true), W / 2, H / 2, gray(255));
+        assertPixel(render(far, 2, 16, true), W / 2, H / 2, gray(51));
+    }
+
+    @Test
+    void frameDoesNotDependOnThreadsOrTiles() throws Exception {
+        Random rnd = new Random(42);
+        float[] mesh = new float[300 * 18];
+        for (int i = 0; i < mesh.length; i += 6) {
+            for (int k = 0; k < 6; k++) mesh[i + k] = rnd.nextFloat() * 2f - 1f;
+        }
+
+        byte[] single = bytes(render(mesh, 1, 16, false));
+        byte[] parallel = bytes(render(mesh, 3, 40, false));
+
+        assertArrayEquals(single, parallel);
+    }
+
+    @Test
+    void rejectsTooSmallTarget() {
+        try (SoftwareRasterizer raster = new SoftwareRasterizer(1, 16)) {
+            assertThrows(IllegalArgumentException.class, () -> raster.render(FloatBuffer.allocate(0), 0, camera(true),
+                    ByteBuffer.allocateDirect(W * H * 4 - 1), W, H));
+        }
+    }
+
+    private static ByteBuffer render(float[] vertices, int threads, int tileSize, boolean cull) throws Exception {
+        ByteBuffer out = ByteBuffer.allocateDirect(W * H * 4);
+        try (SoftwareRasterizer raster = new SoftwareRasterizer(threads, tileSize)) {
+            raster.render(FloatBuffer.wrap(vertices), vertices.length / 6, camera(cull), out, W, H);
+        }
+        return out;
+    }
+
+    /** Камера на +Z, смотрит в начало координат. */
+    private static RenderView camera(boolean cull) {
+        return new RenderView(0, 0, 5, 0.1, 100, 45, 0, 0, 0, cull);
+    }
+
+    /** Квадрат 2×2 в плоскости z с нормалью (nx, ny, nz); clockwise — обход по часовой, если смотреть с +Z. */
+    private static float[] quad(float z, float nx, float ny, float nz, boolean clockwise) {
+        float[][] corners = {{-1, -1}, {1, -1}, {1, 1}, {-1, 1}};
+        int[] order = clockwise ? new int[]{0, 2, 1, 0, 3, 2} : new int[]{0, 1, 2, 0, 2, 3};
+        float[] out = new float[6 * 6];
+        for (int i = 0; i < order.length; i++) {
+            float[] c = corners[order[i]];
+            System.arraycopy(new float[]{nx, ny, nz, c[0], c[1], z}, 0, out, i * 6, 6);
+        }
+        return out;
+    }
+
+    private static float[] concat(float[] a, float[] b) {
+        float[] out = new float[a.length + b.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    private static int[] gray(int v) {
+        return new int[]{v, v, v};
+    }
+
+    /** RGBA снизу вверх, как после glReadPixels. */
+    private static void assertPixel(ByteBuffer out, int x, int y, int[] rgb) {
+        int p = (y * W + x) * 4;
+        assertArrayEquals(rgb, new int[]{out.get(p) & 0xFF, out.get(p + 1) & 0xFF, out.get(p + 2) & 0xFF},
+                "pixel " + x + ", " + y);
+    }
+
+    private static byte[] bytes(ByteBuffer buf) {
+        byte[] out = new byte[buf.capacity()];
+        buf.duplicate().clear().get(out);
+        return out;
+    }
+}
@@ -0,0 +1,137 @@
+package beckand.test.Service.render.section;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionMeshTest {
+
+    private static final float EPS = 1e-4f;
+
+    @Test
+    void cubeSectionIsOneClosedSquare() {
+        SectionMesh mesh = SectionMesh.of(cube(0, 0, 0, 1));
+
+        float[] segments = mesh.intersect(SectionMesh.Axis.Z, 0.25f);
+        List<float[]> contours = SectionMesh.contours(segments, EPS);
+
+        // Каждая боковая грань — два треугольника, каждый даёт отрезок
+        assertEquals(8 * 4, segments.length);
+        assertEquals(1, contours.size());
+        float[] c = contours.get(0);
+        assertEquals(9 * 2, c.length);
+        assertEquals(c[0], c[c.length - 2], EPS);
+        assertEquals(c[1], c[c.length - 1], EPS);
+        for (int i = 0; i < c.length; i += 2) {
+            boolean onBorder = Math.abs(Math.abs(c[i]) - 1) < EPS || Math.abs(Math.abs(c[i + 1]) - 1) < EPS;
+            assertTrue(onBorder, "point " + c[i] + ", " + c[i + 1] + " is not on the square");
+        }
+    }
+
+    @Test
+    void axisSelectsSectionCoordinates() {
+        SectionMesh mesh = SectionMesh.of(cube(10, 20, 30, 1));
+
+        float[] segments = mesh.intersect(SectionMesh.Axis.X, 10f);
+
+        // Для X: u — это Y, v — Z
+        for (int i = 0; i < segments.length; i += 2) {
+            assertTrue(segments[i] >= 19 - EPS && segments[i] <= 21 + EPS);
+            assertTrue(segments[i + 1] >= 29 - EPS && segments[i + 1] <= 31 + EPS);
+        }
+        assertEquals(19f, mesh.min(SectionMesh.Axis.X, true));
+        assertEquals(31f, mesh.max(SectionMesh.Axis.X, false));
+    }
+
+    @Test
+    void nestedShellsGiveSeparateContours() {
+        float[] outer = cube(0, 0, 0, 2);
+        float[] inner = cube(0, 0, 0, 1);
+        float[] both = Arrays.copyOf(outer, outer.length + inner.length);
+        System.arraycopy(inner, 0, both, outer.length, inner.length);
+        SectionMesh mesh = SectionMesh.of(both);
+
+        List<float[]> contours = SectionMesh.contours(mesh.intersect(SectionMesh.Axis.Y, 0.5f), EPS);
+
+        assertEquals(24, mesh.triangleCount());
+        assertEquals(2, contours.size());
+    }
+
+    @Test
+    void planeOutsideModelGivesNothing() {
+        SectionMesh mesh = SectionMesh.of(cube(0, 0, 0, 1));
+
+        assertEquals(0, mesh.intersect(SectionMesh.Axis.Z, 1.5f).length);
+        assertEquals(0, mesh.intersect(SectionMesh.Axis.Z, -1.01f).length);
+        assertTrue(SectionMesh.contours(new float[0], EPS).isEmpty());
+    }
+
+    @Test
+    void openSurfaceGivesOpenPolyline() {
+        // Две соседние грани куба, не замкнутые: сечение — незамкнутая ломаная буквой L
+        float[] walls = Arrays.copyOf(cube(0, 0, 0, 1), 4 * 9);
+        SectionMesh mesh = SectionMesh.of(walls);
+
+        List<float[]> contours = SectionMesh.contours(mesh.intersect(SectionMesh.Axis.Z, 0f), EPS);
+
+        assertEquals(1, contours.size());
+        float[] c = contours.get(0);
+        boolean closed = Math.abs(c[0] - c[c.length - 2]) < EPS && Math.abs(c[1] - c[c.length - 1]) < EPS;
+        assertFalse(closed);
+        assertEquals(5 * 2, c.length);
+    }
+
+    @Test
+    void planeAtMapsFractionToModelRange() {
+        SectionMesh mesh = SectionMesh.of(cube(0, 0, 5, 2));
+
+        assertEquals(3f, mesh.planeAt(SectionMesh.Axis.Z, 0), EPS);
+        assertEquals(5f, mesh.planeAt(SectionMesh.Axis.Z, 0.5), EPS);
+        assertEquals(7f, mesh.planeAt(SectionMesh.Axis.Z, 1), EPS);
+    }
+
+    @Test
+    void rejectsBadInput() {
+        assertThrows(IllegalArgumentException.class, () -> SectionMesh.of(new float[8]));
+        assertThrows(IllegalArgumentException.class, () -> SectionMesh.of(new float[10]));
+        assertThrows(IllegalArgumentException.class, () -> SectionMesh.Axis.fromParam("w"));
+        assertThrows(IllegalArgumentException.class, () -> SectionMesh.Axis.fromParam(null));
+        assertEquals(SectionMesh.Axis.Y, SectionMesh.Axis.fromParam(" y "));
+    }
+
+    /** Куб с центром (cx, cy, cz) и полуребром h: 12 треугольников, сначала боковые грани -X, -Y, +X, +Y. */
+    private static float[] cube(float cx, float cy, float cz, float h) {
+        float[][] v = new float[8][];
+        for (int i = 0; i < 8; i++) {
+            v[i] = new float[]{
+                    cx + ((i & 1) != 0 ? h : -h),
+                    cy + ((i & 2) != 0 ? h : -h),
+                    cz + ((i & 4) != 0 ? h : -h)};
+        }
+        int[][] faces = {
+                {0, 2, 6, 4}, // -X
+                {0, 4, 5, 1}, // -Y
+                {1, 5, 7, 3}, // +X
+                {2, 3, 7, 6}, // +Y
+                {0, 1, 3, 2}, // -Z
+                {4, 6, 7, 5}, // +Z
+        };
+        float[] out = new float[faces.length * 2 * 9];
+        int p = 0;
+        for (int[] f : faces) {
+            for (int[] tri : new int[][]{{f[0], f[1], f[2]}, {f[0], f[2], f[3]}}) {
+                for (int k : tri) {
+                    System.arraycopy(v[k], 0, out, p, 3);
+                    p += 3;
+                }
+            }
+        }
+        return out;
+    }
+}
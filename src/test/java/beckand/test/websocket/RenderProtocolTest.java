@@ -0,0 +1,134 @@
+package beckand.test.websocket;
+
+import beckand.test.Service.render.RenderedFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderProtocolTest {
+
+    @Test
+    void decodesBinaryRotate() {
+        RotateCommand cmd = RenderProtocol.decodeRotate(rotate(1, 0x1, 0xFFFFFFF0L, 45f, -30f, 2.5f), 777L);
+
+        assertEquals(0xFFFFFFF0L, cmd.getSeq());
+        assertEquals(45.0, cmd.getAzimuth());
+        assertEquals(-30.0, cmd.getElevation());
+        assertEquals(2.5, cmd.getZoom());
+        assertTrue(cmd.isFinalFrame());
+        assertEquals(777L, cmd.getReceivedNanos());
+    }
+
+    @Test
+    void invalidZoomFallsBackToOne() {
+        assertEquals(1.0, RenderProtocol.decodeRotate(rotate(1, 0, 1, 0f, 0f, 0f), 0).getZoom());
+        assertEquals(1.0, RenderProtocol.decodeRotate(rotate(1, 0, 1, 0f, 0f, Float.NaN), 0).getZoom());
+    }
+
+    @Test
+    void rejectsMalformedRotate() {
+        assertNull(RenderProtocol.decodeRotate(rotate(2, 0, 1, 0f, 0f, 1f), 0));
+        assertNull(RenderProtocol.decodeRotate(rotate(1, 0, 1, Float.POSITIVE_INFINITY, 0f, 1f), 0));
+        assertNull(RenderProtocol.decodeRotate(rotate(1, 0, 1, 0f, Float.NaN, 1f), 0));
+        assertNull(RenderProtocol.decodeRotate(ByteBuffer.allocate(RenderProtocol.ROTATE_LENGTH - 1), 0));
+    }
+
+    @Test
+    void decodeDoesNotMoveCallerBuffer() {
+        ByteBuffer payload = rotate(1, 0, 5, 10f, 20f, 1f);
+
+        RenderProtocol.decodeRotate(payload, 0);
+
+        assertEquals(0, payload.position());
+    }
+
+    @Test
+    void encodesFrameHeaderAndPayload() {
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3};
+        RotateCommand cmd = new RotateCommand(0xFFFFFFFEL, 0, 0, 1, true, System.nanoTime());
+        RenderedFrame frame = new RenderedFrame(jpeg, 2_000_000L, 3_500L, 999L, true);
+
+        ByteBuffer b = RenderProtocol.encodeFrame(cmd, frame).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(RenderProtocol.FRAME_HEADER_LENGTH + jpeg.length, b.remaining());
+        assertEquals(RenderProtocol.TYPE_FRAME, b.get(0) & 0xFF);
+        assertEquals(0x3, b.get(1) & 0xFF);
+        assertEquals(RenderProtocol.FRAME_HEADER_LENGTH, b.getShort(2) & 0xFFFF);
+        assertEquals(0xFFFFFFFEL, b.getInt(4) & 0xFFFFFFFFL);
+        assertEquals(2000, b.getInt(8));
+        assertEquals(3, b.getInt(12));
+        assertEquals(0, b.getInt(16));
+        assertTrue(b.getInt(20) >= 0);
+        assertEquals(jpeg.length, b.getInt(24));
+        assertEquals(0, b.getInt(28));
+        byte[] body = new byte[jpeg.length];
+        b.position(RenderProtocol.FRAME_HEADER_LENGTH);
+        b.get(body);
+        assertArrayEquals(jpeg, body);
+    }
+
+    @Test
+    void previewFrameHasNoFlags() {
+        RotateCommand cmd = new RotateCommand(1, 0, 0, 1, false, System.nanoTime());
+        RenderedFrame frame = new RenderedFrame(new byte[1], 0, 0, 0, false);
+
+        ByteBuffer b = RenderProtocol.encodeFrame(cmd, frame);
+
+        assertEquals(0, b.get(1));
+    }
+
+    @Test
+    void encodesBusy() {
+        ByteBuffer b = RenderProtocol.encodeBusy(42, 250).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(RenderProtocol.BUSY_LENGTH, b.remaining());
+        assertEquals(RenderProtocol.TYPE_BUSY, b.get(0) & 0xFF);
+        assertEquals(RenderProtocol.BUSY_LENGTH, b.getShort(2) & 0xFFFF);
+        assertEquals(42, b.getInt(4));
+        assertEquals(250, b.getInt(8));
+    }
+
+    @Test
+    void busyRetryAfterIsClamped() {
+        ByteBuffer b = RenderProtocol.encodeBusy(1, -5).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(0, b.getInt(8));
+    }
+
+    @Test
+    void parsesJsonRotate() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        RotateCommand cmd = RenderProtocol.parseJsonRotate(
+                mapper.readTree("{\"type\":\"rotate\",\"seq\":7,\"azimuth\":90,\"elevation\":10,\"final\":true}"), 5L);
+
+        assertEquals(7, cmd.getSeq());
+        assertEquals(90.0, cmd.getAzimuth());
+        assertEquals(10.0, cmd.getElevation());
+        assertEquals(1.0, cmd.getZoom());
+        assertTrue(cmd.isFinalFrame());
+        assertNull(RenderProtocol.parseJsonRotate(mapper.readTree("{\"type\":\"ping\"}"), 5L));
+        assertFalse(RenderProtocol.parseJsonRotate(mapper.readTree("{\"type\":\"rotate\"}"), 5L).isFinalFrame());
+    }
+
+    private static ByteBuffer rotate(int type, int flags, long seq, float azimuth, float elevation, float zoom) {
+        ByteBuffer b = ByteBuffer.allocate(RenderProtocol.ROTATE_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        b.put((byte) type);
+        b.put((byte) flags);
+        b.putShort((short) 0);
+        b.putInt((int) seq);
+        b.putFloat(azimuth);
+        b.putFloat(elevation);
+        b.putFloat(zoom);
+        b.flip();
+        return b;
+    }
+}